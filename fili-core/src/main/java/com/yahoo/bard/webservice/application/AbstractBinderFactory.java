@@ -122,6 +122,7 @@ import org.slf4j.LoggerFactory;
 import rx.subjects.PublishSubject;
 
 import java.io.IOException;
+import java.io.Serializable;
 import java.lang.management.ManagementFactory;
 import java.lang.reflect.Constructor;
 import java.time.Clock;
@@ -807,7 +808,7 @@ public abstract class AbstractBinderFactory implements BinderFactory {
             );
         }
         try {
-            MemTupleDataCache<Long, String> cache = new MemTupleDataCache<>();
+            MemTupleDataCache<Long, Serializable> cache = new MemTupleDataCache<>();
             LOG.info("MemcachedClient Version 2 started {}", cache);
             return cache;
         } catch (IOException e) {
@@ -16,7 +16,20 @@ public enum BardFeatureFlag implements FeatureFlag {
     UPDATED_METADATA_COLLECTION_NAMES("updated_metadata_collection_names_enabled"),
     DRUID_COORDINATOR_METADATA("druid_coordinator_metadata_enabled"),
     DRUID_DIMENSIONS_LOADER("druid_dimensions_loader_enabled"),
-    CASE_SENSITIVE_KEYS("case_sensitive_keys_enabled");
+    CASE_SENSITIVE_KEYS("case_sensitive_keys_enabled"),
+    STREAMING_DRUID_RESPONSE_PARSING("streaming_druid_response_parsing_enabled"),
+    COLUMNAR_RESULT_SETS("columnar_result_sets_enabled"),
+    SPLIT_QUERY_RESULT_SET_MERGE("split_query_result_set_merge_enabled"),
+    LUCENE_STORED_FIELD_HYDRATION("lucene_stored_field_hydration_enabled"),
+    DRUID_FILTER_RESOLUTION_CACHE("druid_filter_resolution_cache_enabled"),
+    PIPELINED_RESPONSE_STREAMING("pipelined_response_streaming_enabled"),
+    PHYSICAL_TABLE_RESOLUTION_CACHE("physical_table_resolution_cache_enabled"),
+    AVAILABILITY_SNAPSHOTS("availability_snapshots_enabled"),
+    SQL_RESULT_SETS("sql_result_sets_enabled"),
+    SQL_QUERY_TEMPLATES("sql_query_templates_enabled"),
+    FUSED_RESULT_SET_MAPPING("fused_result_set_mapping_enabled"),
+    RESULT_PAGE_CACHE("result_page_cache_enabled"),
+    PHASE_LATENCY_HISTOGRAMS("phase_latency_histograms_enabled");
 
     static final SystemConfig SYSTEM_CONFIG = SystemConfigProvider.getInstance();
 
@@ -0,0 +1,757 @@
+// Copyright 2017 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.data;
+
+import com.yahoo.bard.webservice.data.dimension.DimensionColumn;
+import com.yahoo.bard.webservice.data.dimension.DimensionRow;
+import com.yahoo.bard.webservice.data.metric.MetricColumn;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.joda.time.chrono.ISOChronology;
+
+import java.math.BigDecimal;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+
+/**
+ * An immutable result set which stores its rows by column rather than as Result objects.
+ * <p>
+ * Timestamps are stored as epoch milliseconds, dimension rows are dictionary encoded per column, and numeric metric
+ * values are stored as primitive longs or doubles whenever that round trips to the exact value the row held. Any other
+ * metric value is stored as is. A Result is only built when a row is read, so a large result set costs a few arrays
+ * rather than several maps per row.
+ * <p>
+ * Reordering and selecting rows (see {@link #sortByTimestamp(boolean)} and {@link #selectRows(int[])}) share the
+ * columns of this result set rather than copying them.
+ */
+public class ColumnarResultSet extends ResultSet implements RandomAccess {
+
+    private final DateTimeZone dateTimeZone;
+    private final long[] timestamps;
+    private final Map<Integer, DateTime> irregularTimestamps;
+
+    private final DimensionColumn[] dimensionColumns;
+    private final int[][] dimensionCodes;
+    private final DimensionRow[][] dimensionDictionaries;
+
+    private final MetricColumn[] metricColumns;
+    private final MetricVector[] metricVectors;
+
+    /**
+     * Positions of the rows of this result set in the column arrays, or null if the rows are in column order.
+     */
+    private final int[] rowIndexes;
+    private final int rowCount;
+
+    private final List<Result> rows = new RowView();
+
+    /**
+     * Constructor.
+     *
+     * @param schema  The associated schema
+     * @param dateTimeZone  The time zone of the row timestamps
+     * @param timestamps  The row timestamps, in epoch milliseconds
+     * @param irregularTimestamps  Timestamps, by column position, which are not in the ISO chronology of the zone
+     * @param dimensionColumns  The dimension columns stored
+     * @param dimensionCodes  The dictionary code of each row, by dimension column, -1 if the row has no value
+     * @param dimensionDictionaries  The distinct dimension rows, by dimension column
+     * @param metricColumns  The metric columns stored
+     * @param metricVectors  The metric values, by metric column
+     * @param rowIndexes  Positions of the rows in the column arrays, or null if the rows are in column order
+     * @param rowCount  The number of rows
+     */
+    private ColumnarResultSet(
+            ResultSetSchema schema,
+            DateTimeZone dateTimeZone,
+            long[] timestamps,
+            Map<Integer, DateTime> irregularTimestamps,
+            DimensionColumn[] dimensionColumns,
+            int[][] dimensionCodes,
+            DimensionRow[][] dimensionDictionaries,
+            MetricColumn[] metricColumns,
+            MetricVector[] metricVectors,
+            int[] rowIndexes,
+            int rowCount
+    ) {
+        super(schema, new ArrayList<>(0));
+        this.dateTimeZone = dateTimeZone;
+        this.timestamps = timestamps;
+        this.irregularTimestamps = irregularTimestamps;
+        this.dimensionColumns = dimensionColumns;
+        this.dimensionCodes = dimensionCodes;
+        this.dimensionDictionaries = dimensionDictionaries;
+        this.metricColumns = metricColumns;
+        this.metricVectors = metricVectors;
+        this.rowIndexes = rowIndexes;
+        this.rowCount = rowCount;
+    }
+
+    /**
+     * Build a columnar result set holding the given results.
+     *
+     * @param schema  The associated schema
+     * @param results  The results to store
+     *
+     * @return the columnar result set
+     */
+    public static ColumnarResultSet of(ResultSetSchema schema, Collection<Result> results) {
+        Builder builder = new Builder(schema);
+        results.forEach(builder::add);
+        return builder.build();
+    }
+
+    /**
+     * The time zone rows are read in, unless a row was stored with a timestamp in some other time zone.
+     *
+     * @return the time zone of the row timestamps
+     */
+    public DateTimeZone getDateTimeZone() {
+        return dateTimeZone;
+    }
+
+    /**
+     * The timestamp of a row in epoch milliseconds, without building the row.
+     *
+     * @param row  The index of the row
+     *
+     * @return the timestamp of the row
+     */
+    public long getTimestampMillis(int row) {
+        return timestamps[columnPosition(row)];
+    }
+
+    /**
+     * Build a result set containing the selected rows of this one, sharing its columns.
+     *
+     * @param selectedRows  Indexes of the rows of this result set to select, in the desired order
+     *
+     * @return the result set of the selected rows
+     */
+    public ColumnarResultSet selectRows(int[] selectedRows) {
+        int[] positions = new int[selectedRows.length];
+        for (int i = 0; i < selectedRows.length; i++) {
+            if (selectedRows[i] < 0 || selectedRows[i] >= rowCount) {
+                throw new IndexOutOfBoundsException("Row: " + selectedRows[i] + ", Size: " + rowCount);
+            }
+            positions[i] = columnPosition(selectedRows[i]);
+        }
+        return new ColumnarResultSet(
+                getSchema(),
+                dateTimeZone,
+                timestamps,
+                irregularTimestamps,
+                dimensionColumns,
+                dimensionCodes,
+                dimensionDictionaries,
+                metricColumns,
+                metricVectors,
+                positions,
+                positions.length
+        );
+    }
+
+    /**
+     * Build a result set of the rows of this one stably sorted by timestamp, sharing its columns.
+     * <p>
+     * Rows with equal timestamps keep their relative order. Results which are already in order are returned as is.
+     *
+     * @param ascending  True to sort in ascending time order, false for descending
+     *
+     * @return the sorted result set
+     */
+    public ColumnarResultSet sortByTimestamp(boolean ascending) {
+        int[] order = new int[rowCount];
+        boolean sorted = true;
+        for (int i = 0; i < rowCount; i++) {
+            order[i] = i;
+            if (i > 0 && compareTimestamps(i - 1, i, ascending) > 0) {
+                sorted = false;
+            }
+        }
+        if (sorted) {
+            return this;
+        }
+
+        // Bottom up merge sort, which is stable and works directly on the primitive timestamps
+        int[] buffer = new int[rowCount];
+        for (int width = 1; width < rowCount; width *= 2) {
+            for (int low = 0; low < rowCount; low += 2 * width) {
+                int middle = Math.min(low + width, rowCount);
+                int high = Math.min(low + 2 * width, rowCount);
+                int left = low;
+                int right = middle;
+                for (int out = low; out < high; out++) {
+                    boolean takeLeft = left < middle
+                            && (right >= high || compareTimestamps(order[left], order[right], ascending) <= 0);
+                    if (takeLeft) {
+                        buffer[out] = order[left++];
+                    } else {
+                        buffer[out] = order[right++];
+                    }
+                }
+            }
+            int[] swap = order;
+            order = buffer;
+            buffer = swap;
+        }
+        return selectRows(order);
+    }
+
+    /**
+     * Compare the timestamps of two rows.
+     *
+     * @param row1  The index of the first row
+     * @param row2  The index of the second row
+     * @param ascending  True to compare in ascending time order, false for descending
+     *
+     * @return a negative number, zero or a positive number as the first row sorts before, with or after the second
+     */
+    private int compareTimestamps(int row1, int row2, boolean ascending) {
+        int comparison = Long.compare(getTimestampMillis(row1), getTimestampMillis(row2));
+        return ascending ? comparison : -comparison;
+    }
+
+    /**
+     * The position of a row in the column arrays.
+     *
+     * @param row  The index of the row
+     *
+     * @return the position of the row's values in the columns
+     */
+    private int columnPosition(int row) {
+        if (row < 0 || row >= rowCount) {
+            throw new IndexOutOfBoundsException("Index: " + row + ", Size: " + rowCount);
+        }
+        return rowIndexes == null ? row : rowIndexes[row];
+    }
+
+    /**
+     * Build the result for a row from the columns.
+     *
+     * @param row  The index of the row
+     *
+     * @return the result of the row
+     */
+    private Result buildResult(int row) {
+        int position = columnPosition(row);
+
+        LinkedHashMap<DimensionColumn, DimensionRow> dimensionRows = new LinkedHashMap<>();
+        for (int i = 0; i < dimensionColumns.length; i++) {
+            int code = dimensionCodes[i][position];
+            if (code >= 0) {
+                dimensionRows.put(dimensionColumns[i], dimensionDictionaries[i][code]);
+            }
+        }
+
+        LinkedHashMap<MetricColumn, Object> metricValues = new LinkedHashMap<>();
+        for (int i = 0; i < metricColumns.length; i++) {
+            if (metricVectors[i].isPresent(position)) {
+                metricValues.put(metricColumns[i], metricVectors[i].get(position));
+            }
+        }
+
+        DateTime timeStamp = irregularTimestamps.isEmpty() ? null : irregularTimestamps.get(position);
+        if (timeStamp == null) {
+            timeStamp = new DateTime(timestamps[position], dateTimeZone);
+        }
+
+        return new Result(dimensionRows, metricValues, timeStamp);
+    }
+
+    // Reads are answered by the lazy row view. The ArrayList storage inherited from ResultSet is never used.
+
+    @Override
+    public Result get(int index) {
+        return buildResult(index);
+    }
+
+    @Override
+    public int size() {
+        return rowCount;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return rowCount == 0;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return rows.contains(o);
+    }
+
+    @Override
+    public int indexOf(Object o) {
+        return rows.indexOf(o);
+    }
+
+    @Override
+    public int lastIndexOf(Object o) {
+        return rows.lastIndexOf(o);
+    }
+
+    @Override
+    public Object[] toArray() {
+        return rows.toArray();
+    }
+
+    @Override
+    public <T> T[] toArray(T[] a) {
+        return rows.toArray(a);
+    }
+
+    @Override
+    public Iterator<Result> iterator() {
+        return rows.iterator();
+    }
+
+    @Override
+    public ListIterator<Result> listIterator() {
+        return rows.listIterator();
+    }
+
+    @Override
+    public ListIterator<Result> listIterator(int index) {
+        return rows.listIterator(index);
+    }
+
+    @Override
+    public List<Result> subList(int fromIndex, int toIndex) {
+        return rows.subList(fromIndex, toIndex);
+    }
+
+    @Override
+    public void forEach(Consumer<? super Result> action) {
+        for (int i = 0; i < rowCount; i++) {
+            action.accept(buildResult(i));
+        }
+    }
+
+    @Override
+    public Spliterator<Result> spliterator() {
+        return rows.spliterator();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o == this || rows.equals(o);
+    }
+
+    @Override
+    public int hashCode() {
+        return rows.hashCode();
+    }
+
+    // Columnar result sets are immutable
+
+    @Override
+    public Result set(int index, Result element) {
+        throw new UnsupportedOperationException("Columnar result sets are immutable");
+    }
+
+    @Override
+    public boolean add(Result result) {
+        throw new UnsupportedOperationException("Columnar result sets are immutable");
+    }
+
+    @Override
+    public void add(int index, Result element) {
+        throw new UnsupportedOperationException("Columnar result sets are immutable");
+    }
+
+    @Override
+    public Result remove(int index) {
+        throw new UnsupportedOperationException("Columnar result sets are immutable");
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        throw new UnsupportedOperationException("Columnar result sets are immutable");
+    }
+
+    @Override
+    public void clear() {
+        throw new UnsupportedOperationException("Columnar result sets are immutable");
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends Result> c) {
+        throw new UnsupportedOperationException("Columnar result sets are immutable");
+    }
+
+    @Override
+    public boolean addAll(int index, Collection<? extends Result> c) {
+        throw new UnsupportedOperationException("Columnar result sets are immutable");
+    }
+
+    @Override
+    public boolean removeAll(Collection<?> c) {
+        throw new UnsupportedOperationException("Columnar result sets are immutable");
+    }
+
+    @Override
+    public boolean retainAll(Collection<?> c) {
+        throw new UnsupportedOperationException("Columnar result sets are immutable");
+    }
+
+    @Override
+    public boolean removeIf(Predicate<? super Result> filter) {
+        throw new UnsupportedOperationException("Columnar result sets are immutable");
+    }
+
+    @Override
+    public void replaceAll(UnaryOperator<Result> operator) {
+        throw new UnsupportedOperationException("Columnar result sets are immutable");
+    }
+
+    @Override
+    public void sort(Comparator<? super Result> c) {
+        throw new UnsupportedOperationException("Columnar result sets are immutable");
+    }
+
+    /**
+     * A read only list view of the rows, building each result as it is read.
+     */
+    private class RowView extends AbstractList<Result> implements RandomAccess {
+        @Override
+        public Result get(int index) {
+            return buildResult(index);
+        }
+
+        @Override
+        public int size() {
+            return rowCount;
+        }
+    }
+
+    /**
+     * Builds a columnar result set one result at a time.
+     * <p>
+     * Columns are laid out in schema order, followed by any columns found on results but missing from the schema.
+     */
+    public static class Builder {
+
+        private final ResultSetSchema schema;
+
+        private DateTimeZone dateTimeZone = null;
+        private long[] timestamps = new long[16];
+        private final Map<Integer, DateTime> irregularTimestamps = new HashMap<>();
+
+        private final Map<DimensionColumn, Integer> dimensionPositions = new LinkedHashMap<>();
+        private final List<int[]> dimensionCodes = new ArrayList<>();
+        private final List<Map<DimensionRow, Integer>> dimensionDictionaries = new ArrayList<>();
+
+        private final Map<MetricColumn, Integer> metricPositions = new LinkedHashMap<>();
+        private final List<MetricVector> metricVectors = new ArrayList<>();
+
+        private int rowCount = 0;
+
+        /**
+         * Constructor.
+         *
+         * @param schema  The schema of the result set being built
+         */
+        public Builder(ResultSetSchema schema) {
+            this.schema = schema;
+            schema.getColumns(DimensionColumn.class).forEach(this::addDimensionColumn);
+            schema.getColumns(MetricColumn.class).forEach(this::addMetricColumn);
+        }
+
+        /**
+         * Add a result as the next row.
+         *
+         * @param result  The result to add
+         *
+         * @return the builder
+         */
+        public Builder add(Result result) {
+            int position = rowCount++;
+            if (position == timestamps.length) {
+                grow();
+            }
+
+            DateTime timeStamp = result.getTimeStamp();
+            if (dateTimeZone == null) {
+                dateTimeZone = timeStamp.getZone();
+            }
+            timestamps[position] = timeStamp.getMillis();
+            if (!timeStamp.getChronology().equals(ISOChronology.getInstance(dateTimeZone))) {
+                irregularTimestamps.put(position, timeStamp);
+            }
+
+            for (Map.Entry<DimensionColumn, DimensionRow> entry : result.getDimensionRows().entrySet()) {
+                int column = dimensionPositions.containsKey(entry.getKey()) ?
+                        dimensionPositions.get(entry.getKey()) :
+                        addDimensionColumn(entry.getKey());
+                Map<DimensionRow, Integer> dictionary = dimensionDictionaries.get(column);
+                Integer code = dictionary.get(entry.getValue());
+                if (code == null) {
+                    code = dictionary.size();
+                    dictionary.put(entry.getValue(), code);
+                }
+                dimensionCodes.get(column)[position] = code;
+            }
+
+            for (Map.Entry<MetricColumn, Object> entry : result.getMetricValues().entrySet()) {
+                int column = metricPositions.containsKey(entry.getKey()) ?
+                        metricPositions.get(entry.getKey()) :
+                        addMetricColumn(entry.getKey());
+                metricVectors.get(column).set(position, entry.getValue());
+            }
+            return this;
+        }
+
+        /**
+         * Build the result set from the rows added so far.
+         *
+         * @return the columnar result set
+         */
+        public ColumnarResultSet build() {
+            int[][] codes = new int[dimensionCodes.size()][];
+            DimensionRow[][] dictionaries = new DimensionRow[dimensionDictionaries.size()][];
+            for (int i = 0; i < codes.length; i++) {
+                codes[i] = Arrays.copyOf(dimensionCodes.get(i), rowCount);
+                dictionaries[i] = new DimensionRow[dimensionDictionaries.get(i).size()];
+                for (Map.Entry<DimensionRow, Integer> entry : dimensionDictionaries.get(i).entrySet()) {
+                    dictionaries[i][entry.getValue()] = entry.getKey();
+                }
+            }
+
+            MetricVector[] vectors = new MetricVector[metricVectors.size()];
+            for (int i = 0; i < vectors.length; i++) {
+                vectors[i] = metricVectors.get(i).trimTo(rowCount);
+            }
+
+            return new ColumnarResultSet(
+                    schema,
+                    dateTimeZone == null ? DateTimeZone.UTC : dateTimeZone,
+                    Arrays.copyOf(timestamps, rowCount),
+                    new HashMap<>(irregularTimestamps),
+                    dimensionPositions.keySet().toArray(new DimensionColumn[dimensionPositions.size()]),
+                    codes,
+                    dictionaries,
+                    metricPositions.keySet().toArray(new MetricColumn[metricPositions.size()]),
+                    vectors,
+                    null,
+                    rowCount
+            );
+        }
+
+        /**
+         * Add storage for a dimension column.
+         *
+         * @param column  The column to add
+         *
+         * @return the position of the column
+         */
+        private int addDimensionColumn(DimensionColumn column) {
+            int[] codes = new int[timestamps.length];
+            Arrays.fill(codes, -1);
+            dimensionCodes.add(codes);
+            dimensionDictionaries.add(new HashMap<>());
+            dimensionPositions.put(column, dimensionCodes.size() - 1);
+            return dimensionCodes.size() - 1;
+        }
+
+        /**
+         * Add storage for a metric column.
+         *
+         * @param column  The column to add
+         *
+         * @return the position of the column
+         */
+        private int addMetricColumn(MetricColumn column) {
+            metricVectors.add(new MetricVector(timestamps.length));
+            metricPositions.put(column, metricVectors.size() - 1);
+            return metricVectors.size() - 1;
+        }
+
+        /**
+         * Double the row capacity of every column.
+         */
+        private void grow() {
+            int capacity = timestamps.length * 2;
+            timestamps = Arrays.copyOf(timestamps, capacity);
+            for (int i = 0; i < dimensionCodes.size(); i++) {
+                int[] codes = Arrays.copyOf(dimensionCodes.get(i), capacity);
+                Arrays.fill(codes, rowCount - 1, capacity, -1);
+                dimensionCodes.set(i, codes);
+            }
+            metricVectors.forEach(vector -> vector.grow(capacity));
+        }
+    }
+
+    /**
+     * The values of one metric column.
+     * <p>
+     * A vector starts out holding exact integral BigDecimals as longs, or BigDecimals which are exactly the value of a
+     * double as doubles, whichever its first value is. As soon as a value can't be held exactly by the primitive
+     * storage, the vector falls back to holding objects.
+     */
+    private static final class MetricVector {
+
+        /**
+         * The storage used by a vector.
+         */
+        private enum Storage {
+            EMPTY, LONG, DOUBLE, OBJECT
+        }
+
+        private Storage storage = Storage.EMPTY;
+        private long[] longs;
+        private double[] doubles;
+        private Object[] objects;
+        private final BitSet present = new BitSet();
+        private int capacity;
+
+        /**
+         * Constructor.
+         *
+         * @param capacity  The initial row capacity
+         */
+        MetricVector(int capacity) {
+            this.capacity = capacity;
+        }
+
+        /**
+         * Store the value of a row.
+         *
+         * @param position  The position of the row
+         * @param value  The value of the metric
+         */
+        void set(int position, Object value) {
+            present.set(position);
+            if (storage == Storage.EMPTY) {
+                if (isExactLong(value)) {
+                    storage = Storage.LONG;
+                    longs = new long[capacity];
+                } else if (isExactDouble(value)) {
+                    storage = Storage.DOUBLE;
+                    doubles = new double[capacity];
+                } else {
+                    storage = Storage.OBJECT;
+                    objects = new Object[capacity];
+                }
+            }
+
+            if (storage == Storage.LONG && isExactLong(value)) {
+                longs[position] = ((BigDecimal) value).longValueExact();
+            } else if (storage == Storage.DOUBLE && isExactDouble(value)) {
+                doubles[position] = ((BigDecimal) value).doubleValue();
+            } else {
+                if (storage != Storage.OBJECT) {
+                    objects = new Object[capacity];
+                    for (int i = present.nextSetBit(0); i >= 0 && i < position; i = present.nextSetBit(i + 1)) {
+                        objects[i] = get(i);
+                    }
+                    storage = Storage.OBJECT;
+                    longs = null;
+                    doubles = null;
+                }
+                objects[position] = value;
+            }
+        }
+
+        /**
+         * Whether a row has a value for this metric.
+         *
+         * @param position  The position of the row
+         *
+         * @return true if the row has a value, even a null one
+         */
+        boolean isPresent(int position) {
+            return present.get(position);
+        }
+
+        /**
+         * Read the value of a row.
+         *
+         * @param position  The position of the row
+         *
+         * @return the value of the metric
+         */
+        Object get(int position) {
+            switch (storage) {
+                case LONG:
+                    return BigDecimal.valueOf(longs[position]);
+                case DOUBLE:
+                    return BigDecimal.valueOf(doubles[position]);
+                case OBJECT:
+                    return objects[position];
+                default:
+                    return null;
+            }
+        }
+
+        /**
+         * Change the row capacity.
+         *
+         * @param newCapacity  The new row capacity
+         */
+        void grow(int newCapacity) {
+            capacity = newCapacity;
+            if (longs != null) {
+                longs = Arrays.copyOf(longs, newCapacity);
+            }
+            if (doubles != null) {
+                doubles = Arrays.copyOf(doubles, newCapacity);
+            }
+            if (objects != null) {
+                objects = Arrays.copyOf(objects, newCapacity);
+            }
+        }
+
+        /**
+         * Trim the storage to the number of rows stored.
+         *
+         * @param rowCount  The number of rows stored
+         *
+         * @return this vector
+         */
+        MetricVector trimTo(int rowCount) {
+            grow(rowCount);
+            return this;
+        }
+
+        /**
+         * Whether a value is a BigDecimal which a long holds exactly.
+         *
+         * @param value  The value to check
+         *
+         * @return true if the value can be stored as a long
+         */
+        private static boolean isExactLong(Object value) {
+            return value instanceof BigDecimal
+                    && ((BigDecimal) value).scale() == 0
+                    && ((BigDecimal) value).unscaledValue().bitLength() < Long.SIZE;
+        }
+
+        /**
+         * Whether a value is a BigDecimal which reads back identically from a double.
+         *
+         * @param value  The value to check
+         *
+         * @return true if the value can be stored as a double
+         */
+        private static boolean isExactDouble(Object value) {
+            return value instanceof BigDecimal
+                    && BigDecimal.valueOf(((BigDecimal) value).doubleValue()).equals(value);
+        }
+    }
+}
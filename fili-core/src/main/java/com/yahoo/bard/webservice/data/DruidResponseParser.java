@@ -4,6 +4,7 @@ package com.yahoo.bard.webservice.data;
 
 import static com.yahoo.bard.webservice.web.ErrorMessageFormat.RESULT_SET_ERROR;
 
+import com.yahoo.bard.webservice.config.BardFeatureFlag;
 import com.yahoo.bard.webservice.data.dimension.DimensionColumn;
 import com.yahoo.bard.webservice.data.dimension.DimensionRow;
 import com.yahoo.bard.webservice.data.metric.MetricColumn;
@@ -12,17 +13,32 @@ import com.yahoo.bard.webservice.druid.model.QueryType;
 import com.yahoo.bard.webservice.druid.model.query.DruidAggregationQuery;
 import com.yahoo.bard.webservice.table.Column;
 
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 
 import org.joda.time.DateTime;
 import org.joda.time.DateTimeZone;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.function.Consumer;
 import java.util.stream.Stream;
 
 import javax.inject.Singleton;
@@ -36,6 +52,16 @@ public class DruidResponseParser {
 
     private static final Logger LOG = LoggerFactory.getLogger(DruidResponseParser.class);
 
+    /**
+     * Used to read complex (object or array) metric values into JsonNodes when streaming a response.
+     */
+    private static final ObjectMapper COMPLEX_VALUE_MAPPER = new ObjectMapper();
+
+    /**
+     * Marks a metric which was absent from a streamed row, since null is a legitimate metric value.
+     */
+    private static final Object MISSING_VALUE = new Object();
+
     /**
      * Parse Druid GroupBy result into ResultSet.
      *
@@ -86,7 +112,166 @@ public class DruidResponseParser {
         }
 
         LOG.trace("Parsed druid query {} results: {}", queryType, results);
-        return new ResultSet(schema, results);
+        return BardFeatureFlag.COLUMNAR_RESULT_SETS.isOn() ?
+                ColumnarResultSet.of(schema, results) :
+                new ResultSet(schema, results);
+    }
+
+    /**
+     * Parse a Druid response into a ResultSet by streaming over the tokens of the response.
+     * <p>
+     * Unlike {@link #parse(JsonNode, ResultSetSchema, QueryType, DateTimeZone)}, this method never builds a tree of
+     * the response, so only the resulting rows are held in memory. The parser should be positioned before the start
+     * of the response array.
+     *
+     * @param jsonParser  Parser over the Druid response
+     * @param schema  Schema for results
+     * @param queryType  the type of query, note that this implementation only supports instances of
+     * {@link DefaultQueryType}
+     * @param dateTimeZone the time zone used for format the results
+     *
+     * @return the set of results
+     *
+     * @throws IOException if the response cannot be read or is not shaped like a response to the query type
+     */
+    public ResultSet parse(
+            JsonParser jsonParser,
+            ResultSetSchema schema,
+            QueryType queryType,
+            DateTimeZone dateTimeZone
+    ) throws IOException {
+
+        LOG.trace("Streaming druid query {} results using schema: {}", queryType, schema);
+
+        StreamingRowReader rowReader = buildStreamingRowReader(schema, queryType);
+
+        // Columnar result sets are built as rows are read, so the rows' Result objects are never all held at once
+        ColumnarResultSet.Builder columnarResults = null;
+        List<Result> results = null;
+        Consumer<Result> resultSink;
+        if (BardFeatureFlag.COLUMNAR_RESULT_SETS.isOn()) {
+            columnarResults = new ColumnarResultSet.Builder(schema);
+            resultSink = columnarResults::add;
+        } else {
+            results = new ArrayList<>();
+            resultSink = results::add;
+        }
+
+        readResponseStart(jsonParser);
+        while (readRecordStart(jsonParser)) {
+            rowReader.readRecord(jsonParser, dateTimeZone, resultSink);
+        }
+
+        ResultSet resultSet = columnarResults == null ? new ResultSet(schema, results) : columnarResults.build();
+        LOG.trace("Streamed druid query {} results: {}", queryType, resultSet);
+        return resultSet;
+    }
+
+    /**
+     * Read the results of a Druid response lazily, as they are iterated over.
+     * <p>
+     * Unlike {@link #parse(JsonParser, ResultSetSchema, QueryType, DateTimeZone)}, only the rows of the Druid record
+     * being read are held in memory. The start of the response is read right away, and the rest as the results are
+     * read. The parser is closed once the last result has been read or reading fails. Failures while reading the
+     * results are thrown as {@link UncheckedIOException}s.
+     *
+     * @param jsonParser  Parser over the Druid response, positioned before the start of the response array
+     * @param schema  Schema for results
+     * @param queryType  the type of query, note that this implementation only supports instances of
+     * {@link DefaultQueryType}
+     * @param dateTimeZone the time zone used for format the results
+     *
+     * @return the results, read as they are iterated over
+     *
+     * @throws IOException if the start of the response cannot be read
+     */
+    public Iterator<Result> stream(
+            JsonParser jsonParser,
+            ResultSetSchema schema,
+            QueryType queryType,
+            DateTimeZone dateTimeZone
+    ) throws IOException {
+        LOG.trace("Lazily streaming druid query {} results using schema: {}", queryType, schema);
+
+        StreamingRowReader rowReader = buildStreamingRowReader(schema, queryType);
+        readResponseStart(jsonParser);
+        return new StreamingResultIterator(jsonParser, rowReader, dateTimeZone);
+    }
+
+    /**
+     * Build the reader for the rows of a streamed response to a query type.
+     *
+     * @param schema  Schema for results
+     * @param queryType  the type of query, which must be a supported {@link DefaultQueryType}
+     *
+     * @return the row reader
+     */
+    private StreamingRowReader buildStreamingRowReader(ResultSetSchema schema, QueryType queryType) {
+        if (!(queryType instanceof DefaultQueryType)) {
+            // Throw an exception for unsupported query types
+            unsupportedQueryType(queryType);
+        }
+        DefaultQueryType defaultQueryType = (DefaultQueryType) queryType;
+
+        /* Get dimension and metric columns */
+        Set<DimensionColumn> dimensionColumns = schema.getColumns(DimensionColumn.class);
+        Set<MetricColumn> metricColumns = schema.getColumns(MetricColumn.class);
+
+        switch (defaultQueryType) {
+            case GROUP_BY:
+                return new StreamingRowReader("event", false, dimensionColumns, metricColumns);
+            case TOP_N:
+                return new StreamingRowReader("result", true, dimensionColumns, metricColumns);
+            case TIMESERIES:
+                return new StreamingRowReader("result", false, Collections.emptySet(), metricColumns);
+            case LOOKBACK:
+                return new StreamingRowReader("result", false, dimensionColumns, metricColumns);
+            default:
+                // Throw an exception for unsupported query types
+                unsupportedQueryType(queryType);
+                return null;
+        }
+    }
+
+    /**
+     * Read the start of a streamed response array.
+     *
+     * @param jsonParser  Parser over the Druid response, positioned before the start of the response array
+     *
+     * @throws IOException if the response cannot be read or doesn't start with an array
+     */
+    private static void readResponseStart(JsonParser jsonParser) throws IOException {
+        JsonToken token = jsonParser.nextToken();
+        if (token != JsonToken.START_ARRAY) {
+            throw new JsonParseException(
+                    "Expected a Druid response array but found " + token,
+                    jsonParser.getCurrentLocation()
+            );
+        }
+    }
+
+    /**
+     * Move a streamed response on to the start of its next record.
+     *
+     * @param jsonParser  Parser over the Druid response, positioned after the start of the response array or the end
+     * of a record
+     *
+     * @return true if positioned at the start of a record, false if the end of the response array was reached
+     *
+     * @throws IOException if the response cannot be read or the next value isn't a record
+     */
+    private static boolean readRecordStart(JsonParser jsonParser) throws IOException {
+        JsonToken token = jsonParser.nextToken();
+        if (token == JsonToken.START_OBJECT) {
+            return true;
+        }
+        if (token != JsonToken.END_ARRAY) {
+            throw new JsonParseException(
+                    "Expected a Druid result record but found " + token,
+                    jsonParser.getCurrentLocation()
+            );
+        }
+        return false;
     }
 
     /**
@@ -309,6 +494,62 @@ public class DruidResponseParser {
                 node;
     }
 
+    /**
+     * Reads the current scalar or complex value from a streaming parser into the same representation used by
+     * {@link #getNodeValue(JsonNode)}.
+     *
+     * @param jsonParser  The parser, positioned on the value to read
+     *
+     * @return the value as a BigDecimal if the value is a number, the value as a String if the value is textual,
+     * the value as a boolean if the value is a boolean, null if the value is null, and a JsonNode otherwise.
+     *
+     * @throws IOException if the value cannot be read
+     */
+    private static Object readStreamingValue(JsonParser jsonParser) throws IOException {
+        switch (jsonParser.getCurrentToken()) {
+            case VALUE_NUMBER_INT:
+                switch (jsonParser.getNumberType()) {
+                    case INT:
+                        return BigDecimal.valueOf(jsonParser.getIntValue());
+                    case LONG:
+                        return BigDecimal.valueOf(jsonParser.getLongValue());
+                    default:
+                        return new BigDecimal(jsonParser.getBigIntegerValue());
+                }
+            case VALUE_NUMBER_FLOAT:
+                // Match the tree based parse, which reads floating point values as doubles
+                return BigDecimal.valueOf(jsonParser.getDoubleValue());
+            case VALUE_STRING:
+                return jsonParser.getText();
+            case VALUE_TRUE:
+                return true;
+            case VALUE_FALSE:
+                return false;
+            case VALUE_NULL:
+                return null;
+            default:
+                return COMPLEX_VALUE_MAPPER.readTree(jsonParser);
+        }
+    }
+
+    /**
+     * Reads the current value from a streaming parser as a dimension key, the same way the tree based parse does.
+     *
+     * @param jsonParser  The parser, positioned on the value to read
+     *
+     * @return the text of a scalar value, or the empty string for nulls and complex values
+     *
+     * @throws IOException if the value cannot be read
+     */
+    private static String readStreamingDimensionValue(JsonParser jsonParser) throws IOException {
+        JsonToken token = jsonParser.getCurrentToken();
+        if (token == JsonToken.START_OBJECT || token == JsonToken.START_ARRAY) {
+            jsonParser.skipChildren();
+            return "";
+        }
+        return token == JsonToken.VALUE_NULL ? "" : jsonParser.getText();
+    }
+
     /**
      * Produce the schema-defining columns for a given druid query.
      *
@@ -320,4 +561,219 @@ public class DruidResponseParser {
         // Pass through to druid query to allow for possible behavior customization on injected DruidResponseParsers.
         return druidQuery.buildSchemaColumns();
     }
+
+    /**
+     * Reads the results of a streamed response one record at a time, as they are iterated over.
+     */
+    private static class StreamingResultIterator implements Iterator<Result> {
+
+        private final JsonParser jsonParser;
+        private final StreamingRowReader rowReader;
+        private final DateTimeZone dateTimeZone;
+        private final Deque<Result> buffered = new ArrayDeque<>();
+        private final Consumer<Result> bufferSink = buffered::addLast;
+        private boolean done = false;
+
+        /**
+         * Constructor.
+         *
+         * @param jsonParser  Parser over the response, positioned after the start of the response array
+         * @param rowReader  Reads the rows of each record
+         * @param dateTimeZone  The date time zone to apply to timestamps
+         */
+        StreamingResultIterator(JsonParser jsonParser, StreamingRowReader rowReader, DateTimeZone dateTimeZone) {
+            this.jsonParser = jsonParser;
+            this.rowReader = rowReader;
+            this.dateTimeZone = dateTimeZone;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (buffered.isEmpty() && !done) {
+                try {
+                    if (readRecordStart(jsonParser)) {
+                        rowReader.readRecord(jsonParser, dateTimeZone, bufferSink);
+                    } else {
+                        finish();
+                    }
+                } catch (IOException e) {
+                    LOG.error("Failed to stream druid results", e);
+                    finish();
+                    throw new UncheckedIOException(e);
+                }
+            }
+            return !buffered.isEmpty();
+        }
+
+        @Override
+        public Result next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return buffered.removeFirst();
+        }
+
+        /**
+         * Stop reading, and close the parser.
+         */
+        private void finish() {
+            done = true;
+            try {
+                jsonParser.close();
+            } catch (IOException e) {
+                LOG.warn("Failed to close druid response parser", e);
+            }
+        }
+    }
+
+    /**
+     * Reads the records of a Druid response from a streaming parser directly into results.
+     * <p>
+     * Each record has a timestamp and a payload field which is either a single row object or an array of row
+     * objects. The values of a row are collected positionally by column and turned into a Result once the record's
+     * timestamp is known, so nothing but the rows of the current record are buffered.
+     */
+    private static class StreamingRowReader {
+
+        private final String payloadName;
+        private final boolean payloadIsArray;
+        private final DimensionColumn[] dimensionColumns;
+        private final MetricColumn[] metricColumns;
+        private final Map<String, Integer> columnIndexes;
+
+        /**
+         * Constructor.
+         *
+         * @param payloadName  Name of the field of a record containing the row(s)
+         * @param payloadIsArray  True if the payload is an array of rows rather than a single row
+         * @param dimensionColumns  Dimension columns to read from each row
+         * @param metricColumns  Metric columns to read from each row
+         */
+        StreamingRowReader(
+                String payloadName,
+                boolean payloadIsArray,
+                Set<DimensionColumn> dimensionColumns,
+                Set<MetricColumn> metricColumns
+        ) {
+            this.payloadName = payloadName;
+            this.payloadIsArray = payloadIsArray;
+            this.dimensionColumns = dimensionColumns.toArray(new DimensionColumn[dimensionColumns.size()]);
+            this.metricColumns = metricColumns.toArray(new MetricColumn[metricColumns.size()]);
+
+            // Dimension positions come first, metric positions follow
+            columnIndexes = new HashMap<>();
+            for (int i = 0; i < this.dimensionColumns.length; i++) {
+                columnIndexes.put(this.dimensionColumns[i].getName(), i);
+            }
+            for (int i = 0; i < this.metricColumns.length; i++) {
+                columnIndexes.put(this.metricColumns[i].getName(), this.dimensionColumns.length + i);
+            }
+        }
+
+        /**
+         * Read one record, positioned on its start object token, and send its rows to the results.
+         *
+         * @param jsonParser  The parser over the response
+         * @param dateTimeZone  The date time zone to apply to timestamps
+         * @param results  Receives the results being built
+         *
+         * @throws IOException if the record cannot be read
+         */
+        void readRecord(JsonParser jsonParser, DateTimeZone dateTimeZone, Consumer<Result> results)
+                throws IOException {
+            String timestamp = null;
+            List<Object[]> rows = new ArrayList<>(1);
+
+            while (jsonParser.nextToken() == JsonToken.FIELD_NAME) {
+                String fieldName = jsonParser.getCurrentName();
+                JsonToken token = jsonParser.nextToken();
+                if ("timestamp".equals(fieldName)) {
+                    timestamp = jsonParser.getText();
+                } else if (payloadName.equals(fieldName) && payloadIsArray && token == JsonToken.START_ARRAY) {
+                    while (jsonParser.nextToken() == JsonToken.START_OBJECT) {
+                        rows.add(readRow(jsonParser));
+                    }
+                } else if (payloadName.equals(fieldName) && !payloadIsArray && token == JsonToken.START_OBJECT) {
+                    rows.add(readRow(jsonParser));
+                } else {
+                    jsonParser.skipChildren();
+                }
+            }
+
+            if (timestamp == null) {
+                throw new JsonParseException("Druid result record has no timestamp", jsonParser.getCurrentLocation());
+            }
+
+            DateTime timeStamp = new DateTime(timestamp, dateTimeZone);
+            for (Object[] row : rows) {
+                results.accept(buildResult(row, timeStamp));
+            }
+        }
+
+        /**
+         * Read the values of one row object, positioned on its start object token.
+         * <p>
+         * Dimension positions hold the dimension key text, metric positions hold the metric value. Metric positions
+         * whose field is absent hold {@link #MISSING_VALUE}, since null is a legitimate metric value.
+         *
+         * @param jsonParser  The parser over the response
+         *
+         * @return the values of the row, by column position
+         *
+         * @throws IOException if the row cannot be read
+         */
+        private Object[] readRow(JsonParser jsonParser) throws IOException {
+            Object[] row = new Object[dimensionColumns.length + metricColumns.length];
+            for (int i = dimensionColumns.length; i < row.length; i++) {
+                row[i] = MISSING_VALUE;
+            }
+
+            while (jsonParser.nextToken() == JsonToken.FIELD_NAME) {
+                Integer index = columnIndexes.get(jsonParser.getCurrentName());
+                jsonParser.nextToken();
+                if (index == null) {
+                    jsonParser.skipChildren();
+                } else if (index < dimensionColumns.length) {
+                    row[index] = readStreamingDimensionValue(jsonParser);
+                } else {
+                    row[index] = readStreamingValue(jsonParser);
+                }
+            }
+            return row;
+        }
+
+        /**
+         * Build a result from the positional values of a row.
+         *
+         * @param row  The values of the row, by column position
+         * @param timeStamp  The timestamp of the record the row belongs to
+         *
+         * @return the result for the row
+         */
+        private Result buildResult(Object[] row, DateTime timeStamp) {
+            LinkedHashMap<DimensionColumn, DimensionRow> dimensionRows = new LinkedHashMap<>();
+            for (int i = 0; i < dimensionColumns.length; i++) {
+                DimensionColumn dc = dimensionColumns[i];
+                String fieldValue = row[i] == null ? "" : (String) row[i];
+
+                DimensionRow drow = dc.getDimension().findDimensionRowByKeyValue(fieldValue);
+                if (drow == null) {
+                    drow = dc.getDimension().createEmptyDimensionRow(fieldValue);
+                }
+                dimensionRows.put(dc, drow);
+            }
+
+            LinkedHashMap<MetricColumn, Object> metricValues = new LinkedHashMap<>();
+            for (int i = 0; i < metricColumns.length; i++) {
+                Object value = row[dimensionColumns.length + i];
+                if (value == MISSING_VALUE) {
+                    LOG.warn("Found null node for metric column {}", metricColumns[i].getName());
+                } else {
+                    metricValues.put(metricColumns[i], value);
+                }
+            }
+
+            return new Result(dimensionRows, metricValues, timeStamp);
+        }
+    }
 }
@@ -0,0 +1,107 @@
+// Copyright 2017 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.data;
+
+import com.yahoo.bard.webservice.data.dimension.DimensionColumn;
+import com.yahoo.bard.webservice.data.dimension.DimensionRow;
+import com.yahoo.bard.webservice.data.metric.MetricColumn;
+
+import org.joda.time.DateTime;
+
+import java.math.BigDecimal;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A result row whose metric values can be changed in place, so that several changes to a row make one new
+ * {@link Result} rather than a copy of the row for each change.
+ * <p>
+ * The metric values of the result are only copied the first time one of them is changed, and a result with no changes
+ * is given back as it is.
+ */
+public class MutableResult {
+
+    private Result result;
+    // The metric values with the changes made to them, or null while there are no changes
+    private Map<MetricColumn, Object> metricValues;
+
+    /**
+     * Constructor.
+     *
+     * @param result  The result to start from
+     */
+    public MutableResult(Result result) {
+        reset(result);
+    }
+
+    /**
+     * Start over from another result, dropping any changes.
+     *
+     * @param result  The result to start from
+     *
+     * @return this mutable result
+     */
+    public MutableResult reset(Result result) {
+        this.result = result;
+        this.metricValues = null;
+        return this;
+    }
+
+    public Map<DimensionColumn, DimensionRow> getDimensionRows() {
+        return result.getDimensionRows();
+    }
+
+    public DateTime getTimeStamp() {
+        return result.getTimeStamp();
+    }
+
+    /**
+     * Fetch the current value of the specified metric.
+     *
+     * @param metricColumn  The metric column whose value is desired
+     *
+     * @return The value of the specified column as an Object
+     */
+    public Object getMetricValue(MetricColumn metricColumn) {
+        return metricValues == null ? result.getMetricValue(metricColumn) : metricValues.get(metricColumn);
+    }
+
+    /**
+     * Fetch the current value of the specified numeric metric.
+     *
+     * @param metricColumn  The metric column whose value is desired
+     *
+     * @return The value associated to the desired metric as a BigDecimal
+     * @throws ClassCastException if the value keyed to metricColumn is not a BigDecimal
+     */
+    public BigDecimal getMetricValueAsNumber(MetricColumn metricColumn) {
+        return (BigDecimal) getMetricValue(metricColumn);
+    }
+
+    /**
+     * Add or replace the value of a metric.
+     *
+     * @param metricColumn  The metric column
+     * @param value  The new value for that column
+     */
+    public void setMetricValue(MetricColumn metricColumn, Object value) {
+        if (metricValues == null) {
+            metricValues = new LinkedHashMap<>(result.getMetricValues());
+        }
+        metricValues.put(metricColumn, value);
+    }
+
+    /**
+     * Get the result with the changes made to it.
+     * <p>
+     * Later changes don't affect the result returned.
+     *
+     * @return the original result if nothing has changed, otherwise a new result
+     */
+    public Result toResult() {
+        if (metricValues != null) {
+            reset(new Result(result.getDimensionRows(), metricValues, result.getTimeStamp()));
+        }
+        return result;
+    }
+}
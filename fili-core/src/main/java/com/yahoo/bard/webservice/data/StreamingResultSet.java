@@ -0,0 +1,217 @@
+// Copyright 2017 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.data;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+
+/**
+ * A result set whose results are produced as they are iterated over, rather than held in memory.
+ * <p>
+ * Results are typically read from a Druid response while the response to the user is being written, so the results
+ * can be iterated over only once, and nothing that needs all of them (size, random access, equality) is supported.
+ * Reading the results may fail part way through with an unchecked exception, if the source of the results fails.
+ */
+public class StreamingResultSet extends ResultSet {
+
+    private static final String SINGLE_PASS = "Streaming result sets can only be iterated over once";
+
+    private Iterator<Result> results;
+
+    /**
+     * Constructor.
+     *
+     * @param schema  The schema of the results
+     * @param results  The results, produced as they are read
+     */
+    public StreamingResultSet(ResultSetSchema schema, Iterator<Result> results) {
+        super(schema, Collections.emptyList());
+        this.results = results;
+    }
+
+    /**
+     * Take the results, which can only be done once.
+     *
+     * @return the results
+     *
+     * @throws IllegalStateException if the results have already been taken
+     */
+    private synchronized Iterator<Result> takeResults() {
+        if (results == null) {
+            throw new IllegalStateException(SINGLE_PASS);
+        }
+        Iterator<Result> taken = results;
+        results = null;
+        return taken;
+    }
+
+    @Override
+    public Iterator<Result> iterator() {
+        Iterator<Result> taken = takeResults();
+        // Hide the remove method of the underlying iterator
+        return new Iterator<Result>() {
+            @Override
+            public boolean hasNext() {
+                return taken.hasNext();
+            }
+
+            @Override
+            public Result next() {
+                return taken.next();
+            }
+        };
+    }
+
+    @Override
+    public void forEach(Consumer<? super Result> action) {
+        takeResults().forEachRemaining(action);
+    }
+
+    @Override
+    public Spliterator<Result> spliterator() {
+        return Spliterators.spliteratorUnknownSize(iterator(), Spliterator.ORDERED | Spliterator.NONNULL);
+    }
+
+    // Nothing that needs all of the results is supported
+
+    @Override
+    public int size() {
+        throw new UnsupportedOperationException(SINGLE_PASS);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        throw new UnsupportedOperationException(SINGLE_PASS);
+    }
+
+    @Override
+    public Result get(int index) {
+        throw new UnsupportedOperationException(SINGLE_PASS);
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        throw new UnsupportedOperationException(SINGLE_PASS);
+    }
+
+    @Override
+    public int indexOf(Object o) {
+        throw new UnsupportedOperationException(SINGLE_PASS);
+    }
+
+    @Override
+    public int lastIndexOf(Object o) {
+        throw new UnsupportedOperationException(SINGLE_PASS);
+    }
+
+    @Override
+    public Object[] toArray() {
+        throw new UnsupportedOperationException(SINGLE_PASS);
+    }
+
+    @Override
+    public <T> T[] toArray(T[] a) {
+        throw new UnsupportedOperationException(SINGLE_PASS);
+    }
+
+    @Override
+    public ListIterator<Result> listIterator() {
+        throw new UnsupportedOperationException(SINGLE_PASS);
+    }
+
+    @Override
+    public ListIterator<Result> listIterator(int index) {
+        throw new UnsupportedOperationException(SINGLE_PASS);
+    }
+
+    @Override
+    public List<Result> subList(int fromIndex, int toIndex) {
+        throw new UnsupportedOperationException(SINGLE_PASS);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o == this;
+    }
+
+    @Override
+    public int hashCode() {
+        return System.identityHashCode(this);
+    }
+
+    // Streaming result sets are immutable
+
+    @Override
+    public Result set(int index, Result element) {
+        throw new UnsupportedOperationException("Streaming result sets are immutable");
+    }
+
+    @Override
+    public boolean add(Result result) {
+        throw new UnsupportedOperationException("Streaming result sets are immutable");
+    }
+
+    @Override
+    public void add(int index, Result element) {
+        throw new UnsupportedOperationException("Streaming result sets are immutable");
+    }
+
+    @Override
+    public Result remove(int index) {
+        throw new UnsupportedOperationException("Streaming result sets are immutable");
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        throw new UnsupportedOperationException("Streaming result sets are immutable");
+    }
+
+    @Override
+    public void clear() {
+        throw new UnsupportedOperationException("Streaming result sets are immutable");
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends Result> c) {
+        throw new UnsupportedOperationException("Streaming result sets are immutable");
+    }
+
+    @Override
+    public boolean addAll(int index, Collection<? extends Result> c) {
+        throw new UnsupportedOperationException("Streaming result sets are immutable");
+    }
+
+    @Override
+    public boolean removeAll(Collection<?> c) {
+        throw new UnsupportedOperationException("Streaming result sets are immutable");
+    }
+
+    @Override
+    public boolean retainAll(Collection<?> c) {
+        throw new UnsupportedOperationException("Streaming result sets are immutable");
+    }
+
+    @Override
+    public boolean removeIf(Predicate<? super Result> filter) {
+        throw new UnsupportedOperationException("Streaming result sets are immutable");
+    }
+
+    @Override
+    public void replaceAll(UnaryOperator<Result> operator) {
+        throw new UnsupportedOperationException("Streaming result sets are immutable");
+    }
+
+    @Override
+    public void sort(Comparator<? super Result> c) {
+        throw new UnsupportedOperationException("Streaming result sets are immutable");
+    }
+}
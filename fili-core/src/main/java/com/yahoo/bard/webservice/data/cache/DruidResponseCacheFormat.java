@@ -0,0 +1,45 @@
+// Copyright 2017 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.data.cache;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.io.IOException;
+import java.io.Serializable;
+
+/**
+ * The format in which Druid responses are stored as values of a data cache.
+ */
+public interface DruidResponseCacheFormat {
+
+    /**
+     * Convert a Druid response into a value to store in the cache.
+     *
+     * @param druidResponse  The Druid response to cache
+     *
+     * @return the cache value
+     *
+     * @throws IOException if the response cannot be written in this format
+     */
+    Serializable serialize(JsonNode druidResponse) throws IOException;
+
+    /**
+     * Convert a value read from the cache back into a Druid response.
+     *
+     * @param cachedValue  The cache value
+     *
+     * @return the Druid response
+     *
+     * @throws IOException if the value is not a Druid response written in this format
+     */
+    JsonNode deserialize(Serializable cachedValue) throws IOException;
+
+    /**
+     * The size of a cache value, used to decide whether a value is too large to cache.
+     *
+     * @param cachedValue  The cache value
+     *
+     * @return the length of the value, in the units of the value (characters or bytes)
+     */
+    long sizeOf(Serializable cachedValue);
+}
@@ -0,0 +1,58 @@
+// Copyright 2017 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.data.cache;
+
+import com.yahoo.bard.webservice.config.SystemConfig;
+import com.yahoo.bard.webservice.config.SystemConfigProvider;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A class to provide the configured format for Druid responses stored in the data cache.
+ */
+public class DruidResponseCacheFormatProvider {
+
+    private static final Logger LOG = LoggerFactory.getLogger(DruidResponseCacheFormatProvider.class);
+    private static final SystemConfig SYSTEM_CONFIG = SystemConfigProvider.getInstance();
+
+    public static final String CACHE_FORMAT_IMPLEMENTATION_SETTING_NAME = "druid_cache_format_implementation";
+
+    private static final String DEFAULT_CACHE_FORMAT_IMPL = JsonDruidResponseCacheFormat.class.getCanonicalName();
+
+    /**
+     * The instance of the cache format, which is volatile so that it is only seen once it is fully built.
+     */
+    private static volatile DruidResponseCacheFormat cacheFormat;
+
+    /**
+     *  Get an instance of DruidResponseCacheFormat.
+     *  <p>
+     *  The instance is built once, by the first caller, and shared by every caller after that.
+     *
+     *  @return an instance of DruidResponseCacheFormat
+     */
+    public static DruidResponseCacheFormat getInstance() {
+        DruidResponseCacheFormat format = cacheFormat;
+        if (format != null) {
+            return format;
+        }
+        synchronized (DruidResponseCacheFormatProvider.class) {
+            if (cacheFormat != null) {
+                return cacheFormat;
+            }
+            String cacheFormatImplementation = SYSTEM_CONFIG.getStringProperty(
+                    SYSTEM_CONFIG.getPackageVariableName(CACHE_FORMAT_IMPLEMENTATION_SETTING_NAME),
+                    DEFAULT_CACHE_FORMAT_IMPL
+            );
+            try {
+                format = (DruidResponseCacheFormat) Class.forName(cacheFormatImplementation).newInstance();
+            } catch (Exception exception) {
+                LOG.error("Exception while loading Druid response cache format: {}", exception);
+                throw new IllegalStateException(exception);
+            }
+            cacheFormat = format;
+            return format;
+        }
+    }
+}
@@ -0,0 +1,51 @@
+// Copyright 2017 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.data.cache;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.Serializable;
+
+/**
+ * Stores Druid responses in the cache as JSON text.
+ */
+public class JsonDruidResponseCacheFormat implements DruidResponseCacheFormat {
+
+    private final ObjectMapper mapper;
+
+    /**
+     * Constructor.
+     */
+    public JsonDruidResponseCacheFormat() {
+        this(new ObjectMapper());
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param mapper  The mapper to read and write JSON with
+     */
+    public JsonDruidResponseCacheFormat(ObjectMapper mapper) {
+        this.mapper = mapper;
+    }
+
+    @Override
+    public Serializable serialize(JsonNode druidResponse) throws IOException {
+        return mapper.writer().writeValueAsString(druidResponse);
+    }
+
+    @Override
+    public JsonNode deserialize(Serializable cachedValue) throws IOException {
+        if (!(cachedValue instanceof String)) {
+            throw new IOException("Cached value is not a JSON string: " + cachedValue.getClass());
+        }
+        return mapper.readTree((String) cachedValue);
+    }
+
+    @Override
+    public long sizeOf(Serializable cachedValue) {
+        return ((String) cachedValue).length();
+    }
+}
@@ -0,0 +1,116 @@
+// Copyright 2017 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.data.cache;
+
+import com.yahoo.bard.webservice.config.SystemConfig;
+import com.yahoo.bard.webservice.config.SystemConfigProvider;
+import com.yahoo.bard.webservice.data.ColumnarResultSet;
+import com.yahoo.bard.webservice.data.ResultSet;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * In memory cache of the mapped result sets of paginated requests, from which the pages of a request are served.
+ * <p>
+ * The cache is bounded by an estimate of the memory held by its result sets, evicting the least recently used ones
+ * first. Entries also expire a while after they are written, so that pages aren't served from data which is too old.
+ */
+public class ResultPageCache {
+
+    private static final SystemConfig SYSTEM_CONFIG = SystemConfigProvider.getInstance();
+
+    public static final long RESULT_PAGE_CACHE_MAX_BYTES = SYSTEM_CONFIG.getLongProperty(
+            SYSTEM_CONFIG.getPackageVariableName("result_page_cache_max_bytes"), 256L * 1024 * 1024
+    );
+    public static final long RESULT_PAGE_CACHE_TTL_MS = SYSTEM_CONFIG.getLongProperty(
+            SYSTEM_CONFIG.getPackageVariableName("result_page_cache_ttl_ms"), 60000L
+    );
+
+    // Rough sizes of a result row: its Result, maps and timestamp, and each value along with its map entry
+    private static final long ROW_BYTES = 200;
+    private static final long VALUE_BYTES = 80;
+    // Rough sizes of a row of a columnar result set: its timestamp, and each dimension code or metric value
+    private static final long COLUMNAR_ROW_BYTES = 8;
+    private static final long COLUMNAR_VALUE_BYTES = 8;
+    private static final long RESULT_SET_BYTES = 256;
+
+    private final long maxBytes;
+    private final Cache<String, ResultSet> cache;
+
+    /**
+     * Constructor using the configured size and time to live.
+     */
+    public ResultPageCache() {
+        this(RESULT_PAGE_CACHE_MAX_BYTES, RESULT_PAGE_CACHE_TTL_MS);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param maxBytes  The estimated memory the cached result sets may hold, in bytes
+     * @param ttlMillis  How long result sets are kept after they are cached, in milliseconds
+     */
+    public ResultPageCache(long maxBytes, long ttlMillis) {
+        this.maxBytes = maxBytes;
+        this.cache = CacheBuilder.newBuilder()
+                // A single segment, so that any result set up to the full size fits and eviction is least recently
+                // used across the whole cache rather than within a segment
+                .concurrencyLevel(1)
+                .maximumWeight(maxBytes)
+                .weigher((String key, ResultSet resultSet) ->
+                        (int) Math.min(Integer.MAX_VALUE, estimateBytes(resultSet))
+                )
+                .expireAfterWrite(ttlMillis, TimeUnit.MILLISECONDS)
+                .build();
+    }
+
+    /**
+     * Get a cached result set.
+     *
+     * @param key  The key the result set was cached under
+     *
+     * @return the result set, or null if there isn't one cached
+     */
+    public ResultSet get(String key) {
+        return cache.getIfPresent(key);
+    }
+
+    /**
+     * Cache a result set, unless it is too big to fit in the cache.
+     * <p>
+     * The result set must not be changed once it has been cached.
+     *
+     * @param key  The key to cache the result set under
+     * @param resultSet  The result set to cache
+     */
+    public void put(String key, ResultSet resultSet) {
+        if (estimateBytes(resultSet) <= maxBytes) {
+            cache.put(key, resultSet);
+        }
+    }
+
+    /**
+     * Drop all the cached result sets.
+     */
+    public void clear() {
+        cache.invalidateAll();
+    }
+
+    /**
+     * Estimate the memory held by a result set, from its number of rows and columns.
+     *
+     * @param resultSet  The result set to estimate the size of
+     *
+     * @return the estimated size, in bytes
+     */
+    public static long estimateBytes(ResultSet resultSet) {
+        long columns = resultSet.getSchema().getColumns().size();
+        long rowBytes = resultSet instanceof ColumnarResultSet ?
+                COLUMNAR_ROW_BYTES + columns * COLUMNAR_VALUE_BYTES :
+                ROW_BYTES + columns * VALUE_BYTES;
+        return RESULT_SET_BYTES + resultSet.size() * rowBytes;
+    }
+}
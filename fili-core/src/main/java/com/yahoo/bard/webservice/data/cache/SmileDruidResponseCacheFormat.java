@@ -0,0 +1,49 @@
+// Copyright 2017 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.data.cache;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileGenerator;
+
+import java.io.IOException;
+import java.io.Serializable;
+
+/**
+ * Stores Druid responses in the cache as Smile, a binary encoding of JSON.
+ * <p>
+ * Smile values are more compact than JSON text, particularly since repeated field names and short repeated values
+ * (like dimension values) are written once and then back referenced, and reading them back does not tokenize text.
+ */
+public class SmileDruidResponseCacheFormat implements DruidResponseCacheFormat {
+
+    private final ObjectMapper smileMapper;
+
+    /**
+     * Constructor.
+     */
+    public SmileDruidResponseCacheFormat() {
+        SmileFactory smileFactory = new SmileFactory();
+        smileFactory.enable(SmileGenerator.Feature.CHECK_SHARED_STRING_VALUES);
+        this.smileMapper = new ObjectMapper(smileFactory);
+    }
+
+    @Override
+    public Serializable serialize(JsonNode druidResponse) throws IOException {
+        return smileMapper.writeValueAsBytes(druidResponse);
+    }
+
+    @Override
+    public JsonNode deserialize(Serializable cachedValue) throws IOException {
+        if (!(cachedValue instanceof byte[])) {
+            throw new IOException("Cached value is not Smile encoded bytes: " + cachedValue.getClass());
+        }
+        return smileMapper.readTree((byte[]) cachedValue);
+    }
+
+    @Override
+    public long sizeOf(Serializable cachedValue) {
+        return ((byte[]) cachedValue).length;
+    }
+}
@@ -9,6 +9,8 @@ import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 
 import org.joda.time.DateTime;
 
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Set;
@@ -111,6 +113,27 @@ public interface Dimension {
      */
     DimensionRow findDimensionRowByKeyValue(String value);
 
+    /**
+     * Get the dimension rows for a collection of ids.
+     * <p>
+     * Implementations should look the rows up in bulk, rather than one at a time.
+     *
+     * @param values  key values
+     *
+     * @return the dimension rows found, keyed by key value in the iteration order of the values. Values with no
+     * matching row are left out.
+     */
+    default Map<String, DimensionRow> findDimensionRowsByKeyValues(Collection<String> values) {
+        Map<String, DimensionRow> dimensionRows = new LinkedHashMap<>(values.size());
+        for (String value : values) {
+            DimensionRow dimensionRow = findDimensionRowByKeyValue(value);
+            if (dimensionRow != null) {
+                dimensionRows.put(value, dimensionRow);
+            }
+        }
+        return dimensionRows;
+    }
+
     /**
      * Get primary key field for this dimension.
      *
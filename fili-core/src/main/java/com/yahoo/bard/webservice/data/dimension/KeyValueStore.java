@@ -5,6 +5,8 @@ package com.yahoo.bard.webservice.data.dimension;
 import org.slf4j.LoggerFactory;
 
 import java.io.Closeable;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 import javax.validation.constraints.NotNull;
@@ -49,6 +51,28 @@ public interface KeyValueStore extends Closeable {
      */
     String get(@NotNull String key);
 
+    /**
+     * Get the values for multiple keys from store.
+     * <p>
+     * Implementations backed by a remote store should fetch the values in as few round trips as they can, rather than
+     * one per key.
+     *
+     * @param keys  Keys to get the values for
+     *
+     * @return The values of the keys, in the iteration order of the keys, with a null value for each key not set
+     */
+    default Map<String, String> getAll(@NotNull Collection<String> keys) {
+        if (keys == null) {
+            throw new IllegalArgumentException("Cannot get null keys");
+        }
+
+        Map<String, String> values = new LinkedHashMap<>(keys.size());
+        for (String key : keys) {
+            values.put(key, get(key));
+        }
+        return values;
+    }
+
     /**
      * Get the value for a key from store or provide a default.
      *
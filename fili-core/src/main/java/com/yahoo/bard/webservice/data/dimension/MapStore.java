@@ -2,7 +2,9 @@
 // Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
 package com.yahoo.bard.webservice.data.dimension;
 
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 import javax.validation.constraints.NotNull;
@@ -56,6 +58,22 @@ public class MapStore implements KeyValueStore {
         return store.get(key);
     }
 
+    @Override
+    public Map<String, String> getAll(@NotNull Collection<String> keys) {
+        if (keys == null) {
+            throw new IllegalArgumentException("Cannot get null keys");
+        }
+
+        Map<String, String> values = new LinkedHashMap<>(keys.size());
+        for (String key : keys) {
+            if (key == null) {
+                throw new IllegalArgumentException("Cannot get null key");
+            }
+            values.put(key, store.get(key));
+        }
+        return values;
+    }
+
     @Override
     public boolean isHealthy() {
         // An in-memory map is always healthy
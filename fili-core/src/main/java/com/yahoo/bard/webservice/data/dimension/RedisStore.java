@@ -7,10 +7,16 @@ import org.slf4j.LoggerFactory;
 
 import redis.clients.jedis.Jedis;
 import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
 import redis.clients.jedis.exceptions.JedisException;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -22,6 +28,12 @@ import javax.validation.constraints.NotNull;
 public class RedisStore implements KeyValueStore {
     private static final Logger LOG = LoggerFactory.getLogger(RedisStore.class);
 
+    /**
+     * Most keys fetched by a single MGET, so that one large lookup doesn't monopolize the Redis server.
+     * Successive MGETs are pipelined, so they still cost a single round trip.
+     */
+    private static final int MGET_BATCH_SIZE = 1000;
+
     private boolean redisIsHealthy;
     private final JedisPool pool;
     private final String storeName;
@@ -105,6 +117,28 @@ public class RedisStore implements KeyValueStore {
         }
     }
 
+    @Override
+    public Map<String, String> getAll(@NotNull Collection<String> keys) {
+        if (keys == null) {
+            throw new IllegalArgumentException("Cannot get null keys");
+        }
+        // Checked up front, so that no pipeline is left unread on the pooled connection
+        for (String key : keys) {
+            if (key == null) {
+                throw new IllegalArgumentException("Cannot get null key");
+            }
+        }
+
+        try (Jedis jedis = pool.getResource()) {
+            return getAll(jedis, keys);
+        } catch (JedisException e) {
+            redisIsHealthy = false;
+            String msg = String.format("Unable to get %d keys", keys.size());
+            LOG.error(msg);
+            throw new RuntimeException(msg, e);
+        }
+    }
+
     @Override
     public boolean isHealthy() {
         // If we know we're not healthy, don't bother pinging.
@@ -127,33 +161,36 @@ public class RedisStore implements KeyValueStore {
             throw new IllegalArgumentException("Cannot set null entries");
         }
 
-        try (Jedis jedis = pool.getResource()) {
-
-            Map<String, String> oldValues = new HashMap<>(entries.size());
-            for (String key : entries.keySet()) {
-                if (key == null) {
-                    throw new IllegalArgumentException("Cannot set null key");
-                }
-
-                String rKey = redisKey(storeName, key);
-
-                String oldValue = jedis.get(rKey);
-                String newValue = entries.get(key);
-
-                oldValues.put(key, oldValue);
+        for (String key : entries.keySet()) {
+            if (key == null) {
+                throw new IllegalArgumentException("Cannot set null key");
+            }
+        }
 
-                if (newValue == null) {
-                    if (oldValue != null) {
-                        jedis.del(rKey);
+        try (Jedis jedis = pool.getResource()) {
+            Map<String, String> oldValues = getAll(jedis, entries.keySet());
+
+            // Send every write before reading any of the replies, so all the keys cost a single round trip
+            Pipeline pipeline = jedis.pipelined();
+            List<Response<String>> results = new ArrayList<>(entries.size());
+            for (Map.Entry<String, String> entry : entries.entrySet()) {
+                String rKey = redisKey(storeName, entry.getKey());
+                if (entry.getValue() == null) {
+                    if (oldValues.get(entry.getKey()) != null) {
+                        pipeline.del(rKey);
                     }
                 } else {
-                    String result = jedis.set(rKey, entries.get(key));
-                    if (!"OK".equals(result)) {
-                        redisIsHealthy = false;
-                        String msg = "Redis failed to store key";
-                        LOG.error(msg);
-                        throw new RuntimeException(msg);
-                    }
+                    results.add(pipeline.set(rKey, entry.getValue()));
+                }
+            }
+            pipeline.sync();
+
+            for (Response<String> result : results) {
+                if (!"OK".equals(result.get())) {
+                    redisIsHealthy = false;
+                    String msg = "Redis failed to store key";
+                    LOG.error(msg);
+                    throw new RuntimeException(msg);
                 }
             }
             return oldValues;
@@ -166,6 +203,44 @@ public class RedisStore implements KeyValueStore {
         }
     }
 
+    /**
+     * Get the values of keys with pipelined MGETs of at most {@link #MGET_BATCH_SIZE} keys each.
+     * <p>
+     * The keys must not be null.
+     *
+     * @param jedis  Connection to fetch the values over
+     * @param keys  Keys to get the values for
+     *
+     * @return The values of the keys, in the iteration order of the keys, with a null value for each key not set
+     *
+     * @throws JedisException if Redis is unable to get the values
+     */
+    private Map<String, String> getAll(Jedis jedis, Collection<String> keys) throws JedisException {
+        Pipeline pipeline = jedis.pipelined();
+        List<Response<List<String>>> batches = new ArrayList<>(keys.size() / MGET_BATCH_SIZE + 1);
+        List<String> rKeys = new ArrayList<>(Math.min(keys.size(), MGET_BATCH_SIZE));
+        for (String key : keys) {
+            rKeys.add(redisKey(storeName, key));
+            if (rKeys.size() == MGET_BATCH_SIZE) {
+                batches.add(pipeline.mget(rKeys.toArray(new String[rKeys.size()])));
+                rKeys.clear();
+            }
+        }
+        if (!rKeys.isEmpty()) {
+            batches.add(pipeline.mget(rKeys.toArray(new String[rKeys.size()])));
+        }
+        pipeline.sync();
+
+        Map<String, String> values = new LinkedHashMap<>(keys.size());
+        Iterator<String> keyIterator = keys.iterator();
+        for (Response<List<String>> batch : batches) {
+            for (String value : batch.get()) {
+                values.put(keyIterator.next(), value);
+            }
+        }
+        return values;
+    }
+
     /**
      * Ping the Redis server and update redisIsHealthy.
      */
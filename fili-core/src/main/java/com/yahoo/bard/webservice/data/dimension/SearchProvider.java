@@ -9,6 +9,9 @@ import com.yahoo.bard.webservice.web.util.PaginationParameters;
 
 import org.slf4j.LoggerFactory;
 
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Set;
@@ -121,6 +124,38 @@ public interface SearchProvider {
         return findFilteredDimensionRowsPaged(filters, PaginationParameters.ONE_RESULT).getNumResults() > 0;
     }
 
+    /**
+     * Get the dimension rows for a collection of key values.
+     * <p>
+     * The default scans all the rows, which is only worth it for providers which have no faster lookup. Implementations
+     * backed by a store they can read by key should look the rows up in bulk instead.
+     *
+     * @param values  Key values of the dimension rows to find
+     *
+     * @return the dimension rows which exist, keyed by key value
+     */
+    default Map<String, DimensionRow> findDimensionRowsByKeyValues(Collection<String> values) {
+        Set<String> wanted = new HashSet<>(values);
+        Map<String, DimensionRow> rows = new LinkedHashMap<>();
+        for (DimensionRow row : findAllDimensionRows()) {
+            if (wanted.contains(row.getKeyValue())) {
+                rows.put(row.getKeyValue(), row);
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Whether {@link #findDimensionRowsByKeyValues(Collection)} looks rows up by key rather than scanning them all, so
+     * that callers may use it in place of a filtered search for key values.
+     * The default returns false, for providers which only implement the default scan.
+     *
+     * @return true if rows can be looked up by key without scanning them all
+     */
+    default boolean isBulkKeyLookupSupported() {
+        return false;
+    }
+
     /**
      * Method to add / update indexes.
      *
@@ -22,11 +22,14 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
@@ -437,28 +440,32 @@ public class KeyValueStoreDimension implements Dimension {
         Map<String, String> storeRows = new LinkedHashMap<>(dimensionRows.size());
         Map<String, Pair<DimensionRow, DimensionRow>> indexRows = new LinkedHashMap<>(dimensionRows.size());
 
+        List<DimensionRow> rowsToAdd = new ArrayList<>(dimensionRows.size());
+        List<String> rowIdKeys = new ArrayList<>(dimensionRows.size());
         for (DimensionRow dimensionRow : dimensionRows) {
-            try {
-                if (dimensionRow.isEmpty()) {
-                    LOG.warn("Ignoring attempt to add a dimension row with no data {}", dimensionRow);
-                    continue;
-                } else if (dimensionRow.get(getKey()) == null) {
-                    LOG.warn("Attempting to add a dimension row with a null key {}", dimensionRow);
-                    throw new IllegalArgumentException("Cannot add dimension with null key.");
-                }
+            if (dimensionRow.isEmpty()) {
+                LOG.warn("Ignoring attempt to add a dimension row with no data {}", dimensionRow);
+                continue;
+            } else if (dimensionRow.get(getKey()) == null) {
+                LOG.warn("Attempting to add a dimension row with a null key {}", dimensionRow);
+                throw new IllegalArgumentException("Cannot add dimension with null key.");
+            }
+            rowsToAdd.add(dimensionRow);
+            // rowId  - key to associate a dimension row to its id
+            rowIdKeys.add(DimensionStoreKeyUtils.getRowKey(getKey().getName(), dimensionRow.get(getKey())));
+        }
 
-                // rowId  - key to associate a dimension row to its id
-                String rowIdKey = DimensionStoreKeyUtils.getRowKey(getKey().getName(), dimensionRow.get(getKey()));
+        // check which of the dimension rows already exist in store, in one bulk lookup
+        Map<String, String> storedRows = keyValueStore.getAll(rowIdKeys);
 
-                // check if the dimension row already exists in store
+        for (int i = 0; i < rowsToAdd.size(); i++) {
+            DimensionRow dimensionRow = rowsToAdd.get(i);
+            String rowIdKey = rowIdKeys.get(i);
+            try {
                 DimensionRow dimensionRowOld = null;
-                String row = keyValueStore.get(rowIdKey);
+                String row = storedRows.get(rowIdKey);
                 if (row != null) {
-                    LinkedHashMap<String, String> fieldNameValueMap = objectMapper.readValue(
-                            row,
-                            new TypeReference<LinkedHashMap<String, String>>() { }
-                    );
-                    dimensionRowOld = parseDimensionRow(fieldNameValueMap);
+                    dimensionRowOld = parseStoredDimensionRow(row);
                     if (dimensionRow.equals(dimensionRowOld)) {
                         continue;
                     }
@@ -507,21 +514,48 @@ public class KeyValueStoreDimension implements Dimension {
          * rowKey would be id_12345_row_key
          */
         String rowKey = DimensionStoreKeyUtils.getRowKey(getKey().getName(), value);
-        DimensionRow drByKey = null;
-        try {
-            String dimRowJson = keyValueStore.get(rowKey);
+        String dimRowJson = keyValueStore.get(rowKey);
+        return dimRowJson == null ? null : parseStoredDimensionRow(dimRowJson);
+    }
+
+    @Override
+    public Map<String, DimensionRow> findDimensionRowsByKeyValues(Collection<String> values) {
+        String keyName = getKey().getName();
+        Map<String, String> rowKeys = new LinkedHashMap<>(values.size());
+        for (String value : values) {
+            rowKeys.put(value, DimensionStoreKeyUtils.getRowKey(keyName, value));
+        }
+
+        Map<String, String> dimRowJsons = keyValueStore.getAll(rowKeys.values());
+
+        Map<String, DimensionRow> dimensionRows = new LinkedHashMap<>(rowKeys.size());
+        for (Map.Entry<String, String> rowKey : rowKeys.entrySet()) {
+            String dimRowJson = dimRowJsons.get(rowKey.getValue());
             if (dimRowJson != null) {
-                Map<String, String> dimensionRowMap = objectMapper.readValue(
-                        dimRowJson,
-                        new TypeReference<LinkedHashMap<String, String>>() { }
-                );
-                drByKey = parseDimensionRow(dimensionRowMap);
+                dimensionRows.put(rowKey.getKey(), parseStoredDimensionRow(dimRowJson));
             }
+        }
+        return dimensionRows;
+    }
+
+    /**
+     * Parse a dimension row serialized in the key value store.
+     *
+     * @param dimRowJson  The JSON field name / value map of the row, as stored
+     *
+     * @return the dimension row
+     */
+    private DimensionRow parseStoredDimensionRow(String dimRowJson) {
+        try {
+            Map<String, String> dimensionRowMap = objectMapper.readValue(
+                    dimRowJson,
+                    new TypeReference<LinkedHashMap<String, String>>() { }
+            );
+            return parseDimensionRow(dimensionRowMap);
         } catch (IOException e) {
             LOG.error("Cannot map string to DimensionRow object. {}", e);
             throw new RuntimeException(e);
         }
-        return drByKey;
     }
 
 
@@ -2,6 +2,7 @@
 // Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
 package com.yahoo.bard.webservice.data.dimension.impl;
 
+import com.yahoo.bard.webservice.config.BardFeatureFlag;
 import com.yahoo.bard.webservice.config.SystemConfig;
 import com.yahoo.bard.webservice.config.SystemConfigProvider;
 import com.yahoo.bard.webservice.data.cache.HashDataCache.Pair;
@@ -29,7 +30,6 @@ import org.apache.lucene.analysis.standard.StandardAnalyzer;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
 import org.apache.lucene.document.StringField;
-import org.apache.lucene.index.DirectoryReader;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexWriterConfig;
 import org.apache.lucene.index.Term;
@@ -40,10 +40,12 @@ import org.apache.lucene.search.MatchAllDocsQuery;
 import org.apache.lucene.search.PrefixQuery;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.SearcherManager;
 import org.apache.lucene.search.TermQuery;
 import org.apache.lucene.search.TimeLimitingCollector;
 import org.apache.lucene.search.TopDocs;
 import org.apache.lucene.search.WildcardQuery;
+import org.apache.lucene.store.AlreadyClosedException;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.MMapDirectory;
 import org.slf4j.Logger;
@@ -57,12 +59,22 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.SimpleFileVisitor;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.stream.Collector;
 import java.util.stream.Collectors;
@@ -71,13 +83,25 @@ import java.util.stream.Stream;
 /**
  * LuceneSearchProvider.
  * Search provider which uses lucene.
+ * <p>
+ * The index is updated through a single long-lived {@link IndexWriter}, and searched through near-real-time searchers
+ * from a {@link SearcherManager}, so updates are visible to searches as soon as they are made, without a commit, and
+ * searches never wait on updates. Commits are made after each update, or at most every
+ * {@code lucene_commit_interval_ms} milliseconds if that is set. Pending updates are also committed when the provider
+ * is closed and when the JVM shuts down.
+ * <p>
+ * Updates buffer up to {@code lucene_ram_buffer_size_mb} megabytes in memory before they are flushed to the index, and
+ * each commit flushes them, so an idle writer holds little memory.
  */
 public class LuceneSearchProvider implements SearchProvider {
     private static final Logger LOG = LoggerFactory.getLogger(LuceneSearchProvider.class);
 
     private static final Analyzer LUCENE_ANALYZER = new StandardAnalyzer();
-    private static final double BUFFER_SIZE = 48;
 
+    /**
+     * Guards the lifecycle of the index writer and searcher manager. Updates share it, replacing or clearing the index
+     * takes it exclusively, and searches don't take it at all.
+     */
     private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
     private final String luceneIndexPath;
 
@@ -85,6 +109,35 @@ public class LuceneSearchProvider implements SearchProvider {
     public static final int LUCENE_SEARCH_TIMEOUT_MS = SYSTEM_CONFIG.getIntProperty(
             SYSTEM_CONFIG.getPackageVariableName("lucene_search_timeout_ms"), 600000
     );
+    public static final int LUCENE_COMMIT_INTERVAL_MS = SYSTEM_CONFIG.getIntProperty(
+            SYSTEM_CONFIG.getPackageVariableName("lucene_commit_interval_ms"), 0
+    );
+    public static final int LUCENE_RAM_BUFFER_SIZE_MB = SYSTEM_CONFIG.getIntProperty(
+            SYSTEM_CONFIG.getPackageVariableName("lucene_ram_buffer_size_mb"), 48
+    );
+
+    /**
+     * The providers whose index is open, which are closed when the JVM shuts down so that no updates are lost.
+     */
+    private static final Set<LuceneSearchProvider> OPEN_PROVIDERS = ConcurrentHashMap.newKeySet();
+
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread(
+                () -> OPEN_PROVIDERS.forEach(LuceneSearchProvider::closeQuietly),
+                "lucene-index-shutdown"
+        ));
+    }
+
+    /**
+     * Commits the updates of every provider which batches its commits.
+     */
+    private static final ScheduledExecutorService COMMIT_SCHEDULER = Executors.newSingleThreadScheduledExecutor(
+            runnable -> {
+                Thread thread = new Thread(runnable, "lucene-index-commits");
+                thread.setDaemon(true);
+                return thread;
+            }
+    );
 
     /**
      * The maximum number of results per page.
@@ -95,7 +148,9 @@ public class LuceneSearchProvider implements SearchProvider {
     private KeyValueStore keyValueStore;
     private Dimension dimension;
     private boolean luceneIndexIsHealthy;
-    private IndexSearcher luceneIndexSearcher;
+    private volatile IndexWriter luceneIndexWriter;
+    private volatile SearcherManager searcherManager;
+    private final AtomicBoolean commitScheduled = new AtomicBoolean(false);
     private int searchTimeout;
 
     /**
@@ -133,62 +188,246 @@ public class LuceneSearchProvider implements SearchProvider {
     }
 
     /**
-     * Initializes the `luceneIndexSearcher` if it has not been initialized already.
+     * Opens the index writer and searcher manager if they have not been opened already, so that they can be searched.
+     * <p>
+     * Updates must use {@link #lockIndexForUpdates} instead, since the index may be closed again as soon as this
+     * returns.
      * <p>
-     * Note that the index searcher cannot be built at construction time, because it needs the dimension and
-     * associated key-value store. However, because of a circular dependency between the `SearchProvider` and the
-     * `Dimension` classes, we cannot provide the dimension and key-value store to the search provider at
-     * construction time.
+     * Note that the index cannot be opened at construction time, because it needs the dimension and associated
+     * key-value store. However, because of a circular dependency between the `SearchProvider` and the `Dimension`
+     * classes, we cannot provide the dimension and key-value store to the search provider at construction time.
      */
-    private void initializeIndexSearcher() {
-        if (luceneIndexSearcher == null) {
-            reopenIndexSearcher(true);
+    private void initializeIndex() {
+        if (searcherManager != null) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            if (searcherManager == null) {
+                openIndex();
+            }
+        } finally {
+            lock.writeLock().unlock();
         }
     }
 
     /**
-     * Re-open the Index Searcher, opening it for the first time if it's never been opened.
+     * Take the read lock, opening the index first if it isn't open, so that it can be updated.
      * <p>
-     * This method will attempt to acquire and release a write lock.
+     * The index stays open until the caller releases the read lock, since closing or replacing it takes the write
+     * lock. If the index can't be opened, the read lock is not held when this throws.
      *
-     * @param firstTimeThrough  If true, will write an empty index and will then re-open the searcher
+     * @return the index writer to make the updates with
      */
-    private void reopenIndexSearcher(boolean firstTimeThrough) {
+    private IndexWriter lockIndexForUpdates() {
+        lock.readLock().lock();
+        if (luceneIndexWriter != null) {
+            return luceneIndexWriter;
+        }
+        lock.readLock().unlock();
         lock.writeLock().lock();
         try {
-            // Close the current reader if open
-            if (luceneIndexSearcher != null) {
-                luceneIndexSearcher.getIndexReader().close();
-            }
+            openIndexIfClosed();
+            // Downgrade to the read lock, so the index can't be closed before the caller is done with it
+            lock.readLock().lock();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return luceneIndexWriter;
+    }
 
-            // Open a new IndexSearcher on a new DirectoryReader
-            luceneIndexSearcher = new IndexSearcher(DirectoryReader.open(luceneDirectory));
-        } catch (IOException reopenException) {
-            // If there is no index file, this is expected. On the 1st time through, write an empty index and try again
-            if (firstTimeThrough) {
-                IndexWriterConfig indexWriterConfig = new IndexWriterConfig(LUCENE_ANALYZER);
-                try (IndexWriter ignored = new IndexWriter(luceneDirectory, indexWriterConfig)) {
-                    // Closed automatically by the try-resource block
-                } catch (IOException emptyIndexWriteException) {
-                    // We can't move past this, so puke
-                    luceneIndexIsHealthy = false;
-                    String message = String.format("Unable to write empty index to %s:", luceneIndexPath);
-                    LOG.error(message, emptyIndexWriteException);
-                    throw new RuntimeException(emptyIndexWriteException);
+    /**
+     * Open the index if it isn't open, replacing the searcher manager left open by a closed writer, if any.
+     * <p>
+     * The caller must hold the write lock.
+     */
+    private void openIndexIfClosed() {
+        if (luceneIndexWriter != null) {
+            return;
+        }
+        SearcherManager oldSearcherManager = searcherManager;
+        openIndex();
+        closeSearcherManager(oldSearcherManager);
+    }
+
+    /**
+     * Open the index writer, creating an empty index if there is none, and a searcher manager over it.
+     * <p>
+     * The caller must hold the write lock.
+     */
+    private void openIndex() {
+        IndexWriterConfig indexWriterConfig = new IndexWriterConfig(LUCENE_ANALYZER)
+                .setRAMBufferSizeMB(LUCENE_RAM_BUFFER_SIZE_MB)
+                .setCommitOnClose(true);
+        IndexWriter writer = null;
+        try {
+            writer = new IndexWriter(luceneDirectory, indexWriterConfig);
+            SearcherManager manager = new SearcherManager(writer, null);
+            luceneIndexWriter = writer;
+            searcherManager = manager;
+            luceneIndexIsHealthy = true;
+            OPEN_PROVIDERS.add(this);
+        } catch (IOException e) {
+            luceneIndexIsHealthy = false;
+            String message = String.format("Unable to open index for %s:", luceneIndexPath);
+            LOG.error(message, e);
+            if (writer != null) {
+                try {
+                    writer.rollback();
+                } catch (IOException rollbackException) {
+                    e.addSuppressed(rollbackException);
                 }
-                reopenIndexSearcher(false);
-            } else {
-                // We've been here before, so puke
-                luceneIndexIsHealthy = false;
-                String message = String.format("Unable to open index searcher for %s:", luceneIndexPath);
-                LOG.error(message, reopenException);
-                throw new RuntimeException(reopenException);
             }
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Commit and close the index writer, if it is open.
+     * <p>
+     * The caller must hold the write lock. The searcher manager stays open, so searches can go on against the last
+     * state of the index.
+     */
+    private void closeIndexWriter() {
+        IndexWriter writer = luceneIndexWriter;
+        if (writer == null) {
+            return;
+        }
+        luceneIndexWriter = null;
+        try {
+            writer.commit();
+            writer.close();
+        } catch (IOException e) {
+            luceneIndexIsHealthy = false;
+            String message = String.format("Unable to close index writer for %s:", luceneIndexPath);
+            LOG.error(message, e);
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Close a searcher manager which has been replaced. Searches still using its searchers can finish.
+     *
+     * @param manager  The searcher manager to close, if not null
+     */
+    private void closeSearcherManager(SearcherManager manager) {
+        if (manager == null) {
+            return;
+        }
+        try {
+            manager.close();
+        } catch (IOException e) {
+            LOG.warn("Unable to close searcher manager for {}", luceneIndexPath, e);
+        }
+    }
+
+    /**
+     * Commit any pending updates and release the index, so that its files can be deleted.
+     * <p>
+     * The index is opened again if the provider is used afterwards.
+     */
+    public void close() {
+        lock.writeLock().lock();
+        try {
+            OPEN_PROVIDERS.remove(this);
+            closeIndexWriter();
+            SearcherManager manager = searcherManager;
+            searcherManager = null;
+            closeSearcherManager(manager);
         } finally {
             lock.writeLock().unlock();
         }
     }
 
+    /**
+     * Close the provider, logging rather than throwing if its pending updates can't be committed.
+     */
+    private void closeQuietly() {
+        try {
+            close();
+        } catch (RuntimeException e) {
+            LOG.error("Unable to commit index for {} on shutdown", luceneIndexPath, e);
+        }
+    }
+
+    /**
+     * Acquire a searcher over the latest state of the index, which must be released by closing the lease.
+     *
+     * @return the lease on the searcher
+     */
+    private SearcherLease acquireSearcher() {
+        while (true) {
+            initializeIndex();
+            SearcherManager manager = searcherManager;
+            if (manager == null) {
+                // Closed since it was initialized, so open it again
+                continue;
+            }
+            try {
+                return new SearcherLease(manager, manager.acquire());
+            } catch (AlreadyClosedException e) {
+                // The index was replaced since the manager was read, so try again with its replacement
+                if (manager == searcherManager) {
+                    throw e;
+                }
+            } catch (IOException e) {
+                String message = String.format("Unable to acquire index searcher for %s:", luceneIndexPath);
+                LOG.error(message, e);
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    /**
+     * Make the updates written so far visible to searches, without waiting for them to be committed.
+     * <p>
+     * The caller must hold the lock, so that the index is open.
+     *
+     * @throws IOException if the searcher can't be refreshed
+     */
+    private void refreshSearcher() throws IOException {
+        searcherManager.maybeRefreshBlocking();
+    }
+
+    /**
+     * Commit the updates written so far, either right away or, if commits are batched, with the next batch.
+     */
+    private void commitUpdates() {
+        if (LUCENE_COMMIT_INTERVAL_MS <= 0) {
+            commit();
+        } else if (commitScheduled.compareAndSet(false, true)) {
+            COMMIT_SCHEDULER.schedule(
+                    () -> {
+                        // Cleared before committing, so updates made during the commit schedule another one
+                        commitScheduled.set(false);
+                        commit();
+                    },
+                    LUCENE_COMMIT_INTERVAL_MS,
+                    TimeUnit.MILLISECONDS
+            );
+        }
+    }
+
+    /**
+     * Commit the updates written so far to the index.
+     */
+    private void commit() {
+        lock.readLock().lock();
+        try {
+            IndexWriter writer = luceneIndexWriter;
+            if (writer != null) {
+                writer.commit();
+            }
+        } catch (IOException e) {
+            luceneIndexIsHealthy = false;
+            String message = String.format("Unable to commit index for %s:", luceneIndexPath);
+            LOG.error(message, e);
+            throw new RuntimeException(e);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
     @Override
     public void setDimension(Dimension dimension) {
         this.dimension = dimension;
@@ -215,11 +454,21 @@ public class LuceneSearchProvider implements SearchProvider {
         return getResultsPage(new MatchAllDocsQuery(), paginationParameters);
     }
 
+    @Override
+    public Map<String, DimensionRow> findDimensionRowsByKeyValues(Collection<String> values) {
+        return dimension.findDimensionRowsByKeyValues(values);
+    }
+
     @Override
     public TreeSet<DimensionRow> findAllOrderedDimensionRows() {
         return new TreeSet<>(findAllDimensionRows());
     }
 
+    @Override
+    public boolean isBulkKeyLookupSupported() {
+        return true;
+    }
+
     @Override
     public boolean isHealthy() {
         return luceneIndexIsHealthy;
@@ -253,12 +502,13 @@ public class LuceneSearchProvider implements SearchProvider {
         Document doc = new Document();
         Map<DimensionField, Field> dimFieldToLuceneField = new HashMap<>(dimension.getDimensionFields().size());
 
-        // Create the document fields for this dimension and add them to the document
+        // Create the document fields for this dimension and add them to the document. Every field is stored, so that
+        // search results can be hydrated from the index alone.
         for (DimensionField dimensionField : dimension.getDimensionFields()) {
             Field luceneField = new StringField(
                     DimensionStoreKeyUtils.getColumnKey(dimensionField.getName()),
                     "",
-                    dimensionField.equals(dimension.getKey()) ? Field.Store.YES : Field.Store.NO
+                    Field.Store.YES
             );
 
             // Store the lucene field in the doc and in our lookup map
@@ -267,32 +517,26 @@ public class LuceneSearchProvider implements SearchProvider {
         }
 
         // Write the rows to the document
-        IndexWriterConfig indexWriterConfig = new IndexWriterConfig(LUCENE_ANALYZER).setRAMBufferSizeMB(BUFFER_SIZE);
-        lock.writeLock().lock();
+        IndexWriter writer = lockIndexForUpdates();
         try {
-            try (IndexWriter luceneIndexWriter = new IndexWriter(luceneDirectory, indexWriterConfig)) {
-                // Update the document fields for each row and update the document
-                for (String rowId : changedRows.keySet()) {
-                    // Get the new row from the pair
-                    DimensionRow newDimensionRow = changedRows.get(rowId).getKey();
-
-                    // Update the index
-                    updateDimensionRow(doc, dimFieldToLuceneField, luceneIndexWriter, newDimensionRow);
-                }
+            // Update the document fields for each row and update the document
+            for (String rowId : changedRows.keySet()) {
+                // Get the new row from the pair
+                DimensionRow newDimensionRow = changedRows.get(rowId).getKey();
 
-            } catch (IOException e) {
-                luceneIndexIsHealthy = false;
-                LOG.error("Failed to refresh index for dimension rows", e);
-                throw new RuntimeException(e);
-                // Commit all the changes to the index (on .close, called by try-resources) and refresh the cardinality
+                // Update the index
+                updateDimensionRow(doc, dimFieldToLuceneField, writer, newDimensionRow);
             }
-            //This must be outside the try-resources block because it may _also_ need to open an IndexWriter, and
-            //opening an IndexWriter involves taking a write lock on lucene, of which there can only be one at a time.
-            reopenIndexSearcher(true);
-            refreshCardinality();
+            refreshSearcher();
+        } catch (IOException e) {
+            luceneIndexIsHealthy = false;
+            LOG.error("Failed to refresh index for dimension rows", e);
+            throw new RuntimeException(e);
         } finally {
-            lock.writeLock().unlock();
+            lock.readLock().unlock();
         }
+        commitUpdates();
+        refreshCardinality();
     }
 
     /**
@@ -338,6 +582,10 @@ public class LuceneSearchProvider implements SearchProvider {
 
         lock.writeLock().lock();
         try {
+            // Searches go on against the old index until the new one is open
+            SearcherManager oldSearcherManager = searcherManager;
+            closeIndexWriter();
+
             Path oldLuceneIndexPath = Paths.get(luceneIndexPath);
             String tempDir = oldLuceneIndexPath.resolveSibling(oldLuceneIndexPath.getFileName() + "_old").toString();
 
@@ -356,7 +604,8 @@ public class LuceneSearchProvider implements SearchProvider {
             LOG.trace("Deleting old Lucene indexes in {} ...", tempDir);
             deleteDir(tempDir);
 
-            reopenIndexSearcher(false);
+            openIndex();
+            closeSearcherManager(oldSearcherManager);
         } finally {
             lock.writeLock().unlock();
         }
@@ -434,56 +683,45 @@ public class LuceneSearchProvider implements SearchProvider {
     @Override
     public void clearDimension() {
         Set<DimensionRow> dimensionRows = findAllDimensionRows();
-        IndexWriterConfig indexWriterConfig = new IndexWriterConfig(LUCENE_ANALYZER).setRAMBufferSizeMB(BUFFER_SIZE);
         lock.writeLock().lock();
         try {
-            try (IndexWriter writer = new IndexWriter(luceneDirectory, indexWriterConfig)) {
-                //Remove all dimension data from the store.
-                String rowId = dimension.getKey().getName();
-                dimensionRows.stream()
-                        .map(DimensionRow::getRowMap)
-                        .map(map -> map.get(rowId))
-                        .map(id -> DimensionStoreKeyUtils.getRowKey(rowId, id))
-                        .forEach(keyValueStore::remove);
-
-                //Since Lucene's indices are being dropped, the dimension field stored via the columnKey is becoming
-                //stale.
-                keyValueStore.remove(DimensionStoreKeyUtils.getColumnKey(dimension.getKey().getName()));
-                //The allValues key mapping needs to reflect the fact that we are dropping all dimension data.
-                keyValueStore.put(DimensionStoreKeyUtils.getAllValuesKey(), "[]");
-                //We're resetting the keyValueStore, so we don't want any stale last updated date floating around.
-                keyValueStore.remove(DimensionStoreKeyUtils.getLastUpdatedKey());
-
-                //In addition to clearing the keyValueStore, we also need to delete all of Lucene's segment files.
-                writer.deleteAll();
-                writer.commit();
-            } catch (IOException e) {
-                LOG.error(ErrorMessageFormat.FAIL_TO_WIPTE_LUCENE_INDEX_DIR.format(luceneDirectory));
-                throw new RuntimeException(e);
-            }
-
-            //This must be outside the try-resources block because it may _also_ need to open an IndexWriter, and
-            //opening an IndexWriter involves taking a write lock on lucene, of which there can only be one at a time.
-            reopenIndexSearcher(true);
-            refreshCardinality();
+            openIndexIfClosed();
+            //Remove all dimension data from the store.
+            String rowId = dimension.getKey().getName();
+            dimensionRows.stream()
+                    .map(DimensionRow::getRowMap)
+                    .map(map -> map.get(rowId))
+                    .map(id -> DimensionStoreKeyUtils.getRowKey(rowId, id))
+                    .forEach(keyValueStore::remove);
+
+            //Since Lucene's indices are being dropped, the dimension field stored via the columnKey is becoming
+            //stale.
+            keyValueStore.remove(DimensionStoreKeyUtils.getColumnKey(dimension.getKey().getName()));
+            //The allValues key mapping needs to reflect the fact that we are dropping all dimension data.
+            keyValueStore.put(DimensionStoreKeyUtils.getAllValuesKey(), "[]");
+            //We're resetting the keyValueStore, so we don't want any stale last updated date floating around.
+            keyValueStore.remove(DimensionStoreKeyUtils.getLastUpdatedKey());
+
+            //In addition to clearing the keyValueStore, we also need to delete all of Lucene's segment files.
+            luceneIndexWriter.deleteAll();
+            luceneIndexWriter.commit();
+            refreshSearcher();
+        } catch (IOException e) {
+            LOG.error(ErrorMessageFormat.FAIL_TO_WIPTE_LUCENE_INDEX_DIR.format(luceneDirectory));
+            throw new RuntimeException(e);
         } finally {
             lock.writeLock().unlock();
         }
+        refreshCardinality();
     }
 
     /**
      * Update the cardinality count.
-     * <p>
-     * Note that this method acquires a read lock to query the lucene index for the number of documents.
      */
     private void refreshCardinality() {
         int numDocs;
-        initializeIndexSearcher();
-        lock.readLock().lock();
-        try {
-            numDocs = luceneIndexSearcher.getIndexReader().numDocs();
-        } finally {
-            lock.readLock().unlock();
+        try (SearcherLease lease = acquireSearcher()) {
+            numDocs = lease.getSearcher().getIndexReader().numDocs();
         }
         keyValueStore.put(
                 DimensionStoreKeyUtils.getCardinalityKey(),
@@ -661,8 +899,8 @@ public class LuceneSearchProvider implements SearchProvider {
      * @param paginationParameters  The parameters defining the pagination (i.e. the number of rows per page, and the
      * desired page)
      * <p>
-     * Note that this method _may_ need to acquire and release a write lock if the index searcher needs to be
-     * initialized, and it later acquires and released a read lock when querying for dimension data from Lucene.
+     * Note that this method _may_ need to acquire and release a write lock if the index needs to be opened, but
+     * otherwise searches the latest searcher without taking any lock.
      *
      * @return The desired page of dimension rows that satisfy the given query
      *
@@ -675,11 +913,10 @@ public class LuceneSearchProvider implements SearchProvider {
 
         TreeSet<DimensionRow> filteredDimRows;
         int documentCount;
-        initializeIndexSearcher();
         LOG.trace("Lucene Query {}", query);
 
-        lock.readLock().lock();
-        try {
+        try (SearcherLease lease = acquireSearcher()) {
+            IndexSearcher luceneIndexSearcher = lease.getSearcher();
             ScoreDoc[] hits;
             try (TimedPhase timer = RequestLog.startTiming("QueryingLucene")) {
                 TopDocs hitDocs = getPageOfData(
@@ -709,24 +946,10 @@ public class LuceneSearchProvider implements SearchProvider {
 
             // convert hits to dimension rows
             try (TimedPhase timer = RequestLog.startTiming("LuceneHydratingDimensionRows")) {
-                String idKey = DimensionStoreKeyUtils.getColumnKey(dimension.getKey().getName());
-                filteredDimRows = Arrays.stream(hits)
-                        .map(
-                                hit -> {
-                                    try {
-                                        return luceneIndexSearcher.doc(hit.doc);
-                                    } catch (IOException e) {
-                                        LOG.error("Unable to convert hit " + hit);
-                                        throw new RuntimeException(e);
-                                    }
-                                }
-                        )
-                        .map(document -> document.get(idKey))
-                        .map(dimension::findDimensionRowByKeyValue)
-                        .collect(Collectors.toCollection(TreeSet::new));
+                filteredDimRows = BardFeatureFlag.LUCENE_STORED_FIELD_HYDRATION.isOn()
+                        ? hydrateFromStoredFields(luceneIndexSearcher, hits)
+                        : hydrateFromKeyValueStore(luceneIndexSearcher, hits);
             }
-        } finally {
-            lock.readLock().unlock();
         }
         return new SinglePagePagination<>(
                 Collections.unmodifiableList(filteredDimRows.stream().collect(Collectors.toList())),
@@ -735,6 +958,88 @@ public class LuceneSearchProvider implements SearchProvider {
         );
     }
 
+    /**
+     * Build the dimension rows of a page of hits by looking up their keys in the key value store.
+     *
+     * @param indexSearcher  The searcher which found the hits
+     * @param hits  The hits to build dimension rows for
+     *
+     * @return The dimension rows of the hits
+     */
+    private TreeSet<DimensionRow> hydrateFromKeyValueStore(IndexSearcher indexSearcher, ScoreDoc[] hits) {
+        String idKey = DimensionStoreKeyUtils.getColumnKey(dimension.getKey().getName());
+        Set<String> fieldsToLoad = Collections.singleton(idKey);
+        List<String> ids = Arrays.stream(hits)
+                .map(hit -> getDocument(indexSearcher, hit, fieldsToLoad))
+                .map(document -> document.get(idKey))
+                .collect(Collectors.toList());
+        // Look the whole page of rows up at once, rather than one store round trip per hit
+        return new TreeSet<>(dimension.findDimensionRowsByKeyValues(ids).values());
+    }
+
+    /**
+     * Build the dimension rows of a page of hits from the fields stored in their documents.
+     * <p>
+     * Documents indexed before every dimension field was stored are looked up in the key value store instead.
+     *
+     * @param indexSearcher  The searcher which found the hits
+     * @param hits  The hits to build dimension rows for
+     *
+     * @return The dimension rows of the hits
+     */
+    private TreeSet<DimensionRow> hydrateFromStoredFields(IndexSearcher indexSearcher, ScoreDoc[] hits) {
+        Map<String, String> fieldNameToColumnKey = new LinkedHashMap<>();
+        for (DimensionField dimensionField : dimension.getDimensionFields()) {
+            fieldNameToColumnKey.put(
+                    dimensionField.getName(),
+                    DimensionStoreKeyUtils.getColumnKey(dimensionField.getName())
+            );
+        }
+        Set<String> fieldsToLoad = new HashSet<>(fieldNameToColumnKey.values());
+        String idKey = DimensionStoreKeyUtils.getColumnKey(dimension.getKey().getName());
+
+        TreeSet<DimensionRow> dimensionRows = new TreeSet<>();
+        List<String> unstoredIds = new ArrayList<>();
+        for (ScoreDoc hit : hits) {
+            Document document = getDocument(indexSearcher, hit, fieldsToLoad);
+            Map<String, String> fieldNameValueMap = new LinkedHashMap<>(fieldNameToColumnKey.size());
+            for (Map.Entry<String, String> field : fieldNameToColumnKey.entrySet()) {
+                String value = document.get(field.getValue());
+                if (value == null) {
+                    break;
+                }
+                fieldNameValueMap.put(field.getKey(), value);
+            }
+            if (fieldNameValueMap.size() == fieldNameToColumnKey.size()) {
+                dimensionRows.add(dimension.parseDimensionRow(fieldNameValueMap));
+            } else {
+                unstoredIds.add(document.get(idKey));
+            }
+        }
+        if (!unstoredIds.isEmpty()) {
+            dimensionRows.addAll(dimension.findDimensionRowsByKeyValues(unstoredIds).values());
+        }
+        return dimensionRows;
+    }
+
+    /**
+     * Load the stored fields of the document of a hit.
+     *
+     * @param indexSearcher  The searcher which found the hit
+     * @param hit  The hit to load the document of
+     * @param fieldsToLoad  Names of the stored fields to load
+     *
+     * @return The document, with only the requested fields
+     */
+    private Document getDocument(IndexSearcher indexSearcher, ScoreDoc hit, Set<String> fieldsToLoad) {
+        try {
+            return indexSearcher.doc(hit.doc, fieldsToLoad);
+        } catch (IOException e) {
+            LOG.error("Unable to convert hit " + hit);
+            throw new RuntimeException(e);
+        }
+    }
+
     /**
      * Check if perPage exceeds limit of max number of rows to be returned.
      *
@@ -752,8 +1057,6 @@ public class LuceneSearchProvider implements SearchProvider {
 
     /**
      * Returns the requested page of dimension metadata from Lucene.
-     * <p>
-     * Note that this method acquires and releases a read lock when querying Lucene for data.
      *
      * @param indexSearcher  The service to find the desired dimension metadata in the Lucene index
      * @param lastEntry  The last entry from the previous page of dimension metadata, the indexSearcher will begin its
@@ -770,7 +1073,6 @@ public class LuceneSearchProvider implements SearchProvider {
             int perPage
     ) {
         TimeLimitingCollectorManager manager = new TimeLimitingCollectorManager(searchTimeout, lastEntry, perPage);
-        lock.readLock().lock();
         try {
             return indexSearcher.search(query, manager);
         } catch (IOException e) {
@@ -780,8 +1082,45 @@ public class LuceneSearchProvider implements SearchProvider {
         } catch (TimeLimitingCollector.TimeExceededException e) {
             LOG.warn("Lucene query timeout: {}. {}", query, e.getMessage());
             throw new TimeoutException(e.getMessage(), e);
-        } finally {
-            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * A searcher acquired from a searcher manager, released back to it when the lease is closed.
+     */
+    private static final class SearcherLease implements AutoCloseable {
+
+        private final SearcherManager manager;
+        private final IndexSearcher searcher;
+
+        /**
+         * Constructor.
+         *
+         * @param manager  The manager the searcher was acquired from
+         * @param searcher  The searcher
+         */
+        private SearcherLease(SearcherManager manager, IndexSearcher searcher) {
+            this.manager = manager;
+            this.searcher = searcher;
+        }
+
+        /**
+         * Getter for the searcher.
+         *
+         * @return the searcher
+         */
+        private IndexSearcher getSearcher() {
+            return searcher;
+        }
+
+        @Override
+        public void close() {
+            try {
+                manager.release(searcher);
+            } catch (IOException e) {
+                LOG.error("Unable to release index searcher", e);
+                throw new RuntimeException(e);
+            }
         }
     }
 }
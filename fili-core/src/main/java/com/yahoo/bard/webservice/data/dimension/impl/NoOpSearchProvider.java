@@ -13,6 +13,7 @@ import com.yahoo.bard.webservice.util.Pagination;
 import com.yahoo.bard.webservice.web.ApiFilter;
 import com.yahoo.bard.webservice.web.util.PaginationParameters;
 
+import java.util.Collection;
 import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Set;
@@ -81,6 +82,22 @@ public class NoOpSearchProvider implements SearchProvider {
         return dimensionRows;
     }
 
+    /**
+     * For dimensions with NoOpSearchProvider, every key value has a dimension row, with all fields set to the value.
+     *
+     * @param values  Key values of the dimension rows to find
+     *
+     * @return a dimension row for each of the values, keyed by value
+     */
+    @Override
+    public Map<String, DimensionRow> findDimensionRowsByKeyValues(Collection<String> values) {
+        Map<String, DimensionRow> rows = new LinkedHashMap<>();
+        for (String value : values) {
+            rows.put(value, makeDimensionRow(value));
+        }
+        return rows;
+    }
+
     @Override
     public void refreshIndex(String rowId, DimensionRow dimensionRow, DimensionRow dimensionRowOld) {
         // do nothing
@@ -96,6 +113,11 @@ public class NoOpSearchProvider implements SearchProvider {
         //do nothing
     }
 
+    @Override
+    public boolean isBulkKeyLookupSupported() {
+        return true;
+    }
+
     @Override
     public boolean isHealthy() {
         return true;
@@ -24,6 +24,7 @@ import org.slf4j.LoggerFactory;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.LinkedHashSet;
 import java.util.List;
@@ -90,11 +91,21 @@ public class ScanSearchProvider implements SearchProvider, FilterDimensionRows {
         return dimension.findDimensionRowByKeyValue(value);
     }
 
+    @Override
+    public Map<String, DimensionRow> findDimensionRowsByKeyValues(Collection<String> values) {
+        return dimension.findDimensionRowsByKeyValues(values);
+    }
+
     @Override
     public TreeSet<DimensionRow> findAllOrderedDimensionRows() {
         return new TreeSet<>(findAllDimensionRows());
     }
 
+    @Override
+    public boolean isBulkKeyLookupSupported() {
+        return true;
+    }
+
     @Override
     public boolean isHealthy() {
         return true;
@@ -367,8 +378,7 @@ public class ScanSearchProvider implements SearchProvider, FilterDimensionRows {
      * @return  All ordered dimension rows that belongs to a requested page
      */
     private TreeSet<DimensionRow> getAllOrderedDimensionRows() {
-        return getDimRowIndexes().stream()
-                .map(keyValueStore::get)
+        return keyValueStore.getAll(getDimRowIndexes()).values().stream()
                 .filter(Objects::nonNull)
                 .map(dimRowJson -> readValue(new TypeReference<Map<String, String>>() { }, dimRowJson))
                 .map(dimension::parseDimensionRow)
@@ -2,9 +2,13 @@
 // Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
 package com.yahoo.bard.webservice.data.filterbuilders;
 
+import com.yahoo.bard.webservice.config.BardFeatureFlag;
+import com.yahoo.bard.webservice.config.SystemConfig;
+import com.yahoo.bard.webservice.config.SystemConfigProvider;
 import com.yahoo.bard.webservice.data.dimension.Dimension;
 import com.yahoo.bard.webservice.data.dimension.DimensionRow;
 import com.yahoo.bard.webservice.data.dimension.DimensionRowNotFoundException;
+import com.yahoo.bard.webservice.data.dimension.SearchProvider;
 import com.yahoo.bard.webservice.data.dimension.impl.ExtractionFunctionDimension;
 import com.yahoo.bard.webservice.druid.model.dimension.extractionfunction.ExtractionFunction;
 import com.yahoo.bard.webservice.druid.model.filter.AndFilter;
@@ -13,24 +17,50 @@ import com.yahoo.bard.webservice.druid.model.filter.Filter;
 import com.yahoo.bard.webservice.druid.model.filter.SelectorFilter;
 import com.yahoo.bard.webservice.web.ApiFilter;
 import com.yahoo.bard.webservice.web.ErrorMessageFormat;
+import com.yahoo.bard.webservice.web.FilterOperation;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableSet;
+
+import org.joda.time.DateTime;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.TreeSet;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
 /**
  * A ConjunctionDruidFilterBuilder builds a Druid filter by taking the conjunction of filter clauses, one for
  * each dimension being filtered on.
+ * <p>
+ * When the {@link BardFeatureFlag#DRUID_FILTER_RESOLUTION_CACHE} flag is on, the dimension rows matching a set of
+ * filters on a dimension are cached across requests. Entries are keyed by the dimension's last updated time, so they
+ * stop being used as soon as the dimension is marked as updated, and dimensions which have never been marked as
+ * updated are not cached at all. The cache is bounded by the total number of dimension rows it holds, set with
+ * {@code druid_filter_resolution_cache_max_rows}, so a few filters matching huge numbers of rows can't fill the heap.
  */
 public abstract class ConjunctionDruidFilterBuilder implements DruidFilterBuilder {
     private static final Logger LOG = LoggerFactory.getLogger(ConjunctionDruidFilterBuilder.class);
+    private static final SystemConfig SYSTEM_CONFIG = SystemConfigProvider.getInstance();
+
+    public static final long DRUID_FILTER_RESOLUTION_CACHE_MAX_ROWS = SYSTEM_CONFIG.getLongProperty(
+            SYSTEM_CONFIG.getPackageVariableName("druid_filter_resolution_cache_max_rows"), 1000000L
+    );
+
+    private final Cache<FilterResolutionKey, Set<DimensionRow>> filterResolutionCache = CacheBuilder.newBuilder()
+            .maximumWeight(DRUID_FILTER_RESOLUTION_CACHE_MAX_ROWS)
+            .weigher((FilterResolutionKey key, Set<DimensionRow> rows) -> Math.max(1, rows.size()))
+            .build();
 
     @Override
     public Filter buildFilters(Map<Dimension, Set<ApiFilter>> filterMap) throws DimensionRowNotFoundException {
@@ -71,17 +101,35 @@ public abstract class ConjunctionDruidFilterBuilder implements DruidFilterBuilde
 
     /**
      * Resolves a set of ApiFilters into a list of dimension rows that need to be filtered in Druid.
+     * <p>
+     * The rows returned can't be changed, since they may be shared with other requests through the filter resolution
+     * cache. Callers which need to change them must copy them first.
      *
      * @param dimension  The dimension being filtered
      * @param filters  The filters being applied to the {@code dimension}
      *
-     * @return A list of dimension rows that Druid needs to filter on
+     * @return A list of dimension rows that Druid needs to filter on, which can't be changed
      *
      * @throws DimensionRowNotFoundException if the filters filter out all dimension rows
      */
     protected Set<DimensionRow> getFilteredDimensionRows(Dimension dimension, Set<ApiFilter> filters)
             throws DimensionRowNotFoundException {
-        Set<DimensionRow> rows = dimension.getSearchProvider().findFilteredDimensionRows(filters);
+        FilterResolutionKey key = null;
+        Set<DimensionRow> rows = null;
+        if (BardFeatureFlag.DRUID_FILTER_RESOLUTION_CACHE.isOn()) {
+            DateTime lastUpdated = dimension.getLastUpdated();
+            if (lastUpdated != null) {
+                key = new FilterResolutionKey(dimension, filters, lastUpdated);
+                rows = filterResolutionCache.getIfPresent(key);
+            }
+        }
+
+        if (rows == null) {
+            rows = Collections.unmodifiableSet(findFilteredDimensionRows(dimension, filters));
+            if (key != null && !rows.isEmpty()) {
+                filterResolutionCache.put(key, rows);
+            }
+        }
 
         if (rows.isEmpty()) {
             String msg = ErrorMessageFormat.DIMENSION_ROWS_NOT_FOUND.format(dimension.getApiName(), filters);
@@ -91,6 +139,41 @@ public abstract class ConjunctionDruidFilterBuilder implements DruidFilterBuilde
         return rows;
     }
 
+    /**
+     * Find the dimension rows matching a set of filters in the dimension's search provider.
+     * <p>
+     * When every filter selects key values, and the search provider can look rows up by key without scanning them
+     * all, the rows are looked up in bulk by key rather than searched for.
+     *
+     * @param dimension  The dimension being filtered
+     * @param filters  The filters being applied to the {@code dimension}
+     *
+     * @return the dimension rows matching the filters
+     */
+    private static TreeSet<DimensionRow> findFilteredDimensionRows(Dimension dimension, Set<ApiFilter> filters) {
+        SearchProvider searchProvider = dimension.getSearchProvider();
+        if (!searchProvider.isBulkKeyLookupSupported()) {
+            return searchProvider.findFilteredDimensionRows(filters);
+        }
+        Set<String> keyValues = null;
+        for (ApiFilter filter : filters) {
+            FilterOperation operation = filter.getOperation();
+            if (!Objects.equals(dimension.getKey(), filter.getDimensionField())
+                    || (operation != FilterOperation.in && operation != FilterOperation.eq)) {
+                return searchProvider.findFilteredDimensionRows(filters);
+            }
+            if (keyValues == null) {
+                keyValues = new LinkedHashSet<>(filter.getValues());
+            } else {
+                keyValues.retainAll(filter.getValues());
+            }
+        }
+        if (keyValues == null) {
+            return searchProvider.findFilteredDimensionRows(filters);
+        }
+        return new TreeSet<>(searchProvider.findDimensionRowsByKeyValues(keyValues).values());
+    }
+
     /**
      * Builds a list of Druid selector or extraction filters.
      *
@@ -125,4 +208,52 @@ public abstract class ConjunctionDruidFilterBuilder implements DruidFilterBuilde
                     .map(row -> finalFilterBuilder.apply(row))
                     .collect(Collectors.toList());
     }
+
+    /**
+     * Drop all the cached filter resolutions.
+     */
+    public void clearFilterResolutionCache() {
+        filterResolutionCache.invalidateAll();
+    }
+
+    /**
+     * Key of a cached filter resolution: a set of filters on a dimension, as of the dimension's last update.
+     */
+    private static final class FilterResolutionKey {
+        private final Dimension dimension;
+        private final Set<ApiFilter> filters;
+        private final DateTime lastUpdated;
+
+        /**
+         * Constructor.
+         *
+         * @param dimension  The dimension being filtered
+         * @param filters  The filters being applied to the dimension
+         * @param lastUpdated  When the dimension was last updated
+         */
+        private FilterResolutionKey(Dimension dimension, Set<ApiFilter> filters, DateTime lastUpdated) {
+            this.dimension = dimension;
+            this.filters = ImmutableSet.copyOf(filters);
+            this.lastUpdated = lastUpdated;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof FilterResolutionKey)) {
+                return false;
+            }
+            FilterResolutionKey that = (FilterResolutionKey) o;
+            return dimension == that.dimension
+                    && lastUpdated.isEqual(that.lastUpdated)
+                    && filters.equals(that.filters);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(System.identityHashCode(dimension), lastUpdated.getMillis(), filters);
+        }
+    }
 }
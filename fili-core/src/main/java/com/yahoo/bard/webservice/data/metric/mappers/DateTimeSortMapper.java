@@ -2,21 +2,16 @@
 // Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
 package com.yahoo.bard.webservice.data.metric.mappers;
 
+import com.yahoo.bard.webservice.data.ColumnarResultSet;
 import com.yahoo.bard.webservice.data.Result;
 import com.yahoo.bard.webservice.data.ResultSet;
 import com.yahoo.bard.webservice.data.ResultSetSchema;
 import com.yahoo.bard.webservice.druid.model.orderby.SortDirection;
 import com.yahoo.bard.webservice.logging.RequestLog;
-
-import org.joda.time.DateTime;
+import com.yahoo.bard.webservice.util.PartialSortUtils;
 
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
-import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Map;
-import java.util.stream.Collectors;
 
 /**
  *  Mapper to sort the result set based on dateTime column sort direction.
@@ -43,33 +38,83 @@ public class DateTimeSortMapper extends ResultSetMapper {
      */
     @Override
     public ResultSet map(ResultSet resultSet) {
-
-        Map<DateTime, List<Result>> bucketizedResultsMap = new LinkedHashMap<>();
-
         RequestLog.startTiming("sortResultSet");
         try {
-            for (Result result : resultSet) {
-                bucketizedResultsMap.computeIfAbsent(result.getTimeStamp(), ignored -> new ArrayList<>()).add(result);
+            if (resultSet instanceof ColumnarResultSet) {
+                // Sort the primitive timestamps rather than bucketing Results
+                return ((ColumnarResultSet) resultSet).sortByTimestamp(direction == SortDirection.ASC);
             }
+            return selectRows(resultSet, sortedRows(resultSet, 0, resultSet.size()));
+        } finally {
+            RequestLog.stopTiming("sortResultSet");
+        }
+    }
 
-            List<DateTime> dateTimeList = new ArrayList<>(bucketizedResultsMap.keySet());
-
-            Collections.sort(dateTimeList, direction == SortDirection.ASC ?
-                    Comparator.naturalOrder() :
-                    Comparator.reverseOrder());
-
-            return new ResultSet(
-                    resultSet.getSchema(),
-                    dateTimeList.stream()
-                            .map(bucketizedResultsMap::get)
-                            .flatMap(List::stream)
-                            .collect(Collectors.toList())
-            );
+    /**
+     * Get the results which sorting the result set would put at a range of positions, without sorting the rest.
+     * <p>
+     * Rows are picked out by their epoch millisecond timestamps, so getting one page of a large result set costs time
+     * linear in its size plus sorting the page, rather than sorting the whole result set.
+     *
+     * @param resultSet  The result set to take the sorted range from
+     * @param fromIndex  The first position in sorted order to get, inclusive
+     * @param toIndex  The last position in sorted order to get, exclusive
+     *
+     * @return the results in the range, in sorted order
+     * @throws IndexOutOfBoundsException if the range isn't within the result set
+     */
+    public ResultSet mapRange(ResultSet resultSet, int fromIndex, int toIndex) {
+        RequestLog.startTiming("sortResultSet");
+        try {
+            return selectRows(resultSet, sortedRows(resultSet, fromIndex, toIndex));
         } finally {
             RequestLog.stopTiming("sortResultSet");
         }
     }
 
+    /**
+     * Get the indexes of the rows a stable sort by timestamp would put at a range of positions.
+     *
+     * @param resultSet  The result set to sort
+     * @param fromIndex  The first position in sorted order to get, inclusive
+     * @param toIndex  The last position in sorted order to get, exclusive
+     *
+     * @return the indexes of the rows in the range, in sorted order
+     */
+    private int[] sortedRows(ResultSet resultSet, int fromIndex, int toIndex) {
+        long[] timestamps = new long[resultSet.size()];
+        if (resultSet instanceof ColumnarResultSet) {
+            ColumnarResultSet columnarResultSet = (ColumnarResultSet) resultSet;
+            for (int i = 0; i < timestamps.length; i++) {
+                timestamps[i] = columnarResultSet.getTimestampMillis(i);
+            }
+        } else {
+            for (int i = 0; i < timestamps.length; i++) {
+                timestamps[i] = resultSet.get(i).getTimeStamp().getMillis();
+            }
+        }
+        return PartialSortUtils.sortedRange(timestamps, direction == SortDirection.ASC, fromIndex, toIndex);
+    }
+
+    /**
+     * Build a result set of some of the rows of another, in the given order.
+     *
+     * @param resultSet  The result set to select rows from
+     * @param rows  The indexes of the rows to select
+     *
+     * @return the result set of the selected rows, columnar if the result set selected from is
+     */
+    private static ResultSet selectRows(ResultSet resultSet, int[] rows) {
+        if (resultSet instanceof ColumnarResultSet) {
+            return ((ColumnarResultSet) resultSet).selectRows(rows);
+        }
+        List<Result> results = new ArrayList<>(rows.length);
+        for (int row : rows) {
+            results.add(resultSet.get(row));
+        }
+        return new ResultSet(resultSet.getSchema(), results);
+    }
+
     @Override
     protected Result map(Result result, ResultSetSchema schema) {
         //Not needed, because this mapper overrides map(ResultSet). So it is just a no-op.
@@ -0,0 +1,27 @@
+// Copyright 2017 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.data.metric.mappers;
+
+import com.yahoo.bard.webservice.data.MutableResult;
+import com.yahoo.bard.webservice.data.ResultSetSchema;
+
+/**
+ * A result set mapper which can map each result in place, so that a {@link RowMapperChain} can apply it along with the
+ * other mappers in the chain while making only one new result per row.
+ * <p>
+ * Mapping a result set through an in place row mapper on its own must give the same results as mapping each of its
+ * results in place, in order.
+ */
+public interface InPlaceRowMapper {
+
+    /**
+     * Map a result in place.
+     *
+     * @param result  The result being mapped, which is changed in place
+     * @param schema  The schema of the result, as this mapper is given it
+     * @param rowNum  The position of the result among the results this mapper is given, starting from 0
+     *
+     * @return false if the result is removed, true otherwise
+     */
+    boolean mapInPlace(MutableResult result, ResultSetSchema schema, int rowNum);
+}
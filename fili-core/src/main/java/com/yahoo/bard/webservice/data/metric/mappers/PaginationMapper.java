@@ -7,10 +7,14 @@ import com.yahoo.bard.webservice.data.ResultSet;
 import com.yahoo.bard.webservice.data.ResultSetSchema;
 import com.yahoo.bard.webservice.util.AllPagesPagination;
 import com.yahoo.bard.webservice.util.Pagination;
+import com.yahoo.bard.webservice.util.SinglePagePagination;
 import com.yahoo.bard.webservice.web.AbstractResponse;
 import com.yahoo.bard.webservice.web.responseprocessors.MappingResponseProcessor;
 import com.yahoo.bard.webservice.web.util.PaginationParameters;
 
+import java.util.Collections;
+import java.util.List;
+
 import javax.ws.rs.core.UriBuilder;
 
 /**
@@ -22,6 +26,7 @@ public class PaginationMapper extends ResultSetMapper {
     private final PaginationParameters paginationParameters;
     private final MappingResponseProcessor responseProcessor;
     private final UriBuilder uriBuilder;
+    private final DateTimeSortMapper dateTimeSortMapper;
 
     /**
      * Constructor.
@@ -34,10 +39,29 @@ public class PaginationMapper extends ResultSetMapper {
             PaginationParameters paginationParameters,
             MappingResponseProcessor responseProcessor,
             UriBuilder uriBuilder
+    ) {
+        this(paginationParameters, responseProcessor, uriBuilder, null);
+    }
+
+    /**
+     * Constructor for a mapper which sorts the results by time as it extracts the page, in place of a
+     * DateTimeSortMapper run just before it. Only the rows on the page are sorted.
+     *
+     * @param paginationParameters  The parameters needed for pagination
+     * @param responseProcessor  The API response to which we can add the header links.
+     * @param uriBuilder  The builder for creating the pagination links.
+     * @param dateTimeSortMapper  The time sort to apply to the results before paging, or null to page them in order
+     */
+    public PaginationMapper(
+            PaginationParameters paginationParameters,
+            MappingResponseProcessor responseProcessor,
+            UriBuilder uriBuilder,
+            DateTimeSortMapper dateTimeSortMapper
     ) {
         this.paginationParameters = paginationParameters;
         this.responseProcessor = responseProcessor;
         this.uriBuilder = uriBuilder;
+        this.dateTimeSortMapper = dateTimeSortMapper;
     }
 
     /**
@@ -51,7 +75,24 @@ public class PaginationMapper extends ResultSetMapper {
      */
     @Override
     public ResultSet map(ResultSet resultSet) {
-        Pagination<Result> pages = new AllPagesPagination<>(resultSet, paginationParameters);
+        Pagination<Result> pages;
+        if (dateTimeSortMapper == null) {
+            pages = new AllPagesPagination<>(resultSet, paginationParameters);
+        } else {
+            int perPage = paginationParameters.getPerPage();
+            int page = paginationParameters.getPage(resultSet.size());
+            int fromIndex = (page - 1) * perPage;
+            int toIndex = (int) Math.min((long) fromIndex + perPage, resultSet.size());
+            List<Result> pageOfData = fromIndex >= 0 && fromIndex < toIndex ?
+                    dateTimeSortMapper.mapRange(resultSet, fromIndex, toIndex) :
+                    Collections.emptyList();
+            // Resolve the page, since the page size can't tell a single page pagination which page is the last
+            pages = new SinglePagePagination<>(
+                    pageOfData,
+                    new PaginationParameters(perPage, page),
+                    resultSet.size()
+            );
+        }
         AbstractResponse.addLinks(pages, uriBuilder, responseProcessor);
         //uses map for additional flexibility and robustness, even though it is currently a no-op.
         return new ResultSet(map(resultSet.getSchema()), pages.getPageOfData());
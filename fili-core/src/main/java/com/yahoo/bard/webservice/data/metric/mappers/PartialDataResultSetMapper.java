@@ -2,6 +2,7 @@
 // Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
 package com.yahoo.bard.webservice.data.metric.mappers;
 
+import com.yahoo.bard.webservice.data.MutableResult;
 import com.yahoo.bard.webservice.data.Result;
 import com.yahoo.bard.webservice.data.ResultSetSchema;
 import com.yahoo.bard.webservice.data.time.TimeGrain;
@@ -9,6 +10,7 @@ import com.yahoo.bard.webservice.druid.model.query.AllGranularity;
 import com.yahoo.bard.webservice.druid.model.query.Granularity;
 import com.yahoo.bard.webservice.util.SimplifiedIntervalList;
 
+import org.joda.time.DateTime;
 import org.joda.time.Interval;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -18,13 +20,19 @@ import java.util.function.Supplier;
 
 /**
  * A mapper that removes results which overlap a missing interval set.
+ * <p>
+ * The intervals which are missing but not volatile are worked out again only when the volatile intervals change,
+ * rather than for every result.
  */
-public class PartialDataResultSetMapper extends ResultSetMapper {
+public class PartialDataResultSetMapper extends ResultSetMapper implements InPlaceRowMapper {
     private static final Logger LOG = LoggerFactory.getLogger(PartialDataResultSetMapper.class);
 
     final SimplifiedIntervalList missingIntervals;
     final Supplier<SimplifiedIntervalList> volatileIntervalSupply;
 
+    // A copy of the last volatile intervals seen, along with the missing intervals which are not volatile
+    private volatile SimplifiedIntervalList[] missingNotVolatileCache;
+
     /**
      * Build a mapper to filter results over missing intervals from a result set, retaining any that are also volatile.
      *
@@ -50,20 +58,31 @@ public class PartialDataResultSetMapper extends ResultSetMapper {
      */
     @Override
     public Result map(Result result, ResultSetSchema schema) {
-        Granularity grain = schema.getGranularity();
+        return isRemoved(result.getTimeStamp(), schema.getGranularity()) ? null : result;
+    }
+
+    @Override
+    public boolean mapInPlace(MutableResult result, ResultSetSchema schema, int rowNum) {
+        return !isRemoved(result.getTimeStamp(), schema.getGranularity());
+    }
 
+    /**
+     * Whether the bucket a result falls in is missing but not volatile.
+     *
+     * @param timeStamp  The timestamp of the result
+     * @param grain  The granularity of the results
+     *
+     * @return true if the result should be removed
+     */
+    private boolean isRemoved(DateTime timeStamp, Granularity grain) {
         if (grain.equals(AllGranularity.INSTANCE)) {
-            return ! volatileIntervalSupply.get().isEmpty() || missingIntervals.isEmpty() ?
-                    result :
-                    null;
+            return volatileIntervalSupply.get().isEmpty() && !missingIntervals.isEmpty();
         }
 
         // Currently any Granularity which isn't 'ALL' must currently be a TimeGrain
-        Interval resultInterval = new Interval(result.getTimeStamp(), ((TimeGrain) grain).getPeriod());
+        Interval resultInterval = new Interval(timeStamp, ((TimeGrain) grain).getPeriod());
 
-        return getMissingNotVolatile().stream().anyMatch((it) -> it.overlaps(resultInterval)) ?
-                null :
-                result;
+        return getMissingNotVolatile().stream().anyMatch((it) -> it.overlaps(resultInterval));
     }
 
     @Override
@@ -78,7 +97,16 @@ public class PartialDataResultSetMapper extends ResultSetMapper {
      * @return the simplified interval list of times which are to be filtered for partiality
      */
     private SimplifiedIntervalList getMissingNotVolatile() {
-        return missingIntervals.subtract(volatileIntervalSupply.get());
+        SimplifiedIntervalList volatileIntervals = volatileIntervalSupply.get();
+        SimplifiedIntervalList[] cached = missingNotVolatileCache;
+        if (cached == null || !cached[0].equals(volatileIntervals)) {
+            cached = new SimplifiedIntervalList[] {
+                    new SimplifiedIntervalList(volatileIntervals),
+                    missingIntervals.subtract(volatileIntervals)
+            };
+            missingNotVolatileCache = cached;
+        }
+        return cached[1];
     }
 
     @Override
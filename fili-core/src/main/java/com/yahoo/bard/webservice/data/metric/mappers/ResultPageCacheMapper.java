@@ -0,0 +1,72 @@
+// Copyright 2017 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.data.metric.mappers;
+
+import static com.yahoo.bard.webservice.web.handlers.PartialDataRequestHandler.getPartialIntervalsWithDefault;
+import static com.yahoo.bard.webservice.web.handlers.VolatileDataRequestHandler.getVolatileIntervalsWithDefault;
+
+import com.yahoo.bard.webservice.data.Result;
+import com.yahoo.bard.webservice.data.ResultSet;
+import com.yahoo.bard.webservice.data.ResultSetSchema;
+import com.yahoo.bard.webservice.data.cache.ResultPageCache;
+import com.yahoo.bard.webservice.web.responseprocessors.MappingResponseProcessor;
+import com.yahoo.bard.webservice.web.responseprocessors.ResponseContext;
+
+/**
+ * Caches the result set it is given, as it is, so that the other pages of a paginated request can be served from it.
+ * It should run just before the {@link PaginationMapper}.
+ * <p>
+ * Like the Druid response caches, results which refer to partial or volatile data are not cached.
+ */
+public class ResultPageCacheMapper extends ResultSetMapper {
+
+    private final ResultPageCache resultPageCache;
+    private final String cacheKey;
+    private final MappingResponseProcessor responseProcessor;
+
+    /**
+     * Constructor.
+     *
+     * @param resultPageCache  The cache to store the result set in
+     * @param cacheKey  The key to store the result set under
+     * @param responseProcessor  The API response, whose context tells whether the data is partial or volatile
+     */
+    public ResultPageCacheMapper(
+            ResultPageCache resultPageCache,
+            String cacheKey,
+            MappingResponseProcessor responseProcessor
+    ) {
+        this.resultPageCache = resultPageCache;
+        this.cacheKey = cacheKey;
+        this.responseProcessor = responseProcessor;
+    }
+
+    /**
+     * Caches the result set, unless it refers to partial or volatile data.
+     *
+     * @param resultSet  The result set to cache
+     *
+     * @return the same result set
+     */
+    @Override
+    public ResultSet map(ResultSet resultSet) {
+        ResponseContext responseContext = responseProcessor.getResponseContext();
+        if (getPartialIntervalsWithDefault(responseContext).isEmpty()
+                && getVolatileIntervalsWithDefault(responseContext).isEmpty()) {
+            resultPageCache.put(cacheKey, resultSet);
+        }
+        return resultSet;
+    }
+
+    @Override
+    protected Result map(Result result, ResultSetSchema schema) {
+        //Not needed, because this mapper overrides map(ResultSet). So it is just a no-op.
+        return result;
+    }
+
+    @Override
+    protected ResultSetSchema map(ResultSetSchema schema) {
+        //Because this method is not necessary, it just returns the schema unchanged.
+        return schema;
+    }
+}
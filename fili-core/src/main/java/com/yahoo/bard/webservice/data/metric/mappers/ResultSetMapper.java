@@ -2,6 +2,7 @@
 // Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
 package com.yahoo.bard.webservice.data.metric.mappers;
 
+import com.yahoo.bard.webservice.data.ColumnarResultSet;
 import com.yahoo.bard.webservice.data.ResultSetSchema;
 import com.yahoo.bard.webservice.data.Result;
 import com.yahoo.bard.webservice.data.ResultSet;
@@ -27,6 +28,9 @@ abstract public class ResultSetMapper {
      * @return The mapped result set
      */
     public ResultSet map(ResultSet resultSet) {
+        if (resultSet instanceof ColumnarResultSet) {
+            return mapColumnar((ColumnarResultSet) resultSet);
+        }
 
         List<Result> newResults = new ArrayList<>();
         Result newResult;
@@ -45,6 +49,30 @@ abstract public class ResultSetMapper {
         return newResultSet;
     }
 
+    /**
+     * Map a columnar result set into a new columnar result set, without holding all the mapped rows as Results.
+     *
+     * @param resultSet  The unmapped result set
+     *
+     * @return The mapped result set
+     */
+    private ResultSet mapColumnar(ColumnarResultSet resultSet) {
+        ResultSetSchema newSchema = map(resultSet.getSchema());
+        ColumnarResultSet.Builder newResults = new ColumnarResultSet.Builder(newSchema);
+
+        for (Result r: resultSet) {
+            Result newResult = map(r, resultSet.getSchema());
+            if (newResult != null) {
+                newResults.add(newResult);
+            }
+        }
+
+        ResultSet newResultSet = newResults.build();
+        LOG.trace("Mapped resultSet: {} to new resultSet {}", resultSet, newResultSet);
+
+        return newResultSet;
+    }
+
     /**
      * Returns a transformed result row, or null if the row is removed.
      *
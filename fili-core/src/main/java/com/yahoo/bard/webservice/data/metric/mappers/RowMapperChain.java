@@ -0,0 +1,231 @@
+// Copyright 2017 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.data.metric.mappers;
+
+import com.yahoo.bard.webservice.data.ColumnarResultSet;
+import com.yahoo.bard.webservice.data.MutableResult;
+import com.yahoo.bard.webservice.data.Result;
+import com.yahoo.bard.webservice.data.ResultSet;
+import com.yahoo.bard.webservice.data.ResultSetSchema;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Maps results one at a time through a chain of row local mappers, without needing the whole result set.
+ * <p>
+ * A mapper is row local if it maps each result on its own, which is the case for mappers that rely on
+ * {@link ResultSetMapper#map(ResultSet)} to walk the result set, and for {@link InPlaceRowMapper}s. Mappers that
+ * override it, such as the ones that sort, paginate or pick the top results, need the whole result set and can't be
+ * chained this way.
+ * <p>
+ * The chain is applied as one fused pass over each result: in place row mappers change the result in place, and a new
+ * result is only made when one of them changes it, or when a mapper that isn't in place needs it. A chain keeps count
+ * of the results each of its mappers has been given, so it must only be used for one result set, by one thread at a
+ * time.
+ */
+public class RowMapperChain {
+
+    private static final ClassValue<Boolean> ROW_LOCAL = new ClassValue<Boolean>() {
+        @Override
+        protected Boolean computeValue(Class<?> mapperClass) {
+            if (NoOpResultSetMapper.class.isAssignableFrom(mapperClass)
+                    || InPlaceRowMapper.class.isAssignableFrom(mapperClass)) {
+                return true;
+            }
+            try {
+                return mapperClass.getMethod("map", ResultSet.class).getDeclaringClass() == ResultSetMapper.class;
+            } catch (NoSuchMethodException e) {
+                return false;
+            }
+        }
+    };
+
+    private final List<ResultSetMapper> mappers = new ArrayList<>();
+    // The schema each mapper is given, followed by the schema of the mapped results
+    private final List<ResultSetSchema> schemas = new ArrayList<>();
+    // The number of results each mapper has been given
+    private final int[] rowNums;
+    private final MutableResult mutableResult = new MutableResult(null);
+
+    /**
+     * Constructor.
+     *
+     * @param mappers  The mappers to apply, in order. They must all be row local.
+     * @param schema  The schema of the results being mapped
+     *
+     * @throws IllegalArgumentException if any of the mappers is not row local
+     */
+    public RowMapperChain(List<ResultSetMapper> mappers, ResultSetSchema schema) {
+        schemas.add(schema);
+        for (ResultSetMapper mapper : mappers) {
+            if (!isRowLocal(mapper)) {
+                throw new IllegalArgumentException("Result set mapper " + mapper + " is not row local");
+            }
+            if (mapper instanceof NoOpResultSetMapper) {
+                continue;
+            }
+            this.mappers.add(mapper);
+            schemas.add(mapper.map(schemas.get(schemas.size() - 1)));
+        }
+        rowNums = new int[this.mappers.size()];
+    }
+
+    /**
+     * Whether a mapper maps each result on its own.
+     *
+     * @param mapper  The mapper to check
+     *
+     * @return true if the mapper is row local
+     */
+    public static boolean isRowLocal(ResultSetMapper mapper) {
+        return ROW_LOCAL.get(mapper.getClass());
+    }
+
+    /**
+     * Whether all of the mappers map each result on their own.
+     *
+     * @param mappers  The mappers to check
+     *
+     * @return true if all the mappers are row local
+     */
+    public static boolean isRowLocal(List<ResultSetMapper> mappers) {
+        return mappers.stream().allMatch(RowMapperChain::isRowLocal);
+    }
+
+    /**
+     * Get the schema of the mapped results.
+     *
+     * @return the schema after all the mappers have been applied
+     */
+    public ResultSetSchema getSchema() {
+        return schemas.get(schemas.size() - 1);
+    }
+
+    /**
+     * Map a result through all the mappers.
+     *
+     * @param result  The result to map
+     *
+     * @return the mapped result, or null if one of the mappers removed it
+     */
+    public Result map(Result result) {
+        MutableResult mapped = mutableResult.reset(result);
+        for (int i = 0; i < mappers.size(); i++) {
+            ResultSetMapper mapper = mappers.get(i);
+            if (mapper instanceof InPlaceRowMapper) {
+                if (!((InPlaceRowMapper) mapper).mapInPlace(mapped, schemas.get(i), rowNums[i]++)) {
+                    return null;
+                }
+            } else {
+                Result mappedResult = mapper.map(mapped.toResult(), schemas.get(i));
+                if (mappedResult == null) {
+                    return null;
+                }
+                mapped.reset(mappedResult);
+            }
+        }
+        return mapped.toResult();
+    }
+
+    /**
+     * Map a result set through all the mappers in one pass.
+     * <p>
+     * A columnar result set is mapped into a new columnar result set.
+     *
+     * @param resultSet  The result set to map, whose schema is the schema the chain was built for
+     *
+     * @return the mapped result set, leaving out the results removed by the mappers
+     */
+    public ResultSet map(ResultSet resultSet) {
+        if (resultSet instanceof ColumnarResultSet) {
+            ColumnarResultSet.Builder mappedResults = new ColumnarResultSet.Builder(getSchema());
+            for (Result result : resultSet) {
+                Result mapped = map(result);
+                if (mapped != null) {
+                    mappedResults.add(mapped);
+                }
+            }
+            return mappedResults.build();
+        }
+
+        List<Result> mappedResults = new ArrayList<>(resultSet.size());
+        for (Result result : resultSet) {
+            Result mapped = map(result);
+            if (mapped != null) {
+                mappedResults.add(mapped);
+            }
+        }
+        return new ResultSet(getSchema(), mappedResults);
+    }
+
+    /**
+     * Map a result set through mappers in turn, fusing each run of row local mappers into a single pass over the
+     * results.
+     *
+     * @param resultSet  The result set to map
+     * @param mappers  The mappers to apply, in order
+     *
+     * @return the mapped result set
+     */
+    public static ResultSet mapResultSet(ResultSet resultSet, List<ResultSetMapper> mappers) {
+        ResultSet mapped = resultSet;
+        List<ResultSetMapper> rowLocalMappers = new ArrayList<>();
+        for (ResultSetMapper mapper : mappers) {
+            if (isRowLocal(mapper)) {
+                rowLocalMappers.add(mapper);
+            } else {
+                mapped = mapRowLocal(mapped, rowLocalMappers);
+                rowLocalMappers.clear();
+                mapped = mapper.map(mapped);
+            }
+        }
+        return mapRowLocal(mapped, rowLocalMappers);
+    }
+
+    /**
+     * Map a result set through a run of row local mappers in one pass.
+     *
+     * @param resultSet  The result set to map
+     * @param mappers  The row local mappers to apply, in order
+     *
+     * @return the mapped result set, or the same result set if there is nothing to apply
+     */
+    private static ResultSet mapRowLocal(ResultSet resultSet, List<ResultSetMapper> mappers) {
+        RowMapperChain chain = new RowMapperChain(mappers, resultSet.getSchema());
+        return chain.mappers.isEmpty() ? resultSet : chain.map(resultSet);
+    }
+
+    /**
+     * Lazily map results through all the mappers, as they are read.
+     *
+     * @param results  The results to map
+     *
+     * @return the mapped results, leaving out the results removed by the mappers
+     */
+    public Iterator<Result> map(Iterator<Result> results) {
+        return new Iterator<Result>() {
+            private Result next;
+
+            @Override
+            public boolean hasNext() {
+                while (next == null && results.hasNext()) {
+                    next = map(results.next());
+                }
+                return next != null;
+            }
+
+            @Override
+            public Result next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                Result result = next;
+                next = null;
+                return result;
+            }
+        };
+    }
+}
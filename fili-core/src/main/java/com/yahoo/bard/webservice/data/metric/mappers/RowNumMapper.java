@@ -2,6 +2,7 @@
 // Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
 package com.yahoo.bard.webservice.data.metric.mappers;
 
+import com.yahoo.bard.webservice.data.MutableResult;
 import com.yahoo.bard.webservice.data.Result;
 import com.yahoo.bard.webservice.data.ResultSet;
 import com.yahoo.bard.webservice.data.ResultSetSchema;
@@ -18,11 +19,15 @@ import java.util.Map;
 
 /**
  * Mapper to add row numbers to each result in a result set.
+ * <p>
+ * Row numbers only depend on the position of each result, so a {@link RowMapperChain} can number the results in place
+ * as they come through the chain.
  */
-public class RowNumMapper extends ResultSetMapper {
+public class RowNumMapper extends ResultSetMapper implements InPlaceRowMapper {
 
     private static final String ROW_NUM_COLUMN_NAME = "rowNum";
     private static final Logger LOG = LoggerFactory.getLogger(RowNumMapper.class);
+    private static final MetricColumn ROW_NUM_COLUMN = new MetricColumn(ROW_NUM_COLUMN_NAME);
 
     @Override
     public ResultSet map(ResultSet resultSet) {
@@ -46,6 +51,12 @@ public class RowNumMapper extends ResultSetMapper {
         throw new UnsupportedOperationException("This code should never be reached.");
     }
 
+    @Override
+    public boolean mapInPlace(MutableResult result, ResultSetSchema schema, int rowNum) {
+        result.setMetricValue(ROW_NUM_COLUMN, BigDecimal.valueOf(rowNum));
+        return true;
+    }
+
     @Override
     protected ResultSetSchema map(ResultSetSchema schema) {
         return schema.withAddColumn(new MetricColumn(ROW_NUM_COLUMN_NAME));
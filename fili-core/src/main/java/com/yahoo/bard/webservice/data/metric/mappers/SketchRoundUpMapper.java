@@ -2,6 +2,7 @@
 // Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
 package com.yahoo.bard.webservice.data.metric.mappers;
 
+import com.yahoo.bard.webservice.data.MutableResult;
 import com.yahoo.bard.webservice.data.metric.MetricColumn;
 import com.yahoo.bard.webservice.data.ResultSetSchema;
 import com.yahoo.bard.webservice.data.Result;
@@ -15,7 +16,7 @@ import java.util.Objects;
  * Mapper to round floating point values to their ceiling. If a metric is null, the original result is passed along
  * unmodified.
  */
-public class SketchRoundUpMapper extends ResultSetMapper implements ColumnMapper {
+public class SketchRoundUpMapper extends ResultSetMapper implements ColumnMapper, InPlaceRowMapper {
 
     String columnName;
 
@@ -39,6 +40,13 @@ public class SketchRoundUpMapper extends ResultSetMapper implements ColumnMapper
 
     @Override
     protected Result map(Result result, ResultSetSchema schema) {
+        MutableResult mutableResult = new MutableResult(result);
+        mapInPlace(mutableResult, schema, 0);
+        return mutableResult.toResult();
+    }
+
+    @Override
+    public boolean mapInPlace(MutableResult result, ResultSetSchema schema, int rowNum) {
         if (columnName == null) {
             throw new IllegalStateException("Cannot map results without a column name");
         }
@@ -49,10 +57,13 @@ public class SketchRoundUpMapper extends ResultSetMapper implements ColumnMapper
 
         BigDecimal value = result.getMetricValueAsNumber(metricColumn);
         if (value == null) {
-            return result;
+            return true;
         }
         BigDecimal newValue = value.setScale(0, RoundingMode.CEILING);
-        return result.withMetricValue(metricColumn, newValue);
+        if (!newValue.equals(value)) {
+            result.setMetricValue(metricColumn, newValue);
+        }
+        return true;
     }
 
     @Override
@@ -2,6 +2,7 @@
 // Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
 package com.yahoo.bard.webservice.data.metric.mappers;
 
+import com.yahoo.bard.webservice.data.ColumnarResultSet;
 import com.yahoo.bard.webservice.data.ResultSetSchema;
 import com.yahoo.bard.webservice.data.Result;
 import com.yahoo.bard.webservice.data.ResultSet;
@@ -9,6 +10,7 @@ import com.yahoo.bard.webservice.data.ResultSet;
 import org.joda.time.DateTime;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.function.Consumer;
 
@@ -29,12 +31,37 @@ public class TopNResultSetMapper extends ResultSetMapper {
 
     @Override
     public ResultSet map(ResultSet resultSet) {
+        if (resultSet instanceof ColumnarResultSet) {
+            return mapColumnar((ColumnarResultSet) resultSet);
+        }
         // TODO: Use only native stream operations in RxJava: GroupByTime -> Sort -> Take N -> Concat streams by time
         TopNAccumulator acc = new TopNAccumulator();
         resultSet.stream().forEachOrdered(acc);
         return new ResultSet(resultSet.getSchema(), acc.data);
     }
 
+    /**
+     * Prunes a columnar result set to at most top N rows per time bucket, reading only the row timestamps.
+     *
+     * @param resultSet  The result set to prune
+     *
+     * @return A result set sharing the columns of the original, holding only the top N rows of each bucket
+     */
+    private ResultSet mapColumnar(ColumnarResultSet resultSet) {
+        int[] selectedRows = new int[resultSet.size()];
+        int selected = 0;
+        int filledBuckets = 0;
+        for (int row = 0; row < resultSet.size(); row++) {
+            if (row == 0 || resultSet.getTimestampMillis(row) != resultSet.getTimestampMillis(row - 1)) {
+                filledBuckets = 0;
+            }
+            if (filledBuckets++ < topN) {
+                selectedRows[selected++] = row;
+            }
+        }
+        return resultSet.selectRows(Arrays.copyOf(selectedRows, selected));
+    }
+
     @Override
     protected Result map(Result result, ResultSetSchema schema) {
         return result;
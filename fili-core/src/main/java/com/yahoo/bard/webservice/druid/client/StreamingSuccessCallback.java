@@ -0,0 +1,25 @@
+// Copyright 2017 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.druid.client;
+
+import com.fasterxml.jackson.core.JsonParser;
+
+/**
+ * Callback from the async HTTP client on success, which consumes the response body as a stream of JSON tokens rather
+ * than as a tree.
+ * <p>
+ * Web services that support streaming hand the callback a parser over the response body instead of building a
+ * JsonNode first. Web services that don't fall back to the JsonNode based {@link SuccessCallback#invoke}, so
+ * implementations must support both.
+ * <p>
+ * A callback which returns normally owns the parser and must close it, possibly after it has returned, once it is done
+ * reading. If the callback throws, the web service closes the parser.
+ */
+public interface StreamingSuccessCallback extends SuccessCallback {
+    /**
+     * Invoke the success callback code on a streamed response.
+     *
+     * @param parser  Parser over the response body, positioned before its first token
+     */
+    void invoke(JsonParser parser);
+}
@@ -12,6 +12,7 @@ import com.yahoo.bard.webservice.druid.client.DruidServiceConfig;
 import com.yahoo.bard.webservice.druid.client.DruidWebService;
 import com.yahoo.bard.webservice.druid.client.FailureCallback;
 import com.yahoo.bard.webservice.druid.client.HttpErrorCallback;
+import com.yahoo.bard.webservice.druid.client.StreamingSuccessCallback;
 import com.yahoo.bard.webservice.druid.client.SuccessCallback;
 import com.yahoo.bard.webservice.druid.model.query.DruidQuery;
 import com.yahoo.bard.webservice.druid.model.query.WeightEvaluationQuery;
@@ -22,6 +23,8 @@ import com.yahoo.bard.webservice.web.handlers.RequestContext;
 
 import com.codahale.metrics.Meter;
 import com.codahale.metrics.MetricRegistry;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.MappingJsonFactory;
@@ -83,6 +86,11 @@ public class AsyncDruidWebServiceImpl implements DruidWebService {
         }
     };
 
+    /**
+     * Shared factory for the parsers handed to streaming success callbacks.
+     */
+    private static final JsonFactory STREAMING_JSON_FACTORY = new MappingJsonFactory();
+
     private final Supplier<Map<String, String>> headersToAppend;
     private final DruidServiceConfig serviceConfig;
 
@@ -287,7 +295,7 @@ public class AsyncDruidWebServiceImpl implements DruidWebService {
                             markError(status, response, druidQueryId, error);
                         } else {
                             try {
-                                success.invoke(jsonNodeBuilderStrategy.apply(response));
+                                invokeSuccess(success, response);
                             } catch (RuntimeException e) {
                                 failure.invoke(e);
                             }
@@ -322,6 +330,50 @@ public class AsyncDruidWebServiceImpl implements DruidWebService {
         }
     }
 
+    /**
+     * Hand a successful response to the success callback.
+     * <p>
+     * Streaming callbacks get a parser over the response body, unless a custom JSON node builder strategy is in use,
+     * since the strategy may reshape the response (e.g. nest headers into it). All other callbacks get the JsonNode
+     * built by the strategy. Streaming callbacks which return normally own the parser and close it themselves.
+     *
+     * @param success  callback for handling successful requests.
+     * @param response  The successful druid response
+     */
+    protected void invokeSuccess(SuccessCallback success, Response response) {
+        if (success instanceof StreamingSuccessCallback
+                && jsonNodeBuilderStrategy == DEFAULT_JSON_NODE_BUILDER_STRATEGY) {
+            JsonParser parser;
+            try {
+                parser = STREAMING_JSON_FACTORY.createParser(response.getResponseBodyAsStream());
+            } catch (IOException ioe) {
+                throw new IllegalStateException(ioe);
+            }
+            try {
+                ((StreamingSuccessCallback) success).invoke(parser);
+            } catch (RuntimeException e) {
+                // The callback owns the parser once it returns, but not if it fails
+                closeQuietly(parser);
+                throw e;
+            }
+        } else {
+            success.invoke(jsonNodeBuilderStrategy.apply(response));
+        }
+    }
+
+    /**
+     * Close a parser, logging rather than throwing any failure to close it.
+     *
+     * @param parser  The parser to close
+     */
+    private static void closeQuietly(JsonParser parser) {
+        try {
+            parser.close();
+        } catch (IOException e) {
+            LOG.warn("Failed to close druid response parser", e);
+        }
+    }
+
     @Override
     public Future<Response> getJsonObject(
             SuccessCallback success,
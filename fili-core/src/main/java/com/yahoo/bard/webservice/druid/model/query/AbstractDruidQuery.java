@@ -24,6 +24,11 @@ public abstract class AbstractDruidQuery<Q extends AbstractDruidQuery<? super Q>
     @JsonInclude(JsonInclude.Include.NON_NULL)
     protected final QueryContext context;
 
+    /**
+     * Memoized {@link CanonicalQueryHash} of this query, null until first computed.
+     */
+    volatile String canonicalHash;
+
     /**
      * Constructor.
      *
@@ -0,0 +1,108 @@
+// Copyright 2017 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.druid.model.query;
+
+import com.yahoo.bard.webservice.application.ObjectMappersSuite;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.google.common.hash.Funnels;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Canonical hash of the structure of a Druid query, used to key cached Druid responses.
+ * <p>
+ * The hash covers everything Druid would be sent except the query context (at every level of nesting), so queries
+ * which differ only by query id, timeout or other context settings hash the same. The query is streamed through its
+ * serializers straight into the hash function, without building a JSON tree or a JSON string, and the hash is
+ * memoized on the (immutable) query so hashing the same query object again is free.
+ * <p>
+ * The hash is SHA-256, so that the hash alone can safely stand in for the whole query as a cache key.
+ */
+public final class CanonicalQueryHash {
+
+    // A cryptographic hash, since cache entries are looked up by the hash alone and the filter values that go into it
+    // come from users, who must not be able to build a query colliding with another one to read or poison its entry
+    private static final HashFunction HASH_FUNCTION = Hashing.sha256();
+
+    private static final ObjectWriter WRITER;
+
+    static {
+        ObjectMapper mapper = new ObjectMappersSuite().getMapper().copy();
+        mapper.addMixIn(AbstractDruidQuery.class, ContextFreeQuery.class);
+        WRITER = mapper.writer();
+    }
+
+    /**
+     * Private constructor - all methods static.
+     */
+    private CanonicalQueryHash() {
+        // Intentionally left blank.
+    }
+
+    /**
+     * Get the canonical hash of a query, computing it if it has not been computed for this query object yet.
+     *
+     * @param query  The query to hash
+     *
+     * @return the hash of the query, as a hex string
+     *
+     * @throws JsonProcessingException if the query cannot be serialized
+     */
+    public static String of(DruidQuery<?> query) throws JsonProcessingException {
+        if (!(query instanceof AbstractDruidQuery)) {
+            return compute(query);
+        }
+        AbstractDruidQuery<?> abstractQuery = (AbstractDruidQuery<?>) query;
+        String hash = abstractQuery.canonicalHash;
+        if (hash == null) {
+            // Racing threads compute the same value, so there's no need to synchronize
+            hash = compute(query);
+            abstractQuery.canonicalHash = hash;
+        }
+        return hash;
+    }
+
+    /**
+     * Compute the canonical hash of a query, ignoring any memoized value.
+     *
+     * @param query  The query to hash
+     *
+     * @return the hash of the query, as a hex string
+     *
+     * @throws JsonProcessingException if the query cannot be serialized
+     */
+    public static String compute(DruidQuery<?> query) throws JsonProcessingException {
+        Hasher hasher = HASH_FUNCTION.newHasher();
+        try (OutputStream sink = Funnels.asOutputStream(hasher)) {
+            WRITER.writeValue(sink, query);
+        } catch (JsonProcessingException e) {
+            throw e;
+        } catch (IOException e) {
+            // The hashing sink never does any I/O
+            throw new IllegalStateException(e);
+        }
+        return hasher.hash().toString();
+    }
+
+    /**
+     * Mix-in dropping the context from serialized queries.
+     */
+    private abstract static class ContextFreeQuery {
+
+        /**
+         * Ignored query context.
+         *
+         * @return the context
+         */
+        @JsonIgnore
+        public abstract QueryContext getContext();
+    }
+}
@@ -0,0 +1,32 @@
+// Copyright 2017 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.logging;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+/**
+ * Log information about which endpoint served a request, and for which logical table, used to tag the metrics of the
+ * request's timed phases.
+ */
+public interface EndpointLogInfo extends LogInfo {
+
+    /**
+     * Get the endpoint which served the request.
+     *
+     * @return the name of the endpoint
+     */
+    @JsonIgnore
+    String getEndpoint();
+
+    /**
+     * Get the logical table the request was for.
+     * The default implementation returns null, for requests which aren't for a logical table. Only return a table which
+     * has been resolved, since every distinct value gets its own histograms.
+     *
+     * @return the name of the logical table, or null if there isn't one
+     */
+    @JsonIgnore
+    default String getLogicalTable() {
+        return null;
+    }
+}
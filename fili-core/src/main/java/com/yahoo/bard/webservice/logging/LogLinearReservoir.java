@@ -0,0 +1,251 @@
+// Copyright 2017 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.logging;
+
+import com.codahale.metrics.Clock;
+import com.codahale.metrics.Reservoir;
+import com.codahale.metrics.Snapshot;
+
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A reservoir which counts values in log-linear buckets, in the manner of an HDR histogram, over a rolling window.
+ * <p>
+ * Each power of two range of values is split into 32 equal buckets, so the value reported for a bucket is within
+ * about 3% of the values counted in it, whatever their magnitude. Recording a value is one atomic increment, without
+ * locks or allocation. The snapshot covers the values recorded in the current and the previous window, so between
+ * one and two window lengths of values.
+ */
+public class LogLinearReservoir implements Reservoir {
+
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    // Values below twice the sub bucket count each get their own bucket, then each power of two gets SUB_BUCKETS
+    private static final int BUCKETS = SUB_BUCKETS * (Long.SIZE - SUB_BUCKET_BITS);
+
+    private final Clock clock;
+    private final long windowNanos;
+    private final AtomicLong nextRotation;
+
+    private volatile AtomicLongArray current;
+    private volatile AtomicLongArray previous;
+
+    /**
+     * Constructor.
+     *
+     * @param window  The length of the window, after which values start to fall out of the snapshot
+     * @param windowUnit  The unit of the window length
+     */
+    public LogLinearReservoir(long window, TimeUnit windowUnit) {
+        this(window, windowUnit, Clock.defaultClock());
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param window  The length of the window, after which values start to fall out of the snapshot
+     * @param windowUnit  The unit of the window length
+     * @param clock  The clock used to tell when the window ends
+     */
+    public LogLinearReservoir(long window, TimeUnit windowUnit, Clock clock) {
+        this.clock = clock;
+        this.windowNanos = windowUnit.toNanos(window);
+        this.nextRotation = new AtomicLong(clock.getTick() + windowNanos);
+        this.current = new AtomicLongArray(BUCKETS);
+        this.previous = new AtomicLongArray(BUCKETS);
+    }
+
+    @Override
+    public int size() {
+        return getSnapshot().size();
+    }
+
+    @Override
+    public void update(long value) {
+        rotate();
+        current.incrementAndGet(bucketOf(value));
+    }
+
+    @Override
+    public Snapshot getSnapshot() {
+        rotate();
+        AtomicLongArray currentCounts = current;
+        AtomicLongArray previousCounts = previous;
+        long[] counts = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = currentCounts.get(i) + previousCounts.get(i);
+        }
+        return new BucketSnapshot(counts);
+    }
+
+    /**
+     * Start a new window if the current one has ended.
+     * <p>
+     * Only the thread which moves the end of the window on swaps the buckets, so no lock is needed. A value recorded
+     * while the buckets are being swapped may land in the previous window.
+     */
+    private void rotate() {
+        long now = clock.getTick();
+        long rotation = nextRotation.get();
+        if (now < rotation || !nextRotation.compareAndSet(rotation, now + windowNanos)) {
+            return;
+        }
+        // If more than a whole window has passed, nothing recorded so far is recent enough to keep
+        previous = now - rotation < windowNanos ? current : new AtomicLongArray(BUCKETS);
+        current = new AtomicLongArray(BUCKETS);
+    }
+
+    /**
+     * Get the bucket a value is counted in.
+     *
+     * @param value  The value
+     *
+     * @return the index of the bucket
+     */
+    static int bucketOf(long value) {
+        if (value < 2 * SUB_BUCKETS) {
+            return (int) Math.max(value, 0);
+        }
+        int shift = Long.SIZE - 1 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return SUB_BUCKETS * (shift + 1) + (int) (value >>> shift) - SUB_BUCKETS;
+    }
+
+    /**
+     * Get the value reported for the values counted in a bucket, which is the middle of its range.
+     *
+     * @param bucket  The index of the bucket
+     *
+     * @return the value of the bucket
+     */
+    static long valueOf(int bucket) {
+        if (bucket < 2 * SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = bucket / SUB_BUCKETS - 1;
+        long lowest = (long) (bucket % SUB_BUCKETS + SUB_BUCKETS) << shift;
+        return lowest + ((1L << shift) >> 1);
+    }
+
+    /**
+     * A snapshot of the bucket counts of a reservoir.
+     */
+    private static class BucketSnapshot extends Snapshot {
+
+        private final long[] counts;
+        private final long size;
+
+        /**
+         * Constructor.
+         *
+         * @param counts  The number of values counted in each bucket, which the snapshot takes ownership of
+         */
+        BucketSnapshot(long[] counts) {
+            this.counts = counts;
+            long total = 0;
+            for (long count : counts) {
+                total += count;
+            }
+            this.size = total;
+        }
+
+        @Override
+        public double getValue(double quantile) {
+            if (quantile < 0.0 || quantile > 1.0 || Double.isNaN(quantile)) {
+                throw new IllegalArgumentException(quantile + " is not in [0..1]");
+            }
+            if (size == 0) {
+                return 0.0;
+            }
+            // The rank of the value at the quantile, counting from 1
+            long rank = Math.max(1, (long) Math.ceil(quantile * size));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return valueOf(i);
+                }
+            }
+            return getMax();
+        }
+
+        @Override
+        public long[] getValues() {
+            long[] values = new long[(int) Math.min(size, Integer.MAX_VALUE - 8)];
+            int index = 0;
+            for (int i = 0; i < counts.length && index < values.length; i++) {
+                for (long n = 0; n < counts[i] && index < values.length; n++) {
+                    values[index++] = valueOf(i);
+                }
+            }
+            return values;
+        }
+
+        @Override
+        public int size() {
+            return (int) Math.min(size, Integer.MAX_VALUE);
+        }
+
+        @Override
+        public long getMax() {
+            for (int i = counts.length - 1; i >= 0; i--) {
+                if (counts[i] > 0) {
+                    return valueOf(i);
+                }
+            }
+            return 0;
+        }
+
+        @Override
+        public double getMean() {
+            if (size == 0) {
+                return 0.0;
+            }
+            double sum = 0;
+            for (int i = 0; i < counts.length; i++) {
+                sum += (double) counts[i] * valueOf(i);
+            }
+            return sum / size;
+        }
+
+        @Override
+        public long getMin() {
+            for (int i = 0; i < counts.length; i++) {
+                if (counts[i] > 0) {
+                    return valueOf(i);
+                }
+            }
+            return 0;
+        }
+
+        @Override
+        public double getStdDev() {
+            if (size <= 1) {
+                return 0.0;
+            }
+            double mean = getMean();
+            double sum = 0;
+            for (int i = 0; i < counts.length; i++) {
+                double difference = valueOf(i) - mean;
+                sum += counts[i] * difference * difference;
+            }
+            return Math.sqrt(sum / (size - 1));
+        }
+
+        @Override
+        public void dump(OutputStream output) {
+            try (PrintWriter out = new PrintWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8))) {
+                for (int i = 0; i < counts.length; i++) {
+                    for (long n = 0; n < counts[i]; n++) {
+                        out.printf("%d%n", valueOf(i));
+                    }
+                }
+            }
+        }
+    }
+}
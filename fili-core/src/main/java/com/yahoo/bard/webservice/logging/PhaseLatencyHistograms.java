@@ -0,0 +1,192 @@
+// Copyright 2017 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.logging;
+
+import com.yahoo.bard.webservice.config.SystemConfig;
+import com.yahoo.bard.webservice.config.SystemConfigProvider;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Records the durations of the timed phases of requests into latency histograms in a metric registry, tagged by the
+ * endpoint which served the request and the logical table it was for.
+ * <p>
+ * Each phase gets a timer named {@code phase.<phase name>.<endpoint>.<logical table>}, backed by a
+ * {@link LogLinearReservoir}, so that recording a duration is cheap and the percentiles cover a recent window. The
+ * configured percentiles are also registered as gauges named after the timer with a {@code .p<percentile>} suffix, such
+ * as {@code .p99} or {@code .p99.9}, which report milliseconds. Phases numbered by a trailing sequence number, such as
+ * the timers of the individual Druid queries of a request, share the histogram of the phase name without the number.
+ * <p>
+ * At most {@code phase_latency_histogram_max_timers} timers are registered. Once that many exist, durations for new
+ * names are recorded into the shared {@code phase.unknown} timer instead, so unexpected tags can't grow the registry
+ * without bound.
+ */
+public class PhaseLatencyHistograms {
+
+    private static final SystemConfig SYSTEM_CONFIG = SystemConfigProvider.getInstance();
+
+    public static final String PHASE_METRIC_PREFIX = "phase";
+    public static final String UNKNOWN_ENDPOINT = "unknown";
+    public static final String OVERFLOW_METRIC_NAME = MetricRegistry.name(PHASE_METRIC_PREFIX, "unknown");
+
+    public static final long PHASE_LATENCY_WINDOW_SECONDS = SYSTEM_CONFIG.getLongProperty(
+            SYSTEM_CONFIG.getPackageVariableName("phase_latency_histogram_window_seconds"), 60L
+    );
+    public static final List<Double> PHASE_LATENCY_PERCENTILES = SYSTEM_CONFIG.<Object>getListProperty(
+            SYSTEM_CONFIG.getPackageVariableName("phase_latency_histogram_percentiles"),
+            Arrays.<Object>asList("0.5", "0.9", "0.99", "0.999")
+    ).stream()
+            .map(percentile -> Double.valueOf(String.valueOf(percentile).trim()))
+            .collect(Collectors.toList());
+    public static final int PHASE_LATENCY_MAX_TIMERS = SYSTEM_CONFIG.getIntProperty(
+            SYSTEM_CONFIG.getPackageVariableName("phase_latency_histogram_max_timers"), 1000
+    );
+
+    private static final double NS_PER_MS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final MetricRegistry registry;
+    private final long window;
+    private final TimeUnit windowUnit;
+    private final List<Double> percentiles;
+    private final int maxTimers;
+    private final ConcurrentMap<String, Timer> timers;
+
+    /**
+     * Constructor using the configured window, percentiles and maximum number of timers.
+     *
+     * @param registry  The registry to record the histograms in
+     */
+    public PhaseLatencyHistograms(MetricRegistry registry) {
+        this(
+                registry,
+                PHASE_LATENCY_WINDOW_SECONDS,
+                TimeUnit.SECONDS,
+                PHASE_LATENCY_PERCENTILES,
+                PHASE_LATENCY_MAX_TIMERS
+        );
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param registry  The registry to record the histograms in
+     * @param window  How long durations stay in the histograms, at least
+     * @param windowUnit  The unit of the window
+     * @param percentiles  The percentiles to register gauges for, as fractions between 0 and 1
+     * @param maxTimers  How many timers to register at most, besides the shared timer for the durations beyond that
+     *
+     * @throws IllegalArgumentException if a percentile isn't between 0 and 1
+     */
+    public PhaseLatencyHistograms(
+            MetricRegistry registry,
+            long window,
+            TimeUnit windowUnit,
+            List<Double> percentiles,
+            int maxTimers
+    ) {
+        for (Double percentile : percentiles) {
+            if (percentile < 0.0 || percentile > 1.0) {
+                throw new IllegalArgumentException(percentile + " is not a percentile between 0 and 1");
+            }
+        }
+        this.registry = registry;
+        this.window = window;
+        this.windowUnit = windowUnit;
+        this.percentiles = percentiles;
+        this.maxTimers = maxTimers;
+        this.timers = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Record the durations of the phases of a request.
+     *
+     * @param endpoint  The endpoint which served the request, or null if it isn't known
+     * @param logicalTable  The logical table the request was for, or null if there isn't one
+     * @param durations  The duration of each phase, in nanoseconds, by phase name
+     */
+    public void record(String endpoint, String logicalTable, Map<String, Long> durations) {
+        String tags = MetricRegistry.name(
+                endpoint == null ? UNKNOWN_ENDPOINT : sanitize(endpoint),
+                logicalTable == null ? null : sanitize(logicalTable)
+        );
+        for (Map.Entry<String, Long> duration : durations.entrySet()) {
+            String name = MetricRegistry.name(PHASE_METRIC_PREFIX, withoutSequenceNumber(duration.getKey()), tags);
+            getTimer(name).update(duration.getValue(), TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Get the timer of a name, registering it if there is still room, or the shared overflow timer if there isn't.
+     *
+     * @param name  The name of the timer
+     *
+     * @return the timer to record into
+     */
+    private Timer getTimer(String name) {
+        Timer timer = timers.get(name);
+        if (timer != null) {
+            return timer;
+        }
+        // Concurrent registrations may overshoot the limit by a few timers, which is fine for a bound on memory
+        return timers.computeIfAbsent(timers.size() < maxTimers ? name : OVERFLOW_METRIC_NAME, this::register);
+    }
+
+    /**
+     * Register the timer for a phase, and the gauges of its percentiles, or get the timer if it is already registered.
+     *
+     * @param name  The name of the timer
+     *
+     * @return the timer
+     */
+    private Timer register(String name) {
+        Metric existing = registry.getMetrics().get(name);
+        if (existing instanceof Timer) {
+            return (Timer) existing;
+        }
+        Timer timer = registry.register(name, new Timer(new LogLinearReservoir(window, windowUnit)));
+        for (Double percentile : percentiles) {
+            String gaugeName = name + ".p" +
+                    BigDecimal.valueOf(percentile).movePointRight(2).stripTrailingZeros().toPlainString();
+            registry.register(gaugeName, (Gauge<Double>) () -> timer.getSnapshot().getValue(percentile) / NS_PER_MS);
+        }
+        return timer;
+    }
+
+    /**
+     * Drop the trailing sequence number of a phase name, if it has one.
+     *
+     * @param phaseName  The name of the phase
+     *
+     * @return the name without its sequence number
+     */
+    private static String withoutSequenceNumber(String phaseName) {
+        int end = phaseName.length();
+        while (end > 0 && Character.isDigit(phaseName.charAt(end - 1))) {
+            end--;
+        }
+        return end == 0 ? phaseName : phaseName.substring(0, end);
+    }
+
+    /**
+     * Replace whitespace in a tag, so that it reads as one part of a metric name.
+     *
+     * @param tag  The tag
+     *
+     * @return the tag without whitespace
+     */
+    private static String sanitize(String tag) {
+        return tag.trim().replaceAll("\\s+", "_");
+    }
+}
@@ -2,6 +2,7 @@
 // Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
 package com.yahoo.bard.webservice.logging;
 
+import static com.yahoo.bard.webservice.config.BardFeatureFlag.PHASE_LATENCY_HISTOGRAMS;
 import static com.yahoo.bard.webservice.druid.client.impl.AsyncDruidWebServiceImpl.DRUID_QUERY_ALL_TIMER;
 import static com.yahoo.bard.webservice.druid.client.impl.AsyncDruidWebServiceImpl.DRUID_QUERY_MAX_TIMER;
 import static com.yahoo.bard.webservice.druid.client.impl.AsyncDruidWebServiceImpl.DRUID_QUERY_TIMER;
@@ -23,14 +24,15 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.slf4j.MDC;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.OptionalLong;
-import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
@@ -38,6 +40,12 @@ import java.util.stream.Collectors;
 /**
  * Represents the logging framework that provides timing capabilities of arbitrary phases on the handling lifecycle of a
  * request and accumulation of information for such a request in a single mega log line.
+ * <p>
+ * The timed phases and thread names of a request are kept in immutable, append only trails which are shared rather
+ * than copied when the request log is handed between threads: {@link #dump()}, {@link #copy()} and
+ * {@link #restore(RequestLog)} take constant time, and {@link #accumulate(RequestLog)} only visits what the other
+ * context added since the two were restored from the same log. A dumped request log can be passed to any thread,
+ * callback or reactive context and restored there without locking.
  */
 public class RequestLog {
 
@@ -47,6 +55,7 @@ public class RequestLog {
     private static final String ID_KEY = "logid";
     private static final long MS_PER_NS = 1000000;
     private static final MetricRegistry REGISTRY = MetricRegistryFactory.getRegistry();
+    private static final PhaseLatencyHistograms PHASE_HISTOGRAMS = new PhaseLatencyHistograms(REGISTRY);
     private static final ThreadLocal<RequestLog> RLOG = ThreadLocal.withInitial(RequestLog::new);
     private static final String LOGINFO_ORDER_STRING = SYSTEM_CONFIG.getStringProperty(
             SYSTEM_CONFIG.getPackageVariableName("requestlog_loginfo_order"), ""
@@ -57,8 +66,13 @@ public class RequestLog {
     private LogBlock info;
     @Deprecated
     private TimedPhase mostRecentTimer;
-    private final Map<String, TimedPhase> times;
-    private final Set<String> threadIds;
+    // Newest first. A phase may appear more than once, in which case the newest record is the current one
+    private Trail<TimedPhase> times;
+    // Newest first, without duplicates
+    private Trail<String> threadIds;
+    // The trails of the request log this one was restored from, which the logs restored from it share
+    private Trail<TimedPhase> restoredTimes;
+    private Trail<String> restoredThreadIds;
 
     /**
      * This class has only static methods and is not supposed to be directly instantiated.
@@ -67,13 +81,15 @@ public class RequestLog {
         logId = null;
         info = null;
         mostRecentTimer = null;
-        times = new LinkedHashMap<>();
-        threadIds = new LinkedHashSet<>();
+        times = null;
+        threadIds = null;
+        restoredTimes = null;
+        restoredThreadIds = null;
         MDC.remove(ID_KEY);
     }
 
     /**
-     * Copy constructor is also private.
+     * Copy constructor is also private. The copy shares the trails of the request log it copies.
      *
      * @param  rl request log object to copy from
      */
@@ -81,8 +97,10 @@ public class RequestLog {
         logId = rl.logId;
         info = rl.info;
         mostRecentTimer = rl.mostRecentTimer;
-        times = new LinkedHashMap<>(rl.times);
-        threadIds = new LinkedHashSet<>(rl.threadIds);
+        times = rl.times;
+        threadIds = rl.threadIds;
+        restoredTimes = rl.restoredTimes;
+        restoredThreadIds = rl.restoredThreadIds;
         MDC.put(ID_KEY, logId);
     }
 
@@ -93,11 +111,56 @@ public class RequestLog {
         logId = null;
         info = null;
         mostRecentTimer = null;
-        times.clear();
-        threadIds.clear();
+        times = null;
+        threadIds = null;
+        restoredTimes = null;
+        restoredThreadIds = null;
         MDC.remove(ID_KEY);
     }
 
+    /**
+     * Find the current phase with a name.
+     *
+     * @param timePhaseName  The name of the phase
+     *
+     * @return the phase, or null if there is no phase with that name
+     */
+    private TimedPhase findTime(String timePhaseName) {
+        for (Trail<TimedPhase> record = times; record != null; record = record.previous) {
+            if (record.value.getName().equals(timePhaseName)) {
+                return record.value;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Add a thread name, unless it has already been added.
+     *
+     * @param threadName  The name of the thread
+     */
+    private void addThreadId(String threadName) {
+        for (Trail<String> record = threadIds; record != null; record = record.previous) {
+            if (record.value.equals(threadName)) {
+                return;
+            }
+        }
+        threadIds = new Trail<>(threadName, threadIds);
+    }
+
+    /**
+     * Get the current phases, by name, in the order they were first added.
+     *
+     * @return the phases
+     */
+    private Map<String, TimedPhase> getTimes() {
+        Map<String, TimedPhase> currentTimes = new LinkedHashMap<>();
+        for (TimedPhase phase : Trail.toList(times, null)) {
+            currentTimes.put(phase.getName(), phase);
+        }
+        return currentTimes;
+    }
+
     /**
      * Creates a new and empty request log at the calling thread.
      */
@@ -121,9 +184,10 @@ public class RequestLog {
                     }
                 }
         );
-        times.clear();
-        threadIds.clear();
-        threadIds.add(Thread.currentThread().getName());
+        times = null;
+        threadIds = new Trail<>(Thread.currentThread().getName(), null);
+        restoredTimes = null;
+        restoredThreadIds = null;
         MDC.put(ID_KEY, logId);
     }
 
@@ -143,7 +207,8 @@ public class RequestLog {
      * @return the map containing all the recorded times per phase in milliseconds
      */
     private Map<String, Long> durations() {
-        return times.values().stream().collect(Collectors.toMap(TimedPhase::getName, TimedPhase::getDuration));
+        return getTimes().values().stream()
+                .collect(Collectors.toMap(TimedPhase::getName, TimedPhase::getDuration));
     }
 
     /**
@@ -200,7 +265,7 @@ public class RequestLog {
      */
     public static boolean isRunning(String timePhaseName) {
         RequestLog current = RLOG.get();
-        TimedPhase timePhase = current.times.get(timePhaseName);
+        TimedPhase timePhase = current.findTime(timePhaseName);
         return timePhase != null && timePhase.isRunning();
     }
 
@@ -226,7 +291,7 @@ public class RequestLog {
      */
     public static TimedPhase startTiming(String timePhaseName) {
         RequestLog current = RLOG.get();
-        TimedPhase timePhase = current.times.get(timePhaseName);
+        TimedPhase timePhase = current.findTime(timePhaseName);
         if (timePhase == null) {
             // If it was the first phase in general, create logging context as well
             if (current.info == null) {
@@ -234,7 +299,7 @@ public class RequestLog {
             }
 
             timePhase = new TimedPhase(timePhaseName);
-            current.times.put(timePhaseName, timePhase);
+            current.times = new Trail<>(timePhase, current.times);
         }
         current.mostRecentTimer = timePhase;
         return timePhase.start();
@@ -280,7 +345,7 @@ public class RequestLog {
      * @param timePhaseName  the name of this stopwatch
      */
     public static void stopTiming(String timePhaseName) {
-        TimedPhase timePhase = RLOG.get().times.get(timePhaseName);
+        TimedPhase timePhase = RLOG.get().findTime(timePhaseName);
         if (timePhase == null) {
             LOG.warn("Tried to stop non-existent phase: {}", timePhaseName);
             return;
@@ -361,20 +426,41 @@ public class RequestLog {
             return;
         }
         LOG.info(export());
+        if (PHASE_LATENCY_HISTOGRAMS.isOn()) {
+            current.recordPhaseLatencies();
+        }
         current.clear();
     }
 
+    /**
+     * Record the durations of the timed phases into the phase latency histograms, tagged by the endpoint and logical
+     * table of the request.
+     */
+    private void recordPhaseLatencies() {
+        EndpointLogInfo endpointInfo = info.any().values().stream()
+                .filter(EndpointLogInfo.class::isInstance)
+                .map(EndpointLogInfo.class::cast)
+                .findFirst()
+                .orElse(null);
+        PHASE_HISTOGRAMS.record(
+                endpointInfo == null ? null : endpointInfo.getEndpoint(),
+                endpointInfo == null ? null : endpointInfo.getLogicalTable(),
+                durations()
+        );
+    }
+
     /**
      * Exports a snapshot of the request log of the current thread and also resets the request log for that thread.
+     * <p>
+     * The request log is handed over as it is rather than copied, since the thread no longer uses it.
      *
      * @return the log context of the current thread
      */
     public static RequestLog dump() {
         RequestLog current = RLOG.get();
-        RequestLog copy = new RequestLog(current);
-        current.clear();
         RLOG.remove();
-        return copy;
+        MDC.remove(ID_KEY);
+        return current;
     }
 
     /**
@@ -426,9 +512,11 @@ public class RequestLog {
         current.logId = ctx.logId;
         current.info = ctx.info;
         current.mostRecentTimer = ctx.mostRecentTimer;
-        current.times.putAll(ctx.times);
-        current.threadIds.addAll(ctx.threadIds);
-        current.threadIds.add(Thread.currentThread().getName());
+        current.times = ctx.times;
+        current.threadIds = ctx.threadIds;
+        current.restoredTimes = ctx.times;
+        current.restoredThreadIds = ctx.threadIds;
+        current.addThreadId(Thread.currentThread().getName());
         MDC.put(ID_KEY, current.logId);
     }
 
@@ -449,19 +537,20 @@ public class RequestLog {
             );
             return;
         }
-        // Accumulate all the timers that are not currently running
-        current.times.putAll(
-                ctx.times.entrySet()
-                        .stream()
-                        .filter(
-                                e -> e.getKey().contains(DRUID_QUERY_TIMER) ||
-                                        (e.getKey().equals(REQUEST_WORKFLOW_TIMER) && !e.getValue().isRunning()) ||
-                                        (e.getKey().equals(RESPONSE_WORKFLOW_TIMER) && e.getValue().isRunning())
-                        )
-                        .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue))
-        );
-        current.threadIds.addAll(ctx.threadIds);
-        current.threadIds.add(Thread.currentThread().getName());
+        // Accumulate the druid query timers, the finished request workflow timer and running response workflow timer
+        // added since both contexts were restored from the same log. Earlier phases are already shared.
+        for (TimedPhase phase : Trail.toList(ctx.times, current.restoredTimes)) {
+            String name = phase.getName();
+            if (name.contains(DRUID_QUERY_TIMER) ||
+                    (name.equals(REQUEST_WORKFLOW_TIMER) && !phase.isRunning()) ||
+                    (name.equals(RESPONSE_WORKFLOW_TIMER) && phase.isRunning())) {
+                current.times = new Trail<>(phase, current.times);
+            }
+        }
+        for (String threadName : Trail.toList(ctx.threadIds, current.restoredThreadIds)) {
+            current.addThreadId(threadName);
+        }
+        current.addThreadId(Thread.currentThread().getName());
     }
 
     /**
@@ -472,7 +561,7 @@ public class RequestLog {
     public static String export() {
         RequestLog current = RLOG.get();
         record(new Durations(current.aggregateDurations()));
-        record(new Threads(current.threadIds));
+        record(new Threads(new LinkedHashSet<>(Trail.toList(current.threadIds, null))));
         return LogFormatterProvider.getInstance().format(current.info);
     }
 
@@ -493,4 +582,60 @@ public class RequestLog {
                 .map(name -> "com.yahoo.bard.webservice.logging.blocks." + name)
                 .collect(Collectors.toList());
     }
+
+    /**
+     * An immutable record in an append only trail, holding a value and the records added before it.
+     * <p>
+     * Appending makes a new record in front of the trail, so trails which were once the same share all their earlier
+     * records.
+     *
+     * @param <T>  Type of the values in the trail
+     */
+    private static final class Trail<T> {
+        private final T value;
+        private final Trail<T> previous;
+        private final int size;
+
+        /**
+         * Constructor.
+         *
+         * @param value  The value of the record
+         * @param previous  The trail to append the record to, or null to start a new trail
+         */
+        private Trail(T value, Trail<T> previous) {
+            this.value = value;
+            this.previous = previous;
+            this.size = previous == null ? 1 : previous.size + 1;
+        }
+
+        /**
+         * Get the values appended to a trail since it was some earlier trail, oldest first.
+         * <p>
+         * If the trail doesn't continue from the earlier trail, all of its values are returned.
+         *
+         * @param trail  The trail to get values from, or null for an empty trail
+         * @param since  The earlier trail, or null for all the values
+         *
+         * @param <T>  Type of the values in the trail
+         *
+         * @return the values added since the earlier trail
+         */
+        private static <T> List<T> toList(Trail<T> trail, Trail<T> since) {
+            int sinceSize = since == null ? 0 : since.size;
+            List<T> values = new ArrayList<>();
+            Trail<T> record = trail;
+            while (record != null && record.size > sinceSize) {
+                values.add(record.value);
+                record = record.previous;
+            }
+            if (record != since) {
+                // Not a continuation of the earlier trail, so none of its values are shared
+                for (; record != null; record = record.previous) {
+                    values.add(record.value);
+                }
+            }
+            Collections.reverse(values);
+            return values;
+        }
+    }
 }
@@ -4,7 +4,7 @@ package com.yahoo.bard.webservice.logging.blocks;
 
 import com.yahoo.bard.webservice.data.dimension.Dimension;
 import com.yahoo.bard.webservice.data.metric.LogicalMetric;
-import com.yahoo.bard.webservice.logging.LogInfo;
+import com.yahoo.bard.webservice.logging.EndpointLogInfo;
 import com.yahoo.bard.webservice.table.LogicalTable;
 import com.yahoo.bard.webservice.web.ApiFilter;
 
@@ -24,7 +24,7 @@ import java.util.stream.Collectors;
  * Corresponds mainly to the requesting part of a request served by the DataServlet.
  */
 @JsonAutoDetect(fieldVisibility = JsonAutoDetect.Visibility.ANY)
-public class DataRequest implements LogInfo {
+public class DataRequest implements EndpointLogInfo {
     protected final String resource = "data";
     protected final String table;
     protected final String timeGrain;
@@ -92,4 +92,14 @@ public class DataRequest implements LogInfo {
         this.skipCache = !readCache;
         this.format = format;
     }
+
+    @Override
+    public String getEndpoint() {
+        return resource;
+    }
+
+    @Override
+    public String getLogicalTable() {
+        return table;
+    }
 }
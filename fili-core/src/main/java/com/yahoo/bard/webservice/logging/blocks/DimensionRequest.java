@@ -2,7 +2,7 @@
 // Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
 package com.yahoo.bard.webservice.logging.blocks;
 
-import com.yahoo.bard.webservice.logging.LogInfo;
+import com.yahoo.bard.webservice.logging.EndpointLogInfo;
 
 import com.fasterxml.jackson.annotation.JsonAutoDetect;
 
@@ -10,7 +10,7 @@ import com.fasterxml.jackson.annotation.JsonAutoDetect;
  * Main log of a request served by the DimensionsServlet.
  */
 @JsonAutoDetect(fieldVisibility = JsonAutoDetect.Visibility.ANY)
-public class DimensionRequest implements LogInfo {
+public class DimensionRequest implements EndpointLogInfo {
     protected final String resource = "dimensions";
     protected final String dimension;
     protected final String withValues;
@@ -26,4 +26,9 @@ public class DimensionRequest implements LogInfo {
         this.dimension = dimension;
         this.withValues = withValues;
     }
+
+    @Override
+    public String getEndpoint() {
+        return resource;
+    }
 }
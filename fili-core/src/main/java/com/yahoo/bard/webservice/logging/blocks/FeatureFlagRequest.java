@@ -2,7 +2,7 @@
 // Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
 package com.yahoo.bard.webservice.logging.blocks;
 
-import com.yahoo.bard.webservice.logging.LogInfo;
+import com.yahoo.bard.webservice.logging.EndpointLogInfo;
 
 import com.fasterxml.jackson.annotation.JsonAutoDetect;
 
@@ -10,7 +10,7 @@ import com.fasterxml.jackson.annotation.JsonAutoDetect;
  * Main log of a request served by the FeatureFlagServlet.
  */
 @JsonAutoDetect(fieldVisibility = JsonAutoDetect.Visibility.ANY)
-public class FeatureFlagRequest implements LogInfo {
+public class FeatureFlagRequest implements EndpointLogInfo {
     protected final String resource = "feature flags";
     protected final String flag;
 
@@ -22,4 +22,9 @@ public class FeatureFlagRequest implements LogInfo {
     public FeatureFlagRequest(String flag) {
         this.flag = flag;
     }
+
+    @Override
+    public String getEndpoint() {
+        return resource;
+    }
 }
@@ -2,7 +2,7 @@
 // Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
 package com.yahoo.bard.webservice.logging.blocks;
 
-import com.yahoo.bard.webservice.logging.LogInfo;
+import com.yahoo.bard.webservice.logging.EndpointLogInfo;
 
 import com.fasterxml.jackson.annotation.JsonAutoDetect;
 
@@ -10,7 +10,7 @@ import com.fasterxml.jackson.annotation.JsonAutoDetect;
  * Main log of a request served by the JobsServlet.
  */
 @JsonAutoDetect(fieldVisibility = JsonAutoDetect.Visibility.ANY)
-public class JobRequest implements LogInfo {
+public class JobRequest implements EndpointLogInfo {
     protected final String resource = "jobs";
     protected final String ticket;
 
@@ -22,4 +22,9 @@ public class JobRequest implements LogInfo {
     public JobRequest(String ticket) {
         this.ticket = ticket;
     }
+
+    @Override
+    public String getEndpoint() {
+        return resource;
+    }
 }
@@ -2,7 +2,7 @@
 // Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
 package com.yahoo.bard.webservice.logging.blocks;
 
-import com.yahoo.bard.webservice.logging.LogInfo;
+import com.yahoo.bard.webservice.logging.EndpointLogInfo;
 
 import com.fasterxml.jackson.annotation.JsonAutoDetect;
 
@@ -10,7 +10,7 @@ import com.fasterxml.jackson.annotation.JsonAutoDetect;
  * Main log of a request served by the MetricsServlet.
  */
 @JsonAutoDetect(fieldVisibility = JsonAutoDetect.Visibility.ANY)
-public class MetricRequest implements LogInfo {
+public class MetricRequest implements EndpointLogInfo {
     protected final String resource = "metrics";
     protected final String metric;
 
@@ -22,4 +22,9 @@ public class MetricRequest implements LogInfo {
     public MetricRequest(String metric) {
         this.metric = metric;
     }
+
+    @Override
+    public String getEndpoint() {
+        return resource;
+    }
 }
@@ -2,15 +2,17 @@
 // Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
 package com.yahoo.bard.webservice.logging.blocks;
 
-import com.yahoo.bard.webservice.logging.LogInfo;
+import com.yahoo.bard.webservice.logging.EndpointLogInfo;
 
 import com.fasterxml.jackson.annotation.JsonAutoDetect;
 
 /**
  * Main log of a request served by the TablesServlet.
+ * <p>
+ * The table is logged as requested, before it is validated, so it isn't used to tag the phase latency histograms.
  */
 @JsonAutoDetect(fieldVisibility = JsonAutoDetect.Visibility.ANY)
-public class TableRequest implements LogInfo {
+public class TableRequest implements EndpointLogInfo {
     protected final String resource = "tables";
     protected final String table;
     protected final String grain;
@@ -26,4 +28,9 @@ public class TableRequest implements LogInfo {
         this.table = table;
         this.grain = grain;
     }
+
+    @Override
+    public String getEndpoint() {
+        return resource;
+    }
 }
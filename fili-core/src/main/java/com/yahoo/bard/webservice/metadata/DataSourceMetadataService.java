@@ -2,10 +2,14 @@
 // Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
 package com.yahoo.bard.webservice.metadata;
 
+import com.yahoo.bard.webservice.application.MetricRegistryFactory;
 import com.yahoo.bard.webservice.data.config.names.DataSourceName;
 import com.yahoo.bard.webservice.table.PhysicalTable;
 import com.yahoo.bard.webservice.util.SimplifiedIntervalList;
 
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
 import com.google.common.collect.ImmutableMap;
 
 import org.joda.time.DateTime;
@@ -15,14 +19,19 @@ import org.slf4j.LoggerFactory;
 
 import io.druid.timeline.DataSegment;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.SortedMap;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collector;
 import java.util.stream.Collectors;
@@ -31,11 +40,19 @@ import javax.inject.Singleton;
 
 /**
  * Defines a wrapper class around the container that holds the segment metadata of all the physical tables.
+ * <p>
+ * Updates are incremental: only the segments added or removed since the last update of a data source are applied,
+ * to copies of the previous segment mappings which are then swapped in, so readers always see a consistent snapshot.
  */
 @Singleton
 public class DataSourceMetadataService {
     private static final Logger LOG = LoggerFactory.getLogger(DataSourceMetadataService.class);
 
+    private static final MetricRegistry REGISTRY = MetricRegistryFactory.getRegistry();
+    public static final Histogram SEGMENTS_ADDED = REGISTRY.histogram("metadata.histogram.segments_added");
+    public static final Histogram SEGMENTS_REMOVED = REGISTRY.histogram("metadata.histogram.segments_removed");
+    public static final Timer UPDATE_TIMER = REGISTRY.timer("metadata.timer.update");
+
     /**
      * The container that holds the segment metadata for every table. It should support concurrent access.
      */
@@ -44,6 +61,21 @@ public class DataSourceMetadataService {
     private final Map<DataSourceName, AtomicReference<ImmutableMap<String, SimplifiedIntervalList>>>
             allSegmentsByColumn;
 
+    /**
+     * The segments of every data source as of its last update, which the next update is applied against.
+     */
+    private final Map<DataSourceName, SegmentIndex> segmentIndexes;
+
+    /**
+     * Counts the updates which changed the segments of any data source.
+     */
+    private final AtomicLong version = new AtomicLong();
+
+    /**
+     * The version as of the last update which changed the segments of each data source.
+     */
+    private final Map<DataSourceName, Long> dataSourceVersions;
+
     /**
      * The collector that accumulates partitions of a segment.
      */
@@ -55,6 +87,8 @@ public class DataSourceMetadataService {
     public DataSourceMetadataService() {
         this.allSegmentsByTime = new ConcurrentHashMap<>();
         this.allSegmentsByColumn = new ConcurrentHashMap<>();
+        this.segmentIndexes = new ConcurrentHashMap<>();
+        this.dataSourceVersions = new ConcurrentHashMap<>();
     }
 
     /**
@@ -72,6 +106,28 @@ public class DataSourceMetadataService {
                 .collect(Collectors.toSet());
     }
 
+    /**
+     * Get a version of the segment metadata of all data sources, which changes every time an update changes the
+     * segments of a data source.
+     *
+     * @return the current version of the segment metadata
+     */
+    public long getVersion() {
+        return version.get();
+    }
+
+    /**
+     * Get a version of the segment metadata of one data source, which changes every time an update changes its
+     * segments, and only then.
+     *
+     * @param dataSourceName  The data source to get the version of
+     *
+     * @return the current version of the data source's segment metadata, or 0 if it has never been updated
+     */
+    public long getVersion(DataSourceName dataSourceName) {
+        return dataSourceVersions.getOrDefault(dataSourceName, 0L);
+    }
+
     /**
      * Get a set of intervals available for each column in the data source.
      *
@@ -113,17 +169,200 @@ public class DataSourceMetadataService {
      * @param metadata  The updated datasource metadata.
      */
     public void update(DataSourceName dataSourceName, DataSourceMetadata metadata) {
-        // Group all the segments by the starting date of their interval.
-        // Accumulate all the partitions of a segment in a map indexed by their identifier.
-        ConcurrentSkipListMap<DateTime, Map<String, SegmentInfo>> currentByTime = groupSegmentByTime(metadata);
+        SegmentIndex index = segmentIndexes.computeIfAbsent(dataSourceName, ignored -> new SegmentIndex());
+        try (Timer.Context ignored = UPDATE_TIMER.time()) {
+            synchronized (index) {
+                try {
+                    applyChanges(dataSourceName, index, metadata);
+                } catch (RuntimeException e) {
+                    // The index may be half updated, so start over from scratch on the next update
+                    index.clear();
+                    throw e;
+                }
+            }
+        }
+    }
+
+    /**
+     * Apply the segments added and removed since the last update of a data source to its segment mappings.
+     *
+     * @param dataSourceName  The data source to which the metadata refer
+     * @param index  The segments of the data source as of its last update, updated to the new metadata
+     * @param metadata  The updated datasource metadata
+     */
+    private void applyChanges(DataSourceName dataSourceName, SegmentIndex index, DataSourceMetadata metadata) {
+        boolean firstUpdate = index.segmentsById.isEmpty();
+
+        // Diff the new segments against the last ones by identifier
+        Set<String> latestIds = new HashSet<>(metadata.getSegments().size());
+        List<SegmentInfo> added = new ArrayList<>();
+        for (DataSegment segment : metadata.getSegments()) {
+            String identifier = segment.getIdentifier();
+            if (latestIds.add(identifier) && !index.segmentsById.containsKey(identifier)) {
+                added.add(new SegmentInfo(segment));
+            }
+        }
+        List<SegmentInfo> removed = index.segmentsById.values().stream()
+                .filter(segmentInfo -> !latestIds.contains(segmentInfo.getIdentifier()))
+                .collect(Collectors.toList());
 
-        // Group segment interval by every column present in the segment
-        Map<String, SimplifiedIntervalList> currentByColumn = groupIntervalByColumn(metadata);
+        SEGMENTS_ADDED.update(added.size());
+        SEGMENTS_REMOVED.update(removed.size());
+        LOG.debug(
+                "Updating segments of {}: {} added, {} removed",
+                dataSourceName.asName(),
+                added.size(),
+                removed.size()
+        );
+
+        if (!firstUpdate && added.isEmpty() && removed.isEmpty()) {
+            return;
+        }
+
+        // The maps are only published once computed, so readers never see a data source without them
+        ConcurrentSkipListMap<DateTime, Map<String, SegmentInfo>> currentByTime = updateSegmentsByTime(
+                firstUpdate ? null : allSegmentsByTime.get(dataSourceName).get(),
+                added,
+                removed
+        );
+        Map<String, SimplifiedIntervalList> currentByColumn = updateIntervalsByColumn(
+                index,
+                firstUpdate ? null : allSegmentsByColumn.get(dataSourceName).get(),
+                added,
+                removed
+        );
 
-        allSegmentsByTime.computeIfAbsent(dataSourceName, ignored -> new AtomicReference<>())
-                .set(currentByTime);
+        removed.forEach(segmentInfo -> index.segmentsById.remove(segmentInfo.getIdentifier()));
+        added.forEach(segmentInfo -> index.segmentsById.put(segmentInfo.getIdentifier(), segmentInfo));
+
+        allSegmentsByTime.computeIfAbsent(dataSourceName, ignored -> new AtomicReference<>()).set(currentByTime);
         allSegmentsByColumn.computeIfAbsent(dataSourceName, ignored -> new AtomicReference<>())
                 .set(ImmutableMap.copyOf(currentByColumn));
+        dataSourceVersions.put(dataSourceName, version.incrementAndGet());
+    }
+
+    /**
+     * Apply added and removed segments to a copy of the segments grouped by the start of their interval.
+     * <p>
+     * Only the groups of the changed segments are copied, the other groups are shared with the previous map.
+     *
+     * @param previous  The segments grouped by time before the changes, or null if there are none
+     * @param added  The segments added
+     * @param removed  The segments removed
+     *
+     * @return the segments grouped by time after the changes
+     */
+    private static ConcurrentSkipListMap<DateTime, Map<String, SegmentInfo>> updateSegmentsByTime(
+            SortedMap<DateTime, Map<String, SegmentInfo>> previous,
+            List<SegmentInfo> added,
+            List<SegmentInfo> removed
+    ) {
+        ConcurrentSkipListMap<DateTime, Map<String, SegmentInfo>> current = previous == null ?
+                new ConcurrentSkipListMap<>() :
+                new ConcurrentSkipListMap<>(previous);
+
+        // The groups copied so far, which are safe to change
+        Map<DateTime, Map<String, SegmentInfo>> changedGroups = new HashMap<>();
+        for (SegmentInfo segmentInfo : removed) {
+            copyGroup(current, changedGroups, segmentInfo).remove(segmentInfo.getIdentifier());
+        }
+        for (SegmentInfo segmentInfo : added) {
+            copyGroup(current, changedGroups, segmentInfo).put(segmentInfo.getIdentifier(), segmentInfo);
+        }
+
+        for (Map.Entry<DateTime, Map<String, SegmentInfo>> group : changedGroups.entrySet()) {
+            if (group.getValue().isEmpty()) {
+                current.remove(group.getKey());
+            } else {
+                current.put(group.getKey(), group.getValue());
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Get a changeable copy of the group of segments starting at the same time as a segment.
+     *
+     * @param segmentsByTime  The segments grouped by time
+     * @param changedGroups  The groups already copied, to which the copy is added
+     * @param segmentInfo  The segment whose group to copy
+     *
+     * @return the copy of the group
+     */
+    private static Map<String, SegmentInfo> copyGroup(
+            Map<DateTime, Map<String, SegmentInfo>> segmentsByTime,
+            Map<DateTime, Map<String, SegmentInfo>> changedGroups,
+            SegmentInfo segmentInfo
+    ) {
+        return changedGroups.computeIfAbsent(
+                segmentInfo.getInterval().getStart(),
+                start -> new LinkedHashMap<>(segmentsByTime.getOrDefault(start, Collections.emptyMap()))
+        );
+    }
+
+    /**
+     * Apply added and removed segments to the intervals available for each column.
+     * <p>
+     * Only the interval lists of the columns of the changed segments change. A column which only gained segments gets
+     * the union of its previous intervals and the intervals of the added segments, and only the interval lists of
+     * columns which lost segments are rebuilt from their interval counts.
+     *
+     * @param index  The segment index of the data source, whose interval counts are updated
+     * @param previous  The intervals by column before the changes, or null if there are none
+     * @param added  The segments added
+     * @param removed  The segments removed
+     *
+     * @return the intervals by column after the changes
+     */
+    private static Map<String, SimplifiedIntervalList> updateIntervalsByColumn(
+            SegmentIndex index,
+            Map<String, SimplifiedIntervalList> previous,
+            List<SegmentInfo> added,
+            List<SegmentInfo> removed
+    ) {
+        Set<String> removedColumns = new HashSet<>();
+        Map<String, List<Interval>> addedIntervalsByColumn = new HashMap<>();
+        for (SegmentInfo segmentInfo : removed) {
+            for (String column : segmentInfo.getColumnNames()) {
+                Map<Interval, Integer> counts = index.intervalCountsByColumn.get(column);
+                counts.computeIfPresent(segmentInfo.getInterval(), (interval, count) -> count == 1 ? null : count - 1);
+                if (counts.isEmpty()) {
+                    index.intervalCountsByColumn.remove(column);
+                }
+                removedColumns.add(column);
+            }
+        }
+        for (SegmentInfo segmentInfo : added) {
+            for (String column : segmentInfo.getColumnNames()) {
+                index.intervalCountsByColumn.computeIfAbsent(column, ignored -> new HashMap<>())
+                        .merge(segmentInfo.getInterval(), 1, Integer::sum);
+                addedIntervalsByColumn.computeIfAbsent(column, ignored -> new ArrayList<>())
+                        .add(segmentInfo.getInterval());
+            }
+        }
+
+        Map<String, SimplifiedIntervalList> current = previous == null ?
+                new LinkedHashMap<>() :
+                new LinkedHashMap<>(previous);
+        for (String column : removedColumns) {
+            Map<Interval, Integer> counts = index.intervalCountsByColumn.get(column);
+            if (counts == null) {
+                current.remove(column);
+            } else {
+                current.put(column, new SimplifiedIntervalList(counts.keySet()));
+            }
+        }
+        for (Map.Entry<String, List<Interval>> addedIntervals : addedIntervalsByColumn.entrySet()) {
+            String column = addedIntervals.getKey();
+            if (removedColumns.contains(column)) {
+                // Already rebuilt from the counts, which include the added segments
+                continue;
+            }
+            SimplifiedIntervalList addedList = new SimplifiedIntervalList(addedIntervals.getValue());
+            SimplifiedIntervalList existing = current.get(column);
+            current.put(column, existing == null ? addedList : existing.union(addedList));
+        }
+        return current;
     }
 
     /**
@@ -192,4 +431,26 @@ public class DataSourceMetadataService {
                         )
                 );
     }
+
+    /**
+     * The segments of a data source as of its last update.
+     * <p>
+     * Guarded by its own monitor.
+     */
+    private static final class SegmentIndex {
+        private final Map<String, SegmentInfo> segmentsById = new HashMap<>();
+
+        /**
+         * The number of segments covering each interval, for each column.
+         */
+        private final Map<String, Map<Interval, Integer>> intervalCountsByColumn = new HashMap<>();
+
+        /**
+         * Forget every segment, so that the next update starts from scratch.
+         */
+        private void clear() {
+            segmentsById.clear();
+            intervalCountsByColumn.clear();
+        }
+    }
 }
@@ -2,23 +2,57 @@
 // Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
 package com.yahoo.bard.webservice.table.availability;
 
+import com.yahoo.bard.webservice.config.BardFeatureFlag;
+import com.yahoo.bard.webservice.config.SystemConfig;
+import com.yahoo.bard.webservice.config.SystemConfigProvider;
 import com.yahoo.bard.webservice.data.config.names.DataSourceName;
+import com.yahoo.bard.webservice.metadata.DataSourceMetadataService;
+import com.yahoo.bard.webservice.table.resolver.PhysicalDataSourceConstraint;
 import com.yahoo.bard.webservice.util.SimplifiedIntervalList;
 import com.yahoo.bard.webservice.util.StreamUtils;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 /**
  * A class implementing common capabilities for availabilities backed by a collection of other availabilities.
+ * <p>
+ * With the availability snapshots feature flag on, composite availabilities keep the intervals they find in a
+ * snapshot of the segment metadata behind them, keyed by the parts of the constraint the intervals depend on. The
+ * snapshot is replaced by a new one once the version of the segment metadata of any of the availability's own data
+ * sources changes, so finding the intervals for columns which have been asked for before is a map lookup, and updates
+ * to other data sources leave the snapshot alone.
  */
 public abstract class BaseCompositeAvailability implements Availability {
 
+    private static final SystemConfig SYSTEM_CONFIG = SystemConfigProvider.getInstance();
+
+    /**
+     * The most keys each composite availability keeps in its snapshot, roughly.
+     */
+    public static final int AVAILABILITY_SNAPSHOT_SIZE = SYSTEM_CONFIG.getIntProperty(
+            SYSTEM_CONFIG.getPackageVariableName("availability_snapshot_size"), 1000
+    );
+
     private final Set<Availability> sourceAvailabilities;
     private final Set<DataSourceName> dataSourcesNames;
 
+    // The data sources behind all the source availabilities, or null if some of them aren't backed by segment metadata
+    private final List<MetadataSource> metadataSources;
+    private final AtomicReference<Snapshot> snapshot = new AtomicReference<>(Snapshot.NONE);
+
     /**
      * Constructor.
      *
@@ -29,6 +63,33 @@ public abstract class BaseCompositeAvailability implements Availability {
         dataSourcesNames = StreamUtils.toUnmodifiableSet(
                 sourceAvailabilities.stream().map(Availability::getDataSourceNames).flatMap(Set::stream)
         );
+        metadataSources = findMetadataSources(sourceAvailabilities);
+    }
+
+    /**
+     * Find the data sources, and the metadata services holding their segment metadata, behind a set of availabilities.
+     *
+     * @param availabilities  The availabilities to find the data sources of
+     *
+     * @return the data sources, or null if some of the availabilities aren't backed by segment metadata
+     */
+    private static List<MetadataSource> findMetadataSources(Set<Availability> availabilities) {
+        Set<MetadataSource> sources = new LinkedHashSet<>();
+        for (Availability availability : availabilities) {
+            if (availability instanceof BaseMetadataAvailability) {
+                BaseMetadataAvailability metadataAvailability = (BaseMetadataAvailability) availability;
+                sources.add(new MetadataSource(
+                        metadataAvailability.getDataSourceMetadataService(),
+                        metadataAvailability.getDataSourceName()
+                ));
+            } else if (availability instanceof BaseCompositeAvailability
+                    && ((BaseCompositeAvailability) availability).metadataSources != null) {
+                sources.addAll(((BaseCompositeAvailability) availability).metadataSources);
+            } else {
+                return null;
+            }
+        }
+        return Collections.unmodifiableList(new ArrayList<>(sources));
     }
 
     /**
@@ -66,4 +127,196 @@ public abstract class BaseCompositeAvailability implements Availability {
                         )
                 );
     }
+
+    /**
+     * Whether the intervals this availability finds for a constraint depend only on the segment metadata and the
+     * metric and physical column names of the constraint.
+     *
+     * @return true if the intervals found depend only on the columns of the constraint
+     */
+    protected boolean isColumnKeyed() {
+        return false;
+    }
+
+    /**
+     * Whether the intervals an availability finds for a constraint depend only on the segment metadata and the
+     * metric and physical column names of the constraint, so that they can be kept in a snapshot keyed by those names.
+     *
+     * @param availability  The availability to check
+     *
+     * @return true if the intervals found depend only on the columns of the constraint
+     */
+    protected static boolean isColumnKeyed(Availability availability) {
+        // Subclasses of the metadata availabilities may depend on more than the columns, so match the exact class
+        Class<?> availabilityClass = availability.getClass();
+        if (availabilityClass == StrictAvailability.class || availabilityClass == PermissiveAvailability.class) {
+            return true;
+        }
+        return availability instanceof BaseCompositeAvailability
+                && ((BaseCompositeAvailability) availability).isColumnKeyed();
+    }
+
+    /**
+     * Build the snapshot key of the columns of a constraint.
+     *
+     * @param constraint  The constraint whose columns are requested
+     *
+     * @return the key of the metric and physical column names of the constraint
+     */
+    protected static List<Object> columnKey(PhysicalDataSourceConstraint constraint) {
+        return Arrays.asList(constraint.getMetricNames(), constraint.getAllColumnPhysicalNames());
+    }
+
+    /**
+     * Get the versions of the segment metadata of the data sources behind this availability, which change whenever
+     * that metadata does.
+     *
+     * @return the version of the segment metadata of each data source, in the order of the data sources
+     */
+    private long[] getMetadataVersions() {
+        long[] versions = new long[metadataSources.size()];
+        for (int i = 0; i < versions.length; i++) {
+            MetadataSource source = metadataSources.get(i);
+            versions[i] = source.metadataService.getVersion(source.dataSourceName);
+        }
+        return versions;
+    }
+
+    /**
+     * Get intervals from the snapshot of the current segment metadata, finding them and adding them to the snapshot
+     * if they aren't in it yet.
+     * <p>
+     * The intervals are found every time if the availability snapshots feature flag is off, or if some of the source
+     * availabilities aren't backed by a metadata service.
+     *
+     * @param key  The parts of the constraint which the intervals depend on
+     * @param intervals  Finds the intervals
+     *
+     * @return the intervals
+     */
+    protected SimplifiedIntervalList getSnapshotIntervals(Object key, Supplier<SimplifiedIntervalList> intervals) {
+        if (!BardFeatureFlag.AVAILABILITY_SNAPSHOTS.isOn() || metadataSources == null) {
+            return intervals.get();
+        }
+
+        // Read the versions before finding the intervals, so intervals found during an update are never kept as the
+        // intervals of the updated metadata
+        long[] versions = getMetadataVersions();
+        Snapshot current = snapshot.get();
+        if (current.isOf(versions)) {
+            SimplifiedIntervalList snapshotIntervals = current.intervals.get(key);
+            if (snapshotIntervals != null) {
+                return snapshotIntervals;
+            }
+        }
+
+        SimplifiedIntervalList found = intervals.get();
+        while (true) {
+            Snapshot latest = snapshot.get();
+            if (latest.isOf(versions)) {
+                if (latest.intervals.size() < AVAILABILITY_SNAPSHOT_SIZE) {
+                    latest.intervals.putIfAbsent(key, found);
+                }
+                break;
+            }
+            if (latest.isNewerThan(versions)) {
+                // A snapshot of newer metadata has already been published
+                break;
+            }
+            Snapshot next = new Snapshot(versions);
+            next.intervals.put(key, found);
+            if (snapshot.compareAndSet(latest, next)) {
+                break;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * The intervals found for one version of the segment metadata of each data source.
+     */
+    private static final class Snapshot {
+
+        private static final Snapshot NONE = new Snapshot(null);
+
+        private final long[] versions;
+        private final ConcurrentMap<Object, SimplifiedIntervalList> intervals = new ConcurrentHashMap<>();
+
+        /**
+         * Constructor.
+         *
+         * @param versions  The version of the segment metadata of each data source the intervals are found in, or null
+         * for no version at all
+         */
+        private Snapshot(long[] versions) {
+            this.versions = versions;
+        }
+
+        /**
+         * Whether this snapshot is of the given versions of the segment metadata.
+         *
+         * @param versions  The version of the segment metadata of each data source
+         *
+         * @return true if the intervals of the snapshot were found in those versions
+         */
+        private boolean isOf(long[] versions) {
+            return Arrays.equals(this.versions, versions);
+        }
+
+        /**
+         * Whether this snapshot is of newer segment metadata than the given versions, for some data source.
+         *
+         * @param versions  The version of the segment metadata of each data source
+         *
+         * @return true if the intervals found in the given versions are out of date
+         */
+        private boolean isNewerThan(long[] versions) {
+            if (this.versions == null) {
+                return false;
+            }
+            for (int i = 0; i < versions.length; i++) {
+                if (this.versions[i] > versions[i]) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * A data source, and the metadata service holding its segment metadata.
+     */
+    private static final class MetadataSource {
+
+        private final DataSourceMetadataService metadataService;
+        private final DataSourceName dataSourceName;
+
+        /**
+         * Constructor.
+         *
+         * @param metadataService  The metadata service holding the segment metadata of the data source
+         * @param dataSourceName  The data source
+         */
+        private MetadataSource(DataSourceMetadataService metadataService, DataSourceName dataSourceName) {
+            this.metadataService = metadataService;
+            this.dataSourceName = dataSourceName;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof MetadataSource)) {
+                return false;
+            }
+            MetadataSource that = (MetadataSource) o;
+            return metadataService == that.metadataService && Objects.equals(dataSourceName, that.dataSourceName);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(System.identityHashCode(metadataService), dataSourceName);
+        }
+    }
 }
@@ -75,6 +75,8 @@ public class MetricUnionAvailability extends BaseCompositeAvailability implement
 
     private final Set<String> metricNames;
     private final Map<Availability, Set<String>> availabilitiesToMetricNames;
+    private final Set<String> dataSourceMetricNames;
+    private final boolean columnKeyed;
 
     /**
      * Constructor.
@@ -115,15 +117,34 @@ public class MetricUnionAvailability extends BaseCompositeAvailability implement
                 LOG.error(message);
                 throw new RuntimeException(message);
         }
+
+        dataSourceMetricNames = availabilitiesToMetricNames.values().stream()
+                .flatMap(Set::stream)
+                .collect(Collectors.toSet());
+        columnKeyed = availabilities.stream().allMatch(availability -> isColumnKeyed(availability));
     }
 
     @Override
     public SimplifiedIntervalList getAvailableIntervals(PhysicalDataSourceConstraint constraint) {
+        if (!columnKeyed) {
+            return mergeAvailabilities(constraint);
+        }
+        return getSnapshotIntervals(columnKey(constraint), () -> mergeAvailabilities(constraint));
+    }
 
-        Set<String> dataSourceMetricNames = availabilitiesToMetricNames.values().stream()
-                .flatMap(Set::stream)
-                .collect(Collectors.toSet());
+    @Override
+    protected boolean isColumnKeyed() {
+        return columnKeyed;
+    }
 
+    /**
+     * Intersect the availabilities of the metrics of the constraint.
+     *
+     * @param constraint  The constraint whose metrics are requested
+     *
+     * @return The intervals which are available for the given constraint
+     */
+    private SimplifiedIntervalList mergeAvailabilities(PhysicalDataSourceConstraint constraint) {
         // If the table is configured with a column that is not supported by the underlying data sources
         if (!constraint.getMetricNames().stream().allMatch(dataSourceMetricNames::contains)) {
             return new SimplifiedIntervalList();
@@ -6,9 +6,10 @@ import com.yahoo.bard.webservice.table.resolver.DataSourceFilter;
 import com.yahoo.bard.webservice.table.resolver.PhysicalDataSourceConstraint;
 import com.yahoo.bard.webservice.util.SimplifiedIntervalList;
 
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Map;
 import java.util.Objects;
-import java.util.stream.Stream;
 
 import javax.validation.constraints.NotNull;
 
@@ -52,6 +53,10 @@ public class PartitionAvailability extends BaseCompositeAvailability implements
 
     private final Map<Availability, DataSourceFilter> availabilityFilters;
 
+    // The availabilities and their filters, in the same order
+    private final Availability[] parts;
+    private final DataSourceFilter[] partFilters;
+
     /**
      * Constructor.
      *
@@ -61,31 +66,66 @@ public class PartitionAvailability extends BaseCompositeAvailability implements
     public PartitionAvailability(@NotNull Map<Availability, DataSourceFilter> availabilityFilters) {
         super(availabilityFilters.keySet().stream());
         this.availabilityFilters = availabilityFilters;
+        this.parts = availabilityFilters.keySet().toArray(new Availability[availabilityFilters.size()]);
+        this.partFilters = new DataSourceFilter[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            partFilters[i] = availabilityFilters.get(parts[i]);
+        }
     }
 
     /**
-     * Return a stream of the partition parts, filtered by the associated DataSourceFilter.
+     * Find the partition parts which participate given the constraint, by the associated DataSourceFilter.
      *
      * @param constraint  A constraint which filters the partitions
      *
-     * @return  A stream of availabilities which participate given the constraint
+     * @return  The positions of the availabilities which participate given the constraint
      */
-    private Stream<Availability> filteredAvailabilities(PhysicalDataSourceConstraint constraint) {
-        return availabilityFilters.entrySet().stream()
-                .filter(entry -> entry.getValue().apply(constraint))
-                .map(Map.Entry::getKey);
+    private BitSet filteredAvailabilities(PhysicalDataSourceConstraint constraint) {
+        BitSet participating = new BitSet(parts.length);
+        for (int i = 0; i < parts.length; i++) {
+            if (partFilters[i].apply(constraint)) {
+                participating.set(i);
+            }
+        }
+        return participating;
     }
 
     /**
      * Intersect the partition availabilities which participate given the constraint.
+     * <p>
+     * The filters are applied on every call, since they may depend on more than the columns of the constraint, but if
+     * the intervals of all the participating availabilities depend only on the columns, the intersection is kept in
+     * the availability snapshot.
      *
      * @param constraint  The filtering constraint
      *
      * @return The intervals which are available for the given constraint
      */
     private SimplifiedIntervalList mergeAvailabilities(PhysicalDataSourceConstraint constraint) {
-        return filteredAvailabilities(constraint)
-                .map(availability -> availability.getAvailableIntervals(constraint))
+        BitSet participating = filteredAvailabilities(constraint);
+        if (!participating.stream().allMatch(i -> isColumnKeyed(parts[i]))) {
+            return intersectAvailabilities(participating, constraint);
+        }
+        return getSnapshotIntervals(
+                Arrays.asList(participating, columnKey(constraint)),
+                () -> intersectAvailabilities(participating, constraint)
+        );
+    }
+
+    /**
+     * Intersect the intervals of some of the partition availabilities.
+     *
+     * @param participating  The positions of the availabilities to intersect
+     * @param constraint  The filtering constraint
+     *
+     * @return The intervals which are available in all the availabilities
+     */
+    private SimplifiedIntervalList intersectAvailabilities(
+            BitSet participating,
+            PhysicalDataSourceConstraint constraint
+    ) {
+        return participating.stream()
+                .mapToObj(i -> parts[i].getAvailableIntervals(constraint))
                 .reduce(SimplifiedIntervalList::intersect).orElse(new SimplifiedIntervalList());
     }
 
@@ -3,27 +3,57 @@
 package com.yahoo.bard.webservice.table.resolver;
 
 import com.yahoo.bard.webservice.application.MetricRegistryFactory;
+import com.yahoo.bard.webservice.config.BardFeatureFlag;
+import com.yahoo.bard.webservice.config.SystemConfig;
+import com.yahoo.bard.webservice.config.SystemConfigProvider;
+import com.yahoo.bard.webservice.data.dimension.Dimension;
+import com.yahoo.bard.webservice.druid.model.query.Granularity;
+import com.yahoo.bard.webservice.table.LogicalTable;
 import com.yahoo.bard.webservice.table.PhysicalTable;
+import com.yahoo.bard.webservice.web.ApiFilter;
 import com.yahoo.bard.webservice.web.ErrorMessageFormat;
 
 import com.codahale.metrics.MetricRegistry;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 
+import org.joda.time.Interval;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.Collection;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import java.util.function.BinaryOperator;
 
 /**
  *  Abstract parent to with business rule agnostic implementations of core methods.
+ *  <p>
+ *  When the physical table resolution cache feature flag is on, the table resolved for a set of candidate tables and
+ *  the shape of a request's constraint is reused by later requests with the same shape, until the availability version
+ *  of the resolver changes or the resolution expires.
  */
 public abstract class BasePhysicalTableResolver implements PhysicalTableResolver {
 
     private static final Logger LOG = LoggerFactory.getLogger(BasePhysicalTableResolver.class);
     private static final MetricRegistry REGISTRY = MetricRegistryFactory.getRegistry();
+    private static final SystemConfig SYSTEM_CONFIG = SystemConfigProvider.getInstance();
+
+    public static final int PHYSICAL_TABLE_RESOLUTION_CACHE_SIZE = SYSTEM_CONFIG.getIntProperty(
+            SYSTEM_CONFIG.getPackageVariableName("physical_table_resolution_cache_size"), 10000
+    );
+    public static final long PHYSICAL_TABLE_RESOLUTION_CACHE_TTL_MS = SYSTEM_CONFIG.getLongProperty(
+            SYSTEM_CONFIG.getPackageVariableName("physical_table_resolution_cache_ttl_ms"), 60000L
+    );
+
+    private final Cache<ResolutionKey, PhysicalTable> resolutionCache = CacheBuilder.newBuilder()
+            .maximumSize(PHYSICAL_TABLE_RESOLUTION_CACHE_SIZE)
+            .expireAfterWrite(PHYSICAL_TABLE_RESOLUTION_CACHE_TTL_MS, TimeUnit.MILLISECONDS)
+            .build();
 
     /**
      * Create a list of matchers based on a request and query.
@@ -95,24 +125,158 @@ public abstract class BasePhysicalTableResolver implements PhysicalTableResolver
                 candidateTables
         );
 
-        try {
-            PhysicalTable bestTable = filter(candidateTables, requestConstraint).stream()
-                    .reduce(getBetterTableOperator(requestConstraint))
-                    .get();
-
-            REGISTRY.meter(
-                    "request.physical.table." + bestTable.getName() + "." + bestTable.getSchema().getTimeGrain()
-            ).mark();
-            LOG.trace("Found best Table: {}", bestTable);
-            return bestTable;
-        } catch (NoMatchFoundException me) {
-            // Blow up if we couldn't match a table, log and return if we can
-            LOG.error(ErrorMessageFormat.NO_PHYSICAL_TABLE_MATCHED.logFormat(
-                    requestConstraint.getAllDimensionNames(),
-                    requestConstraint.getLogicalMetricNames(),
-                    requestConstraint.getMinimumGranularity()
-            ));
-            throw me;
+        ResolutionKey key = null;
+        PhysicalTable bestTable = null;
+        if (BardFeatureFlag.PHYSICAL_TABLE_RESOLUTION_CACHE.isOn()) {
+            key = new ResolutionKey(candidateTables, requestConstraint, getAvailabilityVersion());
+            bestTable = resolutionCache.getIfPresent(key);
+        }
+
+        if (bestTable == null) {
+            try {
+                bestTable = filter(candidateTables, requestConstraint).stream()
+                        .reduce(getBetterTableOperator(requestConstraint))
+                        .get();
+            } catch (NoMatchFoundException me) {
+                // Blow up if we couldn't match a table, log and return if we can
+                LOG.error(ErrorMessageFormat.NO_PHYSICAL_TABLE_MATCHED.logFormat(
+                        requestConstraint.getAllDimensionNames(),
+                        requestConstraint.getLogicalMetricNames(),
+                        requestConstraint.getMinimumGranularity()
+                ));
+                throw me;
+            }
+            if (key != null) {
+                resolutionCache.put(key, bestTable);
+            }
+        }
+
+        REGISTRY.meter(
+                "request.physical.table." + bestTable.getName() + "." + bestTable.getSchema().getTimeGrain()
+        ).mark();
+        LOG.trace("Found best Table: {}", bestTable);
+        return bestTable;
+    }
+
+    /**
+     * Get a version of the availability of the physical tables, which changes whenever their availability may have
+     * changed, so that cached resolutions made before the change aren't reused.
+     * <p>
+     * By default there is no version, and changes in availability are only picked up once cached resolutions expire.
+     *
+     * @return the current availability version
+     */
+    protected long getAvailabilityVersion() {
+        return 0;
+    }
+
+    /**
+     * Drop all cached resolutions.
+     */
+    public void clearResolutionCache() {
+        resolutionCache.invalidateAll();
+    }
+
+    /**
+     * The parts of a resolution that decide which table is resolved: the candidate tables, the shape of the request's
+     * constraint and the availability version.
+     * <p>
+     * Candidate tables are compared by identity, and logical metrics by name.
+     */
+    private static final class ResolutionKey {
+        private final PhysicalTable[] candidateTables;
+        private final LogicalTable logicalTable;
+        private final Set<Dimension> requestDimensions;
+        private final Set<Dimension> filterDimensions;
+        private final Set<Dimension> metricDimensions;
+        private final Set<String> metricNames;
+        private final Set<String> logicalMetricNames;
+        private final Map<Dimension, Set<ApiFilter>> apiFilters;
+        private final Set<Interval> intervals;
+        private final Granularity minimumGranularity;
+        private final Granularity requestGranularity;
+        private final long availabilityVersion;
+        private final int hashCode;
+
+        /**
+         * Constructor.
+         *
+         * @param candidateTables  The physical tables being resolved between
+         * @param constraint  The constraint of the request
+         * @param availabilityVersion  The availability version of the resolver
+         */
+        private ResolutionKey(
+                Collection<PhysicalTable> candidateTables,
+                QueryPlanningConstraint constraint,
+                long availabilityVersion
+        ) {
+            this.candidateTables = candidateTables.toArray(new PhysicalTable[candidateTables.size()]);
+            this.logicalTable = constraint.getLogicalTable();
+            this.requestDimensions = constraint.getRequestDimensions();
+            this.filterDimensions = constraint.getFilterDimensions();
+            this.metricDimensions = constraint.getMetricDimensions();
+            this.metricNames = constraint.getMetricNames();
+            this.logicalMetricNames = constraint.getLogicalMetricNames();
+            this.apiFilters = constraint.getApiFilters();
+            this.intervals = constraint.getIntervals();
+            this.minimumGranularity = constraint.getMinimumGranularity();
+            this.requestGranularity = constraint.getRequestGranularity();
+            this.availabilityVersion = availabilityVersion;
+
+            int tablesHash = 1;
+            for (PhysicalTable table : this.candidateTables) {
+                tablesHash = 31 * tablesHash + System.identityHashCode(table);
+            }
+            this.hashCode = Objects.hash(
+                    tablesHash,
+                    logicalTable,
+                    requestDimensions,
+                    filterDimensions,
+                    metricDimensions,
+                    metricNames,
+                    logicalMetricNames,
+                    apiFilters,
+                    intervals,
+                    minimumGranularity,
+                    requestGranularity,
+                    availabilityVersion
+            );
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof ResolutionKey)) {
+                return false;
+            }
+            ResolutionKey that = (ResolutionKey) o;
+            if (hashCode != that.hashCode
+                    || availabilityVersion != that.availabilityVersion
+                    || candidateTables.length != that.candidateTables.length) {
+                return false;
+            }
+            for (int i = 0; i < candidateTables.length; i++) {
+                if (candidateTables[i] != that.candidateTables[i]) {
+                    return false;
+                }
+            }
+            return Objects.equals(logicalTable, that.logicalTable)
+                    && Objects.equals(requestDimensions, that.requestDimensions)
+                    && Objects.equals(filterDimensions, that.filterDimensions)
+                    && Objects.equals(metricDimensions, that.metricDimensions)
+                    && Objects.equals(metricNames, that.metricNames)
+                    && Objects.equals(logicalMetricNames, that.logicalMetricNames)
+                    && Objects.equals(apiFilters, that.apiFilters)
+                    && Objects.equals(intervals, that.intervals)
+                    && Objects.equals(minimumGranularity, that.minimumGranularity)
+                    && Objects.equals(requestGranularity, that.requestGranularity);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
         }
     }
 }
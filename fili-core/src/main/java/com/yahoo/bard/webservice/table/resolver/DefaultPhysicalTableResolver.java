@@ -5,6 +5,7 @@ package com.yahoo.bard.webservice.table.resolver;
 import com.yahoo.bard.webservice.config.BardFeatureFlag;
 import com.yahoo.bard.webservice.data.PartialDataHandler;
 import com.yahoo.bard.webservice.data.volatility.VolatileIntervalsService;
+import com.yahoo.bard.webservice.metadata.DataSourceMetadataService;
 import com.yahoo.bard.webservice.table.PhysicalTable;
 import com.yahoo.bard.webservice.util.ChainingComparator;
 
@@ -32,6 +33,7 @@ public class DefaultPhysicalTableResolver extends BasePhysicalTableResolver {
 
     private final PartialDataHandler partialDataHandler;
     private final VolatileIntervalsService volatileIntervalsService;
+    private final DataSourceMetadataService dataSourceMetadataService;
 
     /**
      * Constructor.
@@ -39,13 +41,30 @@ public class DefaultPhysicalTableResolver extends BasePhysicalTableResolver {
      * @param partialDataHandler  Handler for to use for PartialData
      * @param volatileIntervalsService  Service to get volatile intervals from
      */
-    @Inject
     public DefaultPhysicalTableResolver(
             PartialDataHandler partialDataHandler,
             VolatileIntervalsService volatileIntervalsService
+    ) {
+        this(partialDataHandler, volatileIntervalsService, null);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param partialDataHandler  Handler for to use for PartialData
+     * @param volatileIntervalsService  Service to get volatile intervals from
+     * @param dataSourceMetadataService  Service whose segment metadata version is the availability version of cached
+     * resolutions, or null to rely on cached resolutions expiring
+     */
+    @Inject
+    public DefaultPhysicalTableResolver(
+            PartialDataHandler partialDataHandler,
+            VolatileIntervalsService volatileIntervalsService,
+            DataSourceMetadataService dataSourceMetadataService
     ) {
         this.partialDataHandler = partialDataHandler;
         this.volatileIntervalsService = volatileIntervalsService;
+        this.dataSourceMetadataService = dataSourceMetadataService;
     }
 
     @Override
@@ -73,4 +92,9 @@ public class DefaultPhysicalTableResolver extends BasePhysicalTableResolver {
         ChainingComparator<PhysicalTable> tableComparator = new ChainingComparator<>(comparators);
         return BinaryOperator.minBy(tableComparator);
     }
+
+    @Override
+    protected long getAvailabilityVersion() {
+        return dataSourceMetadataService == null ? 0 : dataSourceMetadataService.getVersion();
+    }
 }
@@ -5,10 +5,12 @@ package com.yahoo.bard.webservice.util;
 import com.yahoo.bard.webservice.web.PageNotFoundException;
 import com.yahoo.bard.webservice.web.util.PaginationParameters;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.OptionalInt;
+import java.util.RandomAccess;
 import java.util.stream.Collectors;
 
 /**
@@ -49,13 +51,22 @@ public class AllPagesPagination<T> implements Pagination<T> {
             throw new PageNotFoundException(this.pageToFetch, this.countPerPage, lastPage);
         }
 
-        this.pageOfData = Collections.unmodifiableList(
-                entireCollection
-                        .stream()
-                        .skip((pageToFetch - 1) * countPerPage)
-                        .limit(countPerPage)
-                        .collect(Collectors.toList())
-        );
+        if (entireCollection instanceof List && entireCollection instanceof RandomAccess) {
+            // Copy just the page, rather than walking the collection up to it
+            int fromIndex = (pageToFetch - 1) * countPerPage;
+            int toIndex = Math.min(fromIndex + countPerPage, collectionSize);
+            this.pageOfData = Collections.unmodifiableList(
+                    new ArrayList<>(((List<T>) entireCollection).subList(fromIndex, toIndex))
+            );
+        } else {
+            this.pageOfData = Collections.unmodifiableList(
+                    entireCollection
+                            .stream()
+                            .skip((pageToFetch - 1) * countPerPage)
+                            .limit(countPerPage)
+                            .collect(Collectors.toList())
+            );
+        }
     }
 
     @Override
@@ -0,0 +1,174 @@
+// Copyright 2017 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.util;
+
+import java.util.Arrays;
+
+/**
+ * Utils for sorting rows by primitive keys, when only some of the sorted rows are needed.
+ * <p>
+ * Rows are identified by their index in the key array. Rows with equal keys keep their relative order, so the rows
+ * picked out for a range of the sorted order are the ones a stable sort of all the rows would put there.
+ */
+public class PartialSortUtils {
+
+    /**
+     * Get the rows which a stable sort by key would put at some range of positions, in sorted order.
+     * <p>
+     * The rows in the range are found by selection, so only they are sorted, and picking out a page of a large sorted
+     * result costs time linear in the number of rows rather than a full sort.
+     *
+     * @param keys  The sort key of each row
+     * @param ascending  True to sort in ascending key order, false for descending
+     * @param fromIndex  The first position in sorted order to get, inclusive
+     * @param toIndex  The last position in sorted order to get, exclusive
+     *
+     * @return the indexes of the rows at the positions in the range, in sorted order
+     * @throws IndexOutOfBoundsException if the range isn't within the rows
+     */
+    public static int[] sortedRange(long[] keys, boolean ascending, int fromIndex, int toIndex) {
+        int size = keys.length;
+        if (fromIndex < 0 || toIndex > size || fromIndex > toIndex) {
+            throw new IndexOutOfBoundsException(
+                    String.format("Range: [%d, %d), Size: %d", fromIndex, toIndex, size)
+            );
+        }
+
+        int[] order = new int[size];
+        boolean sorted = true;
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+            if (i > 0 && compare(keys, ascending, i - 1, i) > 0) {
+                sorted = false;
+            }
+        }
+
+        if (!sorted && fromIndex < toIndex) {
+            if (fromIndex > 0) {
+                select(keys, ascending, order, 0, size, fromIndex);
+            }
+            if (toIndex < size) {
+                select(keys, ascending, order, fromIndex, size, toIndex);
+            }
+            sort(keys, ascending, order, fromIndex, toIndex);
+        }
+        return Arrays.copyOfRange(order, fromIndex, toIndex);
+    }
+
+    /**
+     * Rearrange part of the row order so that the row at a position is the one sorting would put there, with the rows
+     * that sort before it ahead of it and the rest after it.
+     * <p>
+     * Falls back to sorting the part still being searched if the pivots keep splitting it badly.
+     *
+     * @param keys  The sort key of each row
+     * @param ascending  True to sort in ascending key order, false for descending
+     * @param order  The row order being rearranged
+     * @param low  The start of the part to rearrange, inclusive
+     * @param high  The end of the part to rearrange, exclusive
+     * @param position  The position to select the row for, within the part
+     */
+    private static void select(long[] keys, boolean ascending, int[] order, int low, int high, int position) {
+        int depthLimit = 2 * (32 - Integer.numberOfLeadingZeros(high - low));
+        while (high - low > 1) {
+            if (depthLimit-- == 0) {
+                sort(keys, ascending, order, low, high);
+                return;
+            }
+
+            // Median of three pivot, moved to the end of the part
+            int middle = low + (high - low) / 2;
+            if (compare(keys, ascending, order[middle], order[low]) < 0) {
+                swap(order, middle, low);
+            }
+            if (compare(keys, ascending, order[high - 1], order[low]) < 0) {
+                swap(order, high - 1, low);
+            }
+            if (compare(keys, ascending, order[middle], order[high - 1]) < 0) {
+                swap(order, middle, high - 1);
+            }
+            int pivot = order[high - 1];
+
+            // No two rows compare equal, so each row goes to exactly one side of the pivot
+            int store = low;
+            for (int i = low; i < high - 1; i++) {
+                if (compare(keys, ascending, order[i], pivot) < 0) {
+                    swap(order, i, store++);
+                }
+            }
+            swap(order, store, high - 1);
+
+            if (store == position) {
+                return;
+            } else if (position < store) {
+                high = store;
+            } else {
+                low = store + 1;
+            }
+        }
+    }
+
+    /**
+     * Sort part of the row order.
+     *
+     * @param keys  The sort key of each row
+     * @param ascending  True to sort in ascending key order, false for descending
+     * @param order  The row order being sorted
+     * @param low  The start of the part to sort, inclusive
+     * @param high  The end of the part to sort, exclusive
+     */
+    private static void sort(long[] keys, boolean ascending, int[] order, int low, int high) {
+        // Bottom up merge sort, which works directly on the primitive keys
+        int length = high - low;
+        int[] source = Arrays.copyOfRange(order, low, high);
+        int[] buffer = new int[length];
+        for (int width = 1; width < length; width *= 2) {
+            for (int start = 0; start < length; start += 2 * width) {
+                int middle = Math.min(start + width, length);
+                int end = Math.min(start + 2 * width, length);
+                int left = start;
+                int right = middle;
+                for (int out = start; out < end; out++) {
+                    boolean takeLeft = left < middle
+                            && (right >= end || compare(keys, ascending, source[left], source[right]) < 0);
+                    buffer[out] = takeLeft ? source[left++] : source[right++];
+                }
+            }
+            int[] swap = source;
+            source = buffer;
+            buffer = swap;
+        }
+        System.arraycopy(source, 0, order, low, length);
+    }
+
+    /**
+     * Compare two rows by key, breaking ties by row index so that the sort is stable.
+     *
+     * @param keys  The sort key of each row
+     * @param ascending  True to compare in ascending key order, false for descending
+     * @param row1  The index of the first row
+     * @param row2  The index of the second row
+     *
+     * @return a negative number, zero or a positive number as the first row sorts before, with or after the second
+     */
+    private static int compare(long[] keys, boolean ascending, int row1, int row2) {
+        int comparison = Long.compare(keys[row1], keys[row2]);
+        if (comparison != 0) {
+            return ascending ? comparison : -comparison;
+        }
+        return Integer.compare(row1, row2);
+    }
+
+    /**
+     * Swap two positions of the row order.
+     *
+     * @param order  The row order
+     * @param i  The first position
+     * @param j  The second position
+     */
+    private static void swap(int[] order, int i, int j) {
+        int row = order[i];
+        order[i] = order[j];
+        order[j] = row;
+    }
+}
@@ -9,31 +9,49 @@ import org.joda.time.DateTime;
 import org.joda.time.Interval;
 import org.joda.time.ReadablePeriod;
 
-import java.util.ArrayList;
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
 import java.util.function.BiPredicate;
 import java.util.function.Function;
 import java.util.function.Predicate;
 import java.util.stream.Collector;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 import javax.validation.constraints.NotNull;
 
 /**
  * A simplified interval list is a list of intervals, ordered by time, expressed in as few intervals as possible
  * (i.e. adjacent and overlapping intervals are combined into a single interval).
+ * <p>
+ * The intervals are held in arrays, alongside the start and end instants of each interval, so that unions,
+ * intersections and subtractions are linear merges over the instants, and containment checks are binary searches.
+ * <p>
+ * The list is serializable, so that it can be kept in a {@code ResponseContext} and in serialized PreResponses.
  */
-public class SimplifiedIntervalList extends LinkedList<Interval> {
+public class SimplifiedIntervalList extends AbstractList<Interval> implements RandomAccess, Serializable {
+
+    private static final long serialVersionUID = -2297314618713633384L;
+
+    private static final Interval[] NO_INTERVALS = new Interval[0];
+    private static final long[] NO_INSTANTS = new long[0];
 
     /**
      * Function to iterate an iterator if it has a next element, otherwise return null.
      */
-    protected Function<Iterator<Interval>, Interval> getNextIfAvailable = (it) -> it.hasNext() ? it.next() : null;
+    protected transient Function<Iterator<Interval>, Interval> getNextIfAvailable =
+            (it) -> it.hasNext() ? it.next() : null;
+
+    private Interval[] intervals = NO_INTERVALS;
+    private long[] starts = NO_INSTANTS;
+    private long[] ends = NO_INSTANTS;
+    private int size = 0;
 
     /**
      * Constructor.
@@ -48,7 +66,7 @@ public class SimplifiedIntervalList extends LinkedList<Interval> {
      * @param intervals  A collection of intervals
      */
     public SimplifiedIntervalList(Collection<Interval> intervals) {
-        super(simplifyIntervals(intervals));
+        this(simplifyIntervals(intervals));
     }
 
     /**
@@ -67,7 +85,80 @@ public class SimplifiedIntervalList extends LinkedList<Interval> {
      * @param intervals  A simplified list of intervals
      */
     public SimplifiedIntervalList(SimplifiedIntervalList intervals) {
-        super(intervals);
+        super();
+        this.size = intervals.size;
+        this.intervals = Arrays.copyOf(intervals.intervals, size);
+        this.starts = Arrays.copyOf(intervals.starts, size);
+        this.ends = Arrays.copyOf(intervals.ends, size);
+    }
+
+    @Override
+    public Interval get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        return intervals[index];
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Get the earliest interval of the list.
+     *
+     * @return the first interval
+     *
+     * @throws NoSuchElementException if the list is empty
+     */
+    public Interval getFirst() {
+        if (size == 0) {
+            throw new NoSuchElementException();
+        }
+        return intervals[0];
+    }
+
+    /**
+     * Get the latest interval of the list.
+     *
+     * @return the last interval
+     *
+     * @throws NoSuchElementException if the list is empty
+     */
+    public Interval getLast() {
+        if (size == 0) {
+            throw new NoSuchElementException();
+        }
+        return intervals[size - 1];
+    }
+
+    /**
+     * Get the earliest interval of the list, if there is one.
+     *
+     * @return the first interval, or null if the list is empty
+     */
+    public Interval peekFirst() {
+        return size == 0 ? null : intervals[0];
+    }
+
+    /**
+     * Get the latest interval of the list, if there is one.
+     *
+     * @return the last interval, or null if the list is empty
+     */
+    public Interval peekLast() {
+        return size == 0 ? null : intervals[size - 1];
+    }
+
+    /**
+     * Rebuild a deserialized list through the copy constructor, so that its transient state is set up again and its
+     * arrays are trimmed to its size.
+     *
+     * @return the list to use in place of the deserialized one
+     */
+    private Object readResolve() {
+        return new SimplifiedIntervalList(this);
     }
 
     /**
@@ -91,18 +182,29 @@ public class SimplifiedIntervalList extends LinkedList<Interval> {
      */
     @SafeVarargs
     public static SimplifiedIntervalList simplifyIntervals(Collection<Interval>... intervals) {
-        Stream<Interval> allIntervals = Stream.empty();
+        int count = 0;
         for (Collection<Interval> intervalCollection : intervals) {
-            allIntervals = Stream.concat(allIntervals, intervalCollection.stream());
+            count += intervalCollection.size();
+        }
+        Interval[] allIntervals = new Interval[count];
+        int next = 0;
+        for (Collection<Interval> intervalCollection : intervals) {
+            for (Interval interval : intervalCollection) {
+                allIntervals[next++] = interval;
+            }
         }
+        // Stable, so intervals starting at the same instant keep the order they were given in
+        Arrays.sort(allIntervals, IntervalStartComparator.INSTANCE);
 
-        return allIntervals
-                .sorted(IntervalStartComparator.INSTANCE::compare)
-                .collect(getCollector());
+        SimplifiedIntervalList simplified = new SimplifiedIntervalList();
+        for (Interval interval : allIntervals) {
+            simplified.appendWithMerge(interval);
+        }
+        return simplified;
     }
 
     /**
-     * Given a sorted linked list of intervals, add the following interval to the end, merging the incoming interval
+     * Given a sorted list of intervals, add the following interval to the end, merging the incoming interval
      * to any tail intervals which overlap or abut with it.
      * <p>
      * In the case where added intervals are at the end of the list, this is efficient. In the case where they are not,
@@ -111,33 +213,34 @@ public class SimplifiedIntervalList extends LinkedList<Interval> {
      * @param interval  The interval to be merged and added to this list
      */
     private void appendWithMerge(Interval interval) {
+        long start = interval.getStartMillis();
+        long end = interval.getEndMillis();
+
         // Do not store empty intervals
-        if (interval.toDurationMillis() == 0) {
+        if (start == end) {
             return;
         }
 
-        if (isEmpty()) {
-            addLast(interval);
+        if (size == 0) {
+            append(interval, start, end);
             return;
         }
-        final Interval previous = peekLast();
 
-        // If this interval does not belong at the end, removeLast until it does
-        if (interval.getStart().isBefore(previous.getStart())) {
-            mergeInner(interval);
+        // If this interval does not belong at the end, back off the list until it does
+        if (start < starts[size - 1]) {
+            mergeInner(interval, start);
             return;
         }
 
-        if (previous.gap(interval) != null) {
-            addLast(interval);
+        // Intervals with a gap between them are kept apart, overlapping and abutting ones are combined
+        if (start > ends[size - 1]) {
+            append(interval, start, end);
             return;
         }
-        removeLast();
-        Interval newEnd = new Interval(
-                Math.min(previous.getStartMillis(), interval.getStartMillis()),
-                Math.max(previous.getEndMillis(), interval.getEndMillis())
-        );
-        addLast(newEnd);
+        if (end > ends[size - 1]) {
+            ends[size - 1] = end;
+        }
+        intervals[size - 1] = new Interval(starts[size - 1], ends[size - 1]);
     }
 
     /**
@@ -145,17 +248,92 @@ public class SimplifiedIntervalList extends LinkedList<Interval> {
      * the original contents of the list back in.
      *
      * @param interval  The interval to be merged and added
+     * @param start  The start of the interval
      */
-    private void mergeInner(Interval interval) {
-        Interval previous = peekLast();
-        LinkedList<Interval> buffer = new LinkedList<>();
-        while (previous != null && interval.getStart().isBefore(previous.getStart())) {
-            buffer.addFirst(previous);
-            removeLast();
-            previous = peekLast();
+    private void mergeInner(Interval interval, long start) {
+        int keep = size;
+        while (keep > 0 && start < starts[keep - 1]) {
+            keep--;
         }
+        Interval[] buffer = Arrays.copyOfRange(intervals, keep, size);
+        Arrays.fill(intervals, keep, size, null);
+        size = keep;
+
         appendWithMerge(interval);
-        buffer.stream().forEach(this::appendWithMerge);
+        for (Interval buffered : buffer) {
+            appendWithMerge(buffered);
+        }
+    }
+
+    /**
+     * Add an interval to the end of the list, without merging it.
+     *
+     * @param interval  The interval to add
+     * @param start  The start of the interval
+     * @param end  The end of the interval
+     */
+    private void append(Interval interval, long start, long end) {
+        if (size == intervals.length) {
+            int capacity = Math.max(4, size * 2);
+            intervals = Arrays.copyOf(intervals, capacity);
+            starts = Arrays.copyOf(starts, capacity);
+            ends = Arrays.copyOf(ends, capacity);
+        }
+        intervals[size] = interval;
+        starts[size] = start;
+        ends[size] = end;
+        size++;
+    }
+
+    /**
+     * Add the part of one of the intervals of this list between two instants to the end of another list, in the
+     * chronology of the interval it was taken from.
+     *
+     * @param target  The list to add the part to
+     * @param index  The index of the interval the part is taken from
+     * @param start  The start of the part
+     * @param end  The end of the part
+     */
+    private void appendPart(SimplifiedIntervalList target, int index, long start, long end) {
+        if (start == starts[index] && end == ends[index]) {
+            target.appendWithMerge(intervals[index]);
+        } else {
+            target.appendWithMerge(new Interval(start, end, intervals[index].getChronology()));
+        }
+    }
+
+    /**
+     * Find the first interval which ends after an instant.
+     *
+     * @param instant  The instant to search for
+     *
+     * @return the index of the first interval ending after the instant, or the size of the list if there is none
+     */
+    private int indexOfFirstEndAfter(long instant) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (ends[middle] <= instant) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Whether an interval is fully contained by one of the intervals of this list.
+     *
+     * @param interval  The interval to check
+     *
+     * @return true if the interval is a subinterval of this list
+     */
+    private boolean containsSubinterval(Interval interval) {
+        long start = interval.getStartMillis();
+        int index = indexOfFirstEndAfter(start);
+        return index < size && starts[index] <= start && interval.getEndMillis() <= ends[index];
     }
 
     /**
@@ -226,6 +404,8 @@ public class SimplifiedIntervalList extends LinkedList<Interval> {
      */
     public static class IsSubinterval extends SkippingIntervalPredicate {
 
+        private final SimplifiedIntervalList supplyList;
+
         /**
          * Filter in intervals from the stream that are fully contained by the supply.
          */
@@ -239,11 +419,26 @@ public class SimplifiedIntervalList extends LinkedList<Interval> {
          */
         public IsSubinterval(SimplifiedIntervalList supplyList) {
             super(supplyList, IS_SUBINTERVAL, false);
+            this.supplyList = supplyList;
+        }
+
+        /**
+         * Test whether an interval is fully contained by the supply, with a binary search of the supply.
+         * <p>
+         * Unlike other skipping predicates, intervals can be tested in any order.
+         *
+         * @param testInterval  The interval to test
+         *
+         * @return true if the interval is a subinterval of the supply
+         */
+        @Override
+        public boolean test(Interval testInterval) {
+            return supplyList.containsSubinterval(testInterval);
         }
     }
 
     /**
-     * Only internal calls to linked list mutators should be used to change the list.
+     * Only internal mutators should be used to change the list.
      *
      * @param e  Any element to be added
      *
@@ -275,7 +470,18 @@ public class SimplifiedIntervalList extends LinkedList<Interval> {
      * @return A new simplified list containing all subintervals of both this and that.
      */
     public SimplifiedIntervalList union(SimplifiedIntervalList that) {
-        return simplifyIntervals(this, that);
+        SimplifiedIntervalList union = new SimplifiedIntervalList();
+        int thisIndex = 0;
+        int thatIndex = 0;
+        while (thisIndex < size || thatIndex < that.size) {
+            // Take whichever interval starts first, preferring this list's
+            if (thatIndex == that.size || (thisIndex < size && starts[thisIndex] <= that.starts[thatIndex])) {
+                union.appendWithMerge(intervals[thisIndex++]);
+            } else {
+                union.appendWithMerge(that.intervals[thatIndex++]);
+            }
+        }
+        return union;
     }
 
     /**
@@ -286,23 +492,23 @@ public class SimplifiedIntervalList extends LinkedList<Interval> {
      * @return A new simplified interval list whose intervals are all subintervals of this and that.
      */
     public SimplifiedIntervalList intersect(SimplifiedIntervalList that) {
-        Iterator<Interval> theseIntervals = this.iterator();
-        Iterator<Interval> thoseIntervals = that.iterator();
-        Interval thisCurrent = getNextIfAvailable.apply(theseIntervals);
-        Interval thatCurrent = getNextIfAvailable.apply(thoseIntervals);
-        List<Interval> collected = new ArrayList<>();
-
-        while (thisCurrent != null && thatCurrent != null) {
-            if (thisCurrent.overlaps(thatCurrent)) {
-                collected.add(thisCurrent.overlap(thatCurrent));
+        SimplifiedIntervalList intersection = new SimplifiedIntervalList();
+        int thisIndex = 0;
+        int thatIndex = 0;
+        while (thisIndex < size && thatIndex < that.size) {
+            long start = Math.max(starts[thisIndex], that.starts[thatIndex]);
+            long end = Math.min(ends[thisIndex], that.ends[thatIndex]);
+            if (start < end) {
+                appendPart(intersection, thisIndex, start, end);
             }
-            if (thisCurrent.isBefore(thatCurrent.getEnd())) {
-                thisCurrent = getNextIfAvailable.apply(theseIntervals);
+            // Advance past whichever interval ends first
+            if (ends[thisIndex] <= that.ends[thatIndex]) {
+                thisIndex++;
             } else {
-                thatCurrent = getNextIfAvailable.apply(thoseIntervals);
+                thatIndex++;
             }
         }
-        return new SimplifiedIntervalList(collected);
+        return intersection;
     }
 
     /**
@@ -313,46 +519,33 @@ public class SimplifiedIntervalList extends LinkedList<Interval> {
      * @return A new simplified interval list whose intervals are all subintervals of this and not that
      */
     public SimplifiedIntervalList subtract(SimplifiedIntervalList that) {
-        Iterator<Interval> theseIntervals = this.iterator();
-        Interval thisCurrent = getNextIfAvailable.apply(theseIntervals);
-
-        if (thisCurrent == null) {
-            return new SimplifiedIntervalList();
-        }
-
-        Iterator<Interval> thoseIntervals = that.iterator();
-
-        Interval thatCurrent = getNextIfAvailable.apply(thoseIntervals);
-        List<Interval> collected = new ArrayList<>();
-
-        while (thisCurrent != null && thatCurrent != null) {
-            if (thisCurrent.isBefore(thatCurrent)) {
-                // Non overlapping intervals are simply collected
-                collected.add(thisCurrent);
-            } else if (thisCurrent.overlaps(thatCurrent)) {
-                // Take any part of the source interval that lies before an overlap
-                if (thisCurrent.getStart().isBefore(thatCurrent.getStart())) {
-                    collected.add(new Interval(thisCurrent.getStart(), thatCurrent.getStart()));
+        SimplifiedIntervalList difference = new SimplifiedIntervalList();
+        int thatIndex = 0;
+        for (int thisIndex = 0; thisIndex < size; thisIndex++) {
+            // The part of this interval not yet subtracted from
+            long start = starts[thisIndex];
+            long end = ends[thisIndex];
+
+            // Skip the intervals of that which end before the remaining part starts
+            while (thatIndex < that.size && that.ends[thatIndex] <= start) {
+                thatIndex++;
+            }
+            // Cut out the intervals of that which overlap the remaining part
+            while (thatIndex < that.size && that.starts[thatIndex] < end) {
+                if (start < that.starts[thatIndex]) {
+                    appendPart(difference, thisIndex, start, that.starts[thatIndex]);
                 }
-                // Truncate out any overlap from the source interval and continue
-                if (!thisCurrent.getEnd().isBefore(thatCurrent.getEnd())) {
-                    thisCurrent = new Interval(thatCurrent.getEnd(), thisCurrent.getEnd());
+                start = Math.max(start, that.ends[thatIndex]);
+                if (that.ends[thatIndex] >= end) {
+                    break;
                 }
+                thatIndex++;
             }
-            // Advance to the next interval to consider
-            if (thisCurrent.isBefore(thatCurrent.getEnd())) {
-                thisCurrent = getNextIfAvailable.apply(theseIntervals);
-            } else {
-                thatCurrent = getNextIfAvailable.apply(thoseIntervals);
-            }
-        }
-        if (thatCurrent == null) {
-            collected.add(thisCurrent);
-            while (theseIntervals.hasNext()) {
-                collected.add(theseIntervals.next());
+            if (start < end) {
+                appendPart(difference, thisIndex, start, end);
             }
         }
-        return new SimplifiedIntervalList(collected);
+        return difference;
     }
 
     /**
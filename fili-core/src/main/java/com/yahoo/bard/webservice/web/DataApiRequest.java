@@ -40,7 +40,7 @@ import javax.ws.rs.core.UriInfo;
     /**
      * Builds and returns the Druid filters from this request's {@link ApiFilter}s.
      * <p>
-     * The Druid filters are built (an expensive operation) every time this method is called. Use it judiciously.
+     * Building the Druid filters is an expensive operation, so implementations should build them at most once.
      *
      * @return the Druid filter
      */
@@ -7,6 +7,7 @@ import com.yahoo.bard.webservice.config.BardFeatureFlag;
 import com.yahoo.bard.webservice.util.Pagination;
 import com.yahoo.bard.webservice.util.SimplifiedIntervalList;
 
+import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.core.JsonGenerator;
 
 import org.joda.time.Interval;
@@ -23,6 +24,7 @@ import java.util.Map;
 public abstract class JsonAndJsonApiResponseWriter implements ResponseWriter {
 
     private final ObjectMappersSuite objectMappers;
+    private final JsonFactory jsonFactory;
 
     /**
      * Constructor for both Json and JsonApi format serializer.
@@ -31,12 +33,22 @@ public abstract class JsonAndJsonApiResponseWriter implements ResponseWriter {
      */
     public JsonAndJsonApiResponseWriter(ObjectMappersSuite objectMappers) {
         this.objectMappers = objectMappers;
+        this.jsonFactory = new JsonFactory(objectMappers.getMapper());
     }
 
     protected ObjectMappersSuite getObjectMappers() {
         return objectMappers;
     }
 
+    /**
+     * Get the factory for the generators that write responses, which is shared by all the responses written.
+     *
+     * @return the JsonFactory
+     */
+    protected JsonFactory getJsonFactory() {
+        return jsonFactory;
+    }
+
     /**
      * Builds the meta object for the JSON response. The meta object is only built if there were missing intervals, or
      * the results are being paginated.
@@ -8,7 +8,6 @@ import com.yahoo.bard.webservice.data.dimension.Dimension;
 import com.yahoo.bard.webservice.data.dimension.DimensionColumn;
 import com.yahoo.bard.webservice.data.dimension.DimensionField;
 
-import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.core.JsonGenerator;
 
 import org.slf4j.Logger;
@@ -101,8 +100,7 @@ public class JsonApiResponseWriter extends JsonAndJsonApiResponseWriter {
             ResponseData responseData,
             OutputStream os
     ) throws IOException {
-        JsonFactory jsonFactory = new JsonFactory(getObjectMappers().getMapper());
-        try (JsonGenerator generator = jsonFactory.createGenerator(os)) {
+        try (JsonGenerator generator = getJsonFactory().createGenerator(os)) {
             // Holder for the dimension rows in the result set
             Map<Dimension, Set<Map<DimensionField, String>>> sidecars = new HashMap<>();
             for (DimensionColumn dimensionColumn :
@@ -115,10 +113,12 @@ public class JsonApiResponseWriter extends JsonAndJsonApiResponseWriter {
 
             // Write the data rows and extract the dimension rows for the sidecars
             generator.writeArrayFieldStart("rows");
+            JsonRowWriter rowWriter = new JsonRowWriter(responseData, getObjectMappers().getMapper(), true);
             for (Result result : responseData.getResultSet()) {
-                generator.writeObject(responseData.buildResultRowWithSidecars(result, sidecars));
+                rowWriter.writeRow(generator, result, sidecars);
             }
             generator.writeEndArray();
+            rowWriter.collectSidecars(sidecars);
 
             // Write the sidecar for each dimension
             for (Map.Entry<Dimension, Set<Map<DimensionField, String>>> sidecar : sidecars.entrySet()) {
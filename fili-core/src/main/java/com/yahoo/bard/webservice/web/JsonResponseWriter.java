@@ -5,7 +5,6 @@ package com.yahoo.bard.webservice.web;
 import com.yahoo.bard.webservice.application.ObjectMappersSuite;
 import com.yahoo.bard.webservice.data.Result;
 
-import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.core.JsonGenerator;
 
 import org.slf4j.Logger;
@@ -70,13 +69,13 @@ public class JsonResponseWriter extends JsonAndJsonApiResponseWriter {
             ResponseData responseData,
             OutputStream os
     ) throws IOException {
-        JsonFactory jsonFactory = new JsonFactory(getObjectMappers().getMapper());
-        try (JsonGenerator g = jsonFactory.createGenerator(os)) {
+        try (JsonGenerator g = getJsonFactory().createGenerator(os)) {
             g.writeStartObject();
 
             g.writeArrayFieldStart("rows");
+            JsonRowWriter rowWriter = new JsonRowWriter(responseData, getObjectMappers().getMapper(), false);
             for (Result result : responseData.getResultSet()) {
-                g.writeObject(responseData.buildResultRow(result));
+                rowWriter.writeRow(g, result, null);
             }
             g.writeEndArray();
 
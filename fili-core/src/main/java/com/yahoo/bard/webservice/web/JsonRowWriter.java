@@ -0,0 +1,283 @@
+// Copyright 2017 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.web;
+
+import com.yahoo.bard.webservice.data.Result;
+import com.yahoo.bard.webservice.data.dimension.Dimension;
+import com.yahoo.bard.webservice.data.dimension.DimensionColumn;
+import com.yahoo.bard.webservice.data.dimension.DimensionField;
+import com.yahoo.bard.webservice.data.dimension.DimensionRow;
+import com.yahoo.bard.webservice.data.metric.MetricColumn;
+import com.yahoo.bard.webservice.util.DateTimeFormatterFactory;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import org.joda.time.DateTime;
+import org.joda.time.format.DateTimeFormatter;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Writes the rows of a JSON or JSON-API response straight to a {@link JsonGenerator}, without building a map for each
+ * row.
+ * <p>
+ * What to write for each dimension and metric column is worked out once, when the writer is built, from the response's
+ * schema and requested dimension fields. The rows written are the same as the ones built by
+ * {@link ResponseData#buildResultRow} and {@link ResponseData#buildResultRowWithSidecars}. If two fields of a row would
+ * have the same name, the writer falls back to building and serializing those maps, so the duplicate is resolved the
+ * same way.
+ * <p>
+ * A row writer keeps state between rows and is meant to write a single response on a single thread.
+ */
+public class JsonRowWriter {
+
+    private static final SerializedString DATE_TIME = new SerializedString(DataApiRequest.DATE_TIME_STRING);
+
+    private final ResponseData responseData;
+    private final boolean withSidecars;
+    private final boolean bigDecimalAsPlain;
+    private final DateTimeFormatter dateTimeFormatter = DateTimeFormatterFactory.getOutputFormatter();
+
+    private final Map<Dimension, DimensionWriter> dimensionWriters = new IdentityHashMap<>();
+    private final MetricColumn[] metricColumns;
+    private final SerializedString[] metricNames;
+    private final boolean direct;
+
+    // The distinct dimension rows seen by each dimension with sidecar fields, in the order they were first seen
+    private final Map<Dimension, Set<DimensionRow>> sidecarRows = new IdentityHashMap<>();
+
+    private DateTime lastTimestamp;
+    private String lastFormattedTimestamp;
+
+    /**
+     * Constructor.
+     *
+     * @param responseData  Data object containing all the result information
+     * @param mapper  The mapper that would otherwise serialize the rows
+     * @param withSidecars  Whether to write JSON-API rows and collect their dimension rows for the sidecars, rather
+     * than writing JSON rows
+     */
+    public JsonRowWriter(ResponseData responseData, ObjectMapper mapper, boolean withSidecars) {
+        this.responseData = responseData;
+        this.withSidecars = withSidecars;
+        this.bigDecimalAsPlain = mapper.isEnabled(SerializationFeature.WRITE_BIGDECIMAL_AS_PLAIN);
+
+        Set<String> fieldNames = new HashSet<>();
+        boolean unique = fieldNames.add(DATE_TIME.getValue());
+        for (DimensionColumn dimensionColumn : responseData.getResultSet().getSchema().getColumns(
+                DimensionColumn.class
+        )) {
+            DimensionWriter dimensionWriter = getDimensionWriter(dimensionColumn.getDimension());
+            for (SerializedString name : dimensionWriter.names) {
+                unique &= fieldNames.add(name.getValue());
+            }
+        }
+
+        metricColumns = responseData.getApiMetricColumns().toArray(new MetricColumn[0]);
+        metricNames = new SerializedString[metricColumns.length];
+        for (int i = 0; i < metricColumns.length; i++) {
+            metricNames[i] = new SerializedString(metricColumns[i].getName());
+            unique &= fieldNames.add(metricNames[i].getValue());
+        }
+        direct = unique;
+    }
+
+    /**
+     * Write a result as a row object.
+     *
+     * @param generator  The generator to write the row to
+     * @param result  The result to write
+     * @param sidecars  Map of sidecar data to fill in if rows can't be written directly, unused for JSON rows
+     *
+     * @throws IOException if the generator throws an IOException
+     */
+    public void writeRow(
+            JsonGenerator generator,
+            Result result,
+            Map<Dimension, Set<Map<DimensionField, String>>> sidecars
+    ) throws IOException {
+        if (!direct) {
+            generator.writeObject(
+                    withSidecars
+                            ? responseData.buildResultRowWithSidecars(result, sidecars)
+                            : responseData.buildResultRow(result)
+            );
+            return;
+        }
+
+        generator.writeStartObject();
+
+        generator.writeFieldName(DATE_TIME);
+        generator.writeString(formatTimestamp(result.getTimeStamp()));
+
+        for (Map.Entry<DimensionColumn, DimensionRow> entry : result.getDimensionRows().entrySet()) {
+            getDimensionWriter(entry.getKey().getDimension()).write(generator, entry.getValue());
+        }
+
+        for (int i = 0; i < metricColumns.length; i++) {
+            generator.writeFieldName(metricNames[i]);
+            writeValue(generator, result.getMetricValue(metricColumns[i]));
+        }
+
+        generator.writeEndObject();
+    }
+
+    /**
+     * Add the requested fields of the dimension rows seen by the rows written so far to the sidecars.
+     *
+     * @param sidecars  Map of sidecar data to add the dimension rows to
+     */
+    public void collectSidecars(Map<Dimension, Set<Map<DimensionField, String>>> sidecars) {
+        for (Map.Entry<Dimension, Set<DimensionRow>> entry : sidecarRows.entrySet()) {
+            DimensionWriter dimensionWriter = dimensionWriters.get(entry.getKey());
+            Set<Map<DimensionField, String>> sidecar = sidecars.get(entry.getKey());
+            for (DimensionRow dimensionRow : entry.getValue()) {
+                Map<DimensionField, String> dimensionFieldToValueMap = new LinkedHashMap<>();
+                for (DimensionField dimensionField : dimensionWriter.sidecarFields) {
+                    dimensionFieldToValueMap.put(dimensionField, dimensionRow.get(dimensionField));
+                }
+                sidecar.add(dimensionFieldToValueMap);
+            }
+        }
+        sidecarRows.clear();
+    }
+
+    /**
+     * Format a timestamp, reusing the last formatted timestamp when it's the same, as it usually is for rows which are
+     * sorted by time.
+     *
+     * @param timestamp  The timestamp to format
+     *
+     * @return the formatted timestamp
+     */
+    private String formatTimestamp(DateTime timestamp) {
+        if (!timestamp.equals(lastTimestamp)) {
+            lastFormattedTimestamp = timestamp.toString(dateTimeFormatter);
+            lastTimestamp = timestamp;
+        }
+        return lastFormattedTimestamp;
+    }
+
+    /**
+     * Write a metric value, writing the common value types directly rather than looking up a serializer for them.
+     *
+     * @param generator  The generator to write the value to
+     * @param value  The value to write
+     *
+     * @throws IOException if the generator throws an IOException
+     */
+    private void writeValue(JsonGenerator generator, Object value) throws IOException {
+        if (value == null) {
+            generator.writeNull();
+        } else if (value instanceof String) {
+            generator.writeString((String) value);
+        } else if (value instanceof BigDecimal && !bigDecimalAsPlain) {
+            generator.writeNumber((BigDecimal) value);
+        } else if (value instanceof Double) {
+            generator.writeNumber((Double) value);
+        } else if (value instanceof Long) {
+            generator.writeNumber((Long) value);
+        } else if (value instanceof Integer) {
+            generator.writeNumber((Integer) value);
+        } else if (value instanceof Boolean) {
+            generator.writeBoolean((Boolean) value);
+        } else {
+            generator.writeObject(value);
+        }
+    }
+
+    /**
+     * Get the writer for the columns of a dimension, building it the first time the dimension is seen.
+     *
+     * @param dimension  The dimension to write
+     *
+     * @return the writer for the dimension
+     */
+    private DimensionWriter getDimensionWriter(Dimension dimension) {
+        DimensionWriter dimensionWriter = dimensionWriters.get(dimension);
+        if (dimensionWriter == null) {
+            dimensionWriter = new DimensionWriter(dimension);
+            dimensionWriters.put(dimension, dimensionWriter);
+        }
+        return dimensionWriter;
+    }
+
+    /**
+     * Writes the columns of one dimension of a row.
+     */
+    private final class DimensionWriter {
+        private final Dimension dimension;
+        private final SerializedString[] names;
+        private final DimensionField[] fields;
+        // The fields to show in the sidecar, or null if the dimension has no sidecar
+        private final Set<DimensionField> sidecarFields;
+
+        /**
+         * Constructor.
+         *
+         * @param dimension  The dimension to write
+         */
+        private DimensionWriter(Dimension dimension) {
+            this.dimension = dimension;
+            Set<DimensionField> requestedFields = responseData.getRequestedApiDimensionFields().get(dimension);
+
+            if (withSidecars) {
+                // The key value is always written, and the requested fields, with the key, go in the sidecar
+                names = new SerializedString[] {new SerializedString(dimension.getApiName())};
+                fields = new DimensionField[] {dimension.getKey()};
+                if (requestedFields != null && !requestedFields.isEmpty()) {
+                    sidecarFields = new LinkedHashSet<>(requestedFields);
+                    sidecarFields.add(dimension.getKey());
+                } else {
+                    sidecarFields = null;
+                }
+            } else if (requestedFields == null) {
+                // Dimensions without requested fields aren't shown
+                names = new SerializedString[0];
+                fields = new DimensionField[0];
+                sidecarFields = null;
+            } else if (requestedFields.isEmpty()) {
+                // When no fields are requested, show the key field
+                names = new SerializedString[] {new SerializedString(dimension.getApiName())};
+                fields = new DimensionField[] {dimension.getKey()};
+                sidecarFields = null;
+            } else {
+                // Otherwise, show the fields requested, with the pipe-separated name
+                names = new SerializedString[requestedFields.size()];
+                fields = requestedFields.toArray(new DimensionField[requestedFields.size()]);
+                for (int i = 0; i < fields.length; i++) {
+                    names[i] = new SerializedString(dimension.getApiName() + "|" + fields[i].getName());
+                }
+                sidecarFields = null;
+            }
+        }
+
+        /**
+         * Write the columns of the dimension for a dimension row, and remember the row for the sidecar if needed.
+         *
+         * @param generator  The generator to write the columns to
+         * @param dimensionRow  The dimension row of the row being written
+         *
+         * @throws IOException if the generator throws an IOException
+         */
+        private void write(JsonGenerator generator, DimensionRow dimensionRow) throws IOException {
+            for (int i = 0; i < fields.length; i++) {
+                generator.writeFieldName(names[i]);
+                generator.writeString(dimensionRow.get(fields[i]));
+            }
+            if (sidecarFields != null) {
+                sidecarRows.computeIfAbsent(dimension, ignored -> new LinkedHashSet<>()).add(dimensionRow);
+            }
+        }
+    }
+}
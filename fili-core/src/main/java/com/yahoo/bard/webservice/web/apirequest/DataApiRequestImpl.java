@@ -54,6 +54,8 @@ import com.yahoo.bard.webservice.web.util.PaginationParameters;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
 
 import org.joda.time.DateTime;
 import org.joda.time.DateTimeZone;
@@ -105,6 +107,9 @@ public class DataApiRequestImpl extends ApiRequestImpl implements DataApiRequest
 
     private final DruidFilterBuilder filterBuilder;
 
+    // Built the first time it's asked for, since building it may search the dimensions
+    private final Supplier<Filter> druidFilter = Suppliers.memoize(this::buildDruidFilter);
+
     private final HavingGenerator havingApiGenerator;
 
     private final Optional<OrderByColumn> dateTimeSort;
@@ -964,12 +969,24 @@ public class DataApiRequestImpl extends ApiRequestImpl implements DataApiRequest
     /**
      * Builds and returns the Druid filters from this request's {@link ApiFilter}s.
      * <p>
-     * The Druid filters are built (an expensive operation) every time this method is called. Use it judiciously.
+     * The Druid filters are built (an expensive operation) the first time this method is called, and the same filter
+     * is returned after that. Requests made with any of the {@code withX} methods build their own filter.
      *
      * @return the Druid filter
      */
     @Override
     public Filter getDruidFilter() {
+        return druidFilter.get();
+    }
+
+    /**
+     * Builds the Druid filters from this request's {@link ApiFilter}s.
+     *
+     * @return the Druid filter, or null if the request has no filters
+     *
+     * @throws BadApiRequestException if the filters match no dimension rows
+     */
+    private Filter buildDruidFilter() throws BadApiRequestException {
         try (TimedPhase timer = RequestLog.startTiming("BuildingDruidFilter")) {
             return filterBuilder.buildFilters(this.apiFilters);
         } catch (DimensionRowNotFoundException e) {
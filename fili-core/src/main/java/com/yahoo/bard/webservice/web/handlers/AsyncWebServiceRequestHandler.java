@@ -2,9 +2,11 @@
 // Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
 package com.yahoo.bard.webservice.web.handlers;
 
+import com.yahoo.bard.webservice.config.BardFeatureFlag;
 import com.yahoo.bard.webservice.druid.client.DruidWebService;
 import com.yahoo.bard.webservice.druid.client.FailureCallback;
 import com.yahoo.bard.webservice.druid.client.HttpErrorCallback;
+import com.yahoo.bard.webservice.druid.client.StreamingSuccessCallback;
 import com.yahoo.bard.webservice.druid.client.SuccessCallback;
 import com.yahoo.bard.webservice.druid.model.query.DruidAggregationQuery;
 import com.yahoo.bard.webservice.logging.RequestLog;
@@ -12,7 +14,9 @@ import com.yahoo.bard.webservice.logging.blocks.BardQueryInfo;
 import com.yahoo.bard.webservice.web.DataApiRequest;
 import com.yahoo.bard.webservice.web.responseprocessors.LoggingContext;
 import com.yahoo.bard.webservice.web.responseprocessors.ResponseProcessor;
+import com.yahoo.bard.webservice.web.responseprocessors.StreamingResponseProcessor;
 
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
@@ -43,17 +47,34 @@ public class AsyncWebServiceRequestHandler extends BaseDataRequestHandler {
             final DruidAggregationQuery<?> druidQuery,
             final ResponseProcessor response
     ) {
-        SuccessCallback success = new SuccessCallback() {
-            @Override
-            public void invoke(JsonNode rootNode) {
-                response.processResponse(rootNode, druidQuery, new LoggingContext(RequestLog.copy()));
-            }
-        };
+        SuccessCallback success;
+        if (BardFeatureFlag.STREAMING_DRUID_RESPONSE_PARSING.isOn()
+                && response instanceof StreamingResponseProcessor) {
+            StreamingResponseProcessor streamingResponse = (StreamingResponseProcessor) response;
+            success = new StreamingSuccessCallback() {
+                @Override
+                public void invoke(JsonParser parser) {
+                    streamingResponse.processResponse(parser, druidQuery, new LoggingContext(RequestLog.copy()));
+                }
+
+                @Override
+                public void invoke(JsonNode rootNode) {
+                    response.processResponse(rootNode, druidQuery, new LoggingContext(RequestLog.copy()));
+                }
+            };
+        } else {
+            success = new SuccessCallback() {
+                @Override
+                public void invoke(JsonNode rootNode) {
+                    response.processResponse(rootNode, druidQuery, new LoggingContext(RequestLog.copy()));
+                }
+            };
+        }
         HttpErrorCallback error = response.getErrorCallback(druidQuery);
         FailureCallback failure = response.getFailureCallback(druidQuery);
 
         BardQueryInfo.incrementCountFactHits();
-        druidWebService.postDruidQuery(context, success, error, failure, druidQuery);
+        context.addOutstandingQuery(druidWebService.postDruidQuery(context, success, error, failure, druidQuery));
         return true;
     }
 }
@@ -8,12 +8,14 @@ import static com.yahoo.bard.webservice.web.handlers.workflow.DruidWorkflow.RESP
 
 import com.yahoo.bard.webservice.application.MetricRegistryFactory;
 import com.yahoo.bard.webservice.data.cache.DataCache;
+import com.yahoo.bard.webservice.data.cache.DruidResponseCacheFormat;
+import com.yahoo.bard.webservice.data.cache.DruidResponseCacheFormatProvider;
 import com.yahoo.bard.webservice.data.cache.TupleDataCache;
+import com.yahoo.bard.webservice.druid.model.query.CanonicalQueryHash;
 import com.yahoo.bard.webservice.druid.model.query.DruidAggregationQuery;
 import com.yahoo.bard.webservice.logging.RequestLog;
 import com.yahoo.bard.webservice.logging.blocks.BardQueryInfo;
 import com.yahoo.bard.webservice.metadata.QuerySigningService;
-import com.yahoo.bard.webservice.util.Utils;
 import com.yahoo.bard.webservice.web.DataApiRequest;
 import com.yahoo.bard.webservice.web.responseprocessors.CacheV2ResponseProcessor;
 import com.yahoo.bard.webservice.web.responseprocessors.LoggingContext;
@@ -29,6 +31,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.io.Serializable;
 import java.util.Objects;
 
 import javax.validation.constraints.NotNull;
@@ -37,7 +40,8 @@ import javax.validation.constraints.NotNull;
  * Request handler to check the cache for a matching request and either return the cached result or send the next
  * handler.
  * <p>
- * It also wraps the response processor so that valid, non-partial JSON responses are cached
+ * It also wraps the response processor so that valid, non-partial JSON responses are cached. Responses are stored in
+ * the cache in the configured {@link DruidResponseCacheFormat}.
  */
 public class CacheV2RequestHandler extends BaseDataRequestHandler {
 
@@ -49,8 +53,26 @@ public class CacheV2RequestHandler extends BaseDataRequestHandler {
     public static final Meter CACHE_REQUESTS = REGISTRY.meter("queries.meter.cache.total");
 
     protected final @NotNull DataRequestHandler next;
-    protected final @NotNull TupleDataCache<String, Long, String> dataCache;
+    protected final @NotNull TupleDataCache<String, Long, Serializable> dataCache;
     protected final @NotNull QuerySigningService<Long> querySigningService;
+    protected final @NotNull DruidResponseCacheFormat cacheFormat;
+
+    /**
+     * Build a Cache request handler storing responses in the configured cache format.
+     *
+     * @param next  The next handler in the chain
+     * @param dataCache  The cache instance
+     * @param querySigningService The service to generate query signatures
+     * @param mapper  The mapper for all JSON processing
+     */
+    public CacheV2RequestHandler(
+            DataRequestHandler next,
+            @NotNull DataCache<?> dataCache,
+            QuerySigningService<?> querySigningService,
+            ObjectMapper mapper
+    ) {
+        this(next, dataCache, querySigningService, mapper, DruidResponseCacheFormatProvider.getInstance());
+    }
 
     /**
      * Build a Cache request handler.
@@ -59,18 +81,21 @@ public class CacheV2RequestHandler extends BaseDataRequestHandler {
      * @param dataCache  The cache instance
      * @param querySigningService The service to generate query signatures
      * @param mapper  The mapper for all JSON processing
+     * @param cacheFormat  The format in which responses are stored in the cache
      */
     @SuppressWarnings("unchecked")
     public CacheV2RequestHandler(
             DataRequestHandler next,
             @NotNull DataCache<?> dataCache,
             QuerySigningService<?> querySigningService,
-            ObjectMapper mapper
+            ObjectMapper mapper,
+            @NotNull DruidResponseCacheFormat cacheFormat
     ) {
         super(mapper);
         this.next = next;
-        this.dataCache = (TupleDataCache<String, Long, String>) dataCache;
+        this.dataCache = (TupleDataCache<String, Long, Serializable>) dataCache;
         this.querySigningService = (QuerySigningService<Long>) querySigningService;
+        this.cacheFormat = cacheFormat;
     }
 
     @Override
@@ -87,7 +112,7 @@ public class CacheV2RequestHandler extends BaseDataRequestHandler {
             cacheKey = getKey(druidQuery);
 
             if (context.isReadCache()) {
-                final TupleDataCache.DataEntry<String, Long, String> cacheEntry = dataCache.get(cacheKey);
+                final TupleDataCache.DataEntry<String, Long, Serializable> cacheEntry = dataCache.get(cacheKey);
                 CACHE_REQUESTS.mark(1);
 
                 if (cacheEntry != null) {
@@ -98,7 +123,16 @@ public class CacheV2RequestHandler extends BaseDataRequestHandler {
                                     .map(id -> Objects.equals(cacheEntry.getMeta(), id))
                                     .orElse(false)
                     ) {
+                        // Read the entry before touching any request state, so an unreadable entry is just a miss
+                        JsonNode cachedResponse = null;
                         try {
+                            cachedResponse = cacheFormat.deserialize(cacheEntry.getValue());
+                        } catch (IOException e) {
+                            LOG.warn("Error processing cached value: ", e);
+                            CACHE_MISSES.mark(1);
+                        }
+
+                        if (cachedResponse != null) {
                             if (context.getNumberOfOutgoing().decrementAndGet() == 0) {
                                 BardQueryInfo.incrementCountCacheHits();
                                 RequestLog.stopTiming(REQUEST_WORKFLOW_TIMER);
@@ -109,16 +143,9 @@ public class CacheV2RequestHandler extends BaseDataRequestHandler {
                             }
                             CACHE_HITS.mark(1);
                             RequestLog logCtx = RequestLog.dump();
-                            nextResponse.processResponse(
-                                    mapper.readTree(cacheEntry.getValue()),
-                                    druidQuery,
-                                    new LoggingContext(logCtx)
-                            );
+                            nextResponse.processResponse(cachedResponse, druidQuery, new LoggingContext(logCtx));
 
                             return true;
-
-                        } catch (IOException e) {
-                            LOG.warn("Error processing cached value: ", e);
                         }
                     } else {
                         LOG.debug("Cache entry present but invalid for query with id: {}", RequestLog.getId());
@@ -139,7 +166,7 @@ public class CacheV2RequestHandler extends BaseDataRequestHandler {
                 cacheKey,
                 dataCache,
                 querySigningService,
-                mapper
+                cacheFormat
         );
 
         return next.handleRequest(context, request, druidQuery, nextResponse);
@@ -147,7 +174,7 @@ public class CacheV2RequestHandler extends BaseDataRequestHandler {
 
     /**
      * Construct the cache key.
-     * Current implementation includes all the fields of the druidQuery besides the context.
+     * Current implementation is the canonical hash of all the fields of the druidQuery besides the context.
      *
      * @param druidQuery  The druid query.
      *
@@ -155,8 +182,6 @@ public class CacheV2RequestHandler extends BaseDataRequestHandler {
      * @throws JsonProcessingException if the druid query cannot be serialized to JSON
      */
     protected String getKey(DruidAggregationQuery<?> druidQuery) throws JsonProcessingException {
-        JsonNode root = mapper.valueToTree(druidQuery);
-        Utils.omitField(root, "context", mapper);
-        return writer.writeValueAsString(root);
+        return CanonicalQueryHash.of(druidQuery);
     }
 }
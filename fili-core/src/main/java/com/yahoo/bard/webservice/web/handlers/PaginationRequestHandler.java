@@ -2,13 +2,39 @@
 // Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
 package com.yahoo.bard.webservice.web.handlers;
 
+import static com.yahoo.bard.webservice.web.handlers.PartialDataRequestHandler.getPartialIntervalsWithDefault;
+import static com.yahoo.bard.webservice.web.handlers.VolatileDataRequestHandler.getVolatileIntervalsWithDefault;
+import static com.yahoo.bard.webservice.web.handlers.workflow.DruidWorkflow.REQUEST_WORKFLOW_TIMER;
+import static com.yahoo.bard.webservice.web.handlers.workflow.DruidWorkflow.RESPONSE_WORKFLOW_TIMER;
+
+import com.yahoo.bard.webservice.application.MetricRegistryFactory;
+import com.yahoo.bard.webservice.data.ResultSet;
+import com.yahoo.bard.webservice.data.cache.ResultPageCache;
+import com.yahoo.bard.webservice.data.metric.mappers.DateTimeSortMapper;
 import com.yahoo.bard.webservice.data.metric.mappers.PaginationMapper;
+import com.yahoo.bard.webservice.data.metric.mappers.ResultPageCacheMapper;
+import com.yahoo.bard.webservice.data.metric.mappers.ResultSetMapper;
+import com.yahoo.bard.webservice.druid.model.query.CanonicalQueryHash;
 import com.yahoo.bard.webservice.druid.model.query.DruidAggregationQuery;
+import com.yahoo.bard.webservice.logging.RequestLog;
 import com.yahoo.bard.webservice.web.DataApiRequest;
+import com.yahoo.bard.webservice.web.ResponseFormatType;
+import com.yahoo.bard.webservice.web.responseprocessors.LoggingContext;
 import com.yahoo.bard.webservice.web.responseprocessors.MappingResponseProcessor;
+import com.yahoo.bard.webservice.web.responseprocessors.ResponseContext;
 import com.yahoo.bard.webservice.web.responseprocessors.ResponseProcessor;
+import com.yahoo.bard.webservice.web.responseprocessors.ResultSetBuildingResponseProcessor;
 import com.yahoo.bard.webservice.web.util.PaginationParameters;
 
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.URI;
+import java.util.List;
+
 import javax.validation.constraints.NotNull;
 
 /**
@@ -16,9 +42,20 @@ import javax.validation.constraints.NotNull;
  * The pagination mapper should be one of the last mappers to execute on the result set (in particular, it should
  * execute _after_ any mappers that delete or add rows). Therefore, the PaginationRequestHandler should be one of the
  * last handlers added to the handler chain.
+ * <p>
+ * With a result page cache, the mapped results of a paginated request are cached just before they are paginated, and
+ * later requests for other pages of the same data are answered from them without querying Druid again. Like the
+ * results cached, only requests whose data is neither partial nor volatile are answered from the cache.
  */
 public class PaginationRequestHandler implements DataRequestHandler {
+
+    private static final Logger LOG = LoggerFactory.getLogger(PaginationRequestHandler.class);
+    private static final MetricRegistry REGISTRY = MetricRegistryFactory.getRegistry();
+    public static final Meter RESULT_PAGE_CACHE_HITS = REGISTRY.meter("queries.meter.result_page_cache.hits");
+    public static final Meter RESULT_PAGE_CACHE_MISSES = REGISTRY.meter("queries.meter.result_page_cache.misses");
+
     private final @NotNull DataRequestHandler next;
+    private final ResultPageCache resultPageCache;
 
     /**
      * Constructor.
@@ -26,7 +63,19 @@ public class PaginationRequestHandler implements DataRequestHandler {
      * @param next  Next Handler in the chain
      */
     public PaginationRequestHandler(DataRequestHandler next) {
+        this(next, null);
+    }
+
+    /**
+     * Constructor for a handler which serves pages from the mapped results of earlier requests for other pages of the
+     * same data, when it can, and caches the mapped results of the requests it can't serve that way.
+     *
+     * @param next  Next Handler in the chain
+     * @param resultPageCache  The cache of mapped results to serve pages from, or null to not cache them
+     */
+    public PaginationRequestHandler(DataRequestHandler next, ResultPageCache resultPageCache) {
         this.next = next;
+        this.resultPageCache = resultPageCache;
     }
 
     @Override
@@ -42,14 +91,96 @@ public class PaginationRequestHandler implements DataRequestHandler {
         MappingResponseProcessor mappingResponse = (MappingResponseProcessor) response;
         if (request.getPaginationParameters().isPresent()) {
             PaginationParameters paginationParameters = request.getPaginationParameters().get();
-            mappingResponse.getMappers().add(
-                    new PaginationMapper(
-                            paginationParameters,
-                            mappingResponse,
-                            request.getUriInfo().getRequestUriBuilder()
-                    )
+            List<ResultSetMapper> mappers = mappingResponse.getMappers();
+            // A time sort just before paging is done by the pagination mapper, which only sorts the page it returns
+            DateTimeSortMapper dateTimeSortMapper = null;
+            if (!mappers.isEmpty() && mappers.get(mappers.size() - 1).getClass() == DateTimeSortMapper.class) {
+                dateTimeSortMapper = (DateTimeSortMapper) mappers.remove(mappers.size() - 1);
+            }
+            PaginationMapper paginationMapper = new PaginationMapper(
+                    paginationParameters,
+                    mappingResponse,
+                    request.getUriInfo().getRequestUriBuilder(),
+                    dateTimeSortMapper
             );
+
+            String cacheKey = isResultPageCacheable(request, mappingResponse) ? getKey(request, druidQuery) : null;
+            if (cacheKey != null) {
+                boolean readCache = context.isReadCache() && isComplete(mappingResponse.getResponseContext());
+                ResultSet cachedResultSet = readCache ? resultPageCache.get(cacheKey) : null;
+                if (cachedResultSet != null) {
+                    RESULT_PAGE_CACHE_HITS.mark(1);
+                    // The cached results have already been through every other mapper
+                    mappers.clear();
+                    mappers.add(paginationMapper);
+                    RequestLog.stopTiming(REQUEST_WORKFLOW_TIMER);
+                    RequestLog.startTiming(RESPONSE_WORKFLOW_TIMER);
+                    ((ResultSetBuildingResponseProcessor) mappingResponse).processResultSet(
+                            cachedResultSet,
+                            druidQuery,
+                            new LoggingContext(RequestLog.dump())
+                    );
+                    return true;
+                }
+                if (readCache) {
+                    RESULT_PAGE_CACHE_MISSES.mark(1);
+                }
+                mappers.add(new ResultPageCacheMapper(resultPageCache, cacheKey, mappingResponse));
+            }
+            mappers.add(paginationMapper);
         }
         return next.handleRequest(context, request, druidQuery, mappingResponse);
     }
+
+    /**
+     * Whether the mapped results of a request can be cached and its pages served from them.
+     * <p>
+     * Debug requests never reach Druid, so they are never answered from the cache.
+     *
+     * @param request  The request being paginated
+     * @param response  The response to the request
+     *
+     * @return true if the result page cache applies to the request
+     */
+    private boolean isResultPageCacheable(DataApiRequest request, MappingResponseProcessor response) {
+        return resultPageCache != null
+                && request.getFormat() != ResponseFormatType.DEBUG
+                && response instanceof ResultSetBuildingResponseProcessor
+                && ((ResultSetBuildingResponseProcessor) response).isBuildingResultSets();
+    }
+
+    /**
+     * Whether the data of a request is neither partial nor volatile, as found by the partial and volatile data
+     * handlers before this one, so that the complete results of an earlier request still answer it.
+     *
+     * @param responseContext  The context of the response to the request
+     *
+     * @return true if the request has no missing or volatile intervals
+     */
+    private static boolean isComplete(ResponseContext responseContext) {
+        return getPartialIntervalsWithDefault(responseContext).isEmpty()
+                && getVolatileIntervalsWithDefault(responseContext).isEmpty();
+    }
+
+    /**
+     * Construct the result page cache key, from the query sent to Druid and the request without its pagination
+     * parameters, which between them decide what the mapped results are.
+     *
+     * @param request  The request being paginated
+     * @param druidQuery  The query for the request
+     *
+     * @return The cache key, or null if it can't be built
+     */
+    protected String getKey(DataApiRequest request, DruidAggregationQuery<?> druidQuery) {
+        try {
+            URI uri = request.getUriInfo().getRequestUriBuilder()
+                    .replaceQueryParam("page")
+                    .replaceQueryParam("perPage")
+                    .build();
+            return CanonicalQueryHash.of(druidQuery) + " " + uri;
+        } catch (Exception e) {
+            LOG.warn("Result page cache key cannot be built: ", e);
+            return null;
+        }
+    }
 }
@@ -4,6 +4,9 @@ package com.yahoo.bard.webservice.web.handlers;
 
 import com.yahoo.bard.webservice.util.Utils;
 
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicLong;
 
 import javax.ws.rs.container.ContainerRequestContext;
@@ -21,6 +24,7 @@ public class RequestContext {
     protected final MultivaluedMap<String, String> searchableHeaders;
     protected final AtomicLong numberOfIncoming = new AtomicLong(1);
     protected final AtomicLong numberOfOutgoing = new AtomicLong(1);
+    protected final Queue<Future<?>> outstandingQueries = new ConcurrentLinkedQueue<>();
 
     /**
      * Build a context for a request.
@@ -73,4 +77,32 @@ public class RequestContext {
     public AtomicLong getNumberOfOutgoing() {
         return numberOfOutgoing;
     }
+
+    /**
+     * Track a query sent to a backend on behalf of this request, so it can be cancelled if the request fails.
+     * <p>
+     * The queries tracked earliest which have completed since are dropped first, so a request split into many queries
+     * doesn't hold on to all of them until it is done.
+     *
+     * @param query  The pending result of the query
+     */
+    public void addOutstandingQuery(Future<?> query) {
+        Future<?> oldest;
+        while ((oldest = outstandingQueries.peek()) != null && oldest.isDone()) {
+            outstandingQueries.remove(oldest);
+        }
+        if (query != null) {
+            outstandingQueries.add(query);
+        }
+    }
+
+    /**
+     * Cancel the queries sent on behalf of this request which have not completed yet.
+     */
+    public void cancelOutstandingQueries() {
+        Future<?> query;
+        while ((query = outstandingQueries.poll()) != null) {
+            query.cancel(true);
+        }
+    }
 }
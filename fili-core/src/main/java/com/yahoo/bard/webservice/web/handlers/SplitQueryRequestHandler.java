@@ -5,6 +5,8 @@ package com.yahoo.bard.webservice.web.handlers;
 import static com.yahoo.bard.webservice.web.ErrorMessageFormat.EMPTY_INTERVAL_FORMAT;
 
 import com.yahoo.bard.webservice.application.MetricRegistryFactory;
+import com.yahoo.bard.webservice.config.SystemConfig;
+import com.yahoo.bard.webservice.config.SystemConfigProvider;
 import com.yahoo.bard.webservice.druid.model.query.AllGranularity;
 import com.yahoo.bard.webservice.druid.model.query.DruidAggregationQuery;
 import com.yahoo.bard.webservice.druid.model.query.Granularity;
@@ -14,6 +16,7 @@ import com.yahoo.bard.webservice.web.DataApiRequest;
 import com.yahoo.bard.webservice.web.responseprocessors.ResponseProcessor;
 import com.yahoo.bard.webservice.web.responseprocessors.SplitQueryResponseProcessor;
 
+import com.codahale.metrics.Gauge;
 import com.codahale.metrics.Meter;
 import com.codahale.metrics.MetricRegistry;
 
@@ -35,6 +38,12 @@ import javax.ws.rs.core.Response;
  * <p>
  * It creates a common response processor which serves as an accumulator to receive all replies before delegating to the
  * result set processing.
+ * <p>
+ * Sub-queries are sent through a {@link SplitQueryScheduler}, which bounds how many of them are in flight for each
+ * request ({@code split_query_max_in_flight_per_request}) and across all requests ({@code split_query_max_in_flight}),
+ * sending earlier intervals first. Both limits are unbounded by default. A sub-query which hasn't completed within
+ * {@code split_query_sub_query_timeout_ms} gives up its place. The number of sub-queries in flight across all requests
+ * is the {@value #IN_FLIGHT_GAUGE} gauge.
  */
 public class SplitQueryRequestHandler implements DataRequestHandler {
 
@@ -42,16 +51,52 @@ public class SplitQueryRequestHandler implements DataRequestHandler {
     private static final MetricRegistry REGISTRY = MetricRegistryFactory.getRegistry();
     public static final Meter SPLIT_QUERIES = REGISTRY.meter("queries.meter.split_queries.sub_queries");
     public static final Meter SPLITS = REGISTRY.meter("queries.meter.split_queries.splits");
+    public static final String IN_FLIGHT_GAUGE = "queries.gauge.split_queries.in_flight";
+
+    private static final SystemConfig SYSTEM_CONFIG = SystemConfigProvider.getInstance();
+
+    /**
+     * The scheduler shared by all split query handlers, so its global limit covers every request.
+     */
+    private static final SplitQueryScheduler SHARED_SCHEDULER = new SplitQueryScheduler(
+            SYSTEM_CONFIG.getIntProperty(
+                    SYSTEM_CONFIG.getPackageVariableName("split_query_max_in_flight_per_request"),
+                    0
+            ),
+            SYSTEM_CONFIG.getIntProperty(SYSTEM_CONFIG.getPackageVariableName("split_query_max_in_flight"), 0),
+            SYSTEM_CONFIG.getLongProperty(
+                    SYSTEM_CONFIG.getPackageVariableName("split_query_sub_query_timeout_ms"),
+                    660000L
+            )
+    );
+
+    static {
+        if (!REGISTRY.getMetrics().containsKey(IN_FLIGHT_GAUGE)) {
+            REGISTRY.register(IN_FLIGHT_GAUGE, (Gauge<Integer>) SHARED_SCHEDULER::getInFlight);
+        }
+    }
 
     protected final @NotNull DataRequestHandler next;
+    protected final @NotNull SplitQueryScheduler scheduler;
 
     /**
-     * Build a Split Query Request Handler.
+     * Build a Split Query Request Handler sending sub-queries through the shared scheduler.
      *
      * @param next  The next handler in the chain
      */
     public SplitQueryRequestHandler(DataRequestHandler next) {
+        this(next, SHARED_SCHEDULER);
+    }
+
+    /**
+     * Build a Split Query Request Handler.
+     *
+     * @param next  The next handler in the chain
+     * @param scheduler  The scheduler bounding how many sub-queries are in flight
+     */
+    public SplitQueryRequestHandler(DataRequestHandler next, SplitQueryScheduler scheduler) {
         this.next = next;
+        this.scheduler = scheduler;
     }
 
     @Override
@@ -107,21 +152,59 @@ public class SplitQueryRequestHandler implements DataRequestHandler {
         // Save RequestLog up to here
         final RequestLog logCtx = RequestLog.dump();
 
-        final SplitQueryResponseProcessor mergingResponse =
-                new SplitQueryResponseProcessor(response, request, druidQuery, expectedIntervals, logCtx);
+        final SplitQueryScheduler.Batch subQueries = scheduler.newBatch(context::cancelOutstandingQueries);
+        final SplitQueryResponseProcessor mergingResponse = new SplitQueryResponseProcessor(
+                response,
+                request,
+                druidQuery,
+                expectedIntervals,
+                logCtx,
+                subQueries
+        );
 
         if (numberOfIntervals > 1) {
             SPLITS.mark(1);
             SPLIT_QUERIES.mark(numberOfIntervals);
         }
 
-        queries.stream().forEach(
-                q -> {
-                    RequestLog.restore(logCtx);
-                    next.handleRequest(context, request, q, mergingResponse);
-                }
-        );
+        List<Runnable> sends = new ArrayList<>(numberOfIntervals);
+        for (DruidAggregationQuery<?> query : queries) {
+            sends.add(() -> sendSubQuery(context, request, query, mergingResponse, subQueries, logCtx));
+        }
+        subQueries.schedule(sends);
 
         return true;
     }
+
+    /**
+     * Send a sub-query down the chain, unless the request has already failed.
+     * <p>
+     * If sending the sub-query throws, the request fails the way it would if the sub-query itself had failed.
+     *
+     * @param context  The context data from the request processing chain
+     * @param request  The API request itself
+     * @param subQuery  The sub-query to send
+     * @param mergingResponse  The response processor merging the responses of the sub-queries
+     * @param subQueries  The batch of sub-queries of the request
+     * @param logCtx  The request log of the request before it was split
+     */
+    protected void sendSubQuery(
+            RequestContext context,
+            DataApiRequest request,
+            DruidAggregationQuery<?> subQuery,
+            SplitQueryResponseProcessor mergingResponse,
+            SplitQueryScheduler.Batch subQueries,
+            RequestLog logCtx
+    ) {
+        if (subQueries.isCancelled()) {
+            return;
+        }
+        RequestLog.restore(logCtx);
+        try {
+            next.handleRequest(context, request, subQuery, mergingResponse);
+        } catch (RuntimeException e) {
+            LOG.error("Unable to send split sub-query for intervals {}", subQuery.getIntervals(), e);
+            mergingResponse.getFailureCallback(subQuery).invoke(e);
+        }
+    }
 }
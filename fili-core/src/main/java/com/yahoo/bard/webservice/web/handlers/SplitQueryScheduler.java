@@ -0,0 +1,418 @@
+// Copyright 2017 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.web.handlers;
+
+import com.yahoo.bard.webservice.application.MetricRegistryFactory;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.LongSupplier;
+
+/**
+ * Bounds how many sub-queries of split queries are in flight at once, both for each request and across all requests.
+ * <p>
+ * Each request's sub-queries are scheduled as a {@link Batch}, and are sent in order (so earlier intervals are sent
+ * first) whenever both the batch and the scheduler have room. Batches are served in the order they were scheduled.
+ * Sending never blocks: sub-queries which don't fit are held until a sub-query in flight completes, and are then sent
+ * on the thread reporting the completion.
+ * <p>
+ * Each sub-query holds its place until it is reported complete, its batch is cancelled, sending it throws, or it has
+ * been in flight longer than the sub-query timeout. The timeout keeps a sub-query whose completion is never reported,
+ * such as one whose callback never fires, from taking a place away from every later request for good. Places which
+ * time out are given up whenever the scheduler is next used, and by a background sweep.
+ */
+public class SplitQueryScheduler {
+
+    private static final Logger LOG = LoggerFactory.getLogger(SplitQueryScheduler.class);
+    private static final MetricRegistry REGISTRY = MetricRegistryFactory.getRegistry();
+    public static final Meter CANCELLED_SUB_QUERIES = REGISTRY.meter(
+            "queries.meter.split_queries.cancelled_sub_queries"
+    );
+    public static final Meter TIMED_OUT_SUB_QUERIES = REGISTRY.meter(
+            "queries.meter.split_queries.timed_out_sub_queries"
+    );
+
+    /**
+     * Whether the current thread is already sending sub-queries, in which case sub-queries freed up by completions on
+     * this thread are left to the sending loop rather than sent recursively.
+     */
+    private static final ThreadLocal<Boolean> SENDING = ThreadLocal.withInitial(() -> Boolean.FALSE);
+
+    /**
+     * Sweeps timed out sub-queries of every scheduler with a timeout, so requests waiting for a place are sent even if
+     * nothing else happens.
+     */
+    private static final ScheduledExecutorService SWEEPER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "split-query-timeout-sweeper");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private static final long MIN_SWEEP_PERIOD_MILLIS = 100;
+
+    private final int maxInFlightPerRequest;
+    private final int maxInFlight;
+    private final long timeoutNanos;
+    private final LongSupplier nanoClock;
+
+    // Batches which still have sub-queries to send, in the order they were scheduled. Guarded by this.
+    private final List<Batch> batches = new LinkedList<>();
+    // Sub-queries sent while there is a timeout, in the order they were sent, which is the order they time out in.
+    // Guarded by this.
+    private final Deque<SentSubQuery> sent = new ArrayDeque<>();
+    private int inFlight = 0;
+
+    /**
+     * Constructor for a scheduler whose sub-queries never time out.
+     *
+     * @param maxInFlightPerRequest  Most sub-queries of one request in flight at once, unbounded if not positive
+     * @param maxInFlight  Most sub-queries of all requests in flight at once, unbounded if not positive
+     */
+    public SplitQueryScheduler(int maxInFlightPerRequest, int maxInFlight) {
+        this(maxInFlightPerRequest, maxInFlight, 0);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param maxInFlightPerRequest  Most sub-queries of one request in flight at once, unbounded if not positive
+     * @param maxInFlight  Most sub-queries of all requests in flight at once, unbounded if not positive
+     * @param timeoutMillis  How long a sub-query may hold its place before it is given up, never if not positive
+     */
+    public SplitQueryScheduler(int maxInFlightPerRequest, int maxInFlight, long timeoutMillis) {
+        this(maxInFlightPerRequest, maxInFlight, timeoutMillis, System::nanoTime);
+        if (timeoutNanos > 0) {
+            scheduleSweep(this, Math.max(timeoutMillis / 2, MIN_SWEEP_PERIOD_MILLIS));
+        }
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param maxInFlightPerRequest  Most sub-queries of one request in flight at once, unbounded if not positive
+     * @param maxInFlight  Most sub-queries of all requests in flight at once, unbounded if not positive
+     * @param timeoutMillis  How long a sub-query may hold its place before it is given up, never if not positive
+     * @param nanoClock  The clock timing sub-queries, in nanoseconds
+     */
+    SplitQueryScheduler(int maxInFlightPerRequest, int maxInFlight, long timeoutMillis, LongSupplier nanoClock) {
+        this.maxInFlightPerRequest = maxInFlightPerRequest > 0 ? maxInFlightPerRequest : Integer.MAX_VALUE;
+        this.maxInFlight = maxInFlight > 0 ? maxInFlight : Integer.MAX_VALUE;
+        this.timeoutNanos = timeoutMillis > 0 ? TimeUnit.MILLISECONDS.toNanos(timeoutMillis) : 0;
+        this.nanoClock = nanoClock;
+    }
+
+    /**
+     * Periodically give up the places of a scheduler's timed out sub-queries and send what there is room for, for as
+     * long as the scheduler is in use.
+     *
+     * @param scheduler  The scheduler to sweep, which the sweep doesn't keep from being garbage collected
+     * @param periodMillis  How often to sweep, in milliseconds
+     */
+    private static void scheduleSweep(SplitQueryScheduler scheduler, long periodMillis) {
+        WeakReference<SplitQueryScheduler> schedulerReference = new WeakReference<>(scheduler);
+        AtomicReference<ScheduledFuture<?>> sweep = new AtomicReference<>();
+        sweep.set(SWEEPER.scheduleWithFixedDelay(
+                () -> {
+                    SplitQueryScheduler swept = schedulerReference.get();
+                    if (swept == null) {
+                        ScheduledFuture<?> future = sweep.get();
+                        if (future != null) {
+                            future.cancel(false);
+                        }
+                        return;
+                    }
+                    try {
+                        swept.send();
+                    } catch (RuntimeException e) {
+                        LOG.error("Unable to sweep timed out split sub-queries", e);
+                    }
+                },
+                periodMillis,
+                periodMillis,
+                TimeUnit.MILLISECONDS
+        ));
+    }
+
+    /**
+     * Create a batch for the sub-queries of one request.
+     *
+     * @param cancelInFlight  Cancels the sub-queries of the request which have already been sent
+     *
+     * @return the batch, which sends nothing until its sub-queries are scheduled
+     */
+    public Batch newBatch(Runnable cancelInFlight) {
+        return new Batch(cancelInFlight);
+    }
+
+    /**
+     * Get the number of sub-queries currently in flight across all requests.
+     *
+     * @return the number of sub-queries in flight
+     */
+    public synchronized int getInFlight() {
+        releaseTimedOut();
+        return inFlight;
+    }
+
+    /**
+     * Send every sub-query there is room for, until there is no more room or nothing left to send.
+     * <p>
+     * A sub-query whose sending throws gives up its place right away.
+     */
+    private void send() {
+        if (SENDING.get()) {
+            return;
+        }
+        SENDING.set(Boolean.TRUE);
+        try {
+            for (List<SentSubQuery> sendable = takeSendable(); !sendable.isEmpty(); sendable = takeSendable()) {
+                for (SentSubQuery subQuery : sendable) {
+                    try {
+                        subQuery.send.run();
+                    } catch (RuntimeException e) {
+                        LOG.error("Unable to send split sub-query {}", subQuery.index, e);
+                        subQuery.batch.release(subQuery.index);
+                    }
+                }
+            }
+        } finally {
+            SENDING.remove();
+        }
+    }
+
+    /**
+     * Take the sub-queries there is room for, counting them as in flight.
+     *
+     * @return the sub-queries to send
+     */
+    private synchronized List<SentSubQuery> takeSendable() {
+        releaseTimedOut();
+        if (inFlight >= maxInFlight || batches.isEmpty()) {
+            return Collections.emptyList();
+        }
+        long now = timeoutNanos > 0 ? nanoClock.getAsLong() : 0;
+        List<SentSubQuery> sendable = new ArrayList<>();
+        Iterator<Batch> batchIterator = batches.iterator();
+        while (batchIterator.hasNext() && inFlight < maxInFlight) {
+            Batch batch = batchIterator.next();
+            while (batch.hasUnsent() && batch.inFlight < maxInFlightPerRequest && inFlight < maxInFlight) {
+                SentSubQuery subQuery = new SentSubQuery(batch, batch.nextSubQuery, batch.takeNext(), now);
+                sendable.add(subQuery);
+                if (timeoutNanos > 0) {
+                    sent.addLast(subQuery);
+                }
+                batch.inFlight++;
+                inFlight++;
+            }
+            if (!batch.hasUnsent()) {
+                batchIterator.remove();
+            }
+        }
+        return sendable;
+    }
+
+    /**
+     * Give up the places of the sub-queries which have been in flight for longer than the timeout.
+     * <p>
+     * Sub-queries time out in the order they were sent, so only the oldest ones need to be looked at.
+     */
+    private synchronized void releaseTimedOut() {
+        if (timeoutNanos <= 0 || sent.isEmpty()) {
+            return;
+        }
+        long now = nanoClock.getAsLong();
+        for (SentSubQuery oldest = sent.peekFirst(); oldest != null; oldest = sent.peekFirst()) {
+            if (oldest.batch.isReleased(oldest.index)) {
+                sent.removeFirst();
+            } else if (now - oldest.sentAt >= timeoutNanos) {
+                sent.removeFirst();
+                LOG.warn("Split sub-query {} did not complete within {} ms, giving up its place", oldest.index,
+                        TimeUnit.NANOSECONDS.toMillis(timeoutNanos));
+                TIMED_OUT_SUB_QUERIES.mark();
+                oldest.batch.release(oldest.index);
+            } else {
+                return;
+            }
+        }
+    }
+
+    /**
+     * A sub-query which has been taken to be sent.
+     */
+    private static final class SentSubQuery {
+        private final Batch batch;
+        private final int index;
+        private final Runnable send;
+        private final long sentAt;
+
+        /**
+         * Constructor.
+         *
+         * @param batch  The batch of the sub-query
+         * @param index  The position of the sub-query in its batch
+         * @param send  Sends the sub-query
+         * @param sentAt  When the sub-query was sent, by the scheduler's clock
+         */
+        private SentSubQuery(Batch batch, int index, Runnable send, long sentAt) {
+            this.batch = batch;
+            this.index = index;
+            this.send = send;
+            this.sentAt = sentAt;
+        }
+    }
+
+    /**
+     * The sub-queries of one request.
+     * <p>
+     * Every sub-query which is sent should be reported as complete, whether it succeeds or fails, so that its place
+     * can be given to another sub-query. Sub-queries are identified by their position in the scheduled list, so
+     * reporting a sub-query more than once, or after it timed out, gives up its place only once.
+     */
+    public final class Batch {
+
+        private final Runnable cancelInFlight;
+
+        // Guarded by the scheduler
+        private List<Runnable> subQueries = Collections.emptyList();
+        // Which of the sent sub-queries have given up their places
+        private boolean[] released = new boolean[0];
+        private int nextSubQuery = 0;
+        private int inFlight = 0;
+        private boolean cancelled = false;
+
+        /**
+         * Constructor.
+         *
+         * @param cancelInFlight  Cancels the sub-queries of the request which have already been sent
+         */
+        private Batch(Runnable cancelInFlight) {
+            this.cancelInFlight = cancelInFlight;
+        }
+
+        /**
+         * Schedule the sub-queries of this batch, sending as many as there is room for right away.
+         *
+         * @param subQueries  Sends each sub-query, in the order they should be sent. Must not throw.
+         */
+        public void schedule(List<Runnable> subQueries) {
+            synchronized (SplitQueryScheduler.this) {
+                if (cancelled) {
+                    return;
+                }
+                this.subQueries = new ArrayList<>(subQueries);
+                this.released = new boolean[subQueries.size()];
+                batches.add(this);
+            }
+            send();
+        }
+
+        /**
+         * Report that a sub-query which was sent has completed, making room for another sub-query.
+         * <p>
+         * Reporting a sub-query which hasn't been sent, or whose place was already given up, does nothing.
+         *
+         * @param index  The position of the sub-query in the list of sub-queries scheduled
+         */
+        public void complete(int index) {
+            release(index);
+            send();
+        }
+
+        /**
+         * Give up the place of a sub-query in flight, unless it has already been given up.
+         *
+         * @param index  The position of the sub-query in the list of sub-queries scheduled
+         */
+        private void release(int index) {
+            synchronized (SplitQueryScheduler.this) {
+                if (cancelled || index < 0 || index >= nextSubQuery || released[index]) {
+                    // The places of cancelled sub-queries were already given up
+                    return;
+                }
+                released[index] = true;
+                inFlight--;
+                SplitQueryScheduler.this.inFlight--;
+            }
+        }
+
+        /**
+         * Whether a sent sub-query has given up its place.
+         *
+         * @param index  The position of the sub-query in the list of sub-queries scheduled
+         *
+         * @return true if the sub-query's place is no longer held
+         */
+        private boolean isReleased(int index) {
+            return cancelled || released[index];
+        }
+
+        /**
+         * Cancel the batch: sub-queries not yet sent are dropped and those in flight are cancelled.
+         * <p>
+         * The places of the sub-queries in flight are given up right away, rather than when they complete.
+         */
+        public void cancel() {
+            int dropped;
+            synchronized (SplitQueryScheduler.this) {
+                if (cancelled) {
+                    return;
+                }
+                cancelled = true;
+                dropped = subQueries.size() - nextSubQuery;
+                subQueries = Collections.emptyList();
+                nextSubQuery = 0;
+                batches.remove(this);
+                SplitQueryScheduler.this.inFlight -= inFlight;
+                inFlight = 0;
+            }
+            CANCELLED_SUB_QUERIES.mark(dropped);
+            cancelInFlight.run();
+            send();
+        }
+
+        /**
+         * Whether the batch has been cancelled.
+         *
+         * @return true if the batch has been cancelled
+         */
+        public boolean isCancelled() {
+            synchronized (SplitQueryScheduler.this) {
+                return cancelled;
+            }
+        }
+
+        /**
+         * Whether the batch has sub-queries which have not been sent yet.
+         *
+         * @return true if there are sub-queries left to send
+         */
+        private boolean hasUnsent() {
+            return nextSubQuery < subQueries.size();
+        }
+
+        /**
+         * Take the next sub-query to send, releasing the batch's reference to it.
+         *
+         * @return the next sub-query
+         */
+        private Runnable takeNext() {
+            return subQueries.set(nextSubQuery++, null);
+        }
+    }
+}
@@ -8,6 +8,7 @@ import com.yahoo.bard.webservice.config.SystemConfig;
 import com.yahoo.bard.webservice.config.SystemConfigProvider;
 import com.yahoo.bard.webservice.data.PartialDataHandler;
 import com.yahoo.bard.webservice.data.cache.DataCache;
+import com.yahoo.bard.webservice.data.cache.ResultPageCache;
 import com.yahoo.bard.webservice.data.cache.TupleDataCache;
 import com.yahoo.bard.webservice.data.volatility.VolatileIntervalsService;
 import com.yahoo.bard.webservice.druid.client.DruidWebService;
@@ -41,6 +42,7 @@ import javax.validation.constraints.NotNull;
  * <ul>
  *     <li>Partial data filtering is attached to the response. (Feature flagged)
  *     <li>Requests are routed by selecting a druid web service.
+ *     <li>Other pages of paginated requests are served from their cached results. (Feature flagged)
  *     <li>The cache is checked for responses matching the query. (Feature flagged)
  *     <li>Non UI requests may pass through an asynchronous druid query to test the aggregation cost.
  *     <li>Requests are sent asynchronously to the druid web service
@@ -142,7 +144,9 @@ public class DruidWorkflow implements RequestWorkflowProvider {
         //The PaginationRequestHandler adds a mapper to the mapper chain that strips the result set down to just the
         //page desired. That mapper should be one of the last mappers to execute, so the handler that adds the mapper
         //to the chain needs to be one of the first handlers to execute.
-        handler = new PaginationRequestHandler(handler);
+        handler = BardFeatureFlag.RESULT_PAGE_CACHE.isOn() ?
+                new PaginationRequestHandler(handler, new ResultPageCache()) :
+                new PaginationRequestHandler(handler);
 
         handler = new DateTimeSortRequestHandler(handler);
 
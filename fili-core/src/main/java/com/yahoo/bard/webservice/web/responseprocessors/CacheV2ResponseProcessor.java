@@ -7,6 +7,8 @@ import static com.yahoo.bard.webservice.web.handlers.VolatileDataRequestHandler.
 
 import com.yahoo.bard.webservice.config.SystemConfig;
 import com.yahoo.bard.webservice.config.SystemConfigProvider;
+import com.yahoo.bard.webservice.data.cache.DruidResponseCacheFormat;
+import com.yahoo.bard.webservice.data.cache.JsonDruidResponseCacheFormat;
 import com.yahoo.bard.webservice.data.cache.TupleDataCache;
 import com.yahoo.bard.webservice.druid.client.FailureCallback;
 import com.yahoo.bard.webservice.druid.client.HttpErrorCallback;
@@ -16,11 +18,12 @@ import com.yahoo.bard.webservice.util.SimplifiedIntervalList;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.ObjectWriter;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.Serializable;
+
 import javax.validation.constraints.NotNull;
 
 /**
@@ -40,10 +43,9 @@ public class CacheV2ResponseProcessor implements ResponseProcessor {
 
     private final ResponseProcessor next;
     private final String cacheKey;
-    private final @NotNull TupleDataCache<String, Long, String> dataCache;
+    private final @NotNull TupleDataCache<String, Long, Serializable> dataCache;
     private final @NotNull QuerySigningService<Long> querySigningService;
-
-    protected final ObjectWriter writer;
+    private final @NotNull DruidResponseCacheFormat cacheFormat;
 
     /**
      * Constructor.
@@ -52,20 +54,49 @@ public class CacheV2ResponseProcessor implements ResponseProcessor {
      * @param cacheKey  Key into which to write a cache entry
      * @param dataCache  The cache into which to write a cache entry
      * @param querySigningService  Service to use for signing the queries in the cache key with their metadata
-     * @param mapper  An object mapper to use for processing Json
+     * @param cacheFormat  The format in which to write the cache entry
      */
     public CacheV2ResponseProcessor(
             ResponseProcessor next,
             String cacheKey,
-            TupleDataCache<String, Long, String> dataCache,
+            TupleDataCache<String, Long, Serializable> dataCache,
             QuerySigningService<Long> querySigningService,
-            ObjectMapper mapper
+            DruidResponseCacheFormat cacheFormat
     ) {
         this.next = next;
         this.cacheKey = cacheKey;
         this.dataCache = dataCache;
         this.querySigningService = querySigningService;
-        this.writer = mapper.writer();
+        this.cacheFormat = cacheFormat;
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param next  Next ResponseProcessor in the chain
+     * @param cacheKey  Key into which to write a cache entry
+     * @param dataCache  The cache into which to write a cache entry
+     * @param querySigningService  Service to use for signing the queries in the cache key with their metadata
+     * @param mapper  An object mapper to use for processing Json
+     *
+     * @deprecated Responses are written as JSON text, use the constructor taking a {@link DruidResponseCacheFormat}
+     */
+    @Deprecated
+    @SuppressWarnings("unchecked")
+    public CacheV2ResponseProcessor(
+            ResponseProcessor next,
+            String cacheKey,
+            TupleDataCache<String, Long, String> dataCache,
+            QuerySigningService<Long> querySigningService,
+            ObjectMapper mapper
+    ) {
+        this(
+                next,
+                cacheKey,
+                (TupleDataCache<String, Long, Serializable>) (TupleDataCache<String, Long, ?>) dataCache,
+                querySigningService,
+                new JsonDruidResponseCacheFormat(mapper)
+        );
     }
 
     @Override
@@ -86,15 +117,15 @@ public class CacheV2ResponseProcessor implements ResponseProcessor {
     @Override
     public void processResponse(JsonNode json, DruidAggregationQuery<?> druidQuery, LoggingContext metadata) {
         if (isCacheable()) {
-            String valueString = null;
+            Serializable value = null;
             try {
-                valueString = writer.writeValueAsString(json);
-                int valueLength = valueString.length();
+                value = cacheFormat.serialize(json);
+                long valueLength = cacheFormat.sizeOf(value);
                 if (valueLength <= maxDruidResponseLengthToCache) {
                     dataCache.set(
                             cacheKey,
                             querySigningService.getSegmentSetId(druidQuery).orElse(null),
-                            valueString
+                            value
                     );
                 } else {
                     LOG.debug(
@@ -106,8 +137,8 @@ public class CacheV2ResponseProcessor implements ResponseProcessor {
             } catch (Exception e) {
                 LOG.warn(
                         "Unable to cache {}value of size: {}",
-                        valueString == null ? "null " : "",
-                        valueString == null ? "N/A" : valueString.length(),
+                        value == null ? "null " : "",
+                        value == null ? "N/A" : cacheFormat.sizeOf(value),
                         e
                 );
             }
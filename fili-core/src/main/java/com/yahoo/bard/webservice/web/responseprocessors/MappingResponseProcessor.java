@@ -3,9 +3,11 @@
 package com.yahoo.bard.webservice.web.responseprocessors;
 
 import com.yahoo.bard.webservice.application.ObjectMappersSuite;
+import com.yahoo.bard.webservice.config.BardFeatureFlag;
 import com.yahoo.bard.webservice.data.ResultSet;
 import com.yahoo.bard.webservice.data.metric.LogicalMetric;
 import com.yahoo.bard.webservice.data.metric.mappers.ResultSetMapper;
+import com.yahoo.bard.webservice.data.metric.mappers.RowMapperChain;
 import com.yahoo.bard.webservice.druid.client.FailureCallback;
 import com.yahoo.bard.webservice.druid.client.HttpErrorCallback;
 import com.yahoo.bard.webservice.druid.model.query.DruidAggregationQuery;
@@ -85,6 +87,9 @@ public abstract class MappingResponseProcessor implements ResponseProcessor {
      * @return a mapped resultSet
      */
     protected ResultSet mapResultSet(ResultSet resultSet) {
+        if (BardFeatureFlag.FUSED_RESULT_SET_MAPPING.isOn()) {
+            return RowMapperChain.mapResultSet(resultSet, getMappers());
+        }
         ResultSet mappedResultSet = resultSet;
         for (ResultSetMapper resultSetMapper : getMappers()) {
             mappedResultSet = resultSetMapper.map(mappedResultSet);
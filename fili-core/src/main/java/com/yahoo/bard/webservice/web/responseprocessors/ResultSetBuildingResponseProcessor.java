@@ -0,0 +1,51 @@
+// Copyright 2017 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.web.responseprocessors;
+
+import com.yahoo.bard.webservice.data.ResultSet;
+import com.yahoo.bard.webservice.druid.model.query.DruidAggregationQuery;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import org.joda.time.DateTimeZone;
+
+/**
+ * A response processor which turns Druid responses into result sets, and which can do so in two steps: building the
+ * result set of a response, and then processing a result set which has already been built.
+ * <p>
+ * This lets processors that collect several Druid responses for a single request (like split queries) build the
+ * result set of each response as it arrives, rather than holding on to the JSON of every response until the last one.
+ */
+public interface ResultSetBuildingResponseProcessor extends ResponseProcessor {
+
+    /**
+     * Whether this processor is able to build and process result sets.
+     * <p>
+     * Processors which delegate to another processor can only build result sets if their delegate can.
+     *
+     * @return true if {@link #buildResultSet} and {@link #processResultSet} may be used instead of processResponse
+     */
+    default boolean isBuildingResultSets() {
+        return true;
+    }
+
+    /**
+     * Build the result set of a Druid response.
+     *
+     * @param json  The json representing the druid response
+     * @param druidQuery  The druid query the response answers
+     * @param dateTimeZone  The date time zone for parsing result rows
+     *
+     * @return The initial result set from the json node
+     */
+    ResultSet buildResultSet(JsonNode json, DruidAggregationQuery<?> druidQuery, DateTimeZone dateTimeZone);
+
+    /**
+     * Process a result set which has already been built from Druid responses, and respond to the original web request.
+     *
+     * @param resultSet  The result set built from the Druid responses
+     * @param druidQuery  The query with the schema for processing this result set
+     * @param metadata  The LoggingContext to use
+     */
+    void processResultSet(ResultSet resultSet, DruidAggregationQuery<?> druidQuery, LoggingContext metadata);
+}
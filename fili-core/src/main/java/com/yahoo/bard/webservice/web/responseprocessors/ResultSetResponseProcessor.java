@@ -9,22 +9,28 @@ import static com.yahoo.bard.webservice.web.responseprocessors.ResponseContextKe
 
 import com.yahoo.bard.webservice.application.ObjectMappersSuite;
 import com.yahoo.bard.webservice.async.ResponseException;
+import com.yahoo.bard.webservice.config.BardFeatureFlag;
 import com.yahoo.bard.webservice.data.DruidResponseParser;
 import com.yahoo.bard.webservice.data.HttpResponseMaker;
+import com.yahoo.bard.webservice.data.Result;
 import com.yahoo.bard.webservice.data.ResultSet;
 import com.yahoo.bard.webservice.data.ResultSetSchema;
+import com.yahoo.bard.webservice.data.StreamingResultSet;
 import com.yahoo.bard.webservice.data.dimension.DimensionField;
 import com.yahoo.bard.webservice.data.metric.LogicalMetric;
+import com.yahoo.bard.webservice.data.metric.mappers.RowMapperChain;
 import com.yahoo.bard.webservice.druid.client.FailureCallback;
 import com.yahoo.bard.webservice.druid.client.HttpErrorCallback;
 import com.yahoo.bard.webservice.druid.model.query.DruidAggregationQuery;
 import com.yahoo.bard.webservice.druid.model.query.Granularity;
 import com.yahoo.bard.webservice.logging.RequestLog;
 import com.yahoo.bard.webservice.table.Column;
+import com.yahoo.bard.webservice.web.ApiRequest;
 import com.yahoo.bard.webservice.web.DataApiRequest;
 import com.yahoo.bard.webservice.web.PageNotFoundException;
 import com.yahoo.bard.webservice.web.PreResponse;
 
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.databind.JsonNode;
 
 import org.joda.time.DateTimeZone;
@@ -33,10 +39,13 @@ import org.slf4j.LoggerFactory;
 
 import rx.subjects.Subject;
 
+import java.io.IOException;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.Map;
+import java.util.concurrent.Callable;
 import java.util.stream.Collectors;
 
 import javax.ws.rs.core.Response.Status;
@@ -44,7 +53,8 @@ import javax.ws.rs.core.Response.Status;
 /**
  * Callback handler for JSON to be processed into result sets.
  */
-public class ResultSetResponseProcessor extends MappingResponseProcessor implements ResponseProcessor {
+public class ResultSetResponseProcessor extends MappingResponseProcessor
+        implements StreamingResponseProcessor, ResultSetBuildingResponseProcessor {
 
     private static final Logger LOG = LoggerFactory.getLogger(ResultSetResponseProcessor.class);
 
@@ -88,10 +98,106 @@ public class ResultSetResponseProcessor extends MappingResponseProcessor impleme
 
     @Override
     public void processResponse(JsonNode json, DruidAggregationQuery<?> druidQuery, LoggingContext metadata) {
+        processResponse(
+                () -> mapResultSet(buildResultSet(json, druidQuery, apiRequest.getTimeZone())),
+                druidQuery,
+                metadata
+        );
+    }
+
+    /**
+     * Process a druid response read through a streaming parser, closing the parser once it has been read.
+     * <p>
+     * When pipelined response streaming is on, the request is answered synchronously and all the mappers are row local,
+     * the results are read from the parser and mapped while the response is being written, rather than before the
+     * response is sent. The parser is then closed once the response has been written.
+     *
+     * @param parser  Parser over the druid response, positioned before its first token
+     * @param druidQuery  The druid query being processed
+     * @param metadata  The LoggingContext to use
+     */
+    @Override
+    public void processResponse(JsonParser parser, DruidAggregationQuery<?> druidQuery, LoggingContext metadata) {
+        if (isPipelined()) {
+            processResponse(() -> buildStreamingResultSet(parser, druidQuery), druidQuery, metadata);
+        } else {
+            processResponse(
+                    () -> {
+                        try (JsonParser closedParser = parser) {
+                            return mapResultSet(buildResultSet(closedParser, druidQuery, apiRequest.getTimeZone()));
+                        }
+                    },
+                    druidQuery,
+                    metadata
+            );
+        }
+    }
+
+    @Override
+    public void processResultSet(ResultSet resultSet, DruidAggregationQuery<?> druidQuery, LoggingContext metadata) {
+        processResponse(() -> mapResultSet(resultSet), druidQuery, metadata);
+    }
+
+    /**
+     * Whether results read through a streaming parser are mapped and written while they are being read.
+     * <p>
+     * Only responses which are written right away, rather than being stored for an asynchronous request, can be
+     * pipelined, and only if none of the mappers need the whole result set.
+     *
+     * @return true if the response to this request can be pipelined
+     */
+    protected boolean isPipelined() {
+        return BardFeatureFlag.PIPELINED_RESPONSE_STREAMING.isOn()
+                && apiRequest.getAsyncAfter() == ApiRequest.SYNCHRONOUS_ASYNC_AFTER_VALUE
+                && RowMapperChain.isRowLocal(getMappers());
+    }
+
+    /**
+     * Build a mapped result set which reads its results from the druid response as it is iterated over.
+     * <p>
+     * Failures reading the start of the response are thrown right away, closing the parser. Failures after that are
+     * thrown while the results are being iterated over, once the response may have been partly written.
+     *
+     * @param parser  Parser over the druid response, positioned before its first token
+     * @param druidQuery  The druid query being processed
+     *
+     * @return the mapped result set, read as it is iterated over
+     *
+     * @throws IOException if the start of the druid response cannot be read
+     */
+    private ResultSet buildStreamingResultSet(JsonParser parser, DruidAggregationQuery<?> druidQuery)
+            throws IOException {
+        try {
+            ResultSetSchema schema = buildResultSetSchema(druidQuery);
+            RowMapperChain mapperChain = new RowMapperChain(getMappers(), schema);
+            Iterator<Result> results = druidResponseParser.stream(
+                    parser,
+                    schema,
+                    druidQuery.getQueryType(),
+                    apiRequest.getTimeZone()
+            );
+            return new StreamingResultSet(mapperChain.getSchema(), mapperChain.map(results));
+        } catch (IOException | RuntimeException e) {
+            parser.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Send a mapped result set to the response emitter, or send an error if building it fails.
+     *
+     * @param resultSetBuilder  Builds the mapped result set from the druid response
+     * @param druidQuery  The druid query being processed
+     * @param metadata  The LoggingContext to use
+     */
+    private void processResponse(
+            Callable<ResultSet> resultSetBuilder,
+            DruidAggregationQuery<?> druidQuery,
+            LoggingContext metadata
+    ) {
         try {
             RequestLog.restore(metadata.getRequestLog());
-            ResultSet resultSet = buildResultSet(json, druidQuery, apiRequest.getTimeZone());
-            resultSet = mapResultSet(resultSet);
+            ResultSet resultSet = resultSetBuilder.call();
 
             LinkedHashSet<String> apiMetricColumnNames = apiRequest.getLogicalMetrics().stream()
                     .map(LogicalMetric::getName)
@@ -148,13 +254,48 @@ public class ResultSetResponseProcessor extends MappingResponseProcessor impleme
      *
      * @return The initial result set from the json node.
      */
+    @Override
     public ResultSet buildResultSet(JsonNode json, DruidAggregationQuery<?> druidQuery, DateTimeZone dateTimeZone) {
+        return druidResponseParser.parse(
+                json,
+                buildResultSetSchema(druidQuery),
+                druidQuery.getQueryType(),
+                dateTimeZone
+        );
+    }
 
+    /**
+     * Build a result set using the api request time grain, streaming the druid response rather than reading a tree.
+     *
+     * @param parser  Parser over the druid response.
+     * @param druidQuery  The druid query being processed
+     * @param dateTimeZone  The date time zone for parsing result rows
+     *
+     * @return The initial result set from the parser.
+     *
+     * @throws IOException if the druid response cannot be read
+     */
+    public ResultSet buildResultSet(JsonParser parser, DruidAggregationQuery<?> druidQuery, DateTimeZone dateTimeZone)
+            throws IOException {
+        return druidResponseParser.parse(
+                parser,
+                buildResultSetSchema(druidQuery),
+                druidQuery.getQueryType(),
+                dateTimeZone
+        );
+    }
+
+    /**
+     * Build the schema of the result set for a druid query, using the api request time grain.
+     *
+     * @param druidQuery  The druid query being processed
+     *
+     * @return The schema of the result set
+     */
+    private ResultSetSchema buildResultSetSchema(DruidAggregationQuery<?> druidQuery) {
         LinkedHashSet<Column> columns = druidResponseParser.buildSchemaColumns(druidQuery)
                 .collect(Collectors.toCollection(LinkedHashSet::new));
 
-        ResultSetSchema resultSetSchema = new ResultSetSchema(granularity, columns);
-
-        return druidResponseParser.parse(json, resultSetSchema, druidQuery.getQueryType(), dateTimeZone);
+        return new ResultSetSchema(granularity, columns);
     }
 }
@@ -2,22 +2,31 @@
 // Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
 package com.yahoo.bard.webservice.web.responseprocessors;
 
+import com.yahoo.bard.webservice.config.BardFeatureFlag;
+import com.yahoo.bard.webservice.data.ColumnarResultSet;
+import com.yahoo.bard.webservice.data.Result;
+import com.yahoo.bard.webservice.data.ResultSet;
+import com.yahoo.bard.webservice.data.ResultSetSchema;
 import com.yahoo.bard.webservice.data.cache.HashDataCache.Pair;
 import com.yahoo.bard.webservice.druid.client.FailureCallback;
 import com.yahoo.bard.webservice.druid.client.HttpErrorCallback;
 import com.yahoo.bard.webservice.druid.model.query.DruidAggregationQuery;
 import com.yahoo.bard.webservice.logging.RequestLog;
 import com.yahoo.bard.webservice.web.DataApiRequest;
+import com.yahoo.bard.webservice.web.handlers.SplitQueryScheduler;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.JsonNodeFactory;
 
+import org.joda.time.DateTimeZone;
 import org.joda.time.Interval;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -27,6 +36,13 @@ import java.util.concurrent.atomic.AtomicInteger;
  * This response processor receives a list of expected intervals.  As responses arrives, it stores the responses until
  * all expected intervals have arrived, at which point it passes the concatenated Json content from each of the calls
  * to its next processor.
+ * <p>
+ * When the {@code split_query_result_set_merge_enabled} feature flag is on and the next processor builds result sets,
+ * each response is instead built into its partial result set as soon as it arrives, on the thread delivering it, and
+ * the ordered partial result sets are concatenated once all expected intervals have arrived.
+ * <p>
+ * When the sub-queries are sent by a {@link SplitQueryScheduler}, each sub-query is reported to the scheduler as
+ * complete once its response (or failure) arrives, and the first failure cancels the sub-queries still outstanding.
  */
 public class SplitQueryResponseProcessor implements ResponseProcessor {
 
@@ -39,9 +55,15 @@ public class SplitQueryResponseProcessor implements ResponseProcessor {
     private final DruidAggregationQuery<?> queryBeforeSplit;
     private final Map<Interval, AtomicInteger> expectedIntervals;
     private final List<Pair<JsonNode, LoggingContext>> completedIntervals;
+    private final List<Pair<ResultSet, LoggingContext>> completedResultSets;
+    private final ResultSetBuildingResponseProcessor resultSetNext;
+    private final DateTimeZone dateTimeZone;
     private final AtomicInteger completed;
     private final AtomicBoolean failed = new AtomicBoolean(false);
     private final RequestLog logCtx;
+    private final SplitQueryScheduler.Batch subQueries;
+    // The position of each sub-query's interval among the scheduled sub-queries
+    private final Map<Interval, Integer> subQueryIndexes;
 
     /**
      * Constructor.
@@ -52,20 +74,64 @@ public class SplitQueryResponseProcessor implements ResponseProcessor {
      * @param expectedIntervals A map of expected interval status flags
      * @param logCtx  The request log logging context
      */
-    @SuppressWarnings("unchecked")
     public SplitQueryResponseProcessor(
             ResponseProcessor next,
             DataApiRequest request,
             DruidAggregationQuery<?> druidQuery,
             Map<Interval, AtomicInteger> expectedIntervals,
             RequestLog logCtx
+    ) {
+        this(next, request, druidQuery, expectedIntervals, logCtx, null);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param next  The next delegate response processor
+     * @param request  The request for this response
+     * @param druidQuery  The unmodified druid query for this response
+     * @param expectedIntervals A map of expected interval status flags
+     * @param logCtx  The request log logging context
+     * @param subQueries  The scheduled batch sending the sub-queries in the order of the expected intervals, or null if
+     * they are not sent by a scheduler
+     */
+    @SuppressWarnings("unchecked")
+    public SplitQueryResponseProcessor(
+            ResponseProcessor next,
+            DataApiRequest request,
+            DruidAggregationQuery<?> druidQuery,
+            Map<Interval, AtomicInteger> expectedIntervals,
+            RequestLog logCtx,
+            SplitQueryScheduler.Batch subQueries
     ) {
         this.next = next;
         this.queryBeforeSplit = druidQuery;
         this.expectedIntervals = expectedIntervals;
-        this.completedIntervals = Arrays.asList(new Pair[expectedIntervals.size()]);
+        this.resultSetNext = isMergingResultSets(next) ? (ResultSetBuildingResponseProcessor) next : null;
+        this.dateTimeZone = request.getTimeZone();
+        // Only one of the collections of responses is used, depending on how responses are merged
+        this.completedIntervals = resultSetNext == null ? Arrays.asList(new Pair[expectedIntervals.size()]) : null;
+        this.completedResultSets = resultSetNext == null ? null : Arrays.asList(new Pair[expectedIntervals.size()]);
         this.completed = new AtomicInteger(expectedIntervals.size());
         this.logCtx = logCtx;
+        this.subQueries = subQueries;
+        this.subQueryIndexes = new HashMap<>();
+        for (Interval interval : expectedIntervals.keySet()) {
+            subQueryIndexes.put(interval, subQueryIndexes.size());
+        }
+    }
+
+    /**
+     * Whether responses should be merged as result sets rather than as JSON.
+     *
+     * @param next  The next delegate response processor
+     *
+     * @return true if the feature flag is on and the next processor can build and process result sets
+     */
+    private static boolean isMergingResultSets(ResponseProcessor next) {
+        return BardFeatureFlag.SPLIT_QUERY_RESULT_SET_MERGE.isOn() &&
+                next instanceof ResultSetBuildingResponseProcessor &&
+                ((ResultSetBuildingResponseProcessor) next).isBuildingResultSets();
     }
 
     @Override
@@ -80,8 +146,13 @@ public class SplitQueryResponseProcessor implements ResponseProcessor {
 
             @Override
             public void invoke(Throwable error) {
-                if (failed.compareAndSet(false, true)) {
-                    nextFail.invoke(error);
+                try {
+                    if (failed.compareAndSet(false, true)) {
+                        cancelSubQueries();
+                        nextFail.invoke(error);
+                    }
+                } finally {
+                    completeSubQuery(druidQuery);
                 }
             }
         };
@@ -94,8 +165,13 @@ public class SplitQueryResponseProcessor implements ResponseProcessor {
 
             @Override
             public void invoke(int statusCode, String reasonPhrase, String responseBody) {
-                if (failed.compareAndSet(false, true)) {
-                    nextError.invoke(statusCode, reasonPhrase, responseBody);
+                try {
+                    if (failed.compareAndSet(false, true)) {
+                        cancelSubQueries();
+                        nextError.invoke(statusCode, reasonPhrase, responseBody);
+                    }
+                } finally {
+                    completeSubQuery(druidQuery);
                 }
             }
         };
@@ -103,6 +179,21 @@ public class SplitQueryResponseProcessor implements ResponseProcessor {
 
     @Override
     public void processResponse(JsonNode json, DruidAggregationQuery<?> druidQuery, LoggingContext metadata) {
+        try {
+            acceptResponse(json, druidQuery, metadata);
+        } finally {
+            completeSubQuery(druidQuery);
+        }
+    }
+
+    /**
+     * Store the response of a sub-query, and pass the merged responses on to the next processor if it is the last.
+     *
+     * @param json  The json representing the druid response of the sub-query
+     * @param druidQuery  The sub-query
+     * @param metadata  The LoggingContext of the sub-query
+     */
+    private void acceptResponse(JsonNode json, DruidAggregationQuery<?> druidQuery, LoggingContext metadata) {
         if (failed.get()) {
             return;
         }
@@ -115,20 +206,49 @@ public class SplitQueryResponseProcessor implements ResponseProcessor {
         }
 
         int index;
-        if ((index = sharedIndex.getAndSet(-1)) < 0 || completedIntervals.get(index) != null) {
+        if ((index = sharedIndex.getAndSet(-1)) < 0 || isCompleted(index)) {
             fail(EXTRA_RETURN_FORMAT, druidQuery, interval);
             return;
         }
 
-        completedIntervals.set(index, new Pair<>(json, metadata));
+        if (resultSetNext == null) {
+            completedIntervals.set(index, new Pair<>(json, metadata));
+        } else {
+            ResultSet partialResultSet;
+            try {
+                partialResultSet = resultSetNext.buildResultSet(json, druidQuery, dateTimeZone);
+            } catch (RuntimeException e) {
+                LOG.error("Unable to build the result set of the response for interval {}", interval, e);
+                failRequest(druidQuery, e);
+                return;
+            }
+            completedResultSets.set(index, new Pair<>(partialResultSet, metadata));
+        }
 
         if (completed.decrementAndGet() == 0) {
-            Pair<JsonNode, LoggingContext> mergedResponse = mergeResponses(completedIntervals);
-            RequestLog.restore(mergedResponse.getValue().getRequestLog());
-            next.processResponse(mergedResponse.getKey(), queryBeforeSplit, mergedResponse.getValue());
+            if (resultSetNext == null) {
+                Pair<JsonNode, LoggingContext> mergedResponse = mergeResponses(completedIntervals);
+                RequestLog.restore(mergedResponse.getValue().getRequestLog());
+                next.processResponse(mergedResponse.getKey(), queryBeforeSplit, mergedResponse.getValue());
+            } else {
+                Pair<ResultSet, LoggingContext> mergedResultSet = mergeResultSets(completedResultSets);
+                RequestLog.restore(mergedResultSet.getValue().getRequestLog());
+                resultSetNext.processResultSet(mergedResultSet.getKey(), queryBeforeSplit, mergedResultSet.getValue());
+            }
         }
     }
 
+    /**
+     * Whether the response for the interval at an index has already arrived.
+     *
+     * @param index  The index of the interval
+     *
+     * @return true if a response has been stored for the interval
+     */
+    private boolean isCompleted(int index) {
+        return resultSetNext == null ? completedIntervals.get(index) != null : completedResultSets.get(index) != null;
+    }
+
     /**
      * Fail the request.
      *
@@ -140,7 +260,55 @@ public class SplitQueryResponseProcessor implements ResponseProcessor {
         String message = String.format(format, interval);
         Exception e = new IllegalStateException(message);
         LOG.error(message, e);
-        getFailureCallback(druidQuery).invoke(e);
+        failRequest(druidQuery, e);
+    }
+
+    /**
+     * Fail the request, unless it has already failed, cancelling the sub-queries still outstanding.
+     *
+     * @param druidQuery  Druid query that failed
+     * @param error  The cause of the failure
+     */
+    private void failRequest(DruidAggregationQuery<?> druidQuery, Throwable error) {
+        if (failed.compareAndSet(false, true)) {
+            cancelSubQueries();
+            next.getFailureCallback(druidQuery).invoke(error);
+        }
+    }
+
+    /**
+     * Report a sub-query as complete to the scheduler sending the sub-queries, if there is one.
+     * <p>
+     * Completing a sub-query may send another one on this thread, so the request log of this thread is set aside
+     * while it does.
+     *
+     * @param druidQuery  The sub-query which completed
+     */
+    private void completeSubQuery(DruidAggregationQuery<?> druidQuery) {
+        if (subQueries == null) {
+            return;
+        }
+        List<Interval> intervals = druidQuery.getIntervals();
+        Integer index = intervals == null || intervals.isEmpty() ? null : subQueryIndexes.get(intervals.get(0));
+        if (index == null) {
+            // Not a sub-query of this request, so it holds no place, or its place is given up when it times out
+            return;
+        }
+        RequestLog current = RequestLog.dump();
+        try {
+            subQueries.complete(index);
+        } finally {
+            RequestLog.restore(current);
+        }
+    }
+
+    /**
+     * Cancel the sub-queries which have not completed yet, if they are sent by a scheduler.
+     */
+    private void cancelSubQueries() {
+        if (subQueries != null) {
+            subQueries.cancel();
+        }
     }
 
     /**
@@ -163,4 +331,36 @@ public class SplitQueryResponseProcessor implements ResponseProcessor {
         RequestLog updatedCtx = RequestLog.dump();
         return new Pair<>(result, new LoggingContext(updatedCtx));
     }
+
+    /**
+     * Concatenate the partial result sets built from each response, preserving order.
+     * <p>
+     * Partial result sets which are columnar are concatenated into a columnar result set.
+     *
+     * @param responses  A list of pairs that encompass partial result sets and response metadata
+     *
+     * @return A new pair holding the merged result set and the aggregate request log context
+     */
+    private Pair<ResultSet, LoggingContext> mergeResultSets(List<Pair<ResultSet, LoggingContext>> responses) {
+        ResultSetSchema schema = responses.get(0).getKey().getSchema();
+        boolean columnar = responses.get(0).getKey() instanceof ColumnarResultSet;
+
+        ColumnarResultSet.Builder columnarBuilder = columnar ? new ColumnarResultSet.Builder(schema) : null;
+        List<Result> results = columnar ?
+                null :
+                new ArrayList<>(responses.stream().mapToInt(entry -> entry.getKey().size()).sum());
+
+        RequestLog.restore(logCtx);
+        for (Pair<ResultSet, LoggingContext> entry : responses) {
+            if (columnar) {
+                entry.getKey().forEach(columnarBuilder::add);
+            } else {
+                results.addAll(entry.getKey());
+            }
+            RequestLog.accumulate(entry.getValue().getRequestLog());
+        }
+        RequestLog updatedCtx = RequestLog.dump();
+        ResultSet merged = columnar ? columnarBuilder.build() : new ResultSet(schema, results);
+        return new Pair<>(merged, new LoggingContext(updatedCtx));
+    }
 }
@@ -0,0 +1,27 @@
+// Copyright 2017 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.web.responseprocessors;
+
+import com.yahoo.bard.webservice.druid.model.query.DruidAggregationQuery;
+
+import com.fasterxml.jackson.core.JsonParser;
+
+/**
+ * A response processor which can consume a Druid response directly from a stream of JSON tokens, without the response
+ * first being built into a JsonNode.
+ * <p>
+ * Only processors at the end of the processing chain should implement this: processors that wrap another processor
+ * (caching, splitting, partial data checks) need the JSON document itself.
+ */
+public interface StreamingResponseProcessor extends ResponseProcessor {
+    /**
+     * Process the streamed response and respond to the original web request.
+     * <p>
+     * The processor owns the parser and must close it once it is done reading, which may be after this returns.
+     *
+     * @param parser  Parser over the druid data response, positioned before its first token
+     * @param query  The query with the schema for processing this response
+     * @param metadata  The LoggingContext to use
+     */
+    void processResponse(JsonParser parser, DruidAggregationQuery<?> query, LoggingContext metadata);
+}
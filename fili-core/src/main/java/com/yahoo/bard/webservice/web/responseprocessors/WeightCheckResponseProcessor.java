@@ -4,6 +4,7 @@ package com.yahoo.bard.webservice.web.responseprocessors;
 
 import static com.yahoo.bard.webservice.web.handlers.workflow.DruidWorkflow.REQUEST_WORKFLOW_TIMER;
 
+import com.yahoo.bard.webservice.data.ResultSet;
 import com.yahoo.bard.webservice.druid.client.FailureCallback;
 import com.yahoo.bard.webservice.druid.client.HttpErrorCallback;
 import com.yahoo.bard.webservice.druid.model.query.DruidAggregationQuery;
@@ -11,11 +12,13 @@ import com.yahoo.bard.webservice.logging.RequestLog;
 
 import com.fasterxml.jackson.databind.JsonNode;
 
+import org.joda.time.DateTimeZone;
+
 /**
  * A response processor which wraps a timer around the outer most response processor only in the event of an error
  * response.
  */
-public class WeightCheckResponseProcessor implements ResponseProcessor {
+public class WeightCheckResponseProcessor implements ResultSetBuildingResponseProcessor {
 
     private final ResponseProcessor next;
 
@@ -63,4 +66,34 @@ public class WeightCheckResponseProcessor implements ResponseProcessor {
     public void processResponse(JsonNode json, DruidAggregationQuery<?> druidQuery, LoggingContext metadata) {
         next.processResponse(json, druidQuery, metadata);
     }
+
+    @Override
+    public boolean isBuildingResultSets() {
+        return next instanceof ResultSetBuildingResponseProcessor &&
+                ((ResultSetBuildingResponseProcessor) next).isBuildingResultSets();
+    }
+
+    @Override
+    public ResultSet buildResultSet(JsonNode json, DruidAggregationQuery<?> druidQuery, DateTimeZone dateTimeZone) {
+        return getResultSetBuildingNext().buildResultSet(json, druidQuery, dateTimeZone);
+    }
+
+    @Override
+    public void processResultSet(ResultSet resultSet, DruidAggregationQuery<?> druidQuery, LoggingContext metadata) {
+        getResultSetBuildingNext().processResultSet(resultSet, druidQuery, metadata);
+    }
+
+    /**
+     * Get the next processor in the chain as a processor which can build result sets.
+     *
+     * @return the next processor
+     *
+     * @throws UnsupportedOperationException if the next processor doesn't build result sets
+     */
+    private ResultSetBuildingResponseProcessor getResultSetBuildingNext() {
+        if (!isBuildingResultSets()) {
+            throw new UnsupportedOperationException("Next response processor does not build result sets: " + next);
+        }
+        return (ResultSetBuildingResponseProcessor) next;
+    }
 }
@@ -0,0 +1,177 @@
+// Copyright 2017 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.data
+
+import static com.yahoo.bard.webservice.data.time.DefaultTimeGrain.DAY
+
+import com.yahoo.bard.webservice.data.dimension.BardDimensionField
+import com.yahoo.bard.webservice.data.dimension.DimensionColumn
+import com.yahoo.bard.webservice.data.dimension.DimensionField
+import com.yahoo.bard.webservice.data.dimension.DimensionRow
+import com.yahoo.bard.webservice.data.dimension.MapStoreManager
+import com.yahoo.bard.webservice.data.dimension.impl.KeyValueStoreDimension
+import com.yahoo.bard.webservice.data.dimension.impl.ScanSearchProviderManager
+import com.yahoo.bard.webservice.data.metric.MetricColumn
+import com.yahoo.bard.webservice.data.metric.mappers.DateTimeSortMapper
+import com.yahoo.bard.webservice.data.metric.mappers.RowNumMapper
+import com.yahoo.bard.webservice.data.metric.mappers.TopNResultSetMapper
+import com.yahoo.bard.webservice.druid.model.orderby.SortDirection
+
+import com.fasterxml.jackson.databind.node.TextNode
+
+import org.joda.time.DateTime
+import org.joda.time.DateTimeZone
+
+import spock.lang.Specification
+import spock.lang.Unroll
+
+class ColumnarResultSetSpec extends Specification {
+
+    static final DateTimeZone ZONE = DateTimeZone.forID("America/Chicago")
+
+    DimensionColumn genderColumn
+    DimensionRow female
+    DimensionRow male
+    MetricColumn pageViews = new MetricColumn("pageViews")
+    MetricColumn timeSpent = new MetricColumn("timeSpent")
+    MetricColumn sketch = new MetricColumn("sketch")
+    ResultSetSchema schema
+    List<Result> results
+
+    def setup() {
+        LinkedHashSet<DimensionField> dimensionFields = [BardDimensionField.ID, BardDimensionField.DESC]
+        KeyValueStoreDimension gender = new KeyValueStoreDimension(
+                "gender",
+                "gender",
+                dimensionFields,
+                MapStoreManager.getInstance("gender"),
+                ScanSearchProviderManager.getInstance("gender")
+        )
+        genderColumn = new DimensionColumn(gender)
+        female = BardDimensionField.makeDimensionRow(gender, "f", "female")
+        male = BardDimensionField.makeDimensionRow(gender, "m", "male")
+
+        schema = new ResultSetSchema(DAY, [genderColumn, pageViews, timeSpent, sketch] as LinkedHashSet)
+
+        results = [
+                result(3, female, [(pageViews): 1 as BigDecimal, (timeSpent): 2.5G, (sketch): new TextNode("a")]),
+                result(1, male, [(pageViews): 10 as BigDecimal, (timeSpent): 0.1G, (sketch): null]),
+                result(2, female, [(pageViews): 7 as BigDecimal, (timeSpent): 1.25G]),
+                result(1, female, [(pageViews): 4 as BigDecimal, (timeSpent): 3.0G, (sketch): new TextNode("b")])
+        ]
+    }
+
+    Result result(int day, DimensionRow genderRow, Map<MetricColumn, Object> metrics) {
+        new Result(
+                [(genderColumn): genderRow] as LinkedHashMap,
+                metrics as LinkedHashMap,
+                new DateTime(2017, 1, day, 0, 0, ZONE)
+        )
+    }
+
+    def "A columnar result set reads back the results it was built from"() {
+        when:
+        ColumnarResultSet resultSet = ColumnarResultSet.of(schema, results)
+
+        then:
+        resultSet == results
+        resultSet.size() == 4
+        resultSet.getSchema() == schema
+        resultSet.get(1) == results[1]
+        resultSet.get(0).getTimeStamp().getZone() == ZONE
+        resultSet.collect { it } == results
+        resultSet.stream().count() == 4
+    }
+
+    def "Absent metrics stay absent and null metrics stay null"() {
+        when:
+        ColumnarResultSet resultSet = ColumnarResultSet.of(schema, results)
+
+        then:
+        !resultSet.get(2).getMetricValues().containsKey(sketch)
+        resultSet.get(1).getMetricValues().containsKey(sketch)
+        resultSet.get(1).getMetricValue(sketch) == null
+    }
+
+    @Unroll
+    def "Numeric value #value round trips with its exact scale"() {
+        given:
+        List<Result> numericResults = [
+                result(1, female, [(pageViews): value]),
+                result(2, male, [(pageViews): 1 as BigDecimal])
+        ]
+
+        expect:
+        ColumnarResultSet.of(schema, numericResults).get(0).getMetricValue(pageViews).toString() == value.toString()
+
+        where:
+        value << [
+                5 as BigDecimal,
+                BigDecimal.valueOf(2.5d),
+                new BigDecimal("1.10"),
+                new BigDecimal("123456789012345678901234567890"),
+                5L,
+                "text"
+        ]
+    }
+
+    def "Columnar result sets are immutable"() {
+        given:
+        ColumnarResultSet resultSet = ColumnarResultSet.of(schema, results)
+
+        when:
+        resultSet.add(results[0])
+
+        then:
+        thrown(UnsupportedOperationException)
+    }
+
+    @Unroll
+    def "Sorting by timestamp #direction matches the bucketing sort"() {
+        given:
+        ResultSet expected = new DateTimeSortMapper(direction).map(new ResultSet(schema, results))
+
+        when:
+        ResultSet sorted = new DateTimeSortMapper(direction).map(ColumnarResultSet.of(schema, results))
+
+        then:
+        sorted instanceof ColumnarResultSet
+        sorted == expected
+
+        where:
+        direction << [SortDirection.ASC, SortDirection.DESC]
+    }
+
+    def "Top N selection over sorted columnar results matches the row based mapper"() {
+        given:
+        ResultSet sorted = new DateTimeSortMapper(SortDirection.ASC).map(new ResultSet(schema, results))
+        ResultSet expected = new TopNResultSetMapper(1).map(sorted)
+
+        when:
+        ResultSet topN = new TopNResultSetMapper(1).map(ColumnarResultSet.of(schema, sorted))
+
+        then:
+        topN instanceof ColumnarResultSet
+        topN == expected
+    }
+
+    def "Mapping a columnar result set matches mapping the row based one"() {
+        given:
+        ResultSet expected = new RowNumMapper().map(new ResultSet(schema, results))
+
+        when:
+        ResultSet mapped = new RowNumMapper().map(ColumnarResultSet.of(schema, results))
+
+        then:
+        mapped == expected
+    }
+
+    def "Selecting rows shares columns and reads the selected rows in order"() {
+        when:
+        ColumnarResultSet selected = ColumnarResultSet.of(schema, results).selectRows([3, 0] as int[])
+
+        then:
+        selected == [results[3], results[0]]
+        selected.getTimestampMillis(0) == results[3].getTimeStamp().getMillis()
+    }
+}
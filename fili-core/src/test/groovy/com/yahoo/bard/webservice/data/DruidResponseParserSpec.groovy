@@ -20,6 +20,7 @@ import com.yahoo.bard.webservice.table.Column
 import com.yahoo.bard.webservice.table.Schema
 
 import com.fasterxml.jackson.core.JsonFactory
+import com.fasterxml.jackson.core.JsonParseException
 import com.fasterxml.jackson.core.JsonParser
 import com.fasterxml.jackson.databind.JsonNode
 import com.fasterxml.jackson.databind.ObjectMapper
@@ -397,6 +398,119 @@ class DruidResponseParserSpec extends Specification {
         queryType << [DefaultQueryType.GROUP_BY, DefaultQueryType.TOP_N, DefaultQueryType.TIMESERIES]
     }
 
+    @Unroll
+    def "Streaming a Druid #queryType result builds the same ResultSet as parsing its tree"() {
+        given: "A response from Druid containing numeric, String, boolean, null and JsonNode metrics"
+        String druidResponse = buildResponse(
+                queryType,
+                [
+                        '"pageViews"': 1,
+                        '"timeSpent"': 2.5,
+                        '"luckyNumbers"': '"1, 3, 7"',
+                        '"true"': true,
+                        '"null"': null,
+                        '"sketch"': '{"values": "2", "length": 1}'
+                ]
+        )
+        ResultSetSchema schema = buildSchema(["pageViews", "timeSpent", "luckyNumbers", "true", "null", "sketch"])
+
+        when: "We build a result set by streaming the Druid response"
+        ResultSet streamed = responseParser.parse(
+                new JsonFactory().createParser(druidResponse),
+                schema,
+                queryType,
+                DateTimeZone.UTC
+        )
+
+        then: "It matches the result set built from the tree of the response"
+        streamed == buildResultSet(druidResponse, schema, queryType)
+        streamed.getSchema() == schema
+
+        where:
+        queryType << [
+                DefaultQueryType.GROUP_BY,
+                DefaultQueryType.TOP_N,
+                DefaultQueryType.TIMESERIES,
+                DefaultQueryType.LOOKBACK
+        ]
+    }
+
+    @Unroll
+    def "Lazily streaming a Druid #queryType result reads the same results as parsing its tree"() {
+        given:
+        String druidResponse = buildResponse(queryType, ['"pageViews"': 1, '"luckyNumbers"': '"1, 3, 7"'])
+        ResultSetSchema schema = buildSchema(["pageViews", "luckyNumbers"])
+        JsonParser parser = new JsonFactory().createParser(druidResponse)
+
+        when:
+        Iterator<Result> results = responseParser.stream(parser, schema, queryType, DateTimeZone.UTC)
+
+        then: "Only the start of the response has been read"
+        !parser.isClosed()
+
+        when:
+        List<Result> streamed = results.collect()
+
+        then: "The results match the tree's, and the parser is closed once they have all been read"
+        streamed == buildResultSet(druidResponse, schema, queryType)
+        parser.isClosed()
+
+        where:
+        queryType << [
+                DefaultQueryType.GROUP_BY,
+                DefaultQueryType.TOP_N,
+                DefaultQueryType.TIMESERIES,
+                DefaultQueryType.LOOKBACK
+        ]
+    }
+
+    def "Lazily streaming a malformed Druid response fails while reading it, and closes the parser"() {
+        given:
+        String druidResponse = '[ { "event" : { "ageBracket" : "4", "pageViews" : 1 } } ]'
+        JsonParser parser = new JsonFactory().createParser(druidResponse)
+        Iterator<Result> results = responseParser.stream(
+                parser,
+                buildSchema(["pageViews"]),
+                DefaultQueryType.GROUP_BY,
+                DateTimeZone.UTC
+        )
+
+        when:
+        results.hasNext()
+
+        then:
+        UncheckedIOException exception = thrown()
+        exception.getCause() instanceof JsonParseException
+        parser.isClosed()
+    }
+
+    def "Streaming a Druid result record without a timestamp fails"() {
+        given:
+        String druidResponse = '[ { "event" : { "ageBracket" : "4", "pageViews" : 1 } } ]'
+
+        when:
+        responseParser.parse(
+                new JsonFactory().createParser(druidResponse),
+                buildSchema(["pageViews"]),
+                DefaultQueryType.GROUP_BY,
+                DateTimeZone.UTC
+        )
+
+        then:
+        thrown(JsonParseException)
+    }
+
+    def "Attempting to stream an unknown query type throws an UnsupportedOperationException"() {
+        given:
+        QueryType mysteryType = Mock(QueryType)
+
+        when:
+        responseParser.parse(new JsonFactory().createParser("[]"), Mock(ResultSetSchema), mysteryType, DateTimeZone.UTC)
+
+        then:
+        thrown(UnsupportedOperationException)
+    }
+
     def "Attempting to parse an unknown query type throws an UnsupportedOperationException"() {
         given:
         QueryType mysteryType = Mock(QueryType)
@@ -0,0 +1,66 @@
+// Copyright 2017 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.data
+
+import static com.yahoo.bard.webservice.data.time.DefaultTimeGrain.DAY
+
+import com.yahoo.bard.webservice.data.metric.MetricColumn
+
+import org.joda.time.DateTime
+
+import spock.lang.Specification
+
+import java.util.stream.Collectors
+
+class StreamingResultSetSpec extends Specification {
+
+    MetricColumn column = new MetricColumn("value")
+    ResultSetSchema schema = new ResultSetSchema(DAY, [column] as Set)
+    List<Result> results = (1..3).collect {
+        new Result([:], [(column): it as BigDecimal] as Map<MetricColumn, Object>, new DateTime(0))
+    }
+
+    def "A streaming result set can be read once, by iterating or streaming over it"() {
+        given:
+        StreamingResultSet resultSet = new StreamingResultSet(schema, results.iterator())
+
+        when:
+        List<Result> read = reader(resultSet)
+
+        then:
+        read == results
+        resultSet.getSchema() == schema
+
+        when:
+        reader(resultSet)
+
+        then:
+        thrown(IllegalStateException)
+
+        where:
+        reader << [
+                { ResultSet resultSet -> resultSet.iterator().collect() },
+                { ResultSet resultSet -> resultSet.stream().collect(Collectors.toList()) },
+                { ResultSet resultSet -> List read = []; resultSet.forEach { read.add(it) }; read }
+        ]
+    }
+
+    def "Nothing that needs all the results of a streaming result set is supported"() {
+        given:
+        StreamingResultSet resultSet = new StreamingResultSet(schema, results.iterator())
+
+        when:
+        operation(resultSet)
+
+        then:
+        thrown(UnsupportedOperationException)
+
+        where:
+        operation << [
+                { ResultSet resultSet -> resultSet.size() },
+                { ResultSet resultSet -> resultSet.get(0) },
+                { ResultSet resultSet -> resultSet.add(null) },
+                { ResultSet resultSet -> resultSet.sort(null) }
+        ]
+    }
+}
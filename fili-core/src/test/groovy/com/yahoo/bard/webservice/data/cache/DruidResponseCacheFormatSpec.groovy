@@ -0,0 +1,67 @@
+// Copyright 2017 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.data.cache
+
+import com.fasterxml.jackson.databind.JsonNode
+import com.fasterxml.jackson.databind.ObjectMapper
+
+import spock.lang.Specification
+import spock.lang.Unroll
+
+class DruidResponseCacheFormatSpec extends Specification {
+
+    static final ObjectMapper MAPPER = new ObjectMapper()
+
+    JsonNode druidResponse = MAPPER.readTree("""
+        [
+            {
+                "version": "v1",
+                "timestamp": "2014-06-10T00:00:00.000Z",
+                "event": { "gender": "f", "pageViews": 1234567890123, "timeSpent": 2.5, "sketch": null }
+            },
+            {
+                "version": "v1",
+                "timestamp": "2014-06-10T00:00:00.000Z",
+                "event": { "gender": "m", "pageViews": 7, "timeSpent": 1.25, "sketch": "abc" }
+            }
+        ]
+    """)
+
+    @Unroll
+    def "A Druid response round trips through the #format.class.simpleName cache format"() {
+        when:
+        Serializable value = format.serialize(druidResponse)
+
+        then:
+        valueType.isInstance(value)
+        format.deserialize(value) == druidResponse
+
+        where:
+        format                              | valueType
+        new JsonDruidResponseCacheFormat()  | String
+        new SmileDruidResponseCacheFormat() | byte[]
+    }
+
+    def "Smile cache values are smaller than JSON cache values"() {
+        given:
+        JsonDruidResponseCacheFormat json = new JsonDruidResponseCacheFormat()
+        SmileDruidResponseCacheFormat smile = new SmileDruidResponseCacheFormat()
+
+        expect:
+        smile.sizeOf(smile.serialize(druidResponse)) < json.sizeOf(json.serialize(druidResponse))
+    }
+
+    @Unroll
+    def "The #format.class.simpleName cache format rejects a value written in another format"() {
+        when:
+        format.deserialize(value)
+
+        then:
+        thrown(IOException)
+
+        where:
+        format                              | value
+        new JsonDruidResponseCacheFormat()  | [0x3a, 0x29, 0x0a] as byte[]
+        new SmileDruidResponseCacheFormat() | "[]"
+    }
+}
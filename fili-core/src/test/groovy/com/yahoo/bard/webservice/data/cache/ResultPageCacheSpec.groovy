@@ -0,0 +1,86 @@
+// Copyright 2017 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.data.cache
+
+import com.yahoo.bard.webservice.data.ColumnarResultSet
+import com.yahoo.bard.webservice.data.Result
+import com.yahoo.bard.webservice.data.ResultSet
+import com.yahoo.bard.webservice.data.ResultSetSchema
+import com.yahoo.bard.webservice.data.metric.MetricColumn
+import com.yahoo.bard.webservice.data.time.DefaultTimeGrain
+
+import org.joda.time.DateTime
+
+import spock.lang.Specification
+
+class ResultPageCacheSpec extends Specification {
+
+    MetricColumn metricColumn = new MetricColumn("m")
+    ResultSetSchema schema = new ResultSetSchema(DefaultTimeGrain.DAY, [metricColumn].toSet())
+
+    /**
+     * Build a result set with some number of rows.
+     *
+     * @param rows  The number of rows
+     *
+     * @return the result set
+     */
+    ResultSet buildResultSet(int rows) {
+        new ResultSet(
+                schema,
+                (0..<rows).collect { new Result([:], [(metricColumn): it as BigDecimal], new DateTime(it * 1000L)) }
+        )
+    }
+
+    def "Columnar result sets are estimated to hold less memory than row based ones"() {
+        given:
+        ResultSet resultSet = buildResultSet(100)
+
+        expect:
+        ResultPageCache.estimateBytes(ColumnarResultSet.of(schema, resultSet)) <
+                ResultPageCache.estimateBytes(resultSet)
+        ResultPageCache.estimateBytes(buildResultSet(200)) > ResultPageCache.estimateBytes(resultSet)
+    }
+
+    def "Cached result sets are returned as they were cached"() {
+        given:
+        ResultPageCache cache = new ResultPageCache(1024 * 1024, 60000)
+        ResultSet resultSet = buildResultSet(10)
+
+        when:
+        cache.put("key", resultSet)
+
+        then:
+        cache.get("key").is(resultSet)
+        cache.get("other") == null
+    }
+
+    def "Result sets too big for the cache aren't cached"() {
+        given:
+        ResultSet resultSet = buildResultSet(100)
+        ResultPageCache cache = new ResultPageCache(ResultPageCache.estimateBytes(resultSet) - 1, 60000)
+
+        when:
+        cache.put("key", resultSet)
+
+        then:
+        cache.get("key") == null
+    }
+
+    def "The least recently used result sets are evicted once the cache is full"() {
+        given: "A cache with room for two result sets"
+        ResultSet resultSet = buildResultSet(100)
+        ResultPageCache cache = new ResultPageCache(2 * ResultPageCache.estimateBytes(resultSet), 60000)
+
+        when:
+        cache.put("first", resultSet)
+        cache.put("second", resultSet)
+        cache.get("first")
+        cache.put("third", resultSet)
+
+        then:
+        cache.get("first") != null
+        cache.get("second") == null
+        cache.get("third") != null
+    }
+}
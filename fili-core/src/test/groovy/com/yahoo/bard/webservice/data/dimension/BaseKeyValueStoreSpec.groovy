@@ -174,4 +174,36 @@ abstract class BaseKeyValueStoreSpec extends Specification {
         null == previousValues.get("key2")
         "oldValue3" == previousValues.get("key3")
     }
+
+    def "getAll gets all keys in order, with null for keys not set"() {
+        given:
+        store1.putAll(["key1": "value1", "key3": "value3"])
+        store1.remove("key2")
+
+        when: 'getting multiple keys'
+        Map<String, String> values = store1.getAll(["key3", "key2", "key1"])
+
+        then: 'every key is returned, in the order asked for'
+        values.keySet() as List == ["key3", "key2", "key1"]
+        "value3" == values.get("key3")
+        null == values.get("key2")
+        "value1" == values.get("key1")
+    }
+
+    def "getAll gets more keys than fit in a single batch"() {
+        given:
+        Map<String, String> entries = (0..<2500).collectEntries { ["key$it".toString(), "value$it".toString()] }
+        store1.putAll(entries)
+
+        expect:
+        store1.getAll(entries.keySet()) == entries
+
+        cleanup:
+        entries.keySet().each { store1.remove(it) }
+    }
+
+    def "getAll of no keys is empty"() {
+        expect:
+        store1.getAll([]).isEmpty()
+    }
 }
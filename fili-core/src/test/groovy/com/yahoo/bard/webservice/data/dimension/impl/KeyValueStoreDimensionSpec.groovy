@@ -102,6 +102,15 @@ class KeyValueStoreDimensionSpec extends Specification {
         searchProvider.findAllDimensionRows() == [dimensionRow1, dimensionRow2, dimensionRow3] as Set
     }
 
+    def "findDimensionRowsByKeyValues finds the rows which exist, in the order asked for"() {
+        expect:
+        kvsDimension.findDimensionRowsByKeyValues(["row3", "missing", "row1"]) == [
+                row3: dimensionRow3,
+                row1: dimensionRow1
+        ]
+        kvsDimension.findDimensionRowsByKeyValues(["row3", "missing", "row1"]).keySet() as List == ["row3", "row1"]
+    }
+
     def "getDimensionCardinality returns cardinality count"() {
         expect:
         searchProvider.getDimensionCardinality() == 3
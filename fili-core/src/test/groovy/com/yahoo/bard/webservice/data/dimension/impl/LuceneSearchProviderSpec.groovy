@@ -2,9 +2,11 @@
 // Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
 package com.yahoo.bard.webservice.data.dimension.impl
 
+import com.yahoo.bard.webservice.config.BardFeatureFlag
 import com.yahoo.bard.webservice.data.dimension.BardDimensionField
 import com.yahoo.bard.webservice.data.dimension.DimensionRow
 import com.yahoo.bard.webservice.data.dimension.KeyValueStore
+import com.yahoo.bard.webservice.data.dimension.MapStoreManager
 import com.yahoo.bard.webservice.data.dimension.TimeoutException
 import com.yahoo.bard.webservice.util.DimensionStoreKeyUtils
 import com.yahoo.bard.webservice.web.RowLimitReachedException
@@ -127,6 +129,75 @@ class LuceneSearchProviderSpec extends SearchProviderSpec<LuceneSearchProvider>
         thrown RowLimitReachedException
     }
 
+    def "With stored field hydration, search results are built from the index without reading the key value store"() {
+        given: "a searcher whose rows are no longer in the key value store"
+        BardFeatureFlag.LUCENE_STORED_FIELD_HYDRATION.setOn(true)
+        searchProvider.maxResults = PaginationParameters.EVERYTHING_IN_ONE_PAGE.getPerPage()
+        KeyValueStore keyValueStore = MapStoreManager.getInstance("animal")
+        dimensionRows.each {
+            String id = it.get(BardDimensionField.ID)
+            keyValueStore.remove(DimensionStoreKeyUtils.getRowKey(BardDimensionField.ID.getName(), id))
+        }
+
+        expect: "every row is still found, with all its fields"
+        searchProvider.findAllDimensionRows() == dimensionRows as Set
+        searchProvider.findAllDimensionRows().find { it.get(BardDimensionField.ID) == "owl" }
+                .get(BardDimensionField.DESC) == "this is an owl"
+
+        cleanup:
+        BardFeatureFlag.LUCENE_STORED_FIELD_HYDRATION.reset()
+    }
+
+    def "Searches don't wait for the index to be free of updates"() {
+        given: "the index is held exclusively, as when it is being replaced"
+        searchProvider.maxResults = PaginationParameters.EVERYTHING_IN_ONE_PAGE.getPerPage()
+        searchProvider.lock.writeLock().lock()
+
+        when: "searching from another thread"
+        Set<DimensionRow> found = null
+        Thread search = Thread.start { found = searchProvider.findAllDimensionRows() }
+        search.join(10000)
+
+        then: "the search completes anyway"
+        found == dimensionRows as Set
+
+        cleanup:
+        searchProvider.lock.writeLock().unlock()
+    }
+
+    def "Updates are visible to searches right away, and survive closing the index"() {
+        given:
+        searchProvider.maxResults = PaginationParameters.EVERYTHING_IN_ONE_PAGE.getPerPage()
+        DimensionRow badger = BardDimensionField.makeDimensionRow(keyValueStoreDimension, "badger", "mushroom")
+
+        when:
+        keyValueStoreDimension.addDimensionRow(badger)
+
+        then:
+        searchProvider.findAllDimensionRows() == (dimensionRows + badger) as Set
+
+        when: "the index is closed, and opened again by the next search"
+        searchProvider.close()
+
+        then:
+        searchProvider.findAllDimensionRows() == (dimensionRows + badger) as Set
+    }
+
+    def "Updates made after the index is closed open it again, and closing commits them"() {
+        given:
+        searchProvider.maxResults = PaginationParameters.EVERYTHING_IN_ONE_PAGE.getPerPage()
+        DimensionRow badger = BardDimensionField.makeDimensionRow(keyValueStoreDimension, "badger", "mushroom")
+        searchProvider.close()
+
+        when:
+        keyValueStoreDimension.addDimensionRow(badger)
+        searchProvider.close()
+
+        then: "the update was committed, so an index opened on the same files finds it"
+        searchProvider.luceneIndexWriter == null
+        searchProvider.findAllDimensionRows() == (dimensionRows + badger) as Set
+    }
+
     def "refresh cardinality is called when assigining a new key value store"() {
         given: "a new key value store"
         KeyValueStore keyValueStore = Mock()
@@ -5,6 +5,7 @@ package com.yahoo.bard.webservice.data.metric.mappers
 import static com.yahoo.bard.webservice.data.time.DefaultTimeGrain.DAY
 
 import com.yahoo.bard.webservice.application.ObjectMappersSuite
+import com.yahoo.bard.webservice.data.ColumnarResultSet
 import com.yahoo.bard.webservice.data.Result
 import com.yahoo.bard.webservice.data.ResultSet
 import com.yahoo.bard.webservice.data.ResultSetSchema
@@ -21,6 +22,7 @@ import com.yahoo.bard.webservice.data.dimension.impl.NoOpSearchProviderManager
 import com.yahoo.bard.webservice.data.metric.MetricColumn
 import com.yahoo.bard.webservice.druid.client.FailureCallback
 import com.yahoo.bard.webservice.druid.client.HttpErrorCallback
+import com.yahoo.bard.webservice.druid.model.orderby.SortDirection
 import com.yahoo.bard.webservice.druid.model.query.DruidAggregationQuery
 import com.yahoo.bard.webservice.util.GroovyTestUtils
 import com.yahoo.bard.webservice.web.DataApiRequest
@@ -221,6 +223,56 @@ class PaginationMapperSpec extends Specification {
     }
 
 
+    @Unroll
+    def "Sorting #direction while paging gives page #page of the sorted #resultSetType results"() {
+        given: "Results at times out of order, several of them at the same time"
+        List<Result> results = buildResultSet(10).withIndex().collect { Result result, int i ->
+            new Result(result.getDimensionRows(), result.getMetricValues(), new DateTime(((i * 7) % 4) * 1000L))
+        }
+        ResultSetSchema schema = new ResultSetSchema(DAY, [].toSet())
+        ResultSet resultSet = columnar ?
+                ColumnarResultSet.of(schema, results) :
+                new ResultSet(schema, results)
+
+        and: "The page taken from the fully sorted results"
+        ResultSet sorted = new DateTimeSortMapper(direction).map(new ResultSet(schema, results))
+        ResultSet expected = new PaginationMapper(
+                new PaginationParameters(3, page),
+                responseProcessor,
+                uriBuilder
+        ).map(sorted)
+
+        expect:
+        new PaginationMapper(
+                new PaginationParameters(3, page),
+                responseProcessor,
+                uriBuilder,
+                new DateTimeSortMapper(direction)
+        ).map(resultSet) == expected
+
+        where:
+        [direction, page, columnar] << [[SortDirection.ASC, SortDirection.DESC], [1, 2, 4, -1], [false, true]]
+                .combinations()
+        resultSetType = columnar ? "columnar" : "row based"
+    }
+
+    def "Sorting while paging past the last page throws an exception"() {
+        given:
+        PaginationMapper paginator = new PaginationMapper(
+                new PaginationParameters(3, 3),
+                responseProcessor,
+                uriBuilder,
+                new DateTimeSortMapper(SortDirection.ASC)
+        )
+
+        when:
+        paginator.map(buildResultSet(6))
+
+        then:
+        def exception = thrown(PageNotFoundException)
+        exception.getMessage() == getExpectedErrorMessage(3, 3, 2)
+    }
+
     String getExpectedErrorMessage(int page, int rowsPerPage, int numPages) {
         "Requested page '$page' with '$rowsPerPage' rows per page, but there are only '$numPages' pages."
     }
@@ -0,0 +1,149 @@
+// Copyright 2017 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.data.metric.mappers
+
+import com.yahoo.bard.webservice.data.Result
+import com.yahoo.bard.webservice.data.ResultSet
+import com.yahoo.bard.webservice.data.ResultSetSchema
+import com.yahoo.bard.webservice.data.metric.MetricColumn
+import com.yahoo.bard.webservice.data.time.DefaultTimeGrain
+import com.yahoo.bard.webservice.druid.model.orderby.SortDirection
+
+import org.joda.time.DateTime
+
+import spock.lang.Specification
+import spock.lang.Unroll
+
+class RowMapperChainSpec extends Specification {
+
+    MetricColumn column = new MetricColumn("value")
+    ResultSetSchema schema = new ResultSetSchema(DefaultTimeGrain.DAY, [column].toSet())
+
+    // Removes the results whose value is above a limit
+    ResultSetMapper limitMapper = new ResultSetMapper() {
+        @Override
+        protected Result map(Result result, ResultSetSchema schema) {
+            return result.getMetricValueAsNumber(column) > 2 ? null : result
+        }
+
+        @Override
+        protected ResultSetSchema map(ResultSetSchema schema) {
+            return schema
+        }
+    }
+
+    List<Result> results = [0.5, 1.5, 2.5, 3.5, 1.2].collect {
+        new Result([:], [(column): it as BigDecimal] as Map<MetricColumn, Object>, new DateTime(0))
+    }
+
+    @Unroll
+    def "#mapper.class.simpleName is #rowLocalDescription"() {
+        expect:
+        RowMapperChain.isRowLocal(mapper) == rowLocal
+
+        where:
+        mapper                                         | rowLocal
+        new NoOpResultSetMapper()                      | true
+        new SketchRoundUpMapper("value")               | true
+        new DateTimeSortMapper(SortDirection.ASC)      | false
+        new RowNumMapper()                             | true
+        new TopNResultSetMapper(3)                     | false
+
+        rowLocalDescription = rowLocal ? "row local" : "not row local"
+    }
+
+    def "A chain can't be built with mappers that need the whole result set"() {
+        when:
+        new RowMapperChain([limitMapper, new DateTimeSortMapper(SortDirection.DESC)], schema)
+
+        then:
+        thrown(IllegalArgumentException)
+    }
+
+    def "Mapping results through a chain matches mapping the result set through each mapper in turn"() {
+        given:
+        List<ResultSetMapper> mappers = [new SketchRoundUpMapper("value"), new NoOpResultSetMapper(), limitMapper]
+        RowMapperChain chain = new RowMapperChain(mappers, schema)
+        ResultSet expected = mappers.inject(new ResultSet(schema, results)) { ResultSet resultSet, mapper ->
+            mapper.map(resultSet)
+        }
+
+        when:
+        List<Result> mapped = chain.map(results.iterator()).collect()
+
+        then: "The results removed by a mapper are left out"
+        mapped == expected
+        mapped.size() == 3
+        chain.getSchema() == expected.getSchema()
+    }
+
+    def "A result removed by a mapper is mapped to null"() {
+        expect:
+        new RowMapperChain([limitMapper], schema).map(results[3]) == null
+    }
+
+    def "Row numbers in a chain count the results left by the mappers before them"() {
+        given:
+        List<ResultSetMapper> mappers = [limitMapper, new RowNumMapper()]
+        ResultSet expected = mappers.inject(new ResultSet(schema, results)) { ResultSet resultSet, mapper ->
+            mapper.map(resultSet)
+        }
+
+        when:
+        List<Result> mapped = new RowMapperChain(mappers, schema).map(results.iterator()).collect()
+
+        then:
+        mapped == expected
+        mapped.collect { it.getMetricValue(new MetricColumn("rowNum")) } == [0G, 1G, 2G]
+    }
+
+    def "Mapping a result set fuses the row local mappers between the mappers that need the whole result set"() {
+        given:
+        List<ResultSetMapper> mappers = [
+                new SketchRoundUpMapper("value"),
+                limitMapper,
+                new DateTimeSortMapper(SortDirection.DESC),
+                new RowNumMapper(),
+                new NoOpResultSetMapper()
+        ]
+        ResultSet resultSet = new ResultSet(schema, results)
+        ResultSet expected = mappers.inject(resultSet) { ResultSet mapped, mapper -> mapper.map(mapped) }
+
+        when:
+        ResultSet mapped = RowMapperChain.mapResultSet(resultSet, mappers)
+
+        then:
+        mapped == expected
+        mapped.getSchema() == expected.getSchema()
+    }
+
+    def "The columns a chain changes end up in one mapped result, leaving the original result alone"() {
+        given:
+        MetricColumn other = new MetricColumn("other")
+        ResultSetSchema twoColumnSchema = new ResultSetSchema(DefaultTimeGrain.DAY, [column, other].toSet())
+        Result result = new Result(
+                [:],
+                [(column): 0.5G, (other): 1.5G] as Map<MetricColumn, Object>,
+                new DateTime(0)
+        )
+        RowMapperChain chain = new RowMapperChain(
+                [new SketchRoundUpMapper("value"), new SketchRoundUpMapper("other"), new RowNumMapper()],
+                twoColumnSchema
+        )
+
+        when:
+        Result mapped = chain.map(result)
+
+        then:
+        mapped.getMetricValues() == [(column): 1G, (other): 2G, (new MetricColumn("rowNum")): 0G]
+        result.getMetricValues() == [(column): 0.5G, (other): 1.5G]
+    }
+
+    def "A result the chain doesn't change is passed along as it is"() {
+        given:
+        Result result = new Result([:], [(column): 1G] as Map<MetricColumn, Object>, new DateTime(0))
+
+        expect:
+        new RowMapperChain([new SketchRoundUpMapper("value"), limitMapper], schema).map(result).is(result)
+    }
+}
@@ -0,0 +1,72 @@
+// Copyright 2017 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.druid.model.query
+
+import com.yahoo.bard.webservice.druid.model.datasource.QueryDataSource
+import com.yahoo.bard.webservice.web.RequestUtils
+
+import org.joda.time.Interval
+
+import spock.lang.Specification
+
+class CanonicalQueryHashSpec extends Specification {
+
+    GroupByQuery query = RequestUtils.buildGroupByQuery()
+
+    def "Queries which differ only by context hash the same"() {
+        given:
+        GroupByQuery otherContext = query.withContext(query.context.withQueryId("other").withTimeout(5))
+
+        expect:
+        CanonicalQueryHash.compute(otherContext) == CanonicalQueryHash.compute(query)
+    }
+
+    def "Contexts of nested queries are ignored"() {
+        given:
+        GroupByQuery inner = RequestUtils.buildGroupByQuery()
+        GroupByQuery otherInner = inner.withContext(inner.context.withQueryId("other").withPriority(3))
+
+        expect:
+        CanonicalQueryHash.compute(query.withDataSource(new QueryDataSource(otherInner))) ==
+                CanonicalQueryHash.compute(query.withDataSource(new QueryDataSource(inner)))
+    }
+
+    def "Queries which differ in structure hash differently"() {
+        given:
+        GroupByQuery otherIntervals = query.withIntervals([new Interval(0, 1)])
+
+        expect:
+        CanonicalQueryHash.compute(otherIntervals) != CanonicalQueryHash.compute(query)
+        CanonicalQueryHash.compute(RequestUtils.buildTopNQuery()) != CanonicalQueryHash.compute(query)
+    }
+
+    def "The hash is a SHA-256 digest"() {
+        expect:
+        CanonicalQueryHash.compute(query) ==~ /[0-9a-f]{64}/
+    }
+
+    def "The hash is memoized on the query"() {
+        expect:
+        query.canonicalHash == null
+
+        when:
+        String hash = CanonicalQueryHash.of(query)
+
+        then:
+        query.canonicalHash == hash
+        CanonicalQueryHash.of(query).is(hash)
+        hash == CanonicalQueryHash.compute(query)
+    }
+
+    def "Copies of a query with a new context compute their own hash"() {
+        given:
+        CanonicalQueryHash.of(query)
+
+        when:
+        GroupByQuery copy = query.withContext(query.context.withTimeout(5))
+
+        then:
+        copy.canonicalHash == null
+        CanonicalQueryHash.of(copy) == CanonicalQueryHash.of(query)
+    }
+}
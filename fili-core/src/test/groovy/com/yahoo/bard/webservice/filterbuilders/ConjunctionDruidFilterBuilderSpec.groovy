@@ -5,15 +5,19 @@ package com.yahoo.bard.webservice.filterbuilders
 import static com.yahoo.bard.webservice.druid.model.filter.Filter.DefaultFilterType.AND
 import static com.yahoo.bard.webservice.druid.model.filter.Filter.DefaultFilterType.SELECTOR
 
+import com.yahoo.bard.webservice.config.BardFeatureFlag
 import com.yahoo.bard.webservice.data.QueryBuildingTestingResources
 import com.yahoo.bard.webservice.data.dimension.Dimension
 import com.yahoo.bard.webservice.data.dimension.DimensionRow
 import com.yahoo.bard.webservice.data.dimension.DimensionRowNotFoundException
+import com.yahoo.bard.webservice.data.dimension.SearchProvider
 import com.yahoo.bard.webservice.data.filterbuilders.ConjunctionDruidFilterBuilder
 import com.yahoo.bard.webservice.druid.model.filter.Filter
 import com.yahoo.bard.webservice.druid.model.filter.SelectorFilter
 import com.yahoo.bard.webservice.web.ApiFilter
 
+import org.joda.time.DateTime
+
 import spock.lang.Shared
 import spock.lang.Specification
 import spock.lang.Unroll
@@ -49,6 +53,10 @@ class ConjunctionDruidFilterBuilderSpec extends Specification {
         apiFilters = filterSpecs.collectEntries {[(it.key): new ApiFilter(it.value, resources.dimensionDictionary)]}
     }
 
+    def cleanup() {
+        BardFeatureFlag.DRUID_FILTER_RESOLUTION_CACHE.reset()
+    }
+
     def "If there are no filters to build, then the the filter builder returns null"(){
         expect:
         filterBuilder.buildFilters([:]) == null
@@ -85,6 +93,109 @@ class ConjunctionDruidFilterBuilderSpec extends Specification {
         ["ageDescNotin1429","ageIdNotin56"]  || getDimensionRows(["1", "2", "4"])
     }
 
+    def "Filters which only select key values are resolved by looking the rows up by key"() {
+        given:
+        SearchProvider searchProvider = Mock(SearchProvider) {
+            isBulkKeyLookupSupported() >> true
+        }
+        Dimension dimension = Mock(Dimension) {
+            getSearchProvider() >> searchProvider
+            getKey() >> resources.d3.getKey()
+        }
+        Set<DimensionRow> rows = getDimensionRows(["2", "3"])
+
+        when:
+        Set<DimensionRow> resolved = filterBuilder.getFilteredDimensionRows(
+                dimension,
+                [apiFilters.ageIdEq1234, new ApiFilter("ageBracket|id-in[2,3,5]", resources.dimensionDictionary)] as Set
+        )
+
+        then:
+        1 * searchProvider.findDimensionRowsByKeyValues(["2", "3"] as Set) >> rows.collectEntries {
+            [(it.getKeyValue()): it]
+        }
+        0 * searchProvider.findFilteredDimensionRows(_)
+        resolved == rows
+
+        when:
+        Set<ApiFilter> filters = [apiFilters.ageIdEq1234, apiFilters.ageIdNotin56] as Set
+        filterBuilder.getFilteredDimensionRows(dimension, filters)
+
+        then:
+        1 * searchProvider.findFilteredDimensionRows(filters) >> rows
+        0 * searchProvider.findDimensionRowsByKeyValues(_)
+    }
+
+    def "Filters which only select key values are searched for when the provider can't look rows up by key"() {
+        given:
+        SearchProvider searchProvider = Mock(SearchProvider)
+        Dimension dimension = Mock(Dimension) {
+            getSearchProvider() >> searchProvider
+            getKey() >> resources.d3.getKey()
+        }
+        Set<ApiFilter> filters = [apiFilters.ageIdEq1234] as Set
+
+        when:
+        filterBuilder.getFilteredDimensionRows(dimension, filters)
+
+        then:
+        1 * searchProvider.isBulkKeyLookupSupported() >> false
+        1 * searchProvider.findFilteredDimensionRows(filters) >> getDimensionRows(["1"])
+        0 * searchProvider.findDimensionRowsByKeyValues(_)
+    }
+
+    def "Cached filter resolutions are reused until the dimension is updated"() {
+        given:
+        BardFeatureFlag.DRUID_FILTER_RESOLUTION_CACHE.setOn(true)
+        SearchProvider searchProvider = Mock(SearchProvider)
+        DateTime lastUpdated = new DateTime(10000)
+        Dimension dimension = Mock(Dimension) {
+            getSearchProvider() >> searchProvider
+            getLastUpdated() >> { lastUpdated }
+        }
+        Set<ApiFilter> filters = [apiFilters.ageIdEq1234] as Set
+        Set<DimensionRow> rows = getDimensionRows(["1", "2"])
+
+        when:
+        Set<DimensionRow> first = filterBuilder.getFilteredDimensionRows(dimension, filters)
+        Set<DimensionRow> second = filterBuilder.getFilteredDimensionRows(dimension, [apiFilters.ageIdEq1234] as Set)
+
+        then:
+        1 * searchProvider.findFilteredDimensionRows(filters) >> rows
+        first == rows
+        second == rows
+
+        when: "the dimension is updated"
+        lastUpdated = lastUpdated.plusDays(1)
+        filterBuilder.getFilteredDimensionRows(dimension, filters)
+
+        then: "the filters are resolved again"
+        1 * searchProvider.findFilteredDimensionRows(filters) >> rows
+    }
+
+    @Unroll
+    def "Filter resolutions are not cached when #reason"() {
+        given:
+        BardFeatureFlag.DRUID_FILTER_RESOLUTION_CACHE.setOn(cacheOn)
+        SearchProvider searchProvider = Mock(SearchProvider)
+        Dimension dimension = Mock(Dimension) {
+            getSearchProvider() >> searchProvider
+            getLastUpdated() >> lastUpdated
+        }
+        Set<ApiFilter> filters = [apiFilters.ageIdEq1234] as Set
+
+        when:
+        2.times { filterBuilder.getFilteredDimensionRows(dimension, filters) }
+
+        then:
+        2 * searchProvider.findFilteredDimensionRows(filters) >> getDimensionRows(["1"])
+
+        where:
+        reason                              | cacheOn | lastUpdated
+        "the cache is off"                  | false   | new DateTime(10000)
+        "the dimension was never updated"   | true    | null
+    }
+
     @Unroll
     def "buildSelectorFilters constructs one selector filter for each id #ids"() {
         expect:
@@ -0,0 +1,72 @@
+// Copyright 2017 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.logging
+
+import com.codahale.metrics.Clock
+import com.codahale.metrics.Snapshot
+
+import spock.lang.Specification
+import spock.lang.Unroll
+
+import java.util.concurrent.TimeUnit
+
+class LogLinearReservoirSpec extends Specification {
+
+    long tick = 0
+    Clock clock = new Clock() {
+        @Override
+        long getTick() {
+            return tick
+        }
+    }
+    LogLinearReservoir reservoir = new LogLinearReservoir(1, TimeUnit.MINUTES, clock)
+
+    @Unroll
+    def "The value of the bucket #value is counted in is within 3% of it"() {
+        expect:
+        Math.abs(LogLinearReservoir.valueOf(LogLinearReservoir.bucketOf(value)) - value) <= value * 0.03
+
+        where:
+        value << [0L, 1L, 63L, 64L, 65L, 1000L, 123456789L, 987654321987L, Long.MAX_VALUE]
+    }
+
+    def "Percentiles of the recorded values are reported within the bucket precision"() {
+        when: "The values 1 to 1000 milliseconds are recorded"
+        (1..1000).each { reservoir.update(TimeUnit.MILLISECONDS.toNanos(it)) }
+        Snapshot snapshot = reservoir.snapshot
+
+        then:
+        snapshot.size() == 1000
+        Math.abs(snapshot.getValue(0.5) / 1e6 - 500) <= 500 * 0.03
+        Math.abs(snapshot.get99thPercentile() / 1e6 - 990) <= 990 * 0.03
+        Math.abs(snapshot.max / 1e6 - 1000) <= 1000 * 0.03
+        Math.abs(snapshot.min / 1e6 - 1) <= 0.03
+        Math.abs(snapshot.mean / 1e6 - 500.5) <= 500.5 * 0.03
+    }
+
+    def "Values fall out of the snapshot after between one and two windows"() {
+        given:
+        reservoir.update(10)
+
+        when: "One window passes"
+        tick += TimeUnit.SECONDS.toNanos(61)
+        reservoir.update(20)
+
+        then: "The value is still in the snapshot"
+        reservoir.size() == 2
+
+        when: "Another window passes"
+        tick += TimeUnit.SECONDS.toNanos(61)
+
+        then: "Only the value from the previous window is left"
+        reservoir.size() == 1
+        reservoir.snapshot.max == 20
+
+        when: "Two more windows pass"
+        tick += TimeUnit.SECONDS.toNanos(121)
+
+        then: "The snapshot is empty"
+        reservoir.size() == 0
+        reservoir.snapshot.getValue(0.99) == 0.0
+    }
+}
@@ -0,0 +1,71 @@
+// Copyright 2017 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.logging
+
+import com.codahale.metrics.Gauge
+import com.codahale.metrics.MetricRegistry
+
+import spock.lang.Specification
+
+import java.util.concurrent.TimeUnit
+
+class PhaseLatencyHistogramsSpec extends Specification {
+
+    MetricRegistry registry = new MetricRegistry()
+    PhaseLatencyHistograms histograms = new PhaseLatencyHistograms(registry, 1, TimeUnit.MINUTES, [0.5d, 0.999d], 3)
+
+    def "Phase durations are recorded into timers tagged by endpoint and logical table"() {
+        when:
+        histograms.record("data", "network", ["BuildingDruidFilter": 1000000L, "DruidProcessing_Q_1": 2000000L])
+        histograms.record("data", "network", ["DruidProcessing_Q_2": 4000000L])
+
+        then: "Numbered phases share a timer"
+        registry.timers.keySet() == [
+                "phase.BuildingDruidFilter.data.network",
+                "phase.DruidProcessing_Q_.data.network"
+        ] as Set
+        registry.timer("phase.DruidProcessing_Q_.data.network").count == 2
+
+        and: "The configured percentiles are gauges in milliseconds"
+        registry.gauges.keySet().containsAll([
+                "phase.BuildingDruidFilter.data.network.p50",
+                "phase.BuildingDruidFilter.data.network.p99.9"
+        ])
+        Gauge<Double> gauge = registry.gauges["phase.DruidProcessing_Q_.data.network.p99.9"]
+        Math.abs(gauge.value - 4) <= 4 * 0.03
+    }
+
+    def "Requests without an endpoint or logical table are tagged with what is known"() {
+        when:
+        histograms.record(null, null, ["sortResultSet": 1L])
+        histograms.record("feature flags", null, ["sortResultSet": 1L])
+
+        then:
+        registry.timers.keySet() == ["phase.sortResultSet.unknown", "phase.sortResultSet.feature_flags"] as Set
+    }
+
+    def "Durations beyond the maximum number of timers are recorded into the shared overflow timer"() {
+        when:
+        ["a", "b", "c", "d", "e"].each { histograms.record("tables", it, ["sortResultSet": 1L]) }
+        histograms.record("tables", "a", ["sortResultSet": 1L])
+
+        then:
+        registry.timers.keySet() == [
+                "phase.sortResultSet.tables.a",
+                "phase.sortResultSet.tables.b",
+                "phase.sortResultSet.tables.c",
+                PhaseLatencyHistograms.OVERFLOW_METRIC_NAME
+        ] as Set
+        registry.timer("phase.sortResultSet.tables.a").count == 2
+        registry.timer(PhaseLatencyHistograms.OVERFLOW_METRIC_NAME).count == 2
+        registry.gauges.keySet().contains(PhaseLatencyHistograms.OVERFLOW_METRIC_NAME + ".p99.9")
+    }
+
+    def "Percentiles outside 0 to 1 are rejected"() {
+        when:
+        new PhaseLatencyHistograms(registry, 1, TimeUnit.MINUTES, [99d], 3)
+
+        then:
+        thrown(IllegalArgumentException)
+    }
+}
@@ -2,6 +2,7 @@
 // Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
 package com.yahoo.bard.webservice.logging
 
+import static com.yahoo.bard.webservice.druid.client.impl.AsyncDruidWebServiceImpl.DRUID_QUERY_TIMER
 import static spock.util.matcher.HamcrestMatchers.closeTo
 import static spock.util.matcher.HamcrestSupport.expect
 
@@ -217,6 +218,56 @@ class TimingSpec extends Specification {
         expect res[innerTimerName], closeTo(expectedInnerDuration, epsilon)
     }
 
+    def "Timers from contexts restored in other threads are accumulated once, along with their threads"() {
+        given: "A request log handed to two threads, which each time a druid query"
+        String firstQuery = DRUID_QUERY_TIMER + "first"
+        String secondQuery = DRUID_QUERY_TIMER + "second"
+        RequestLog.startTiming("Outer")
+        RequestLog ctx = RequestLog.dump()
+        List<RequestLog> subContexts = [firstQuery, secondQuery].collect { String timerName ->
+            RequestLog subContext
+            Thread thread = Thread.start {
+                RequestLog.restore(ctx)
+                RequestLog.startTiming(timerName)
+                RequestLog.stopTiming(timerName)
+                subContext = RequestLog.dump()
+            }
+            thread.join()
+            subContext
+        }
+
+        when: "The contexts are accumulated back into the request log, one of them twice"
+        RequestLog.restore(ctx)
+        subContexts.each { RequestLog.accumulate(it) }
+        RequestLog.accumulate(subContexts[0])
+        RequestLog.stopTiming("Outer")
+        RequestLog.log()
+        Map res = extractTimesFromLogs("Outer", firstQuery, secondQuery)
+
+        then: "One log line has every timer, and each thread once"
+        res.numLines == 1
+        res.keySet().containsAll(["Outer", firstQuery, secondQuery])
+        res.numThreads == 3
+    }
+
+    def "Dumping a request log leaves the dumped context unchanged by the thread's later timers"() {
+        given: "A dumped request log"
+        RequestLog.startTiming("Outer")
+        RequestLog.stopTiming("Outer")
+        RequestLog ctx = RequestLog.dump()
+
+        when: "The thread times another phase and then restores the dumped context"
+        RequestLog.startTiming("Other")
+        RequestLog.stopTiming("Other")
+        RequestLog.restore(ctx)
+
+        then: "The dumped context only has its own timer"
+        ctx.durations().keySet() == ["Outer"] as Set
+
+        cleanup:
+        RequestLog.log()
+    }
+
     @Unroll
     def "Test parsing order of LogInfo parts in RequestLog for requested order: #inputOrderString"() {
         expect:
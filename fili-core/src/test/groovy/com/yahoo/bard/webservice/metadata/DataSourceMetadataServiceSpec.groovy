@@ -52,6 +52,70 @@ class DataSourceMetadataServiceSpec extends BaseDataSourceMetadataSpec {
         jtb.tearDown()
     }
 
+    def "An update applies only the segments added and removed since the last one"() {
+        setup:
+        DataSourceName dataSourceName = DataSourceName.of(tableName)
+        DataSourceMetadataService metadataService = new DataSourceMetadataService()
+        metadataService.update(dataSourceName, metadata)
+        Map<String, SegmentInfo> firstDay = metadataService.allSegmentsByTime.get(dataSourceName).get()
+                .get(interval1.start)
+        long addedBefore = DataSourceMetadataService.SEGMENTS_ADDED.count
+        long updatesBefore = DataSourceMetadataService.UPDATE_TIMER.count
+
+        when: "the segments of the second day are removed"
+        metadataService.update(dataSourceName, new DataSourceMetadata(tableName, [:], [segment1, segment2]))
+
+        then: "the second day is gone, while the untouched first day is shared with the previous update"
+        SortedMap<DateTime, Map<String, SegmentInfo>> byTime = metadataService.allSegmentsByTime.get(dataSourceName)
+                .get()
+        byTime.keySet() == [interval1.start] as Set
+        byTime.get(interval1.start).is(firstDay)
+        metadataService.getAvailableIntervalsByDataSource(dataSourceName).values() as Set == [[interval1]] as Set
+
+        and: "the changes are measured"
+        DataSourceMetadataService.SEGMENTS_ADDED.count == addedBefore + 1
+        DataSourceMetadataService.SEGMENTS_REMOVED.snapshot.max >= 2
+        DataSourceMetadataService.UPDATE_TIMER.count == updatesBefore + 1
+
+        when: "one partition of the second day comes back"
+        metadataService.update(dataSourceName, new DataSourceMetadata(tableName, [:], [segment1, segment2, segment3]))
+
+        then:
+        metadataService.allSegmentsByTime.get(dataSourceName).get().get(interval2.start).keySet() ==
+                [segment3.identifier] as Set
+        metadataService.getAvailableIntervalsByDataSource(dataSourceName).values() as Set == [[interval12]] as Set
+
+        when: "only one of the two partitions covering the first day is removed"
+        metadataService.update(dataSourceName, new DataSourceMetadata(tableName, [:], [segment2, segment3]))
+
+        then: "the first day is still available"
+        metadataService.getAvailableIntervalsByDataSource(dataSourceName).values() as Set == [[interval12]] as Set
+    }
+
+    def "An update which changes nothing keeps the same segment mappings"() {
+        setup:
+        DataSourceName dataSourceName = DataSourceName.of(tableName)
+        DataSourceMetadataService metadataService = new DataSourceMetadataService()
+        metadataService.update(dataSourceName, metadata)
+        Object byTime = metadataService.allSegmentsByTime.get(dataSourceName).get()
+        Object byColumn = metadataService.allSegmentsByColumn.get(dataSourceName).get()
+        long version = metadataService.getVersion()
+
+        when:
+        metadataService.update(dataSourceName, new DataSourceMetadata(tableName, [:], segments.reverse()))
+
+        then:
+        metadataService.allSegmentsByTime.get(dataSourceName).get().is(byTime)
+        metadataService.allSegmentsByColumn.get(dataSourceName).get().is(byColumn)
+        metadataService.getVersion() == version
+
+        when:
+        metadataService.update(dataSourceName, new DataSourceMetadata(tableName, [:], segments.take(1)))
+
+        then: "An update which changes the segments changes the version"
+        metadataService.getVersion() > version
+    }
+
     def "grouping segment data by date time behave as expected"() {
         given:
         ConcurrentSkipListMap<DateTime, Map<String, SegmentInfo>> segmentByTime = DataSourceMetadataService.groupSegmentByTime(metadata)
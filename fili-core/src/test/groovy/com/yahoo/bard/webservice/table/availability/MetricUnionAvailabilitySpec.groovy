@@ -2,8 +2,10 @@
 // Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
 package com.yahoo.bard.webservice.table.availability
 
+import com.yahoo.bard.webservice.config.BardFeatureFlag
 import com.yahoo.bard.webservice.data.config.names.DataSourceName
 import com.yahoo.bard.webservice.data.metric.MetricColumn
+import com.yahoo.bard.webservice.metadata.DataSourceMetadataService
 import com.yahoo.bard.webservice.table.Column
 import com.yahoo.bard.webservice.table.ConfigPhysicalTable
 import com.yahoo.bard.webservice.table.resolver.DataSourceConstraint
@@ -62,6 +64,10 @@ class MetricUnionAvailabilitySpec extends Specification {
         apiFilters = new ApiFilters()
     }
 
+    def cleanup() {
+        BardFeatureFlag.AVAILABILITY_SNAPSHOTS.reset()
+    }
+
     def "Metric columns are initialized by fetching columns from availabilities, not from physical tables"() {
         given:
         availability1.getAllAvailableIntervals() >> [(metric1): []]
@@ -267,4 +273,100 @@ class MetricUnionAvailabilitySpec extends Specification {
         expect:
         metricUnionAvailability.getAvailableIntervals(physicalDataSourceConstraint) == new SimplifiedIntervalList()
     }
+
+    def "With availability snapshots on, intervals are found again only when the columns or the segment metadata change"() {
+        given: "Two strict availabilities backed by a metadata service whose versions we control"
+        BardFeatureFlag.AVAILABILITY_SNAPSHOTS.setOn(true)
+        Map<String, Long> versions = [source1: 0L, source2: 0L, other: 0L]
+        int reads = 0
+        Map<String, Map<String, SimplifiedIntervalList>> intervals = [
+                source1: [(metric1): new SimplifiedIntervalList([new Interval('2017/2019')])],
+                source2: [(metric2): new SimplifiedIntervalList([new Interval('2018/2020')])]
+        ]
+        DataSourceMetadataService metadataService = Mock(DataSourceMetadataService)
+        metadataService.getVersion(_ as DataSourceName) >> { DataSourceName name -> versions[name.asName()] }
+        metadataService.getAvailableIntervalsByDataSource(_ as DataSourceName) >> { DataSourceName name ->
+            reads++
+            intervals[name.asName()]
+        }
+        metricUnionAvailability = new MetricUnionAvailability(
+                [
+                        new StrictAvailability(DataSourceName.of('source1'), metadataService),
+                        new StrictAvailability(DataSourceName.of('source2'), metadataService)
+                ] as Set,
+                [metricColumn1, metricColumn2] as Set
+        )
+
+        and: "Constraints on both metrics and on one of them"
+        PhysicalDataSourceConstraint bothMetrics = new PhysicalDataSourceConstraint(
+                new DataSourceConstraint([] as Set, [] as Set, [] as Set, [metric1, metric2] as Set, apiFilters),
+                [metric1, metric2] as Set
+        )
+        PhysicalDataSourceConstraint oneMetric = new PhysicalDataSourceConstraint(
+                new DataSourceConstraint([] as Set, [] as Set, [] as Set, [metric1] as Set, apiFilters),
+                [metric1] as Set
+        )
+
+        when: "The same columns are asked for twice"
+        reads = 0
+        SimplifiedIntervalList first = metricUnionAvailability.getAvailableIntervals(bothMetrics)
+        SimplifiedIntervalList second = metricUnionAvailability.getAvailableIntervals(bothMetrics)
+
+        then: "The second time comes from the snapshot"
+        first == [new Interval('2018/2019')] as SimplifiedIntervalList
+        second.is(first)
+        reads == 2
+
+        when: "Other columns are asked for"
+        reads = 0
+        SimplifiedIntervalList other = metricUnionAvailability.getAvailableIntervals(oneMetric)
+
+        then: "They are found and added to the snapshot"
+        other == [new Interval('2017/2019')] as SimplifiedIntervalList
+        reads == 1
+        metricUnionAvailability.getAvailableIntervals(bothMetrics).is(first)
+        reads == 1
+
+        when: "The segment metadata of a data source behind another table changes"
+        versions.other++
+        reads = 0
+
+        then: "The snapshot is kept"
+        metricUnionAvailability.getAvailableIntervals(bothMetrics).is(first)
+        reads == 0
+
+        when: "The segment metadata of one of its own data sources changes"
+        intervals.source1[metric1] = new SimplifiedIntervalList([new Interval('2019/2020')])
+        versions.source1++
+        reads = 0
+
+        then: "The intervals are found again in the new metadata"
+        metricUnionAvailability.getAvailableIntervals(bothMetrics) == [new Interval('2019/2020')] as SimplifiedIntervalList
+        reads == 2
+    }
+
+    def "Subclasses of the metadata availabilities are not kept in availability snapshots"() {
+        given:
+        BardFeatureFlag.AVAILABILITY_SNAPSHOTS.setOn(true)
+        int reads = 0
+        DataSourceMetadataService metadataService = Mock(DataSourceMetadataService)
+        metadataService.getVersion(_ as DataSourceName) >> 0L
+        metadataService.getAvailableIntervalsByDataSource(_ as DataSourceName) >> {
+            reads++
+            [(metric1): new SimplifiedIntervalList([new Interval('2017/2019')])]
+        }
+        // A subclass may depend on more than the columns of the constraint
+        Availability subclassed = new StrictAvailability(DataSourceName.of('source1'), metadataService) { }
+        metricUnionAvailability = new MetricUnionAvailability([subclassed] as Set, [metricColumn1] as Set)
+        PhysicalDataSourceConstraint constraint = new PhysicalDataSourceConstraint(
+                new DataSourceConstraint([] as Set, [] as Set, [] as Set, [metric1] as Set, apiFilters),
+                [metric1] as Set
+        )
+
+        when:
+        2.times { metricUnionAvailability.getAvailableIntervals(constraint) }
+
+        then:
+        reads == 2
+    }
 }
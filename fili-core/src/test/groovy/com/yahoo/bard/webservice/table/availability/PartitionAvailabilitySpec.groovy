@@ -2,13 +2,18 @@
 // Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
 package com.yahoo.bard.webservice.table.availability
 
+import com.yahoo.bard.webservice.config.BardFeatureFlag
+import com.yahoo.bard.webservice.data.config.names.DataSourceName
 import com.yahoo.bard.webservice.data.config.names.TableName
 import com.yahoo.bard.webservice.data.time.ZonedTimeGrain
 import com.yahoo.bard.webservice.data.time.ZonedTimeGrainSpec
+import com.yahoo.bard.webservice.metadata.DataSourceMetadataService
 import com.yahoo.bard.webservice.table.Column
+import com.yahoo.bard.webservice.table.resolver.DataSourceConstraint
 import com.yahoo.bard.webservice.table.resolver.DataSourceFilter
 import com.yahoo.bard.webservice.table.resolver.PhysicalDataSourceConstraint
 import com.yahoo.bard.webservice.util.SimplifiedIntervalList
+import com.yahoo.bard.webservice.web.filters.ApiFilters
 
 import com.google.common.collect.Sets
 
@@ -47,6 +52,10 @@ class PartitionAvailabilitySpec extends Specification{
 
     }
 
+    def cleanup() {
+        BardFeatureFlag.AVAILABILITY_SNAPSHOTS.reset()
+    }
+
     @Unroll
     def "getDataSourceNames returns #expected from #dataSourceNames1 and #dataSourceNames2"() {
         given:
@@ -173,4 +182,56 @@ class PartitionAvailabilitySpec extends Specification{
         ['early', 'late']        | earlyInterval.intersect(lateInterval)
         ['early', 'mid', 'late'] | earlyInterval.intersect(lateInterval).intersect(midInterval)
     }
+
+    def "With availability snapshots on, the filters are applied every time and the participating parts are kept apart"() {
+        given: "Partitions of strict availabilities backed by a metadata service whose versions we control"
+        BardFeatureFlag.AVAILABILITY_SNAPSHOTS.setOn(true)
+        Map<String, Long> versions = [early: 0L, late: 0L]
+        int reads = 0
+        Map<String, Map<String, SimplifiedIntervalList>> intervals = [
+                early: [col1: earlyInterval],
+                late: [col1: lateInterval]
+        ]
+        DataSourceMetadataService metadataService = Mock(DataSourceMetadataService)
+        metadataService.getVersion(_ as DataSourceName) >> { DataSourceName name -> versions[name.asName()] }
+        metadataService.getAvailableIntervalsByDataSource(_ as DataSourceName) >> { DataSourceName name ->
+            reads++
+            intervals[name.asName()]
+        }
+        Set<String> partitionsImpacted = ['early', 'late']
+        partitionAvailability = new PartitionAvailability(
+                [
+                        (new StrictAvailability(DataSourceName.of('early'), metadataService)):
+                                { partitionsImpacted.contains('early') } as DataSourceFilter,
+                        (new StrictAvailability(DataSourceName.of('late'), metadataService)):
+                                { partitionsImpacted.contains('late') } as DataSourceFilter
+                ]
+        )
+        PhysicalDataSourceConstraint constraint = new PhysicalDataSourceConstraint(
+                new DataSourceConstraint([] as Set, [] as Set, [] as Set, ['col1'] as Set, new ApiFilters()),
+                ['col1'] as Set
+        )
+
+        expect: "Both partitions are read the first time only"
+        partitionAvailability.getAvailableIntervals(constraint) == earlyInterval.intersect(lateInterval)
+        partitionAvailability.getAvailableIntervals(constraint) == earlyInterval.intersect(lateInterval)
+        reads == 2
+
+        when: "Only one partition participates"
+        partitionsImpacted = ['late']
+        reads = 0
+
+        then: "Its intervals are found on their own"
+        partitionAvailability.getAvailableIntervals(constraint) == lateInterval
+        reads == 1
+
+        when: "The segment metadata changes"
+        intervals.late.col1 = midInterval
+        versions.late++
+        reads = 0
+
+        then: "The intervals are found again in the new metadata"
+        partitionAvailability.getAvailableIntervals(constraint) == midInterval
+        reads == 1
+    }
 }
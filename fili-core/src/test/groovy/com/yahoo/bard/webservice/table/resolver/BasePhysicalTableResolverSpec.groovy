@@ -2,9 +2,12 @@
 // Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
 package com.yahoo.bard.webservice.table.resolver
 
+import com.yahoo.bard.webservice.config.BardFeatureFlag
 import com.yahoo.bard.webservice.table.PhysicalTable
 import com.yahoo.bard.webservice.table.PhysicalTableSchema
 
+import org.joda.time.Interval
+
 import spock.lang.Shared
 import spock.lang.Specification
 import spock.lang.Unroll
@@ -23,6 +26,8 @@ class BasePhysicalTableResolverSpec extends Specification {
 
     BasePhysicalTableResolver physicalTableResolver
     QueryPlanningConstraint dataSourceConstraint
+    long availabilityVersion = 0
+    int resolutions = 0
 
     def setupSpec() {
         PhysicalTableSchema commonSchema = Mock(PhysicalTableSchema)
@@ -171,4 +176,73 @@ class BasePhysicalTableResolverSpec extends Specification {
         [matchThree, matchAllButTablesNamedOne] | pickFirst | three
         [matchAll]                              | pickLast  | three
     }
+
+    def "Resolutions are reused for the same shape of request while the availability version is unchanged"() {
+        setup:
+        BardFeatureFlag.PHYSICAL_TABLE_RESOLUTION_CACHE.setOn(true)
+        BasePhysicalTableResolver resolver = new BasePhysicalTableResolver() {
+            @Override
+            List<PhysicalTableMatcher> getMatchers(QueryPlanningConstraint requestConstraint) {
+                resolutions++
+                return [matchAll]
+            }
+
+            @Override
+            BinaryOperator<PhysicalTable> getBetterTableOperator(QueryPlanningConstraint requestConstraint) {
+                return pickLast
+            }
+
+            @Override
+            protected long getAvailabilityVersion() {
+                return availabilityVersion
+            }
+        }
+        Interval interval = new Interval("2017-01-01/2017-02-01")
+        QueryPlanningConstraint constraint = Mock(QueryPlanningConstraint) { getIntervals() >> ([interval] as Set) }
+        QueryPlanningConstraint sameShape = Mock(QueryPlanningConstraint) { getIntervals() >> ([interval] as Set) }
+        QueryPlanningConstraint otherShape = Mock(QueryPlanningConstraint) {
+            getIntervals() >> ([new Interval("2017-02-01/2017-03-01")] as Set)
+        }
+
+        when: "Requests with the same shape are resolved"
+        PhysicalTable first = resolver.resolve([one, two, three], constraint)
+        PhysicalTable second = resolver.resolve([one, two, three], sameShape)
+
+        then: "The second reuses the resolution of the first"
+        first == three
+        second == three
+        resolutions == 1
+
+        when: "The candidate tables, the shape of the request or the availability version change"
+        resolver.resolve([one, two], constraint)
+        resolver.resolve([one, two, three], otherShape)
+        availabilityVersion++
+        resolver.resolve([one, two, three], constraint)
+
+        then: "The tables are resolved again"
+        resolutions == 4
+
+        when: "The cache is cleared"
+        resolver.clearResolutionCache()
+        resolver.resolve([one, two, three], constraint)
+
+        then:
+        resolutions == 5
+
+        cleanup:
+        BardFeatureFlag.PHYSICAL_TABLE_RESOLUTION_CACHE.reset()
+    }
+
+    def "Resolutions are not reused when the cache is off"() {
+        setup:
+        physicalTableResolver.matchers = [matchAll]
+        physicalTableResolver.betterTable = pickFirst
+
+        when:
+        physicalTableResolver.resolve([one, two, three], dataSourceConstraint)
+        physicalTableResolver.matchers = [matchAllButTablesNamedOne]
+
+        then:
+        physicalTableResolver.resolve([one, two, three], dataSourceConstraint) == two
+    }
 }
@@ -0,0 +1,72 @@
+// Copyright 2017 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.util
+
+import spock.lang.Specification
+import spock.lang.Unroll
+
+class PartialSortUtilsSpec extends Specification {
+
+    /**
+     * The row indexes of a stable sort of the keys.
+     *
+     * @param keys  The keys to sort
+     * @param ascending  True to sort in ascending order, false for descending
+     *
+     * @return the indexes of the rows, in sorted order
+     */
+    List<Integer> stableSort(List<Long> keys, boolean ascending) {
+        List<Integer> rows = (0..<keys.size()).toList()
+        // Groovy's sort is stable
+        rows.sort { ascending ? keys[it] : -keys[it] }
+    }
+
+    @Unroll
+    def "Range [#fromIndex, #toIndex) of a #direction sort of #keys is the stable sort's #expected"() {
+        expect:
+        PartialSortUtils.sortedRange(keys as long[], ascending, fromIndex, toIndex) as List == expected
+
+        where:
+        keys               | ascending | fromIndex | toIndex | expected
+        [3, 1, 2]          | true      | 0         | 3       | [1, 2, 0]
+        [3, 1, 2]          | false     | 0         | 3       | [0, 2, 1]
+        [3, 1, 2]          | true      | 1         | 2       | [2]
+        [2, 1, 2, 1, 2, 1] | true      | 2         | 5       | [5, 0, 2]
+        [2, 1, 2, 1, 2, 1] | false     | 2         | 5       | [4, 1, 3]
+        [1, 2, 3]          | true      | 1         | 3       | [1, 2]
+        [3, 1, 2]          | true      | 1         | 1       | []
+        []                 | true      | 0         | 0       | []
+
+        direction = ascending ? "ascending" : "descending"
+    }
+
+    def "Every range matches a stable sort, for random keys with many ties"() {
+        given:
+        Random random = new Random(42)
+        List<Long> keys = (1..200).collect { random.nextInt(20) as long }
+
+        expect:
+        [true, false].every { ascending ->
+            List<Integer> sorted = stableSort(keys, ascending)
+            [[0, 200], [0, 10], [50, 60], [190, 200], [199, 200], [100, 100]].every { range ->
+                PartialSortUtils.sortedRange(keys as long[], ascending, range[0], range[1]) as List ==
+                        sorted.subList(range[0], range[1])
+            }
+        }
+    }
+
+    @Unroll
+    def "A range of [#fromIndex, #toIndex) over 3 rows is rejected"() {
+        when:
+        PartialSortUtils.sortedRange([1, 2, 3] as long[], true, fromIndex, toIndex)
+
+        then:
+        thrown(IndexOutOfBoundsException)
+
+        where:
+        fromIndex | toIndex
+        -1        | 2
+        0         | 4
+        2         | 1
+    }
+}
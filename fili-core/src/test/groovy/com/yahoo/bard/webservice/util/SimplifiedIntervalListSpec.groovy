@@ -189,4 +189,89 @@ class SimplifiedIntervalListSpec extends Specification {
         Days.ONE   | [["2015", Days.THREE], ["2013", Days.ONE]] | ["2013", "2015-01-01", "2015-01-02", "2015-01-03"]
         Days.THREE | [["2015", Days.THREE]]                     | ["2015-01-01"]
     }
+
+    /**
+     * Build random intervals over hours 0 to 200, as lists of start and end hours.
+     *
+     * @param random  The source of randomness
+     *
+     * @return the random intervals
+     */
+    List<List<Long>> randomHours(Random random) {
+        (0..<random.nextInt(30)).collect {
+            long start = random.nextInt(200)
+            [start, start + random.nextInt(10)]
+        }
+    }
+
+    /**
+     * The hours covered by a list of intervals.
+     *
+     * @param intervals  The intervals
+     *
+     * @return the set of hours covered
+     */
+    Set<Long> hoursOf(List<Interval> intervals) {
+        intervals.collectMany { (it.startMillis..<it.endMillis).toList() } as Set
+    }
+
+    def "Union, intersection, subtraction and containment match the hours the intervals cover"() {
+        setup:
+        Random random = new Random(seed)
+        SimplifiedIntervalList left = new SimplifiedIntervalList(buildIntervalListNum(randomHours(random)))
+        SimplifiedIntervalList right = new SimplifiedIntervalList(buildIntervalListNum(randomHours(random)))
+        SimplifiedIntervalList.IsSubinterval isSubinterval = new SimplifiedIntervalList.IsSubinterval(left)
+
+        expect: "Each result is simplified and covers the expected hours"
+        [left.union(right), left.intersect(right), left.subtract(right)].every {
+            new SimplifiedIntervalList(new ArrayList<Interval>(it)) == it
+        }
+        hoursOf(left.union(right)) == hoursOf(left) + hoursOf(right)
+        hoursOf(left.intersect(right)) == hoursOf(left).intersect(hoursOf(right))
+        hoursOf(left.subtract(right)) == hoursOf(left) - hoursOf(right)
+
+        and: "Subintervals are found whatever order they are tested in"
+        buildIntervalListNum(randomHours(random)).findAll { it.toDurationMillis() > 0 }.every {
+            isSubinterval.test(it) == hoursOf(left).containsAll(hoursOf([it]))
+        }
+
+        where:
+        seed << (1..50)
+    }
+
+    def "A list survives Java serialization, and can still be combined after it"() {
+        given:
+        SimplifiedIntervalList list = new SimplifiedIntervalList(buildIntervalListNum(tinyEvenIntervals))
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream()
+        new ObjectOutputStream(bytes).withCloseable { it.writeObject(list) }
+
+        when:
+        SimplifiedIntervalList copy = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))
+                .withCloseable { it.readObject() } as SimplifiedIntervalList
+
+        then:
+        copy == list
+        copy.union(new SimplifiedIntervalList(buildIntervalListNum(tinyOddIntervals))) ==
+                list.union(new SimplifiedIntervalList(buildIntervalListNum(tinyOddIntervals)))
+    }
+
+    def "The ends of the list can be read like a deque"() {
+        given:
+        SimplifiedIntervalList list = new SimplifiedIntervalList(buildIntervalListNum(tinyEvenIntervals))
+        SimplifiedIntervalList empty = new SimplifiedIntervalList()
+
+        expect:
+        list.getFirst() == new Interval(2, 4)
+        list.getLast() == new Interval(14, 30)
+        list.peekFirst() == new Interval(2, 4)
+        list.peekLast() == new Interval(14, 30)
+        empty.peekFirst() == null
+        empty.peekLast() == null
+
+        when:
+        empty.getLast()
+
+        then:
+        thrown(NoSuchElementException)
+    }
 }
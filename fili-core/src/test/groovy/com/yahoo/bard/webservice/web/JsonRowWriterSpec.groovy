@@ -0,0 +1,97 @@
+// Copyright 2017 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.web
+
+import com.yahoo.bard.webservice.data.Result
+import com.yahoo.bard.webservice.data.dimension.DimensionColumn
+import com.yahoo.bard.webservice.data.metric.MetricColumn
+
+import com.fasterxml.jackson.core.JsonGenerator
+import com.fasterxml.jackson.databind.node.JsonNodeFactory
+
+import spock.lang.Unroll
+
+class JsonRowWriterSpec extends ResponseWriterSpec {
+
+    def setup() {
+        formattedDateTime = dateTime.toString(getDefaultFormat())
+    }
+
+    String writeRow(JsonRowWriter rowWriter, Result result, Map sidecars) {
+        StringWriter writer = new StringWriter()
+        JsonGenerator generator = MAPPERS.getMapper().getFactory().createGenerator(writer)
+        rowWriter.writeRow(generator, result, sidecars)
+        generator.close()
+        writer.toString()
+    }
+
+    Map newSidecars() {
+        response.getResultSet().getSchema().getColumns(DimensionColumn.class).collectEntries {
+            [(it.dimension): [] as LinkedHashSet]
+        }
+    }
+
+    @Unroll
+    def "JSON rows written directly match the serialized row maps for #type metrics"() {
+        given:
+        MetricColumn extraMetric = new MetricColumn("extra")
+        metricColumnsMap.put(extraMetric, value)
+        defaultRequestedMetrics.add(extraMetric)
+        buildTestResultSet(metricColumnsMap, defaultRequestedMetrics)
+        JsonRowWriter rowWriter = new JsonRowWriter(response, MAPPERS.getMapper(), false)
+
+        expect:
+        response.getResultSet().every {
+            writeRow(rowWriter, it, null) == MAPPERS.getMapper().writeValueAsString(response.buildResultRow(it))
+        }
+
+        where:
+        type       | value
+        "decimal"  | new BigDecimal("1.50")
+        "double"   | 2.25d
+        "long"     | 3L
+        "integer"  | 4
+        "boolean"  | true
+        "String"   | "five"
+        "null"     | null
+        "JsonNode" | JsonNodeFactory.instance.objectNode().put("six", 6)
+    }
+
+    def "JSON-API rows written directly match the serialized row maps and fill the same sidecars"() {
+        given:
+        JsonRowWriter rowWriter = new JsonRowWriter(response, MAPPERS.getMapper(), true)
+        Map directSidecars = newSidecars()
+        Map expectedSidecars = newSidecars()
+
+        when:
+        List<String> directRows = response.getResultSet().collect { writeRow(rowWriter, it, directSidecars) }
+        rowWriter.collectSidecars(directSidecars)
+        List<String> expectedRows = response.getResultSet().collect {
+            MAPPERS.getMapper().writeValueAsString(response.buildResultRowWithSidecars(it, expectedSidecars))
+        }
+
+        then:
+        directRows == expectedRows
+        directSidecars == expectedSidecars
+        directSidecars.values().every { !it.isEmpty() }
+    }
+
+    def "Rows with duplicate field names are written the way the row maps resolve them"() {
+        given: "A metric with the same name as a dimension"
+        MetricColumn product = new MetricColumn("product")
+        metricColumnsMap.put(product, new BigDecimal(5))
+        defaultRequestedMetrics.add(product)
+        buildTestResultSet(metricColumnsMap, defaultRequestedMetrics)
+        JsonRowWriter rowWriter = new JsonRowWriter(response, MAPPERS.getMapper(), true)
+        Map sidecars = newSidecars()
+        Result result = response.getResultSet().get(0)
+
+        when:
+        String row = writeRow(rowWriter, result, sidecars)
+
+        then:
+        row == MAPPERS.getMapper().writeValueAsString(response.buildResultRowWithSidecars(result, newSidecars()))
+        MAPPERS.getMapper().readTree(row).get("product").intValue() == 5
+        !sidecars.values().every { it.isEmpty() }
+    }
+}
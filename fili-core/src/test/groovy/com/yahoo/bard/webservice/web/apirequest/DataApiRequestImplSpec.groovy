@@ -11,10 +11,12 @@ import com.yahoo.bard.webservice.data.dimension.DimensionField
 import com.yahoo.bard.webservice.data.dimension.MapStoreManager
 import com.yahoo.bard.webservice.data.dimension.impl.KeyValueStoreDimension
 import com.yahoo.bard.webservice.data.dimension.impl.ScanSearchProviderManager
+import com.yahoo.bard.webservice.data.filterbuilders.DruidFilterBuilder
 import com.yahoo.bard.webservice.data.metric.LogicalMetric
 import com.yahoo.bard.webservice.data.metric.MetricDictionary
 import com.yahoo.bard.webservice.data.time.GranularityParser
 import com.yahoo.bard.webservice.data.time.StandardGranularityParser
+import com.yahoo.bard.webservice.druid.model.filter.Filter
 import com.yahoo.bard.webservice.druid.model.query.AllGranularity
 import com.yahoo.bard.webservice.druid.model.query.Granularity
 import com.yahoo.bard.webservice.table.LogicalTable
@@ -171,4 +173,26 @@ class DataApiRequestImplSpec extends Specification {
         expect:
         granularity.getAlignmentDescription() == expectedMessage
     }
+
+    def "The Druid filter is built once per request"() {
+        given:
+        DruidFilterBuilder filterBuilder = Mock(DruidFilterBuilder)
+        Filter filter = Mock(Filter)
+        DataApiRequestImpl apiRequest = new TestingDataApiRequestImpl().withFilterBuilder(filterBuilder)
+
+        when:
+        Filter first = apiRequest.getDruidFilter()
+        Filter second = apiRequest.getDruidFilter()
+
+        then:
+        1 * filterBuilder.buildFilters(_) >> filter
+        first.is(filter)
+        second.is(filter)
+
+        when: "a copy of the request is made"
+        apiRequest.withTimeZone(DateTimeZone.UTC).getDruidFilter()
+
+        then: "the copy builds its own filter"
+        1 * filterBuilder.buildFilters(_) >> filter
+    }
 }
@@ -4,6 +4,7 @@ package com.yahoo.bard.webservice.web.handlers
 
 import com.yahoo.bard.webservice.application.ObjectMappersSuite
 import com.yahoo.bard.webservice.data.cache.MemTupleDataCache
+import com.yahoo.bard.webservice.data.cache.SmileDruidResponseCacheFormat
 import com.yahoo.bard.webservice.data.cache.TupleDataCache
 import com.yahoo.bard.webservice.druid.model.query.GroupByQuery
 import com.yahoo.bard.webservice.druid.model.query.TimeSeriesQuery
@@ -131,6 +132,49 @@ class CacheV2RequestHandlerSpec extends Specification {
         BardQueryInfo.QUERY_COUNTER.get(BardQueryInfo.FACT_QUERY_CACHE_HIT).get() == 1
     }
 
+    def "Test handle request on cache hit reads the value in the configured cache format"() {
+        setup:
+        SmileDruidResponseCacheFormat smile = new SmileDruidResponseCacheFormat()
+        handler = new CacheV2RequestHandler(next, dataCache, querySigningService, mapper, smile)
+        Serializable cachedValue = smile.serialize(json)
+
+        when: "A groupBy query runs with a valid cache hit"
+        boolean requestProcessed = handler.handleRequest(requestContext, apiRequest, groupByQuery, response)
+
+        then: "Check the cache and return the binary value"
+        1 * dataCache.get(_) >> new MemTupleDataCache.DataEntry<Serializable>("key1", 1234L, cachedValue)
+
+        then: "Process the decoded Json response"
+        1 * response.processResponse(json, groupByQuery, _)
+
+        and: "The request is marked as processed"
+        requestProcessed
+    }
+
+    def "Test handle request on unreadable cache entry is a miss which leaves the request untouched"() {
+        setup: "A handler reading Smile, and an entry written as a JSON string before the format changed"
+        SmileDruidResponseCacheFormat smile = new SmileDruidResponseCacheFormat()
+        handler = new CacheV2RequestHandler(next, dataCache, querySigningService, mapper, smile)
+        long outgoing = requestContext.numberOfOutgoing.get()
+        long incoming = requestContext.numberOfIncoming.get()
+
+        when:
+        boolean requestProcessed = handler.handleRequest(requestContext, apiRequest, groupByQuery, response)
+
+        then: "The entry can't be read"
+        1 * dataCache.get(_) >> new MemTupleDataCache.DataEntry<String>("key1", 1234L, "[]")
+
+        then: "We delegate to the next handler, wrapping in a CacheV2ResponseProcessor"
+        1 * next.handleRequest(requestContext, apiRequest, groupByQuery, _ as CacheV2ResponseProcessor) >> true
+        0 * response.processResponse(_, _, _)
+        requestProcessed
+
+        and: "The request counters and cache hit count are untouched"
+        requestContext.numberOfOutgoing.get() == outgoing
+        requestContext.numberOfIncoming.get() == incoming
+        BardQueryInfo.QUERY_COUNTER.get(BardQueryInfo.FACT_QUERY_CACHE_HIT).get() == 0
+    }
+
     def "Test handle request cache miss delegates response to next handler"() {
         expect: "The count of fact query cache hit is 0"
         BardQueryInfo.QUERY_COUNTER.get(BardQueryInfo.FACT_QUERY_CACHE_HIT).get() == 0
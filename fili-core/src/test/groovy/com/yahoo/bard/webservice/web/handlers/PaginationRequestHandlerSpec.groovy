@@ -0,0 +1,184 @@
+// Copyright 2017 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.web.handlers
+
+import static com.yahoo.bard.webservice.web.responseprocessors.ResponseContextKeys.MISSING_INTERVALS_CONTEXT_KEY
+import static com.yahoo.bard.webservice.web.responseprocessors.ResponseContextKeys.VOLATILE_INTERVALS_CONTEXT_KEY
+
+import com.yahoo.bard.webservice.data.ResultSet
+import com.yahoo.bard.webservice.data.ResultSetSchema
+import com.yahoo.bard.webservice.data.cache.ResultPageCache
+import com.yahoo.bard.webservice.data.metric.mappers.DateTimeSortMapper
+import com.yahoo.bard.webservice.data.metric.mappers.PaginationMapper
+import com.yahoo.bard.webservice.data.metric.mappers.ResultPageCacheMapper
+import com.yahoo.bard.webservice.data.metric.mappers.ResultSetMapper
+import com.yahoo.bard.webservice.data.metric.mappers.RowNumMapper
+import com.yahoo.bard.webservice.data.time.DefaultTimeGrain
+import com.yahoo.bard.webservice.druid.model.orderby.SortDirection
+import com.yahoo.bard.webservice.druid.model.query.GroupByQuery
+import com.yahoo.bard.webservice.util.SimplifiedIntervalList
+import com.yahoo.bard.webservice.web.DataApiRequest
+import com.yahoo.bard.webservice.web.RequestUtils
+import com.yahoo.bard.webservice.web.ResponseFormatType
+import com.yahoo.bard.webservice.web.responseprocessors.ResponseContext
+import com.yahoo.bard.webservice.web.responseprocessors.ResultSetResponseProcessor
+import com.yahoo.bard.webservice.web.util.PaginationParameters
+
+import org.joda.time.Interval
+
+import spock.lang.Specification
+import spock.lang.Unroll
+
+import javax.ws.rs.container.ContainerRequestContext
+import javax.ws.rs.core.MultivaluedHashMap
+import javax.ws.rs.core.UriBuilder
+import javax.ws.rs.core.UriInfo
+
+class PaginationRequestHandlerSpec extends Specification {
+
+    DataRequestHandler next = Mock(DataRequestHandler)
+    ResultPageCache resultPageCache = new ResultPageCache(1024 * 1024, 60000)
+
+    GroupByQuery groupByQuery = RequestUtils.buildGroupByQuery()
+    ResultSet resultSet = new ResultSet(new ResultSetSchema(DefaultTimeGrain.DAY, [].toSet()), [])
+
+    List<ResultSetMapper> mappers
+    ResultSetResponseProcessor response = Mock(ResultSetResponseProcessor)
+    ResponseContext responseContext = new ResponseContext()
+    RequestContext requestContext
+
+    def setup() {
+        mappers = [new RowNumMapper()]
+        response.getMappers() >> { mappers }
+        response.isBuildingResultSets() >> true
+        response.getResponseContext() >> responseContext
+
+        ContainerRequestContext containerRequestContext = Mock(ContainerRequestContext)
+        containerRequestContext.getHeaders() >> (["Bard-Testing": "###BYPASS###", "ClientId": "UI"] as
+                MultivaluedHashMap<String, String>)
+        requestContext = new RequestContext(containerRequestContext, true)
+    }
+
+    /**
+     * Build a request for a page of the data.
+     *
+     * @param page  The page requested
+     * @param format  The format of the response
+     *
+     * @return the request
+     */
+    DataApiRequest buildRequest(int page, ResponseFormatType format = ResponseFormatType.JSON) {
+        UriInfo uriInfo = Mock(UriInfo)
+        uriInfo.getRequestUriBuilder() >> {
+            UriBuilder.fromUri("http://localhost:9998/data/shapes/day?metrics=height&perPage=2&page=$page")
+        }
+        DataApiRequest request = Mock(DataApiRequest)
+        request.getPaginationParameters() >> Optional.of(new PaginationParameters(2, page))
+        request.getUriInfo() >> uriInfo
+        request.getFormat() >> format
+        return request
+    }
+
+    def "A time sort just before pagination is folded into the pagination mapper"() {
+        given:
+        mappers.add(new DateTimeSortMapper(SortDirection.DESC))
+
+        when:
+        new PaginationRequestHandler(next).handleRequest(requestContext, buildRequest(1), groupByQuery, response)
+
+        then:
+        1 * next.handleRequest(requestContext, _, groupByQuery, response)
+        mappers.size() == 2
+        mappers[1] instanceof PaginationMapper
+        mappers[1].dateTimeSortMapper instanceof DateTimeSortMapper
+    }
+
+    def "Without a result page cache, requests go on to the next handler without caching mappers"() {
+        when:
+        new PaginationRequestHandler(next).handleRequest(requestContext, buildRequest(1), groupByQuery, response)
+
+        then:
+        1 * next.handleRequest(requestContext, _, groupByQuery, response)
+        mappers*.class == [RowNumMapper, PaginationMapper]
+    }
+
+    def "A cache miss caches the mapped results just before paginating them"() {
+        given:
+        PaginationRequestHandler handler = new PaginationRequestHandler(next, resultPageCache)
+
+        when:
+        handler.handleRequest(requestContext, buildRequest(1), groupByQuery, response)
+
+        then:
+        1 * next.handleRequest(requestContext, _, groupByQuery, response)
+        mappers*.class == [RowNumMapper, ResultPageCacheMapper, PaginationMapper]
+    }
+
+    def "Another page of cached results is served from the cache without going to the next handler"() {
+        given:
+        PaginationRequestHandler handler = new PaginationRequestHandler(next, resultPageCache)
+        resultPageCache.put(handler.getKey(buildRequest(1), groupByQuery), resultSet)
+
+        when:
+        boolean handled = handler.handleRequest(requestContext, buildRequest(2), groupByQuery, response)
+
+        then:
+        handled
+        1 * response.processResultSet(resultSet, groupByQuery, _)
+        0 * next.handleRequest(*_)
+        mappers*.class == [PaginationMapper]
+    }
+
+    def "Debug requests and requests not reading the cache aren't served from the cache"() {
+        given:
+        PaginationRequestHandler handler = new PaginationRequestHandler(next, resultPageCache)
+        resultPageCache.put(handler.getKey(buildRequest(1), groupByQuery), resultSet)
+        ContainerRequestContext containerRequestContext = Mock(ContainerRequestContext)
+        containerRequestContext.getHeaders() >> (["Bard-Testing": "###BYPASS###", "ClientId": "UI"] as
+                MultivaluedHashMap<String, String>)
+        RequestContext noCacheContext = new RequestContext(containerRequestContext, false)
+
+        when:
+        handler.handleRequest(requestContext, buildRequest(2, ResponseFormatType.DEBUG), groupByQuery, response)
+        handler.handleRequest(noCacheContext, buildRequest(2), groupByQuery, response)
+
+        then:
+        0 * response.processResultSet(*_)
+        2 * next.handleRequest(*_)
+    }
+
+    @Unroll
+    def "Requests whose data is #data aren't served from the cache"() {
+        given:
+        PaginationRequestHandler handler = new PaginationRequestHandler(next, resultPageCache)
+        resultPageCache.put(handler.getKey(buildRequest(1), groupByQuery), resultSet)
+        responseContext.put(contextKey.name, new SimplifiedIntervalList([new Interval("2017-01-01/2017-01-02")]))
+        long misses = PaginationRequestHandler.RESULT_PAGE_CACHE_MISSES.count
+
+        when:
+        handler.handleRequest(requestContext, buildRequest(2), groupByQuery, response)
+
+        then:
+        0 * response.processResultSet(*_)
+        1 * next.handleRequest(*_)
+        mappers*.class == [RowNumMapper, ResultPageCacheMapper, PaginationMapper]
+        PaginationRequestHandler.RESULT_PAGE_CACHE_MISSES.count == misses
+
+        where:
+        data       | contextKey
+        "partial"  | MISSING_INTERVALS_CONTEXT_KEY
+        "volatile" | VOLATILE_INTERVALS_CONTEXT_KEY
+    }
+
+    def "Requests for different data don't share cached results"() {
+        given:
+        PaginationRequestHandler handler = new PaginationRequestHandler(next, resultPageCache)
+
+        expect:
+        handler.getKey(buildRequest(1), groupByQuery) == handler.getKey(buildRequest(3), groupByQuery)
+        handler.getKey(buildRequest(1), groupByQuery) != handler.getKey(
+                buildRequest(1),
+                RequestUtils.buildTimeSeriesQuery()
+        )
+    }
+}
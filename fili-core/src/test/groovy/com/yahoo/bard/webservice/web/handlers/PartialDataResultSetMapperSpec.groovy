@@ -5,6 +5,7 @@ package com.yahoo.bard.webservice.web.handlers
 import static com.yahoo.bard.webservice.data.time.DefaultTimeGrain.DAY
 import static com.yahoo.bard.webservice.data.time.DefaultTimeGrain.YEAR
 
+import com.yahoo.bard.webservice.data.MutableResult
 import com.yahoo.bard.webservice.data.PartialDataHandler
 import com.yahoo.bard.webservice.data.Result
 import com.yahoo.bard.webservice.data.ResultSetSchema
@@ -127,6 +128,30 @@ public class PartialDataResultSetMapperSpec extends Specification {
         [["2015", "P1Y"]]       | []
     }
 
+    def "Results are filtered against the current volatile intervals when they change between results"() {
+        setup:
+        SimplifiedIntervalList volatileList = new SimplifiedIntervalList()
+        PartialDataResultSetMapper mapper = buildMapper(buildIntervalList("2015", "P1Y"), { -> volatileList })
+        Result result = new Result([:], [:], new DateTime("2015-06"))
+
+        expect: "The result is missing and not volatile"
+        mapper.map(result, schema) == null
+
+        when: "The missing bucket becomes volatile"
+        volatileList = buildIntervalList("2015", "P1Y")
+
+        then:
+        mapper.map(result, schema) == result
+        mapper.mapInPlace(new MutableResult(result), schema, 0)
+
+        when: "It stops being volatile again"
+        volatileList = new SimplifiedIntervalList()
+
+        then:
+        mapper.map(result, schema) == null
+        !mapper.mapInPlace(new MutableResult(result), schema, 1)
+    }
+
     @Unroll
     def "Under all time grain, missing data #missingIntervals and volatileData #missingIntervals is filtered: #filtered"() {
         setup: "Given an all time grain request"
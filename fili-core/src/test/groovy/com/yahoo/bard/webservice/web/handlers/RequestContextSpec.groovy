@@ -5,6 +5,8 @@ package com.yahoo.bard.webservice.web.handlers
 import spock.lang.Specification
 import spock.lang.Unroll
 
+import java.util.concurrent.CompletableFuture
+
 import javax.ws.rs.container.ContainerRequestContext
 import javax.ws.rs.core.MultivaluedHashMap
 
@@ -41,4 +43,27 @@ class RequestContextSpec extends Specification {
         "bard-testing" | "###BYPASS###"
         "clientid"     | "UI"
     }
+
+    def "Completed queries stop being tracked as more are added, and the rest are cancelled"() {
+        setup:
+        RequestContext context = new RequestContext(null, true)
+        List<CompletableFuture<Object>> queries = (1..4).collect { new CompletableFuture<Object>() }
+
+        when:
+        queries[0..2].each { context.addOutstandingQuery(it) }
+        queries[0].complete(null)
+        queries[1].complete(null)
+        context.addOutstandingQuery(queries[3])
+
+        then:
+        context.outstandingQueries as List == [queries[2], queries[3]]
+
+        when:
+        context.cancelOutstandingQueries()
+
+        then:
+        queries[2].isCancelled()
+        queries[3].isCancelled()
+        context.outstandingQueries.isEmpty()
+    }
 }
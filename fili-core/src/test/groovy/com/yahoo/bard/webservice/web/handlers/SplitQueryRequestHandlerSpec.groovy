@@ -6,6 +6,7 @@ import static com.yahoo.bard.webservice.data.time.DefaultTimeGrain.DAY
 import static com.yahoo.bard.webservice.data.time.DefaultTimeGrain.MONTH
 import static com.yahoo.bard.webservice.druid.model.query.AllGranularity.INSTANCE
 
+import com.yahoo.bard.webservice.druid.client.FailureCallback
 import com.yahoo.bard.webservice.druid.client.HttpErrorCallback
 import com.yahoo.bard.webservice.druid.model.query.GroupByQuery
 import com.yahoo.bard.webservice.druid.model.query.Granularity
@@ -71,6 +72,46 @@ class SplitQueryRequestHandlerSpec extends Specification {
         12        | MONTH     | year
     }
   
+    def "Handler sends no more sub-queries than the scheduler allows"() {
+        setup:
+        handler = new SplitQueryRequestHandler(next, new SplitQueryScheduler(2, 0))
+        groupByQuery.granularity >> DAY
+        groupByQuery.intervals >> [week]
+        groupByQuery.withAllIntervals(_) >> groupByQuerySplit
+        rc.numberOfIncoming >> new AtomicLong(1)
+        rc.numberOfOutgoing >> new AtomicLong(1)
+
+        when:
+        handler.handleRequest(rc, apiRequest, groupByQuery, response)
+
+        then:
+        2 * next.handleRequest(rc, apiRequest, groupByQuerySplit, _ as SplitQueryResponseProcessor)
+    }
+
+    def "A sub-query which fails to send fails the request and cancels the other sub-queries"() {
+        setup:
+        handler = new SplitQueryRequestHandler(next, new SplitQueryScheduler(2, 0))
+        groupByQuery.granularity >> DAY
+        groupByQuery.intervals >> [week]
+        groupByQuery.withAllIntervals(_) >> groupByQuerySplit
+        rc.numberOfIncoming >> new AtomicLong(1)
+        rc.numberOfOutgoing >> new AtomicLong(1)
+        FailureCallback failure = Mock(FailureCallback)
+        RuntimeException error = new RuntimeException("unable to send")
+
+        when:
+        handler.handleRequest(rc, apiRequest, groupByQuery, response)
+
+        then:
+        1 * next.handleRequest(rc, apiRequest, groupByQuerySplit, _ as SplitQueryResponseProcessor) >> {
+            throw error
+        }
+        1 * response.getFailureCallback(groupByQuerySplit) >> failure
+        1 * failure.invoke(error)
+        1 * rc.cancelOutstandingQueries()
+        0 * next.handleRequest(*_)
+    }
+
     @Unroll 
     def "Handler skips splitting for all time grain when the interval is #interval"() {
         groupByQuery.granularity >> timeGrain
@@ -0,0 +1,203 @@
+// Copyright 2017 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.web.handlers
+
+import spock.lang.Specification
+
+import java.util.concurrent.TimeUnit
+
+class SplitQuerySchedulerSpec extends Specification {
+
+    List<String> sent = []
+
+    List<Runnable> subQueries(String name, int count) {
+        (0..<count).collect { int i -> { -> sent.add("$name$i".toString()) } as Runnable }
+    }
+
+    def "Without limits every sub-query is sent right away, in order"() {
+        given:
+        SplitQueryScheduler scheduler = new SplitQueryScheduler(0, 0)
+
+        when:
+        scheduler.newBatch({}).schedule(subQueries("a", 5))
+
+        then:
+        sent == ["a0", "a1", "a2", "a3", "a4"]
+        scheduler.getInFlight() == 5
+    }
+
+    def "Sub-queries beyond the per request limit are sent in order as earlier ones complete"() {
+        given:
+        SplitQueryScheduler scheduler = new SplitQueryScheduler(2, 0)
+        SplitQueryScheduler.Batch batch = scheduler.newBatch({})
+
+        when:
+        batch.schedule(subQueries("a", 5))
+
+        then:
+        sent == ["a0", "a1"]
+
+        when:
+        batch.complete(0)
+
+        then:
+        sent == ["a0", "a1", "a2"]
+        scheduler.getInFlight() == 2
+
+        when:
+        (1..4).each { batch.complete(it) }
+
+        then:
+        sent == ["a0", "a1", "a2", "a3", "a4"]
+        scheduler.getInFlight() == 0
+    }
+
+    def "The global limit is shared across requests, which are served in the order they were scheduled"() {
+        given:
+        SplitQueryScheduler scheduler = new SplitQueryScheduler(2, 3)
+        SplitQueryScheduler.Batch first = scheduler.newBatch({})
+        SplitQueryScheduler.Batch second = scheduler.newBatch({})
+        SplitQueryScheduler.Batch third = scheduler.newBatch({})
+
+        when:
+        first.schedule(subQueries("a", 3))
+        second.schedule(subQueries("b", 3))
+        third.schedule(subQueries("c", 3))
+
+        then:
+        sent == ["a0", "a1", "b0"]
+
+        when: "A sub-query of the first request completes"
+        first.complete(0)
+
+        then: "The first request sends its next sub-query"
+        sent == ["a0", "a1", "b0", "a2"]
+
+        when: "A sub-query of the second request completes"
+        second.complete(0)
+
+        then: "The second request is still ahead of the third"
+        sent == ["a0", "a1", "b0", "a2", "b1"]
+    }
+
+    def "Cancelling a batch drops its unsent sub-queries, cancels those in flight and gives up their places"() {
+        given:
+        SplitQueryScheduler scheduler = new SplitQueryScheduler(0, 2)
+        Runnable cancelInFlight = Mock(Runnable)
+        SplitQueryScheduler.Batch failing = scheduler.newBatch(cancelInFlight)
+        SplitQueryScheduler.Batch waiting = scheduler.newBatch({})
+        failing.schedule(subQueries("a", 4))
+        waiting.schedule(subQueries("b", 2))
+        long cancelledBefore = SplitQueryScheduler.CANCELLED_SUB_QUERIES.count
+
+        when:
+        failing.cancel()
+
+        then:
+        1 * cancelInFlight.run()
+        failing.isCancelled()
+        sent == ["a0", "a1", "b0", "b1"]
+        SplitQueryScheduler.CANCELLED_SUB_QUERIES.count == cancelledBefore + 2
+
+        when: "The cancelled sub-queries complete after all"
+        failing.complete(0)
+        failing.complete(1)
+
+        then: "Their places are not given up twice"
+        scheduler.getInFlight() == 2
+    }
+
+    def "Sub-queries which complete while being sent don't send the rest recursively"() {
+        given:
+        SplitQueryScheduler scheduler = new SplitQueryScheduler(1, 0)
+        SplitQueryScheduler.Batch batch = scheduler.newBatch({})
+        int depth = 0
+        int maxDepth = 0
+        List<Runnable> completingSubQueries = (0..<1000).collect { int i ->
+            { ->
+                depth++
+                maxDepth = Math.max(depth, maxDepth)
+                sent.add("a")
+                batch.complete(i)
+                depth--
+            } as Runnable
+        }
+
+        when:
+        batch.schedule(completingSubQueries)
+
+        then:
+        sent.size() == 1000
+        maxDepth == 1
+        scheduler.getInFlight() == 0
+    }
+
+    def "A sub-query reported complete more than once gives up its place once"() {
+        given:
+        SplitQueryScheduler scheduler = new SplitQueryScheduler(2, 0)
+        SplitQueryScheduler.Batch batch = scheduler.newBatch({})
+        batch.schedule(subQueries("a", 4))
+
+        when:
+        batch.complete(0)
+        batch.complete(0)
+
+        then:
+        sent == ["a0", "a1", "a2"]
+        scheduler.getInFlight() == 2
+
+        when: "A sub-query which hasn't been sent is reported"
+        batch.complete(3)
+
+        then:
+        scheduler.getInFlight() == 2
+    }
+
+    def "A sub-query which throws while being sent gives up its place"() {
+        given:
+        SplitQueryScheduler scheduler = new SplitQueryScheduler(1, 0)
+        List<Runnable> throwing = [{ -> throw new RuntimeException("unable to send") } as Runnable]
+
+        when:
+        scheduler.newBatch({}).schedule(throwing + subQueries("a", 2))
+
+        then:
+        sent == ["a0"]
+        scheduler.getInFlight() == 1
+    }
+
+    def "Sub-queries which don't complete within the timeout give up their places"() {
+        given:
+        long now = 0
+        SplitQueryScheduler scheduler = new SplitQueryScheduler(0, 2, 1000, { -> now })
+        SplitQueryScheduler.Batch leaking = scheduler.newBatch({})
+        SplitQueryScheduler.Batch waiting = scheduler.newBatch({})
+        leaking.schedule(subQueries("a", 2))
+        waiting.schedule(subQueries("b", 2))
+        long timedOutBefore = SplitQueryScheduler.TIMED_OUT_SUB_QUERIES.count
+
+        expect:
+        sent == ["a0", "a1"]
+
+        when: "The timeout passes without the sub-queries completing"
+        now += TimeUnit.MILLISECONDS.toNanos(1000)
+
+        then: "Their places are given up"
+        scheduler.getInFlight() == 0
+        SplitQueryScheduler.TIMED_OUT_SUB_QUERIES.count == timedOutBefore + 2
+
+        when: "The scheduler is next used"
+        waiting.complete(5)
+
+        then: "The waiting sub-queries are sent"
+        sent == ["a0", "a1", "b0", "b1"]
+        scheduler.getInFlight() == 2
+
+        when: "The timed out sub-queries complete after all"
+        leaking.complete(0)
+        leaking.complete(1)
+
+        then: "Their places are not given up twice"
+        scheduler.getInFlight() == 2
+    }
+}
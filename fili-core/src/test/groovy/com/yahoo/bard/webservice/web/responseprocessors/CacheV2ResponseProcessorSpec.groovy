@@ -9,6 +9,7 @@ import static com.yahoo.bard.webservice.web.responseprocessors.ResponseContextKe
 import com.yahoo.bard.webservice.application.ObjectMappersSuite
 import com.yahoo.bard.webservice.config.SystemConfig
 import com.yahoo.bard.webservice.config.SystemConfigProvider
+import com.yahoo.bard.webservice.data.cache.SmileDruidResponseCacheFormat
 import com.yahoo.bard.webservice.data.cache.TupleDataCache
 import com.yahoo.bard.webservice.data.metric.mappers.ResultSetMapper
 import com.yahoo.bard.webservice.druid.client.FailureCallback
@@ -103,6 +104,20 @@ class CacheV2ResponseProcessorSpec extends Specification {
 
     }
 
+    def "Process response stores the value in the given cache format"() {
+        setup:
+        SmileDruidResponseCacheFormat smile = new SmileDruidResponseCacheFormat()
+        crp = new CacheV2ResponseProcessor(next, cacheKey, dataCache, querySigningService, smile)
+        next.getResponseContext() >> responseContext
+
+        when:
+        crp.processResponse(json, groupByQuery, null)
+
+        then:
+        1 * dataCache.set(cacheKey, segmentId, _ as byte[]) >> { key, meta, value -> assert smile.deserialize(value) == json }
+        1 * next.processResponse(json, groupByQuery, null)
+    }
+
     def "After error saving to cache, process response continues"() {
         when:
         crp.processResponse(json, groupByQuery, null)
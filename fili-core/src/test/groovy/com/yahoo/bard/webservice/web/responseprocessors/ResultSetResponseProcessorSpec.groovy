@@ -6,11 +6,14 @@ import static com.yahoo.bard.webservice.data.time.DefaultTimeGrain.DAY
 import static com.yahoo.bard.webservice.druid.model.DefaultQueryType.GROUP_BY
 
 import com.yahoo.bard.webservice.application.ObjectMappersSuite
+import com.yahoo.bard.webservice.config.BardFeatureFlag
 import com.yahoo.bard.webservice.data.DruidResponseParser
 import com.yahoo.bard.webservice.data.HttpResponseChannel
 import com.yahoo.bard.webservice.data.HttpResponseMaker
+import com.yahoo.bard.webservice.data.Result
 import com.yahoo.bard.webservice.data.ResultSet
 import com.yahoo.bard.webservice.data.ResultSetSchema
+import com.yahoo.bard.webservice.data.StreamingResultSet
 import com.yahoo.bard.webservice.data.dimension.BardDimensionField
 import com.yahoo.bard.webservice.data.dimension.Dimension
 import com.yahoo.bard.webservice.data.dimension.DimensionColumn
@@ -32,20 +35,27 @@ import com.yahoo.bard.webservice.logging.RequestLog
 import com.yahoo.bard.webservice.metadata.DataSourceMetadataService
 import com.yahoo.bard.webservice.table.Schema
 import com.yahoo.bard.webservice.table.TableTestUtils
+import com.yahoo.bard.webservice.web.ApiRequest
 import com.yahoo.bard.webservice.web.DataApiRequest
 import com.yahoo.bard.webservice.web.JsonResponseWriter
+import com.yahoo.bard.webservice.web.PreResponse
 import com.yahoo.bard.webservice.web.ResponseFormatType
 import com.yahoo.bard.webservice.web.ResponseWriter
 
+import com.fasterxml.jackson.core.JsonFactory
+import com.fasterxml.jackson.core.JsonParser
 import com.fasterxml.jackson.databind.JsonNode
 import com.fasterxml.jackson.databind.ObjectMapper
 import com.google.common.collect.Sets
 
+import org.joda.time.DateTime
 import org.joda.time.DateTimeZone
 
+import rx.functions.Action1
 import rx.subjects.PublishSubject
 import rx.subjects.Subject
 import spock.lang.Specification
+import spock.lang.Unroll
 
 import javax.ws.rs.container.AsyncResponse
 import javax.ws.rs.core.MultivaluedMap
@@ -273,6 +283,86 @@ class ResultSetResponseProcessorSpec extends Specification {
         2 * resultSetMock.getSchema()
     }
 
+    ResultSetResponseProcessor buildStreamingProcessor(Subject emitter, boolean rowLocal) {
+        ResultSetResponseProcessor processor = new ResultSetResponseProcessor(
+                apiRequest,
+                emitter,
+                druidResponseParser,
+                MAPPERS,
+                httpResponseMaker
+        )
+        if (rowLocal) {
+            processor.mappers.clear()
+        }
+        druidResponseParser.buildSchemaColumns(groupByQuery) >> { [new MetricColumn("lm1")].stream() }
+        return processor
+    }
+
+    def "Streamed responses to synchronous requests with row local mappers are pipelined"() {
+        setup:
+        BardFeatureFlag.PIPELINED_RESPONSE_STREAMING.setOn(true)
+        apiRequest.getAsyncAfter() >> ApiRequest.SYNCHRONOUS_ASYNC_AFTER_VALUE
+        Subject emitter = PublishSubject.create()
+        List<PreResponse> preResponses = []
+        emitter.subscribe({ preResponses.add(it) } as Action1)
+        ResultSetResponseProcessor processor = buildStreamingProcessor(emitter, true)
+
+        JsonParser parser = new JsonFactory().createParser("[]")
+        MetricColumn column = new MetricColumn("lm1")
+        List<Result> results = (1..3).collect {
+            new Result([:], [(column): it as BigDecimal] as Map<MetricColumn, Object>, new DateTime(0))
+        }
+
+        when:
+        processor.processResponse(parser, groupByQuery, new LoggingContext(RequestLog.dump()))
+
+        then: "The response is sent before any results are read"
+        1 * druidResponseParser.stream(parser, _, GROUP_BY, _) >> results.iterator()
+        0 * druidResponseParser.parse(*_)
+        preResponses.size() == 1
+        preResponses[0].resultSet instanceof StreamingResultSet
+
+        and: "The results are read as the response is written"
+        preResponses[0].resultSet.iterator().collect() == results
+
+        cleanup:
+        BardFeatureFlag.PIPELINED_RESPONSE_STREAMING.reset()
+    }
+
+    @Unroll
+    def "Streamed responses are not pipelined when #reason"() {
+        setup:
+        BardFeatureFlag.PIPELINED_RESPONSE_STREAMING.setOn(flagOn)
+        apiRequest.getAsyncAfter() >> asyncAfter
+        rsm1.map(_ as ResultSet) >> { ResultSet resultSet -> resultSet }
+        Subject emitter = PublishSubject.create()
+        List<PreResponse> preResponses = []
+        emitter.subscribe({ preResponses.add(it) } as Action1)
+        ResultSetResponseProcessor processor = buildStreamingProcessor(emitter, rowLocal)
+
+        JsonParser parser = new JsonFactory().createParser("[]")
+        ResultSet parsed = new ResultSet(new ResultSetSchema(DAY, [new MetricColumn("lm1")] as Set), [])
+
+        when:
+        processor.processResponse(parser, groupByQuery, new LoggingContext(RequestLog.dump()))
+
+        then: "The response is read before it is sent, and the parser is closed"
+        0 * druidResponseParser.stream(*_)
+        1 * druidResponseParser.parse(parser, _, GROUP_BY, _) >> parsed
+        preResponses.size() == 1
+        !(preResponses[0].resultSet instanceof StreamingResultSet)
+        parser.isClosed()
+
+        cleanup:
+        BardFeatureFlag.PIPELINED_RESPONSE_STREAMING.reset()
+
+        where:
+        flagOn | asyncAfter                                  | rowLocal | reason
+        false  | ApiRequest.SYNCHRONOUS_ASYNC_AFTER_VALUE    | true     | "the feature flag is off"
+        true   | ApiRequest.ASYNCHRONOUS_ASYNC_AFTER_VALUE   | true     | "the request may be asynchronous"
+        true   | ApiRequest.SYNCHRONOUS_ASYNC_AFTER_VALUE    | false    | "a mapper needs the whole result set"
+    }
+
     def "Test failure callback"() {
         setup:
         def resultSetResponseProcessor = new ResultSetResponseProcessor(
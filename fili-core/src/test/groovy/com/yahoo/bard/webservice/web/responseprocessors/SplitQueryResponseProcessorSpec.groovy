@@ -3,6 +3,10 @@
 package com.yahoo.bard.webservice.web.responseprocessors
 
 import com.yahoo.bard.webservice.application.ObjectMappersSuite
+import com.yahoo.bard.webservice.config.BardFeatureFlag
+import com.yahoo.bard.webservice.data.Result
+import com.yahoo.bard.webservice.data.ResultSet
+import com.yahoo.bard.webservice.data.ResultSetSchema
 import com.yahoo.bard.webservice.data.cache.HashDataCache.Pair
 import com.yahoo.bard.webservice.druid.client.FailureCallback
 import com.yahoo.bard.webservice.druid.client.HttpErrorCallback
@@ -188,4 +192,94 @@ public class SplitQueryResponseProcessorSpec extends Specification {
         1 * nextFail.invoke() { it -> captureT = it }
         captureT.getMessage() == expectedError
     }
+
+    def "With result set merging, responses are built as they arrive and concatenated in interval order"() {
+        setup:
+        BardFeatureFlag.SPLIT_QUERY_RESULT_SET_MERGE.setOn(true)
+        ResultSetBuildingResponseProcessor resultSetNext = Mock(ResultSetBuildingResponseProcessor)
+        resultSetNext.isBuildingResultSets() >> true
+        sqrp = new SplitQueryResponseProcessor(
+                resultSetNext,
+                apiRequest,
+                groupByQuery1,
+                expectedIntervals,
+                RequestLog.dump()
+        )
+
+        ResultSetSchema schema = Mock(ResultSetSchema)
+        List<Result> results = (1..4).collect { Mock(Result) }
+        ResultSet resultSet1 = new ResultSet(schema, results[0..1])
+        ResultSet resultSet2 = new ResultSet(schema, results[2..3])
+        groupByQuery2.getIntervals() >> [interval2] >> [interval1]
+
+        when: "The later interval arrives first"
+        sqrp.processResponse(node2, groupByQuery2, new LoggingContext(RequestLog.dump()))
+
+        then: "Its result set is built straight away and no JSON is held on to"
+        1 * resultSetNext.buildResultSet(node2, groupByQuery2, DateTimeZone.UTC) >> resultSet2
+        0 * resultSetNext.processResultSet(_, _, _)
+        sqrp.completedIntervals == null
+
+        when:
+        sqrp.processResponse(node1, groupByQuery2, new LoggingContext(RequestLog.dump()))
+
+        then: "The partial result sets are concatenated in interval order"
+        1 * resultSetNext.buildResultSet(node1, groupByQuery2, DateTimeZone.UTC) >> resultSet1
+        1 * resultSetNext.processResultSet(
+                { it.schema == schema && it == results },
+                groupByQuery1,
+                _
+        )
+        0 * resultSetNext.processResponse(_, _, _)
+        !sqrp.failed.get()
+
+        cleanup:
+        BardFeatureFlag.SPLIT_QUERY_RESULT_SET_MERGE.reset()
+    }
+
+    def "With result set merging, a response which can't be built fails the request"() {
+        setup:
+        BardFeatureFlag.SPLIT_QUERY_RESULT_SET_MERGE.setOn(true)
+        ResultSetBuildingResponseProcessor resultSetNext = Mock(ResultSetBuildingResponseProcessor)
+        resultSetNext.isBuildingResultSets() >> true
+        sqrp = new SplitQueryResponseProcessor(
+                resultSetNext,
+                apiRequest,
+                groupByQuery1,
+                expectedIntervals,
+                RequestLog.dump()
+        )
+        groupByQuery2.getIntervals() >> [interval1]
+        IllegalStateException error = new IllegalStateException("bad response")
+
+        when:
+        sqrp.processResponse(node1, groupByQuery2, new LoggingContext(RequestLog.dump()))
+
+        then:
+        1 * resultSetNext.buildResultSet(node1, groupByQuery2, DateTimeZone.UTC) >> { throw error }
+        1 * resultSetNext.getFailureCallback(groupByQuery2) >> nextFail
+        1 * nextFail.invoke(error)
+        sqrp.failed.get()
+        0 * resultSetNext.processResultSet(_, _, _)
+
+        cleanup:
+        BardFeatureFlag.SPLIT_QUERY_RESULT_SET_MERGE.reset()
+    }
+
+    def "Responses are merged as JSON when the next processor can't build result sets"() {
+        setup:
+        BardFeatureFlag.SPLIT_QUERY_RESULT_SET_MERGE.setOn(true)
+
+        expect:
+        new SplitQueryResponseProcessor(
+                new WeightCheckResponseProcessor(next),
+                apiRequest,
+                groupByQuery1,
+                expectedIntervals,
+                RequestLog.dump()
+        ).resultSetNext == null
+
+        cleanup:
+        BardFeatureFlag.SPLIT_QUERY_RESULT_SET_MERGE.reset()
+    }
 }
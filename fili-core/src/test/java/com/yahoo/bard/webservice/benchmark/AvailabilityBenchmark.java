@@ -0,0 +1,230 @@
+// Copyright 2017 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.benchmark;
+
+import com.yahoo.bard.webservice.data.config.names.DataSourceName;
+import com.yahoo.bard.webservice.data.config.names.TableName;
+import com.yahoo.bard.webservice.data.metric.MetricColumn;
+import com.yahoo.bard.webservice.data.time.DefaultTimeGrain;
+import com.yahoo.bard.webservice.data.time.ZonedTimeGrain;
+import com.yahoo.bard.webservice.metadata.DataSourceMetadataService;
+import com.yahoo.bard.webservice.table.Column;
+import com.yahoo.bard.webservice.table.ConfigPhysicalTable;
+import com.yahoo.bard.webservice.table.PartitionCompositeTable;
+import com.yahoo.bard.webservice.table.StrictPhysicalTable;
+import com.yahoo.bard.webservice.table.resolver.DataSourceConstraint;
+import com.yahoo.bard.webservice.table.resolver.DataSourceFilter;
+import com.yahoo.bard.webservice.util.SimplifiedIntervalList;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.joda.time.Interval;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * Cost of evaluating the availability of a partitioned table whose columns have dense hourly gaps in their segments.
+ * <p>
+ * Each of the two partitions has a few metric columns, and each column is missing a pseudo-random few percent of the
+ * hours in the span, so the interval lists being intersected, subtracted and searched hold thousands of intervals.
+ * Covers the availability of the partitioned table, the missing hour buckets of a request over the whole span (the
+ * way {@link com.yahoo.bard.webservice.data.PartialDataHandler} finds them), and the raw interval list operations.
+ * <p>
+ * Run with {@code mvn -pl fili-core test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.yahoo.bard.webservice.benchmark.AvailabilityBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AvailabilityBenchmark {
+
+    private static final DateTime START = new DateTime("2017-01-01T00:00:00Z");
+    private static final int COLUMNS = 4;
+    private static final int MISSING_HOURS_PERCENT = 3;
+
+    @Param({"720", "8760"})
+    public int hours;
+
+    private PartitionCompositeTable table;
+    private DataSourceConstraint constraint;
+    private List<Interval> requestedHours;
+    private SimplifiedIntervalList available;
+    private SimplifiedIntervalList otherAvailable;
+
+    /**
+     * Build two partitions with gaps in the availability of their columns, and the partitioned table over them.
+     */
+    @Setup
+    public void setUp() {
+        Random random = new Random(hours);
+        ZonedTimeGrain hourGrain = DefaultTimeGrain.HOUR.buildZonedTimeGrain(DateTimeZone.UTC);
+        Set<Column> columns = new LinkedHashSet<>();
+        for (int i = 0; i < COLUMNS; i++) {
+            columns.add(new MetricColumn("metric" + i));
+        }
+
+        Map<String, Map<String, SimplifiedIntervalList>> availabilities = new HashMap<>();
+        Map<ConfigPhysicalTable, DataSourceFilter> partitions = new LinkedHashMap<>();
+        FixedMetadataService metadataService = new FixedMetadataService(availabilities);
+        for (String partition : new String[] {"partition0", "partition1"}) {
+            Map<String, SimplifiedIntervalList> columnAvailabilities = new HashMap<>();
+            for (Column column : columns) {
+                columnAvailabilities.put(column.getName(), hoursWithGaps(random));
+            }
+            availabilities.put(partition, columnAvailabilities);
+            partitions.put(
+                    new StrictPhysicalTable(
+                            TableName.of(partition),
+                            hourGrain,
+                            columns,
+                            new HashMap<>(),
+                            metadataService
+                    ),
+                    ignored -> true
+            );
+        }
+
+        table = new PartitionCompositeTable(
+                TableName.of("partitioned"),
+                hourGrain,
+                columns,
+                new HashMap<>(),
+                partitions
+        );
+        constraint = DataSourceConstraint.unconstrained(table);
+
+        requestedHours = new ArrayList<>(hours);
+        for (int hour = 0; hour < hours; hour++) {
+            requestedHours.add(new Interval(START.plusHours(hour), START.plusHours(hour + 1)));
+        }
+        available = availabilities.get("partition0").get("metric0");
+        otherAvailable = availabilities.get("partition1").get("metric0");
+    }
+
+    /**
+     * Build the availability of a column over the span, missing a pseudo-random few percent of its hours.
+     *
+     * @param random  The source of the missing hours
+     *
+     * @return the available intervals
+     */
+    private SimplifiedIntervalList hoursWithGaps(Random random) {
+        List<Interval> intervals = new ArrayList<>();
+        for (int hour = 0; hour < hours; hour++) {
+            if (random.nextInt(100) >= MISSING_HOURS_PERCENT) {
+                intervals.add(new Interval(START.plusHours(hour), START.plusHours(hour + 1)));
+            }
+        }
+        return new SimplifiedIntervalList(intervals);
+    }
+
+    /**
+     * Availability of all the columns of the partitioned table.
+     *
+     * @return the available intervals
+     */
+    @Benchmark
+    public SimplifiedIntervalList partitionAvailability() {
+        return table.getAvailableIntervals(constraint);
+    }
+
+    /**
+     * Hour buckets of a request over the whole span which are not fully available.
+     *
+     * @return the number of missing buckets
+     */
+    @Benchmark
+    public long missingHourBuckets() {
+        Predicate<Interval> notIn = new SimplifiedIntervalList.IsSubinterval(available).negate();
+        return requestedHours.stream().filter(notIn).count();
+    }
+
+    /**
+     * Intersection of the availabilities of two columns.
+     *
+     * @return the intersection
+     */
+    @Benchmark
+    public SimplifiedIntervalList intersect() {
+        return available.intersect(otherAvailable);
+    }
+
+    /**
+     * Union of the availabilities of two columns.
+     *
+     * @return the union
+     */
+    @Benchmark
+    public SimplifiedIntervalList union() {
+        return available.union(otherAvailable);
+    }
+
+    /**
+     * Availability of one column less that of another.
+     *
+     * @return the difference
+     */
+    @Benchmark
+    public SimplifiedIntervalList subtract() {
+        return available.subtract(otherAvailable);
+    }
+
+    /**
+     * Run the benchmark.
+     *
+     * @param args  Unused
+     *
+     * @throws RunnerException if the benchmark fails to run
+     */
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(AvailabilityBenchmark.class.getSimpleName()).build()).run();
+    }
+
+    /**
+     * Metadata service serving availabilities built up front, so the benchmark doesn't measure building them.
+     */
+    private static class FixedMetadataService extends DataSourceMetadataService {
+
+        private final Map<String, Map<String, SimplifiedIntervalList>> availabilities;
+
+        /**
+         * Constructor.
+         *
+         * @param availabilities  The availability of each column, by data source name
+         */
+        FixedMetadataService(Map<String, Map<String, SimplifiedIntervalList>> availabilities) {
+            this.availabilities = availabilities;
+        }
+
+        @Override
+        public Map<String, SimplifiedIntervalList> getAvailableIntervalsByDataSource(DataSourceName dataSourceName) {
+            return availabilities.get(dataSourceName.asName());
+        }
+    }
+}
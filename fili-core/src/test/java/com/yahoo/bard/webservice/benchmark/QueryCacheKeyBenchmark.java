@@ -0,0 +1,195 @@
+// Copyright 2017 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.benchmark;
+
+import com.yahoo.bard.webservice.application.ObjectMappersSuite;
+import com.yahoo.bard.webservice.data.config.names.TableName;
+import com.yahoo.bard.webservice.data.dimension.BardDimensionField;
+import com.yahoo.bard.webservice.data.dimension.Dimension;
+import com.yahoo.bard.webservice.data.dimension.DimensionColumn;
+import com.yahoo.bard.webservice.data.dimension.DimensionField;
+import com.yahoo.bard.webservice.data.dimension.MapStoreManager;
+import com.yahoo.bard.webservice.data.dimension.impl.KeyValueStoreDimension;
+import com.yahoo.bard.webservice.data.dimension.impl.ScanSearchProviderManager;
+import com.yahoo.bard.webservice.data.time.DefaultTimeGrain;
+import com.yahoo.bard.webservice.druid.model.aggregation.Aggregation;
+import com.yahoo.bard.webservice.druid.model.aggregation.LongSumAggregation;
+import com.yahoo.bard.webservice.druid.model.datasource.TableDataSource;
+import com.yahoo.bard.webservice.druid.model.filter.InFilter;
+import com.yahoo.bard.webservice.druid.model.having.Having;
+import com.yahoo.bard.webservice.druid.model.orderby.LimitSpec;
+import com.yahoo.bard.webservice.druid.model.postaggregation.PostAggregation;
+import com.yahoo.bard.webservice.druid.model.query.CanonicalQueryHash;
+import com.yahoo.bard.webservice.druid.model.query.GroupByQuery;
+import com.yahoo.bard.webservice.metadata.TestDataSourceMetadataService;
+import com.yahoo.bard.webservice.table.Column;
+import com.yahoo.bard.webservice.table.StrictPhysicalTable;
+import com.yahoo.bard.webservice.table.resolver.DataSourceConstraint;
+import com.yahoo.bard.webservice.util.Utils;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.joda.time.DateTimeZone;
+import org.joda.time.Interval;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost per request of building the data cache key of a query, with an IN filter of a varying number of values.
+ * <p>
+ * Compares the JSON tree based key used before {@link CanonicalQueryHash} against the canonical hash, both as
+ * computed for a new query and as memoized on a query which has already been keyed. Every variant includes hashing the
+ * key into the memcached key the way {@link com.yahoo.bard.webservice.data.cache.MemTupleDataCache} does.
+ * <p>
+ * Run with {@code mvn -pl fili-core test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.yahoo.bard.webservice.benchmark.QueryCacheKeyBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QueryCacheKeyBenchmark {
+
+    private static final ObjectMapper MAPPER = new ObjectMappersSuite().getMapper();
+
+    @Param({"10", "1000", "10000"})
+    public int filterValues;
+
+    private GroupByQuery query;
+    private MessageDigest digest;
+
+    /**
+     * Build a group by query filtering a dimension on {@code filterValues} values.
+     *
+     * @throws NoSuchAlgorithmException if SHA-512 is not available
+     */
+    @Setup
+    public void setUp() throws NoSuchAlgorithmException {
+        LinkedHashSet<DimensionField> fields = new LinkedHashSet<>();
+        fields.add(BardDimensionField.ID);
+        fields.add(BardDimensionField.DESC);
+        Dimension dimension = new KeyValueStoreDimension(
+                "page",
+                "page",
+                fields,
+                MapStoreManager.getInstance("page"),
+                ScanSearchProviderManager.getInstance("page")
+        );
+        Set<Column> columns = Collections.singleton(new DimensionColumn(dimension));
+        StrictPhysicalTable table = new StrictPhysicalTable(
+                TableName.of("pages"),
+                DefaultTimeGrain.DAY.buildZonedTimeGrain(DateTimeZone.UTC),
+                columns,
+                Collections.emptyMap(),
+                new TestDataSourceMetadataService()
+        );
+
+        List<String> values = new ArrayList<>(filterValues);
+        for (int i = 0; i < filterValues; i++) {
+            values.add("page-" + i);
+        }
+        List<Aggregation> aggregations = Collections.singletonList(new LongSumAggregation("pageViews", "views"));
+
+        query = new GroupByQuery(
+                new TableDataSource(table.withConstraint(DataSourceConstraint.unconstrained(table))),
+                DefaultTimeGrain.DAY,
+                Collections.singletonList(dimension),
+                new InFilter(dimension, values),
+                (Having) null,
+                aggregations,
+                Collections.<PostAggregation>emptyList(),
+                Collections.singletonList(new Interval("2017-01-01/2017-02-01")),
+                (LimitSpec) null
+        );
+        digest = MessageDigest.getInstance("SHA-512");
+    }
+
+    /**
+     * Key built from the JSON tree of the query with its contexts blanked out.
+     *
+     * @return the memcached key
+     *
+     * @throws JsonProcessingException if the query cannot be serialized
+     */
+    @Benchmark
+    public String jsonTreeKey() throws JsonProcessingException {
+        JsonNode root = MAPPER.valueToTree(query);
+        Utils.omitField(root, "context", MAPPER);
+        return memcachedKey(MAPPER.writer().writeValueAsString(root));
+    }
+
+    /**
+     * Key built from the canonical hash of a query which has not been keyed before.
+     *
+     * @return the memcached key
+     *
+     * @throws JsonProcessingException if the query cannot be serialized
+     */
+    @Benchmark
+    public String canonicalHashKey() throws JsonProcessingException {
+        return memcachedKey(CanonicalQueryHash.compute(query));
+    }
+
+    /**
+     * Key built from the canonical hash memoized on a query which has already been keyed.
+     *
+     * @return the memcached key
+     *
+     * @throws JsonProcessingException if the query cannot be serialized
+     */
+    @Benchmark
+    public String memoizedCanonicalHashKey() throws JsonProcessingException {
+        return memcachedKey(CanonicalQueryHash.of(query));
+    }
+
+    /**
+     * Hash a cache key into a memcached key.
+     *
+     * @param key  The cache key
+     *
+     * @return the memcached key
+     */
+    private String memcachedKey(String key) {
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        digest.update(keyBytes, 0, keyBytes.length);
+        return Base64.getEncoder().encodeToString(digest.digest());
+    }
+
+    /**
+     * Run the benchmark.
+     *
+     * @param args  Unused
+     *
+     * @throws RunnerException if the benchmark fails to run
+     */
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(QueryCacheKeyBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -2,38 +2,126 @@
 // Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
 package com.yahoo.bard.webservice.sql;
 
-
+import com.yahoo.bard.webservice.application.MetricRegistryFactory;
+import com.yahoo.bard.webservice.config.SystemConfig;
+import com.yahoo.bard.webservice.config.SystemConfigProvider;
+import com.yahoo.bard.webservice.data.ResultSetSchema;
 import com.yahoo.bard.webservice.druid.client.FailureCallback;
 import com.yahoo.bard.webservice.druid.client.SuccessCallback;
 import com.yahoo.bard.webservice.druid.model.query.DruidAggregationQuery;
 import com.yahoo.bard.webservice.druid.model.query.DruidQuery;
 import com.yahoo.bard.webservice.logging.RequestLog;
 import com.yahoo.bard.webservice.sql.helper.CalciteHelper;
+import com.yahoo.bard.webservice.sql.helper.SqlConnectionPool;
 
+import com.codahale.metrics.InstrumentedExecutorService;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 import org.apache.calcite.adapter.jdbc.JdbcSchema;
+import org.joda.time.DateTimeZone;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 import javax.sql.DataSource;
 
 /**
- * Converts druid queries to sql, executes it, and returns a druid like response.
+ * Converts druid queries to sql, executes it, and returns a druid like response, or reads the results straight into a
+ * {@link com.yahoo.bard.webservice.data.ResultSet} when nothing needs the druid like response.
+ * <p>
+ * Each client runs its queries on its own bounded pool of threads, one per connection it may have open to its
+ * database, so a slow database holds up only its own queries. Queries beyond that wait in a bounded queue, and are
+ * rejected once the queue is full. Connections, and the statements prepared on them, are reused between queries, and
+ * a query still running when it times out is cancelled.
  */
-public class DefaultSqlBackedClient implements SqlBackedClient {
+public class DefaultSqlBackedClient implements SqlBackedClient, AutoCloseable {
     private static final Logger LOG = LoggerFactory.getLogger(DefaultSqlBackedClient.class);
+    private static final SystemConfig SYSTEM_CONFIG = SystemConfigProvider.getInstance();
+
+    /**
+     * The number of rows the JDBC driver is asked to fetch from the database at a time, or 0 to leave it to the driver.
+     */
+    public static final int FETCH_SIZE = SYSTEM_CONFIG.getIntProperty(
+            SYSTEM_CONFIG.getPackageVariableName("sql_fetch_size"),
+            1000
+    );
+
+    /**
+     * The most queries each client runs against its database at once, which is also the most connections it opens.
+     */
+    public static final int MAX_CONCURRENT_QUERIES = SYSTEM_CONFIG.getIntProperty(
+            SYSTEM_CONFIG.getPackageVariableName("sql_max_concurrent_queries"),
+            10
+    );
+
+    /**
+     * The most queries each client holds waiting for a connection before rejecting queries, or 0 for no limit.
+     */
+    public static final int MAX_QUEUED_QUERIES = SYSTEM_CONFIG.getIntProperty(
+            SYSTEM_CONFIG.getPackageVariableName("sql_max_queued_queries"),
+            1000
+    );
+
+    /**
+     * How long a query may run before it is cancelled, unless the query context sets a shorter timeout, or 0 for none.
+     */
+    public static final int QUERY_TIMEOUT_MS = SYSTEM_CONFIG.getIntProperty(
+            SYSTEM_CONFIG.getPackageVariableName("sql_query_timeout_ms"),
+            0
+    );
+
+    /**
+     * The most prepared statements kept for reuse on each connection.
+     */
+    public static final int STATEMENT_CACHE_SIZE = SYSTEM_CONFIG.getIntProperty(
+            SYSTEM_CONFIG.getPackageVariableName("sql_statement_cache_size"),
+            100
+    );
+
+    private static final MetricRegistry REGISTRY = MetricRegistryFactory.getRegistry();
+    public static final Meter REJECTED_QUERIES = REGISTRY.meter("queries.meter.sql.rejected");
+    public static final Meter TIMED_OUT_QUERIES = REGISTRY.meter("queries.meter.sql.timed_out");
+
+    private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+
+    /**
+     * Cancels the statements of queries which have timed out.
+     */
+    private static final ScheduledExecutorService TIMEOUT_SCHEDULER = Executors.newSingleThreadScheduledExecutor(
+            runnable -> {
+                Thread thread = new Thread(runnable, "sql-query-timeouts");
+                thread.setDaemon(true);
+                return thread;
+            }
+    );
+
     private final ObjectMapper jsonWriter;
     private final DruidQueryToSqlConverter druidQueryToSqlConverter;
     private final CalciteHelper calciteHelper;
+    private final SqlConnectionPool connectionPool;
+    private final ExecutorService executor;
 
     /**
      * Creates a sql converter using the given database and datasource.
@@ -44,9 +132,30 @@ public class DefaultSqlBackedClient implements SqlBackedClient {
      * @throws SQLException if can't read from database.
      */
     public DefaultSqlBackedClient(DataSource dataSource, ObjectMapper objectMapper) throws SQLException {
+        this(dataSource, objectMapper, MAX_CONCURRENT_QUERIES, MAX_QUEUED_QUERIES);
+    }
+
+    /**
+     * Creates a sql converter using the given database and datasource, with its own limits on the queries it runs.
+     *
+     * @param dataSource  The dataSource for the jdbc schema.
+     * @param objectMapper  The mapper for all JSON processing.
+     * @param maxConcurrentQueries  The most queries run against the database at once.
+     * @param maxQueuedQueries  The most queries waiting to run before queries are rejected, or 0 for no limit.
+     *
+     * @throws SQLException if can't read from database.
+     */
+    public DefaultSqlBackedClient(
+            DataSource dataSource,
+            ObjectMapper objectMapper,
+            int maxConcurrentQueries,
+            int maxQueuedQueries
+    ) throws SQLException {
         calciteHelper = new CalciteHelper(dataSource);
         druidQueryToSqlConverter = new DruidQueryToSqlConverter(calciteHelper);
         jsonWriter = objectMapper;
+        connectionPool = new SqlConnectionPool(dataSource, maxConcurrentQueries, STATEMENT_CACHE_SIZE);
+        executor = buildExecutor(maxConcurrentQueries, maxQueuedQueries);
     }
 
     /**
@@ -68,10 +177,35 @@ public class DefaultSqlBackedClient implements SqlBackedClient {
             String password,
             ObjectMapper objectMapper
     ) throws SQLException {
-        DataSource dataSource = JdbcSchema.dataSource(url, driver, username, password);
-        calciteHelper = new CalciteHelper(dataSource);
-        druidQueryToSqlConverter = new DruidQueryToSqlConverter(calciteHelper);
-        jsonWriter = objectMapper;
+        this(JdbcSchema.dataSource(url, driver, username, password), objectMapper);
+    }
+
+    /**
+     * Builds the executor the queries are run on, with a thread for each query which may run at once.
+     *
+     * @param maxConcurrentQueries  The most queries run at once.
+     * @param maxQueuedQueries  The most queries waiting to run before queries are rejected, or 0 for no limit.
+     *
+     * @return the executor, instrumented in the metric registry.
+     */
+    protected ExecutorService buildExecutor(int maxConcurrentQueries, int maxQueuedQueries) {
+        BlockingQueue<Runnable> queue = maxQueuedQueries > 0
+                ? new ArrayBlockingQueue<>(maxQueuedQueries)
+                : new LinkedBlockingQueue<>();
+        ThreadPoolExecutor threadPool = new ThreadPoolExecutor(
+                maxConcurrentQueries,
+                maxConcurrentQueries,
+                60,
+                TimeUnit.SECONDS,
+                queue,
+                runnable -> {
+                    Thread thread = new Thread(runnable, "sql-queries-" + THREAD_COUNT.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+        );
+        threadPool.allowCoreThreadTimeOut(true);
+        return new InstrumentedExecutorService(threadPool, REGISTRY, "queries.sql.executor");
     }
 
     @Override
@@ -79,45 +213,125 @@ public class DefaultSqlBackedClient implements SqlBackedClient {
             DruidQuery<?> druidQuery,
             SuccessCallback successCallback,
             FailureCallback failureCallback
+    ) {
+        return executeAsync(
+                () -> executeAndProcessQuery(
+                        (DruidAggregationQuery<?>) druidQuery,
+                        (resultSetProcessor, resultSet) -> {
+                            resultSetProcessor.process(resultSet);
+                            JsonNode jsonNode = resultSetProcessor.buildDruidResponse();
+                            LOG.trace("Created response: {}", jsonNode);
+                            return jsonNode;
+                        }
+                ),
+                successCallback == null ? null : successCallback::invoke,
+                failureCallback
+        );
+    }
+
+    /**
+     * Reads the rows of the sql results straight into a {@link com.yahoo.bard.webservice.data.ResultSet}, without
+     * building a druid-like response.
+     *
+     * @param druidQuery  The query to be executed.
+     * @param schema  The schema of the results.
+     * @param dateTimeZone  The date time zone of the timestamps of the results.
+     * @param successCallback  The callback for handling the results.
+     * @param failureCallback  The callback for handling exceptions
+     *
+     * @return the results of the query.
+     */
+    @Override
+    public Future<com.yahoo.bard.webservice.data.ResultSet> executeResultSetQuery(
+            DruidQuery<?> druidQuery,
+            ResultSetSchema schema,
+            DateTimeZone dateTimeZone,
+            Consumer<com.yahoo.bard.webservice.data.ResultSet> successCallback,
+            FailureCallback failureCallback
+    ) {
+        return executeAsync(
+                () -> executeAndProcessQuery(
+                        (DruidAggregationQuery<?>) druidQuery,
+                        (resultSetProcessor, resultSet) -> resultSetProcessor.buildResultSet(
+                                resultSet,
+                                schema,
+                                dateTimeZone
+                        )
+                ),
+                successCallback,
+                failureCallback
+        );
+    }
+
+    /**
+     * Runs a query asynchronously, handing its result to the success callback or its failure to the failure callback.
+     *
+     * @param query  Runs the query.
+     * @param successCallback  The callback for handling a successful result.
+     * @param failureCallback  The callback for handling exceptions
+     * @param <T>  The type of the result of the query
+     *
+     * @return the result of the query, or null if it failed.
+     */
+    private <T> Future<T> executeAsync(
+            Supplier<T> query,
+            Consumer<T> successCallback,
+            FailureCallback failureCallback
     ) {
         RequestLog logCtx = RequestLog.dump();
         //todo eventually stop/start RequestLog phases
-        return CompletableFuture.supplyAsync(() -> {
-                    try {
-                        JsonNode jsonNode = executeAndProcessQuery((DruidAggregationQuery) druidQuery);
-                        if (successCallback != null) {
-                            successCallback.invoke(jsonNode);
-                        }
-                        return jsonNode;
-                    } catch (Throwable t) {
-                        LOG.warn("Failed while querying ", t);
-                        if (failureCallback != null) {
-                            failureCallback.dispatch(t);
+        try {
+            return CompletableFuture.supplyAsync(() -> {
+                        try {
+                            T result = query.get();
+                            if (successCallback != null) {
+                                successCallback.accept(result);
+                            }
+                            return result;
+                        } catch (Throwable t) {
+                            LOG.warn("Failed while querying ", t);
+                            if (failureCallback != null) {
+                                failureCallback.dispatch(t);
+                            }
+                        } finally {
+                            RequestLog.restore(logCtx);
                         }
-                    } finally {
-                        RequestLog.restore(logCtx);
-                    }
-                    return null;
-                }
-        );
+                        return null;
+                    },
+                    executor
+            );
+        } catch (RejectedExecutionException e) {
+            RequestLog.restore(logCtx);
+            REJECTED_QUERIES.mark();
+            LOG.warn("Rejected sql query, too many queries are waiting to run", e);
+            if (failureCallback != null) {
+                failureCallback.dispatch(e);
+            }
+            return CompletableFuture.completedFuture(null);
+        }
     }
 
     /**
-     * Builds sql for a druid query, execute it against the database, process
-     * the results and return a jsonNode in the format of a druid response.
+     * Builds sql for a druid query, execute it against the database, and
+     * process the results, fetching {@link #FETCH_SIZE} rows at a time.
+     * <p>
+     * The query runs on a pooled connection, which is discarded rather than
+     * reused if the query fails or times out.
      *
      * @param druidQuery  The druid query to build and process.
+     * @param resultReader  Reads the results of the query.
+     * @param <T>  The type the results are read into.
      *
-     * @return a druid-like response to the query.
+     * @return the results read.
      */
-    private JsonNode executeAndProcessQuery(DruidAggregationQuery<?> druidQuery) {
+    private <T> T executeAndProcessQuery(DruidAggregationQuery<?> druidQuery, ResultReader<T> resultReader) {
         if (!druidQueryToSqlConverter.isValidQuery(druidQuery)) {
             throw new UnsupportedOperationException("Unable to process " + druidQuery);
         }
 
         ApiToFieldMapper aliasMaker = new ApiToFieldMapper(druidQuery.getDataSource().getPhysicalTable().getSchema());
 
-        String sqlQuery = druidQueryToSqlConverter.buildSqlQuery(druidQuery, aliasMaker);
+        ParameterizedSqlQuery sqlQuery = druidQueryToSqlConverter.buildParameterizedSqlQuery(druidQuery, aliasMaker);
         LOG.debug("Executing \n{}", sqlQuery);
 
         SqlResultSetProcessor resultSetProcessor = new SqlResultSetProcessor(
@@ -127,18 +341,114 @@ public class DefaultSqlBackedClient implements SqlBackedClient {
                 druidQueryToSqlConverter.getTimeConverter()
         );
 
-        try (Connection connection = calciteHelper.getConnection()) {
-            PreparedStatement preparedStatement = connection.prepareStatement(sqlQuery);
-            ResultSet resultSet = preparedStatement.executeQuery();
-
-            resultSetProcessor.process(resultSet);
+        SqlConnectionPool.PooledConnection connection;
+        try {
+            connection = connectionPool.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for a connection", e);
+        } catch (SQLException e) {
+            throw new RuntimeException("Couldn't connect to the database", e);
+        }
 
-            JsonNode jsonNode = resultSetProcessor.buildDruidResponse();
-            LOG.trace("Created response: {}", jsonNode);
-            return jsonNode;
+        int timeoutMs = getTimeoutMs(druidQuery);
+        ScheduledFuture<?> timeout = null;
+        boolean timedOut = false;
+        boolean succeeded = false;
+        try {
+            PreparedStatement preparedStatement = connection.prepareStatement(sqlQuery.getSql());
+            sqlQuery.bind(preparedStatement);
+            preparedStatement.setFetchSize(FETCH_SIZE);
+            if (timeoutMs > 0) {
+                timeout = TIMEOUT_SCHEDULER.schedule(() -> cancel(preparedStatement), timeoutMs, TimeUnit.MILLISECONDS);
+            }
+            T result;
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                result = resultReader.read(resultSetProcessor, resultSet);
+            }
+            succeeded = true;
+            return result;
         } catch (SQLException e) {
             LOG.warn("Failed while processing {}", druidQuery);
+            // The cancellation is what failed the query if it has already run
+            if (timeout != null && !timeout.cancel(false)) {
+                timedOut = true;
+                TIMED_OUT_QUERIES.mark();
+                throw new RuntimeException(
+                        "Sql query timed out",
+                        new TimeoutException("Sql query took longer than " + timeoutMs + "ms")
+                );
+            }
             throw new RuntimeException("Couldn't generate sql", e);
+        } finally {
+            // A statement which may have been cancelled can't be trusted with the next query
+            if (timeout != null && !timedOut && !timeout.isCancelled() && !timeout.cancel(false)) {
+                timedOut = true;
+            }
+            if (succeeded && !timedOut) {
+                connection.close();
+            } else {
+                connection.discard();
+            }
         }
     }
+
+    /**
+     * Gets how long a query may run before it is cancelled: the timeout in its context, if it sets one shorter than
+     * {@link #QUERY_TIMEOUT_MS}.
+     *
+     * @param druidQuery  The query being run.
+     *
+     * @return the timeout in milliseconds, or 0 for no timeout.
+     */
+    private static int getTimeoutMs(DruidAggregationQuery<?> druidQuery) {
+        Integer contextTimeout = druidQuery.getContext() == null ? null : druidQuery.getContext().getTimeout();
+        if (contextTimeout == null || contextTimeout <= 0) {
+            return QUERY_TIMEOUT_MS;
+        }
+        return QUERY_TIMEOUT_MS > 0 ? Math.min(contextTimeout, QUERY_TIMEOUT_MS) : contextTimeout;
+    }
+
+    /**
+     * Cancels a statement which is still running when its query times out.
+     *
+     * @param statement  The statement to cancel.
+     */
+    private static void cancel(PreparedStatement statement) {
+        try {
+            statement.cancel();
+        } catch (SQLException e) {
+            LOG.warn("Failed to cancel timed out sql query", e);
+        }
+    }
+
+    /**
+     * Stops taking queries and closes the idle connections to the database. Queries which are running close their
+     * connections once they are done, and queries which are still waiting to run fail.
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+        connectionPool.close();
+    }
+
+    /**
+     * Reads the results of a sql query.
+     *
+     * @param <T>  The type the results are read into.
+     */
+    @FunctionalInterface
+    private interface ResultReader<T> {
+        /**
+         * Reads the results of a sql query.
+         *
+         * @param resultSetProcessor  The processor for the results of the query.
+         * @param resultSet  The results of the query.
+         *
+         * @return the results read.
+         *
+         * @throws SQLException if the results can't be read.
+         */
+        T read(SqlResultSetProcessor resultSetProcessor, ResultSet resultSet) throws SQLException;
+    }
 }
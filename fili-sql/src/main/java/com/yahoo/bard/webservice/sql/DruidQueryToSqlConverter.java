@@ -4,11 +4,22 @@ package com.yahoo.bard.webservice.sql;
 
 import static com.yahoo.bard.webservice.druid.model.DefaultQueryType.GROUP_BY;
 
+import com.yahoo.bard.webservice.config.BardFeatureFlag;
+import com.yahoo.bard.webservice.config.SystemConfig;
+import com.yahoo.bard.webservice.config.SystemConfigProvider;
 import com.yahoo.bard.webservice.data.dimension.Dimension;
 import com.yahoo.bard.webservice.druid.model.DefaultQueryType;
 import com.yahoo.bard.webservice.druid.model.QueryType;
 import com.yahoo.bard.webservice.druid.model.aggregation.Aggregation;
+import com.yahoo.bard.webservice.druid.model.filter.ComplexFilter;
+import com.yahoo.bard.webservice.druid.model.filter.DimensionalFilter;
+import com.yahoo.bard.webservice.druid.model.filter.Filter;
+import com.yahoo.bard.webservice.druid.model.filter.InFilter;
+import com.yahoo.bard.webservice.druid.model.filter.SearchFilter;
 import com.yahoo.bard.webservice.druid.model.having.Having;
+import com.yahoo.bard.webservice.druid.model.having.MultiClauseHaving;
+import com.yahoo.bard.webservice.druid.model.having.NotHaving;
+import com.yahoo.bard.webservice.druid.model.having.NumericHaving;
 import com.yahoo.bard.webservice.druid.model.orderby.LimitSpec;
 import com.yahoo.bard.webservice.druid.model.orderby.SortDirection;
 import com.yahoo.bard.webservice.druid.model.query.DruidAggregationQuery;
@@ -22,6 +33,9 @@ import com.yahoo.bard.webservice.sql.helper.CalciteHelper;
 import com.yahoo.bard.webservice.sql.helper.SqlTimeConverter;
 import com.yahoo.bard.webservice.table.SqlPhysicalTable;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
 import org.apache.calcite.rel.RelNode;
 import org.apache.calcite.rel.rel2sql.RelToSqlConverter;
 import org.apache.calcite.rex.RexNode;
@@ -33,6 +47,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
@@ -44,9 +59,23 @@ import java.util.stream.Collectors;
 
 /**
  * Default implementation of converting a {@link DruidQuery} into a sql query.
+ * <p>
+ * When the {@link BardFeatureFlag#SQL_QUERY_TEMPLATES} flag is on, the sql built for a query is kept as a template,
+ * with parameters in place of the bounds of its intervals and the values its filters compare against, and reused for
+ * later queries which differ only in those values.
  */
 public class DruidQueryToSqlConverter {
     private static final Logger LOG = LoggerFactory.getLogger(DruidQueryToSqlConverter.class);
+    private static final SystemConfig SYSTEM_CONFIG = SystemConfigProvider.getInstance();
+
+    /**
+     * The most query templates each converter keeps.
+     */
+    public static final int QUERY_TEMPLATE_CACHE_SIZE = SYSTEM_CONFIG.getIntProperty(
+            SYSTEM_CONFIG.getPackageVariableName("sql_query_template_cache_size"),
+            1000
+    );
+
     private final CalciteHelper calciteHelper;
     private final SqlTimeConverter sqlTimeConverter;
     private final BiFunction<Aggregation, ApiToFieldMapper, Optional<SqlAggregation>> druidSqlAggregationConverter;
@@ -55,6 +84,10 @@ public class DruidQueryToSqlConverter {
     public static final int NO_OFFSET = -1;
     public static final int NO_LIMIT = -1;
 
+    private final Cache<List<Object>, String> queryTemplates = CacheBuilder.newBuilder()
+            .maximumSize(QUERY_TEMPLATE_CACHE_SIZE)
+            .build();
+
     /**
      * Constructs the default converter.
      *
@@ -124,9 +157,7 @@ public class DruidQueryToSqlConverter {
      * @return the sql equivalent of the query.
      */
     public String buildSqlQuery(DruidAggregationQuery<?> druidQuery, ApiToFieldMapper apiToFieldMapper) {
-        SqlPhysicalTable sqlTable = (SqlPhysicalTable) druidQuery.getDataSource()
-                .getPhysicalTable()
-                .getSourceTable();
+        SqlPhysicalTable sqlTable = getSqlTable(druidQuery);
 
         LOG.debug(
                 "Querying table {} with schema {} using timestampColumn {}",
@@ -142,6 +173,168 @@ public class DruidQueryToSqlConverter {
         return writeSql(sqlWriter, relToSql, query);
     }
 
+    /**
+     * Builds the druid query as sql, along with the values of its parameters.
+     * <p>
+     * When the {@link BardFeatureFlag#SQL_QUERY_TEMPLATES} flag is on, the bounds of the intervals of the query and
+     * the values its filters compare against are parameters, and the sql is only built for the first query of each
+     * template. Otherwise, and for queries which can't be made into a template, the sql is the same as that from
+     * {@link #buildSqlQuery(DruidAggregationQuery, ApiToFieldMapper)} and has no parameters.
+     *
+     * @param druidQuery  The query to convert to sql.
+     * @param apiToFieldMapper  The mapping between api and physical names for the query, from the schema of its table.
+     *
+     * @return the sql equivalent of the query, and the values of its parameters.
+     */
+    public ParameterizedSqlQuery buildParameterizedSqlQuery(
+            DruidAggregationQuery<?> druidQuery,
+            ApiToFieldMapper apiToFieldMapper
+    ) {
+        if (!BardFeatureFlag.SQL_QUERY_TEMPLATES.isOn()) {
+            return new ParameterizedSqlQuery(buildSqlQuery(druidQuery, apiToFieldMapper), Collections.emptyList());
+        }
+
+        List<Object> parameters = getTemplateParameters(druidQuery);
+        // A null value is written as NULL rather than as a literal, so it changes the sql of the template
+        if (parameters.contains(null)) {
+            return new ParameterizedSqlQuery(buildSqlQuery(druidQuery, apiToFieldMapper), Collections.emptyList());
+        }
+
+        List<Object> templateKey = getTemplateKey(druidQuery);
+        String template = queryTemplates.getIfPresent(templateKey);
+        if (template != null) {
+            return new ParameterizedSqlQuery(template, parameters);
+        }
+
+        String sql = buildSqlQuery(druidQuery, apiToFieldMapper);
+        Optional<String> parameterized = ParameterizedSqlQuery.parameterize(sql, parameters);
+        if (!parameterized.isPresent()) {
+            LOG.debug("Couldn't make a template of {}", sql);
+            return new ParameterizedSqlQuery(sql, Collections.emptyList());
+        }
+        queryTemplates.put(templateKey, parameterized.get());
+        return new ParameterizedSqlQuery(parameterized.get(), parameters);
+    }
+
+    /**
+     * Gets the sql table a druid query is against.
+     *
+     * @param druidQuery  The query to get the table of.
+     *
+     * @return the sql table.
+     */
+    private SqlPhysicalTable getSqlTable(DruidAggregationQuery<?> druidQuery) {
+        return (SqlPhysicalTable) druidQuery.getDataSource()
+                .getPhysicalTable()
+                .getSourceTable();
+    }
+
+    /**
+     * Gets the values which are parameters of the template of a query: the start and end of each of its intervals,
+     * followed by the values its filters compare against, in the order they appear in its sql.
+     *
+     * @param druidQuery  The query to get the parameters of.
+     *
+     * @return the values of the parameters.
+     */
+    protected List<Object> getTemplateParameters(DruidAggregationQuery<?> druidQuery) {
+        List<Object> parameters = new ArrayList<>(sqlTimeConverter.getTimeFilterBounds(druidQuery));
+        parameters.addAll(filterEvaluator.getLiterals(druidQuery.getFilter()));
+        return parameters;
+    }
+
+    /**
+     * Gets the key of the template of a query, which is equal for queries whose sql differs only in the values of
+     * their parameters.
+     *
+     * @param druidQuery  The query to get the template key of.
+     *
+     * @return the template key.
+     */
+    protected List<Object> getTemplateKey(DruidAggregationQuery<?> druidQuery) {
+        SqlPhysicalTable sqlTable = getSqlTable(druidQuery);
+        Having having = null;
+        LimitSpec limitSpec = null;
+        if (druidQuery.getQueryType().equals(GROUP_BY)) {
+            GroupByQuery groupByQuery = (GroupByQuery) druidQuery;
+            having = groupByQuery.getHaving();
+            limitSpec = groupByQuery.getLimitSpec();
+        }
+
+        return Arrays.asList(
+                druidQuery.getQueryType(),
+                sqlTable.getSchemaName(),
+                sqlTable.getName(),
+                sqlTable.getTimestampColumn(),
+                druidQuery.getDataSource().getPhysicalTable().getSchema(),
+                druidQuery.getGranularity(),
+                druidQuery.getDimensions().stream().map(Dimension::getApiName).collect(Collectors.toList()),
+                new ArrayList<>(druidQuery.getAggregations()),
+                druidQuery.getIntervals().size(),
+                getFilterShape(druidQuery.getFilter()),
+                getHavingShape(having),
+                limitSpec
+        );
+    }
+
+    /**
+     * Gets the shape of a filter: what it filters on and how, without the values it compares against.
+     *
+     * @param filter  The filter to get the shape of.
+     *
+     * @return the shape of the filter, or null if there is no filter.
+     */
+    private static List<Object> getFilterShape(Filter filter) {
+        if (filter == null) {
+            return null;
+        }
+
+        List<Object> shape = new ArrayList<>();
+        shape.add(filter.getClass());
+        if (filter instanceof DimensionalFilter) {
+            shape.add(((DimensionalFilter<?>) filter).getDimension().getApiName());
+        }
+        if (filter instanceof SearchFilter) {
+            shape.add(((SearchFilter) filter).getQueryType());
+        } else if (filter instanceof InFilter) {
+            shape.add(((InFilter) filter).getValues().size());
+        } else if (filter instanceof ComplexFilter) {
+            ((ComplexFilter) filter).getFields().forEach(field -> shape.add(getFilterShape(field)));
+        }
+        return shape;
+    }
+
+    /**
+     * Gets the shape of a having. Havings compare against numbers, which are written into the sql rather than being
+     * parameters, so their values are part of the shape.
+     *
+     * @param having  The having to get the shape of.
+     *
+     * @return the shape of the having, or null if there is no having.
+     */
+    private static List<Object> getHavingShape(Having having) {
+        if (having == null) {
+            return null;
+        }
+
+        List<Object> shape = new ArrayList<>();
+        shape.add(having.getClass());
+        if (having instanceof NumericHaving) {
+            NumericHaving numericHaving = (NumericHaving) having;
+            shape.add(numericHaving.getType());
+            shape.add(numericHaving.getAggregation());
+            shape.add(numericHaving.getValue());
+        } else if (having instanceof MultiClauseHaving) {
+            ((MultiClauseHaving) having).getHavings().forEach(clause -> shape.add(getHavingShape(clause)));
+        } else if (having instanceof NotHaving) {
+            shape.add(getHavingShape(((NotHaving) having).getHaving()));
+        } else {
+            // No telling what else makes up the sql of other havings, so they only share a template with themselves
+            shape.add(having);
+        }
+        return shape;
+    }
+
     /**
      * Converts the druid query to a {@link RelNode}.
      *
@@ -0,0 +1,189 @@
+// Copyright 2017 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.sql;
+
+import com.yahoo.bard.webservice.sql.helper.TimestampUtils;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.TimeZone;
+
+/**
+ * Sql for a query along with the values bound to its parameters, if it has any.
+ * <p>
+ * Queries which differ only in the values they compare against share their sql, so the sql only needs to be built,
+ * and prepared on each connection, once.
+ */
+public class ParameterizedSqlQuery {
+    private final String sql;
+    private final List<Object> parameters;
+
+    /**
+     * Constructor.
+     *
+     * @param sql  The sql of the query, with a {@code ?} in place of each parameter.
+     * @param parameters  The values of the parameters, in the order they appear in the sql.
+     */
+    public ParameterizedSqlQuery(String sql, List<?> parameters) {
+        this.sql = sql;
+        this.parameters = Collections.unmodifiableList(new ArrayList<>(parameters));
+    }
+
+    public String getSql() {
+        return sql;
+    }
+
+    public List<Object> getParameters() {
+        return parameters;
+    }
+
+    /**
+     * Binds the parameters of the query to a statement prepared from its sql. Timestamps are bound as timestamps and
+     * everything else as strings.
+     * <p>
+     * Timestamps are bound with a UTC calendar, so the driver sends the wall clock the literal sql would have had,
+     * whatever the default time zone of the JVM.
+     *
+     * @param statement  The statement prepared from the sql of this query.
+     *
+     * @throws SQLException if a parameter can't be bound.
+     */
+    public void bind(PreparedStatement statement) throws SQLException {
+        Calendar utc = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+        for (int i = 0; i < parameters.size(); i++) {
+            Object parameter = parameters.get(i);
+            if (parameter instanceof Timestamp) {
+                statement.setTimestamp(i + 1, (Timestamp) parameter, utc);
+            } else {
+                statement.setString(i + 1, String.valueOf(parameter));
+            }
+        }
+    }
+
+    /**
+     * Turns sql into a template by replacing its string literals with parameters.
+     * <p>
+     * This only succeeds if the string literals of the sql are exactly the given values, in order, so that binding
+     * the values to the template gives the same query. Otherwise there is no telling which literal came from which
+     * value, and the sql can't be made into a template. Timestamps are written as their wall clock in UTC, the way
+     * they are bound.
+     *
+     * @param sql  The sql with the values written as string literals.
+     * @param values  The values of the string literals, in the order they appear in the sql.
+     *
+     * @return the sql with a {@code ?} in place of each literal, or empty if the literals aren't the values.
+     */
+    public static Optional<String> parameterize(String sql, List<?> values) {
+        List<String> texts = new ArrayList<>(values.size());
+        values.forEach(value -> texts.add(toText(value)));
+        // Two equal values could have been written to the sql in either order
+        if (new HashSet<>(texts).size() != texts.size()) {
+            return Optional.empty();
+        }
+
+        StringBuilder template = new StringBuilder(sql.length());
+        int literals = 0;
+        // The quote closing the identifier being read, if any
+        char identifierEnd = 0;
+        int i = 0;
+        while (i < sql.length()) {
+            char c = sql.charAt(i);
+            if (identifierEnd != 0 || c != '\'') {
+                if (identifierEnd == 0) {
+                    identifierEnd = getIdentifierEnd(c);
+                } else if (c == identifierEnd) {
+                    // A doubled quote inside an identifier ends and reopens it
+                    identifierEnd = 0;
+                }
+                template.append(c);
+                i++;
+                continue;
+            }
+
+            // Literals with a prefix, such as unicode or national character literals, aren't plain strings
+            if (i > 0 && isLiteralPrefix(sql.charAt(i - 1))) {
+                return Optional.empty();
+            }
+            StringBuilder literal = new StringBuilder();
+            int end = i + 1;
+            while (true) {
+                if (end >= sql.length()) {
+                    return Optional.empty();
+                }
+                char d = sql.charAt(end);
+                if (d == '\'') {
+                    if (end + 1 < sql.length() && sql.charAt(end + 1) == '\'') {
+                        literal.append(d);
+                        end += 2;
+                        continue;
+                    }
+                    break;
+                }
+                literal.append(d);
+                end++;
+            }
+
+            if (literals >= texts.size() || !texts.get(literals).equals(literal.toString())) {
+                return Optional.empty();
+            }
+            template.append('?');
+            literals++;
+            i = end + 1;
+        }
+
+        return literals == texts.size() ? Optional.of(template.toString()) : Optional.empty();
+    }
+
+    /**
+     * Writes a value the way it appears as a literal in the sql.
+     *
+     * @param value  The value.
+     *
+     * @return the text of the value.
+     */
+    private static String toText(Object value) {
+        return value instanceof Timestamp ? TimestampUtils.toUtcString((Timestamp) value) : String.valueOf(value);
+    }
+
+    /**
+     * Gets the quote which closes an identifier opened by a character, for the identifier quotes of common dialects.
+     *
+     * @param c  The character which may open an identifier.
+     *
+     * @return the closing quote, or 0 if the character doesn't open an identifier.
+     */
+    private static char getIdentifierEnd(char c) {
+        switch (c) {
+            case '"':
+            case '`':
+                return c;
+            case '[':
+                return ']';
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * Whether a character directly before a quote makes it the start of a literal which isn't a plain string.
+     *
+     * @param c  The character before the quote.
+     *
+     * @return true if the literal has a prefix.
+     */
+    private static boolean isLiteralPrefix(char c) {
+        return Character.isLetterOrDigit(c) || c == '_' || c == '&';
+    }
+
+    @Override
+    public String toString() {
+        return parameters.isEmpty() ? sql : sql + " with parameters " + parameters;
+    }
+}
@@ -2,13 +2,21 @@
 // Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
 package com.yahoo.bard.webservice.sql;
 
+import com.yahoo.bard.webservice.data.DruidResponseParser;
+import com.yahoo.bard.webservice.data.ResultSet;
+import com.yahoo.bard.webservice.data.ResultSetSchema;
 import com.yahoo.bard.webservice.druid.client.FailureCallback;
 import com.yahoo.bard.webservice.druid.client.SuccessCallback;
+import com.yahoo.bard.webservice.druid.model.DefaultQueryType;
 import com.yahoo.bard.webservice.druid.model.query.DruidQuery;
 
 import com.fasterxml.jackson.databind.JsonNode;
 
+import org.joda.time.DateTimeZone;
+
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Future;
+import java.util.function.Consumer;
 
 /**
  * Allows queries to be executed on a sql backend from a {@link DruidQuery}.
@@ -30,4 +38,52 @@ public interface SqlBackedClient {
             SuccessCallback successCallback,
             FailureCallback failureCallback
     );
+
+    /**
+     * Uses a {@link DruidQuery} to fetch results from a Sql client and
+     * returns them as a {@link ResultSet}, without building a response
+     * like druid's when nothing needs one.
+     * <p>
+     * By default this parses the json from
+     * {@link #executeQuery(DruidQuery, SuccessCallback, FailureCallback)}.
+     *
+     * @param druidQuery  The query to be executed.
+     * @param schema  The schema of the results.
+     * @param dateTimeZone  The date time zone of the timestamps of the results.
+     * @param successCallback  The callback for handling the results.
+     * @param failureCallback  The callback for handling exceptions
+     *
+     * @return the results of the query.
+     */
+    default Future<ResultSet> executeResultSetQuery(
+            DruidQuery<?> druidQuery,
+            ResultSetSchema schema,
+            DateTimeZone dateTimeZone,
+            Consumer<ResultSet> successCallback,
+            FailureCallback failureCallback
+    ) {
+        CompletableFuture<ResultSet> future = new CompletableFuture<>();
+        executeQuery(
+                druidQuery,
+                rootNode -> {
+                    ResultSet resultSet = new DruidResponseParser().parse(
+                            rootNode,
+                            schema,
+                            DefaultQueryType.GROUP_BY,
+                            dateTimeZone
+                    );
+                    if (successCallback != null) {
+                        successCallback.accept(resultSet);
+                    }
+                    future.complete(resultSet);
+                },
+                error -> {
+                    if (failureCallback != null) {
+                        failureCallback.invoke(error);
+                    }
+                    future.completeExceptionally(error);
+                }
+        );
+        return future;
+    }
 }
@@ -2,11 +2,16 @@
 // Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
 package com.yahoo.bard.webservice.sql;
 
+import com.yahoo.bard.webservice.data.Result;
+import com.yahoo.bard.webservice.data.ResultSetSchema;
+import com.yahoo.bard.webservice.data.dimension.DimensionColumn;
+import com.yahoo.bard.webservice.data.dimension.DimensionRow;
+import com.yahoo.bard.webservice.data.metric.MetricColumn;
 import com.yahoo.bard.webservice.druid.model.aggregation.Aggregation;
 import com.yahoo.bard.webservice.druid.model.postaggregation.PostAggregation;
 import com.yahoo.bard.webservice.druid.model.query.AllGranularity;
 import com.yahoo.bard.webservice.druid.model.query.DruidAggregationQuery;
-import com.yahoo.bard.webservice.sql.evaluator.PostAggregationEvaluator;
+import com.yahoo.bard.webservice.sql.evaluator.CompiledPostAggregation;
 import com.yahoo.bard.webservice.sql.helper.SqlTimeConverter;
 
 import com.fasterxml.jackson.core.JsonGenerator;
@@ -22,28 +27,52 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.math.BigDecimal;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
 /**
  * Process the results from a DruidQuery to a sql backend.
+ * <p>
+ * The values of each column are kept in the type they are read as from JDBC (longs and doubles for aggregations, ints
+ * for the parts of the time grouped on, and strings for everything else), and the post aggregations are compiled once
+ * per query into programs evaluated over the numeric values of each row.
+ * <p>
+ * The results can either be buffered with {@link #process} and written out as a Druid response with
+ * {@link #buildDruidResponse}, or read straight into a result set with {@link #buildResultSet}, which turns each row
+ * into a {@link Result} as it is read, the same way the Druid response would have been parsed.
  */
 public class SqlResultSetProcessor {
     private static final Logger LOG = LoggerFactory.getLogger(SqlResultSetProcessor.class);
+    private static final int INITIAL_CAPACITY = 16;
+
     private final DruidAggregationQuery<?> druidQuery;
     private final ApiToFieldMapper apiToFieldMapper;
     private BiMap<Integer, String> columnToColumnName;
-    private List<String[]> sqlResults;
+    private final List<ResultColumn> columns;
+    private int rowCount;
     private final ObjectMapper objectMapper;
     private final int groupByDimensionsCount;
+    private final int lastTimeIndex;
     private final SqlTimeConverter sqlTimeConverter;
+    private final Map<String, String> aggregationTypes;
+
+    // Compiled when the first row is written, along with the indexes of the columns they read
+    private List<CompiledPostAggregation> postAggregations;
+    private int[] postAggregationInputs;
+    private int[][] postAggregationInputsByPostAggregation;
 
     /**
      * Builds something to process a set of sql results and return them as the
@@ -65,10 +94,17 @@ public class SqlResultSetProcessor {
         this.objectMapper = objectMapper;
         this.sqlTimeConverter = sqlTimeConverter;
 
-        this.sqlResults = new ArrayList<>();
+        this.columns = new ArrayList<>();
         this.columnToColumnName = HashBiMap.create();
 
         this.groupByDimensionsCount = druidQuery.getDimensions().size();
+        this.lastTimeIndex = sqlTimeConverter.timeGrainToDatePartFunctions(druidQuery.getGranularity()).size();
+        this.aggregationTypes = druidQuery.getAggregations().stream()
+                .collect(Collectors.toMap(
+                        Aggregation::getName,
+                        aggregation -> aggregation.getType().toLowerCase(Locale.ENGLISH),
+                        (type1, type2) -> type2
+                ));
     }
 
     /**
@@ -78,29 +114,18 @@ public class SqlResultSetProcessor {
      * @return the equivalent json.
      */
     public JsonNode buildDruidResponse() {
-        Map<String, Function<String, Number>> resultTypeMapper = getAggregationTypeMapper(druidQuery);
-
         try (TokenBuffer jsonWriter = new TokenBuffer(objectMapper, true)) {
 
             jsonWriter.writeStartArray();
-            for (String[] row : sqlResults) {
+            double[] values = new double[columns.size()];
+            for (int row = 0; row < rowCount; row++) {
                 jsonWriter.writeStartObject();
 
-                DateTime timestamp;
-                if (AllGranularity.INSTANCE.equals(druidQuery.getGranularity())) {
-                    timestamp = druidQuery.getIntervals().get(0).getStart();
-                } else {
-                    timestamp = sqlTimeConverter.getIntervalStart(
-                            groupByDimensionsCount,
-                            row,
-                            druidQuery
-                    );
-                }
                 // all druid results are returned in UTC timestamps
-                jsonWriter.writeStringField("timestamp", timestamp.toDateTime(DateTimeZone.UTC).toString());
+                jsonWriter.writeStringField("timestamp", getTimestamp(row).toDateTime(DateTimeZone.UTC).toString());
 
                 jsonWriter.writeObjectFieldStart("event");
-                processRow(resultTypeMapper, jsonWriter, row);
+                processRow(jsonWriter, row, values);
                 jsonWriter.writeEndObject();
 
                 jsonWriter.writeEndObject();
@@ -114,47 +139,254 @@ public class SqlResultSetProcessor {
 
     }
 
+    /**
+     * Reads the rows of the sql {@link ResultSet} straight into a result set, building each {@link Result} as its row
+     * is read rather than buffering the rows or writing them out as a Druid response first.
+     * <p>
+     * The results are the same as those parsed from the Druid response built by {@link #buildDruidResponse}: numeric
+     * values are {@link BigDecimal}s, dimension values are looked up in their dimensions, and timestamps are in the
+     * given time zone. This can't be used on a processor which has already processed results.
+     *
+     * @param sqlResultSet  The result set of the druid query.
+     * @param schema  The schema of the results, naming the dimensions and metrics to read from the rows.
+     * @param dateTimeZone  The date time zone of the timestamps of the results.
+     *
+     * @return the results of the query.
+     *
+     * @throws SQLException if results can't be read.
+     * @throws IllegalStateException if results have already been processed.
+     */
+    public com.yahoo.bard.webservice.data.ResultSet buildResultSet(
+            ResultSet sqlResultSet,
+            ResultSetSchema schema,
+            DateTimeZone dateTimeZone
+    ) throws SQLException {
+        if (rowCount != 0) {
+            throw new IllegalStateException("Results of " + druidQuery + " have already been processed");
+        }
+        int resultSetColumnCount = initializeColumns(sqlResultSet.getMetaData());
+
+        LinkedHashSet<DimensionColumn> dimensionColumns = schema.getColumns(DimensionColumn.class);
+        int[] dimensionIndexes = dimensionColumns.stream()
+                .mapToInt(column -> columnToColumnName.inverse().getOrDefault(column.getName(), -1))
+                .toArray();
+        List<MetricColumn> metricColumns = new ArrayList<>(schema.getColumns(MetricColumn.class));
+        List<String> postAggregationNames = druidQuery.getPostAggregations().stream()
+                .map(PostAggregation::getName)
+                .collect(Collectors.toList());
+        // The column each metric is read from, or failing that the post aggregation it is calculated by
+        int[] metricIndexes = new int[metricColumns.size()];
+        int[] metricPostAggregationIndexes = new int[metricColumns.size()];
+        for (int i = 0; i < metricColumns.size(); i++) {
+            String name = metricColumns.get(i).getName();
+            Integer index = columnToColumnName.inverse().get(name);
+            metricIndexes[i] = index == null || isTimeColumn(lastTimeIndex, index) ? -1 : index;
+            metricPostAggregationIndexes[i] = postAggregationNames.indexOf(name);
+            if (metricIndexes[i] < 0 && metricPostAggregationIndexes[i] < 0) {
+                LOG.warn("Found null node for metric column {}", name);
+            }
+        }
+
+        List<Result> results = new ArrayList<>();
+        double[] values = new double[columns.size()];
+        Object[] postAggregationValues = new Object[postAggregationNames.size()];
+        // Each row is read into the first row of the columns, overwriting the row before it
+        while (sqlResultSet.next()) {
+            for (int i = 1; i <= resultSetColumnCount; i++) {
+                columns.get(i - 1).read(sqlResultSet, i, 0);
+            }
+
+            LinkedHashMap<DimensionColumn, DimensionRow> dimensionRows = new LinkedHashMap<>();
+            int dimension = 0;
+            for (DimensionColumn dimensionColumn : dimensionColumns) {
+                int index = dimensionIndexes[dimension++];
+                Object value = index < 0 ? null : columns.get(index).getValue(0);
+                String keyValue = value == null ? "" : value.toString();
+                DimensionRow dimensionRow = dimensionColumn.getDimension().findDimensionRowByKeyValue(keyValue);
+                if (dimensionRow == null) {
+                    dimensionRow = dimensionColumn.getDimension().createEmptyDimensionRow(keyValue);
+                }
+                dimensionRows.put(dimensionColumn, dimensionRow);
+            }
+
+            calculatePostAggregations(0, values, postAggregationValues);
+            LinkedHashMap<MetricColumn, Object> metricValues = new LinkedHashMap<>();
+            for (int i = 0; i < metricIndexes.length; i++) {
+                if (metricIndexes[i] >= 0) {
+                    metricValues.put(metricColumns.get(i), columns.get(metricIndexes[i]).getValue(0));
+                } else if (metricPostAggregationIndexes[i] >= 0) {
+                    metricValues.put(metricColumns.get(i), postAggregationValues[metricPostAggregationIndexes[i]]);
+                }
+            }
+
+            results.add(new Result(dimensionRows, metricValues, getTimestamp(0).toDateTime(dateTimeZone)));
+        }
+        return new com.yahoo.bard.webservice.data.ResultSet(schema, results);
+    }
+
+    /**
+     * Calculates the post aggregations of a row as the numbers the Druid response would have parsed into.
+     * <p>
+     * A post aggregation reading a null value is null itself.
+     *
+     * @param row  The index of the result row.
+     * @param values  Buffer for the numeric values of the row read by the post aggregations, one per column.
+     * @param postAggregationValues  The values of the post aggregations, in the order of the query.
+     */
+    private void calculatePostAggregations(int row, double[] values, Object[] postAggregationValues) {
+        if (postAggregations == null) {
+            compilePostAggregations();
+        }
+        for (int index : postAggregationInputs) {
+            ResultColumn column = columns.get(index);
+            values[index] = column.isNull(row) ? 0 : column.getDouble(row);
+        }
+        for (int i = 0; i < postAggregations.size(); i++) {
+            CompiledPostAggregation postAggregation = postAggregations.get(i);
+            if (readsNull(i, row)) {
+                postAggregationValues[i] = null;
+                continue;
+            }
+            double postAggResult = postAggregation.evaluate(values);
+            postAggregationValues[i] = postAggregation.isFloatingPoint()
+                    ? BigDecimal.valueOf(postAggResult)
+                    : BigDecimal.valueOf((long) postAggResult);
+        }
+    }
+
+    /**
+     * Gets the timestamp of a row, which is the start of the time bucket it was grouped into.
+     *
+     * @param row  The index of the result row.
+     *
+     * @return the timestamp of the row.
+     */
+    private DateTime getTimestamp(int row) {
+        if (AllGranularity.INSTANCE.equals(druidQuery.getGranularity())) {
+            return druidQuery.getIntervals().get(0).getStart();
+        }
+        return sqlTimeConverter.getIntervalStart(i -> columns.get(groupByDimensionsCount + i).getInt(row), druidQuery);
+    }
+
     /**
      * Processes a single row of results from the result set.
      *
-     * @param resultTypeMapper  The mapping from an aggregation to a function which corrects it's type.
+     * @param resultTypeMapper  Ignored, the aggregated values are typed by the aggregations of the query.
      * @param jsonWriter  The generator for writing the json results.
      * @param row  The result row.
      *
      * @throws IOException if failed while writing json.
+     *
+     * @deprecated Results are kept column by column rather than as rows of strings, so use
+     * {@link #processRow(JsonGenerator, int, double[])}
      */
+    @Deprecated
     protected void processRow(
             Map<String, Function<String, Number>> resultTypeMapper,
             JsonGenerator jsonWriter,
             String[] row
     ) throws IOException {
-        int lastTimeIndex = sqlTimeConverter.timeGrainToDatePartFunctions(druidQuery.getGranularity()).size();
-        int columnCount = columnToColumnName.size();
+        // Parse the row into the row after the last one read, which is otherwise unused, and process that
+        for (int i = 0; i < columns.size(); i++) {
+            columns.get(i).parse(row[i], rowCount);
+        }
+        processRow(jsonWriter, rowCount, new double[columns.size()]);
+    }
+
+    /**
+     * Processes a single row of results from the result set.
+     * <p>
+     * A post aggregation reading a null value is written as null itself.
+     *
+     * @param jsonWriter  The generator for writing the json results.
+     * @param row  The index of the result row.
+     * @param values  Buffer for the numeric values of the row read by the post aggregations, one per column.
+     *
+     * @throws IOException if failed while writing json.
+     */
+    protected void processRow(JsonGenerator jsonWriter, int row, double[] values) throws IOException {
+        int columnCount = columns.size();
 
         for (int i = 0; i < columnCount; i++) {
             if (isTimeColumn(lastTimeIndex, i)) {
                 continue;
             }
-            String columnName = columnToColumnName.get(i);
-            if (resultTypeMapper.containsKey(columnName)) {
-                Number result = resultTypeMapper
-                        .get(columnName)
-                        .apply(row[i]);
+            columns.get(i).write(jsonWriter, row);
+        }
 
-                writeNumberField(jsonWriter, columnName, result);
+        if (postAggregations == null) {
+            compilePostAggregations();
+        }
+        for (int index : postAggregationInputs) {
+            ResultColumn column = columns.get(index);
+            values[index] = column.isNull(row) ? 0 : column.getDouble(row);
+        }
+        for (int i = 0; i < postAggregations.size(); i++) {
+            CompiledPostAggregation postAggregation = postAggregations.get(i);
+            if (readsNull(i, row)) {
+                jsonWriter.writeNullField(postAggregation.getName());
+                continue;
+            }
+            double postAggResult = postAggregation.evaluate(values);
+            if (postAggregation.isFloatingPoint()) {
+                jsonWriter.writeNumberField(postAggregation.getName(), postAggResult);
             } else {
-                jsonWriter.writeStringField(columnName, row[i]);
+                jsonWriter.writeNumberField(postAggregation.getName(), (long) postAggResult);
             }
         }
+    }
 
-        PostAggregationEvaluator postAggregationEvaluator = new PostAggregationEvaluator();
+    /**
+     * Compiles the post aggregations of the query against the columns of the results.
+     *
+     * @throws UnsupportedOperationException for post aggregations which couldn't be processed.
+     */
+    private void compilePostAggregations() {
+        postAggregations = new ArrayList<>();
+        postAggregationInputsByPostAggregation = new int[druidQuery.getPostAggregations().size()][];
+        Set<Integer> inputs = new LinkedHashSet<>();
         for (PostAggregation postAggregation : druidQuery.getPostAggregations()) {
-            Number postAggResult = postAggregationEvaluator.calculate(
-                    postAggregation,
-                    (String columnName) -> row[columnToColumnName.inverse().get(columnName)]
-            );
-            writeNumberField(jsonWriter, postAggregation.getName(), postAggResult);
+            CompiledPostAggregation compiled = CompiledPostAggregation.compile(postAggregation, this::getColumnIndex);
+            int[] inputIndexes = compiled.getInputIndexes();
+            Arrays.stream(inputIndexes).forEach(inputs::add);
+            postAggregationInputsByPostAggregation[postAggregations.size()] = inputIndexes;
+            postAggregations.add(compiled);
+        }
+        postAggregationInputs = inputs.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * Checks whether a post aggregation reads a null value in a row.
+     *
+     * @param postAggregation  The index of the post aggregation.
+     * @param row  The index of the row.
+     *
+     * @return true if any of the values the post aggregation reads is null.
+     */
+    private boolean readsNull(int postAggregation, int row) {
+        for (int index : postAggregationInputsByPostAggregation[postAggregation]) {
+            if (columns.get(index).isNull(row)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Gets the index of a column of the results.
+     *
+     * @param columnName  The name of the column.
+     *
+     * @return the index of the column.
+     *
+     * @throws IllegalArgumentException if there is no column with the name.
+     */
+    private int getColumnIndex(String columnName) {
+        Integer index = columnToColumnName.inverse().get(columnName);
+        if (index == null) {
+            throw new IllegalArgumentException("No column " + columnName + " in the results of " + druidQuery);
         }
+        return index;
     }
 
     /**
@@ -178,7 +410,27 @@ public class SqlResultSetProcessor {
      * @throws SQLException if results can't be read.
      */
     public void process(ResultSet sqlResultSet) throws SQLException {
-        ResultSetMetaData resultSetMetaData = sqlResultSet.getMetaData();
+        int resultSetColumnCount = initializeColumns(sqlResultSet.getMetaData());
+
+        while (sqlResultSet.next()) {
+            for (int i = 1; i <= resultSetColumnCount; i++) {
+                columns.get(i - 1).read(sqlResultSet, i, rowCount);
+            }
+            rowCount++;
+        }
+    }
+
+    /**
+     * Builds the columns of the results from the metadata of the first result set read, and checks that the metadata
+     * of any later result sets matches.
+     *
+     * @param resultSetMetaData  The metadata of the result set being read.
+     *
+     * @return the number of columns in the result set.
+     *
+     * @throws SQLException if the metadata can't be read.
+     */
+    private int initializeColumns(ResultSetMetaData resultSetMetaData) throws SQLException {
         int resultSetColumnCount = resultSetMetaData.getColumnCount();
 
         if (resultSetColumnCount != columnToColumnName.size() && columnToColumnName.size() != 0) {
@@ -192,16 +444,33 @@ public class SqlResultSetProcessor {
             for (int i = 1; i <= resultSetColumnCount; i++) {
                 String columnName = apiToFieldMapper.unApply(resultSetMetaData.getColumnName(i));
                 columnToColumnName.put(i - 1, columnName);
+                columns.add(buildColumn(i - 1, columnName));
             }
         }
+        return resultSetColumnCount;
+    }
 
-        while (sqlResultSet.next()) {
-            String[] row = new String[resultSetColumnCount];
-            for (int i = 1; i <= resultSetColumnCount; i++) {
-                row[i - 1] = sqlResultSet.getString(i);
+    /**
+     * Builds the column to keep the values of a column of the results in, in the type they should be read as.
+     *
+     * @param index  The index of the column in the results.
+     * @param columnName  The name of the column.
+     *
+     * @return the column for the values.
+     */
+    private ResultColumn buildColumn(int index, String columnName) {
+        if (isTimeColumn(lastTimeIndex, index)) {
+            return new DatePartColumn(columnName);
+        }
+        if (index >= groupByDimensionsCount) {
+            String aggregationType = aggregationTypes.get(columnName);
+            if (aggregationType != null && aggregationType.contains("long")) {
+                return new LongColumn(columnName);
+            } else if (aggregationType != null && aggregationType.contains("double")) {
+                return new DoubleColumn(columnName);
             }
-            sqlResults.add(row);
         }
+        return new StringColumn(columnName);
     }
 
     /**
@@ -229,7 +498,10 @@ public class SqlResultSetProcessor {
      * @param druidQuery  The query to make a mapper for.
      *
      * @return the map from aggregation name to {@link Double#parseDouble} {@link Long#parseLong}.
+     *
+     * @deprecated Aggregated values are now read from JDBC as longs and doubles rather than parsed from strings
      */
+    @Deprecated
     protected static Map<String, Function<String, Number>> getAggregationTypeMapper(
             DruidAggregationQuery<?> druidQuery
     ) {
@@ -252,4 +524,339 @@ public class SqlResultSetProcessor {
                         )
                 );
     }
+
+    /**
+     * The values of one column of the results, kept in the type they are read as from JDBC.
+     */
+    private abstract static class ResultColumn {
+        protected final String name;
+
+        /**
+         * Constructor.
+         *
+         * @param name  The name of the column.
+         */
+        protected ResultColumn(String name) {
+            this.name = name;
+        }
+
+        /**
+         * Reads the value of the column in the current row of a result set.
+         *
+         * @param resultSet  The result set to read from.
+         * @param jdbcIndex  The JDBC index of the column, starting from 1.
+         * @param row  The index of the row being read.
+         *
+         * @throws SQLException if the value can't be read.
+         */
+        abstract void read(ResultSet resultSet, int jdbcIndex, int row) throws SQLException;
+
+        /**
+         * Parses the value of the column in a row from a string.
+         *
+         * @param value  The value as a string, or null.
+         * @param row  The index of the row being parsed.
+         */
+        abstract void parse(String value, int row);
+
+        /**
+         * Checks whether the value of the column in a row is null.
+         *
+         * @param row  The index of the row.
+         *
+         * @return true if the value is null.
+         */
+        abstract boolean isNull(int row);
+
+        /**
+         * Writes the value of the column in a row as a json field.
+         *
+         * @param jsonWriter  The generator for writing the json results.
+         * @param row  The index of the row.
+         *
+         * @throws IOException if failed while writing json.
+         */
+        abstract void write(JsonGenerator jsonWriter, int row) throws IOException;
+
+        /**
+         * Gets the value of the column in a row as a double, for evaluating post aggregations.
+         *
+         * @param row  The index of the row.
+         *
+         * @return the value as a double.
+         */
+        abstract double getDouble(int row);
+
+        /**
+         * Gets the value of the column in a row as it would be parsed from a Druid response.
+         *
+         * @param row  The index of the row.
+         *
+         * @return the value, as a {@link BigDecimal} if it's numeric.
+         */
+        abstract Object getValue(int row);
+
+        /**
+         * Gets the value of the column in a row as an int.
+         *
+         * @param row  The index of the row.
+         *
+         * @return the value as an int.
+         */
+        int getInt(int row) {
+            return (int) getDouble(row);
+        }
+
+        /**
+         * Gets the capacity needed to hold a row, growing the capacity geometrically.
+         *
+         * @param capacity  The current capacity.
+         * @param row  The index of the row to hold.
+         *
+         * @return the capacity needed, which is the current capacity if the row already fits.
+         */
+        static int capacityFor(int capacity, int row) {
+            return row < capacity ? capacity : Math.max(INITIAL_CAPACITY, capacity * 2);
+        }
+    }
+
+    /**
+     * A column of long values, such as the results of long aggregations.
+     */
+    private static final class LongColumn extends ResultColumn {
+        private long[] values = new long[0];
+        private final BitSet nulls = new BitSet();
+
+        /**
+         * Constructor.
+         *
+         * @param name  The name of the column.
+         */
+        private LongColumn(String name) {
+            super(name);
+        }
+
+        @Override
+        void read(ResultSet resultSet, int jdbcIndex, int row) throws SQLException {
+            int capacity = capacityFor(values.length, row);
+            if (capacity != values.length) {
+                values = Arrays.copyOf(values, capacity);
+            }
+            values[row] = resultSet.getLong(jdbcIndex);
+            nulls.set(row, resultSet.wasNull());
+        }
+
+        @Override
+        void parse(String value, int row) {
+            int capacity = capacityFor(values.length, row);
+            if (capacity != values.length) {
+                values = Arrays.copyOf(values, capacity);
+            }
+            values[row] = value == null ? 0 : Long.parseLong(value);
+            nulls.set(row, value == null);
+        }
+
+        @Override
+        boolean isNull(int row) {
+            return nulls.get(row);
+        }
+
+        @Override
+        void write(JsonGenerator jsonWriter, int row) throws IOException {
+            if (nulls.get(row)) {
+                jsonWriter.writeNullField(name);
+            } else {
+                jsonWriter.writeNumberField(name, values[row]);
+            }
+        }
+
+        @Override
+        double getDouble(int row) {
+            return values[row];
+        }
+
+        @Override
+        Object getValue(int row) {
+            return nulls.get(row) ? null : BigDecimal.valueOf(values[row]);
+        }
+    }
+
+    /**
+     * A column of double values, such as the results of double aggregations.
+     */
+    private static final class DoubleColumn extends ResultColumn {
+        private double[] values = new double[0];
+        private final BitSet nulls = new BitSet();
+
+        /**
+         * Constructor.
+         *
+         * @param name  The name of the column.
+         */
+        private DoubleColumn(String name) {
+            super(name);
+        }
+
+        @Override
+        void read(ResultSet resultSet, int jdbcIndex, int row) throws SQLException {
+            int capacity = capacityFor(values.length, row);
+            if (capacity != values.length) {
+                values = Arrays.copyOf(values, capacity);
+            }
+            values[row] = resultSet.getDouble(jdbcIndex);
+            nulls.set(row, resultSet.wasNull());
+        }
+
+        @Override
+        void parse(String value, int row) {
+            int capacity = capacityFor(values.length, row);
+            if (capacity != values.length) {
+                values = Arrays.copyOf(values, capacity);
+            }
+            values[row] = value == null ? 0 : Double.parseDouble(value);
+            nulls.set(row, value == null);
+        }
+
+        @Override
+        boolean isNull(int row) {
+            return nulls.get(row);
+        }
+
+        @Override
+        void write(JsonGenerator jsonWriter, int row) throws IOException {
+            if (nulls.get(row)) {
+                jsonWriter.writeNullField(name);
+            } else {
+                jsonWriter.writeNumberField(name, values[row]);
+            }
+        }
+
+        @Override
+        double getDouble(int row) {
+            return values[row];
+        }
+
+        @Override
+        Object getValue(int row) {
+            return nulls.get(row) ? null : BigDecimal.valueOf(values[row]);
+        }
+    }
+
+    /**
+     * A column of the values of one part of the time grouped on, which isn't written to the results itself.
+     */
+    private static final class DatePartColumn extends ResultColumn {
+        private int[] values = new int[0];
+
+        /**
+         * Constructor.
+         *
+         * @param name  The name of the column.
+         */
+        private DatePartColumn(String name) {
+            super(name);
+        }
+
+        @Override
+        void read(ResultSet resultSet, int jdbcIndex, int row) throws SQLException {
+            int capacity = capacityFor(values.length, row);
+            if (capacity != values.length) {
+                values = Arrays.copyOf(values, capacity);
+            }
+            values[row] = resultSet.getInt(jdbcIndex);
+        }
+
+        @Override
+        void parse(String value, int row) {
+            int capacity = capacityFor(values.length, row);
+            if (capacity != values.length) {
+                values = Arrays.copyOf(values, capacity);
+            }
+            values[row] = Integer.parseInt(value);
+        }
+
+        @Override
+        boolean isNull(int row) {
+            return false;
+        }
+
+        @Override
+        void write(JsonGenerator jsonWriter, int row) throws IOException {
+            jsonWriter.writeNumberField(name, values[row]);
+        }
+
+        @Override
+        double getDouble(int row) {
+            return values[row];
+        }
+
+        @Override
+        Object getValue(int row) {
+            return BigDecimal.valueOf(values[row]);
+        }
+
+        @Override
+        int getInt(int row) {
+            return values[row];
+        }
+    }
+
+    /**
+     * A column of string values, such as dimension values.
+     */
+    private static final class StringColumn extends ResultColumn {
+        private String[] values = new String[0];
+
+        /**
+         * Constructor.
+         *
+         * @param name  The name of the column.
+         */
+        private StringColumn(String name) {
+            super(name);
+        }
+
+        @Override
+        void read(ResultSet resultSet, int jdbcIndex, int row) throws SQLException {
+            int capacity = capacityFor(values.length, row);
+            if (capacity != values.length) {
+                values = Arrays.copyOf(values, capacity);
+            }
+            values[row] = resultSet.getString(jdbcIndex);
+        }
+
+        @Override
+        void parse(String value, int row) {
+            int capacity = capacityFor(values.length, row);
+            if (capacity != values.length) {
+                values = Arrays.copyOf(values, capacity);
+            }
+            values[row] = value;
+        }
+
+        @Override
+        boolean isNull(int row) {
+            return values[row] == null;
+        }
+
+        @Override
+        void write(JsonGenerator jsonWriter, int row) throws IOException {
+            jsonWriter.writeStringField(name, values[row]);
+        }
+
+        @Override
+        double getDouble(int row) {
+            return Double.valueOf(values[row]);
+        }
+
+        @Override
+        Object getValue(int row) {
+            return values[row];
+        }
+
+        @Override
+        int getInt(int row) {
+            return Integer.parseInt(values[row]);
+        }
+    }
 }
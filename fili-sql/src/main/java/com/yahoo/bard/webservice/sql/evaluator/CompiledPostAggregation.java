@@ -0,0 +1,311 @@
+// Copyright 2017 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.sql.evaluator;
+
+import com.yahoo.bard.webservice.druid.model.postaggregation.ArithmeticPostAggregation;
+import com.yahoo.bard.webservice.druid.model.postaggregation.ConstantPostAggregation;
+import com.yahoo.bard.webservice.druid.model.postaggregation.FieldAccessorPostAggregation;
+import com.yahoo.bard.webservice.druid.model.postaggregation.PostAggregation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.ToIntFunction;
+
+/**
+ * A post aggregation compiled into a flat postfix program, which is evaluated over the numeric values of a result row
+ * without walking the post aggregation tree or looking up fields by name.
+ * <p>
+ * Supports the same post aggregations as {@link PostAggregationEvaluator}, with the same results. A compiled post
+ * aggregation keeps its evaluation stack between calls, so it must only be used by one thread at a time.
+ */
+public class CompiledPostAggregation {
+
+    private static final int LOAD = 0;
+    private static final int CONSTANT = 1;
+    private static final int PLUS = 2;
+    private static final int MINUS = 3;
+    private static final int MULTIPLY = 4;
+    private static final int DIVIDE = 5;
+
+    private final String name;
+    private final boolean floatingPoint;
+    private final int[] operations;
+    // The value index of loads, the constant index of constants, and the number of operands of arithmetic operations
+    private final int[] operands;
+    private final double[] constants;
+    private final int[] inputIndexes;
+    private final double[] stack;
+
+    /**
+     * Constructor.
+     *
+     * @param postAggregation  The post aggregation which was compiled
+     * @param compiler  The compiler which compiled the post aggregation
+     */
+    private CompiledPostAggregation(PostAggregation postAggregation, Compiler compiler) {
+        this.name = postAggregation.getName();
+        this.floatingPoint = postAggregation.isFloatingPoint();
+        this.operations = compiler.operations.stream().mapToInt(Integer::intValue).toArray();
+        this.operands = compiler.operands.stream().mapToInt(Integer::intValue).toArray();
+        this.constants = compiler.constants.stream().mapToDouble(Double::doubleValue).toArray();
+        this.inputIndexes = compiler.inputIndexes.stream().mapToInt(Integer::intValue).toArray();
+        this.stack = new double[compiler.maxDepth];
+    }
+
+    /**
+     * Compile a post aggregation.
+     *
+     * @param postAggregation  The post aggregation to compile
+     * @param fieldIndex  Gives the index in the row values of the value of each field the post aggregation accesses
+     *
+     * @return the compiled post aggregation
+     *
+     * @throws UnsupportedOperationException for post aggregations which can't be evaluated
+     */
+    public static CompiledPostAggregation compile(PostAggregation postAggregation, ToIntFunction<String> fieldIndex) {
+        Compiler compiler = new Compiler(fieldIndex);
+        compiler.compile(postAggregation);
+        return new CompiledPostAggregation(postAggregation, compiler);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public boolean isFloatingPoint() {
+        return floatingPoint;
+    }
+
+    /**
+     * Get the indexes of the row values this post aggregation reads.
+     *
+     * @return the indexes of the values read, in the order they are first read
+     */
+    public int[] getInputIndexes() {
+        return Arrays.copyOf(inputIndexes, inputIndexes.length);
+    }
+
+    /**
+     * Calculates the value of the post aggregation, as a {@link Double} if it's floating point and a {@link Long}
+     * otherwise.
+     *
+     * @param values  The numeric values of the row, by the indexes given when compiling
+     *
+     * @return the number calculated from the post aggregation
+     */
+    public Number calculate(double[] values) {
+        double value = evaluate(values);
+        return floatingPoint ? (Number) value : (Number) (long) value;
+    }
+
+    /**
+     * Evaluate the post aggregation as a double.
+     *
+     * @param values  The numeric values of the row, by the indexes given when compiling
+     *
+     * @return the value of the post aggregation
+     */
+    public double evaluate(double[] values) {
+        int top = -1;
+        for (int i = 0; i < operations.length; i++) {
+            switch (operations[i]) {
+                case LOAD:
+                    stack[++top] = values[operands[i]];
+                    break;
+                case CONSTANT:
+                    stack[++top] = constants[operands[i]];
+                    break;
+                case PLUS:
+                    top = plus(top, operands[i]);
+                    break;
+                case MINUS:
+                    top = minus(top, operands[i]);
+                    break;
+                case MULTIPLY:
+                    top = multiply(top, operands[i]);
+                    break;
+                case DIVIDE:
+                    top = divide(top, operands[i]);
+                    break;
+                default:
+                    throw new IllegalStateException("Unknown operation " + operations[i]);
+            }
+        }
+        return stack[top];
+    }
+
+    /**
+     * Replace the operands on top of the stack with their sum.
+     *
+     * @param top  The top of the stack
+     * @param count  The number of operands
+     *
+     * @return the new top of the stack
+     */
+    private int plus(int top, int count) {
+        double sum = 0D;
+        for (int i = top - count + 1; i <= top; i++) {
+            sum += stack[i];
+        }
+        top -= count;
+        stack[++top] = sum;
+        return top;
+    }
+
+    /**
+     * Replace the operands on top of the stack with their product.
+     *
+     * @param top  The top of the stack
+     * @param count  The number of operands
+     *
+     * @return the new top of the stack
+     */
+    private int multiply(int top, int count) {
+        double product = 1D;
+        for (int i = top - count + 1; i <= top; i++) {
+            product *= stack[i];
+        }
+        top -= count;
+        stack[++top] = product;
+        return top;
+    }
+
+    /**
+     * Replace the operands on top of the stack with the first less the others.
+     *
+     * @param top  The top of the stack
+     * @param count  The number of operands, at least one
+     *
+     * @return the new top of the stack
+     */
+    private int minus(int top, int count) {
+        int first = top - count + 1;
+        double difference = stack[first];
+        for (int i = first + 1; i <= top; i++) {
+            difference -= stack[i];
+        }
+        stack[first] = difference;
+        return first;
+    }
+
+    /**
+     * Replace the operands on top of the stack with the first divided by the others, or zero if any of the others is
+     * zero, as Druid does.
+     *
+     * @param top  The top of the stack
+     * @param count  The number of operands, at least one
+     *
+     * @return the new top of the stack
+     */
+    private int divide(int top, int count) {
+        int first = top - count + 1;
+        double quotient = stack[first];
+        for (int i = first + 1; i <= top; i++) {
+            // if divisor is zero then result is zero
+            // from druid docs http://druid.io/docs/latest/querying/post-aggregations.html
+            if (stack[i] == 0.0D) {
+                quotient = 0.0D;
+                break;
+            }
+            quotient /= stack[i];
+        }
+        stack[first] = quotient;
+        return first;
+    }
+
+    /**
+     * Builds the program of a post aggregation, tracking how deep the evaluation stack gets.
+     */
+    private static final class Compiler {
+        private final ToIntFunction<String> fieldIndex;
+        private final List<Integer> operations = new ArrayList<>();
+        private final List<Integer> operands = new ArrayList<>();
+        private final List<Double> constants = new ArrayList<>();
+        private final Set<Integer> inputIndexes = new LinkedHashSet<>();
+        private int depth = 0;
+        private int maxDepth = 0;
+
+        /**
+         * Constructor.
+         *
+         * @param fieldIndex  Gives the index in the row values of the value of each field
+         */
+        private Compiler(ToIntFunction<String> fieldIndex) {
+            this.fieldIndex = fieldIndex;
+        }
+
+        /**
+         * Add the program of a post aggregation, which leaves its value on top of the stack.
+         *
+         * @param postAggregation  The post aggregation to compile
+         *
+         * @throws UnsupportedOperationException for post aggregations which can't be evaluated
+         */
+        private void compile(PostAggregation postAggregation) {
+            if (postAggregation instanceof FieldAccessorPostAggregation) {
+                int index = fieldIndex.applyAsInt(((FieldAccessorPostAggregation) postAggregation).getFieldName());
+                inputIndexes.add(index);
+                emit(LOAD, index, 1);
+            } else if (postAggregation instanceof ConstantPostAggregation) {
+                constants.add(((ConstantPostAggregation) postAggregation).getValue());
+                emit(CONSTANT, constants.size() - 1, 1);
+            } else if (postAggregation instanceof ArithmeticPostAggregation) {
+                compileArithmetic((ArithmeticPostAggregation) postAggregation);
+            } else {
+                throw new UnsupportedOperationException("can't process " + postAggregation);
+            }
+        }
+
+        /**
+         * Add the program of an arithmetic post aggregation: the programs of its fields, followed by its operation.
+         *
+         * @param arithmeticPostAggregation  The post aggregation to compile
+         *
+         * @throws UnsupportedOperationException for post aggregations which can't be evaluated
+         */
+        private void compileArithmetic(ArithmeticPostAggregation arithmeticPostAggregation) {
+            List<PostAggregation> fields = arithmeticPostAggregation.getFields();
+            int operation;
+            switch (arithmeticPostAggregation.getFn()) {
+                case PLUS:
+                    operation = PLUS;
+                    break;
+                case MULTIPLY:
+                    operation = MULTIPLY;
+                    break;
+                case MINUS:
+                    operation = MINUS;
+                    break;
+                case DIVIDE:
+                    operation = DIVIDE;
+                    break;
+                default:
+                    operation = -1;
+            }
+            if (operation < 0 || (fields.isEmpty() && (operation == MINUS || operation == DIVIDE))) {
+                throw new UnsupportedOperationException("Can't do post aggregation " + arithmeticPostAggregation);
+            }
+
+            fields.forEach(this::compile);
+            // The operation replaces its operands with its result
+            emit(operation, fields.size(), 1 - fields.size());
+        }
+
+        /**
+         * Add an operation to the program.
+         *
+         * @param operation  The operation
+         * @param operand  The operand of the operation
+         * @param depthChange  How much the operation changes the depth of the stack
+         */
+        private void emit(int operation, int operand, int depthChange) {
+            operations.add(operation);
+            operands.add(operand);
+            depth += depthChange;
+            maxDepth = Math.max(maxDepth, depth);
+        }
+    }
+}
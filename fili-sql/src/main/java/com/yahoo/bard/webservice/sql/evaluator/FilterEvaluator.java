@@ -21,6 +21,7 @@ import org.apache.calcite.tools.RelBuilder;
 import org.apache.calcite.util.ReflectUtil;
 import org.apache.calcite.util.ReflectiveVisitor;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
 import java.util.stream.Collectors;
@@ -70,6 +71,49 @@ public class FilterEvaluator implements ReflectiveVisitor {
         return dispatcher.invoke(filter, builder, apiToFieldMapper);
     }
 
+    /**
+     * Gets the string literals the sql equivalent of a filter compares its dimensions against, in the order
+     * {@link #evaluateFilter(Filter, RelBuilder, ApiToFieldMapper)} builds them.
+     *
+     * @param filter  The filter to get the literals of, or null for none.
+     *
+     * @return the literals of the filter.
+     *
+     * @throws UnsupportedOperationException for filters which couldn't be evaluated.
+     */
+    public List<String> getLiterals(Filter filter) {
+        List<String> literals = new ArrayList<>();
+        if (filter != null) {
+            addLiterals(filter, literals);
+        }
+        return literals;
+    }
+
+    /**
+     * Adds the string literals of a filter, and then those of the filters inside it.
+     *
+     * @param filter  The filter to add the literals of.
+     * @param literals  The literals found so far.
+     *
+     * @throws UnsupportedOperationException for filters which couldn't be evaluated.
+     */
+    private void addLiterals(Filter filter, List<String> literals) {
+        if (filter instanceof RegularExpressionFilter) {
+            literals.add(((RegularExpressionFilter) filter).getPattern().toString());
+        } else if (filter instanceof SelectorFilter) {
+            literals.add(((SelectorFilter) filter).getValue());
+        } else if (filter instanceof SearchFilter) {
+            SearchFilter searchFilter = (SearchFilter) filter;
+            literals.add(getSearchPattern(getSearchQueryType(searchFilter), searchFilter.getQueryValue()));
+        } else if (filter instanceof InFilter) {
+            literals.addAll(((InFilter) filter).getValues());
+        } else if (filter instanceof AndFilter || filter instanceof OrFilter || filter instanceof NotFilter) {
+            ((ComplexFilter) filter).getFields().forEach(field -> addLiterals(field, literals));
+        } else {
+            throw new UnsupportedOperationException("Can't Process " + filter);
+        }
+    }
+
     /**
      * Top level evaluate call meant to capture {@link Filter} which could not be mapped
      * to a specific "evaluate" method.
@@ -137,35 +181,56 @@ public class FilterEvaluator implements ReflectiveVisitor {
      * @return a RexNode containing an equivalent filter to the one given.
      */
     public RexNode evaluate(SearchFilter searchFilter, RelBuilder builder, ApiToFieldMapper apiToFieldMapper) {
-        String searchType = searchFilter.getQueryType();
-        SearchFilter.QueryType optionalQuery = SearchFilter.QueryType.fromType(searchType)
-                .orElseThrow(() -> new IllegalArgumentException("Couldn't convert " + searchType + " to a QueryType."));
+        SearchFilter.QueryType queryType = getSearchQueryType(searchFilter);
+        String pattern = getSearchPattern(queryType, searchFilter.getQueryValue());
 
         String columnName = searchFilter.getDimension().getApiName();
-        String valueToFind = searchFilter.getQueryValue();
+        RexNode field = builder.field(apiToFieldMapper.apply(columnName));
+        if (queryType == SearchFilter.QueryType.InsensitiveContains) {
+            // todo maybe look at SqlCollation
+            field = builder.call(SqlStdOperatorTable.LOWER, field);
+        }
+
+        return builder.call(
+                SqlStdOperatorTable.LIKE,
+                field,
+                builder.literal(pattern)
+        );
+    }
+
+    /**
+     * Gets the query type of a SearchFilter.
+     *
+     * @param searchFilter  The searchFilter to get the query type of.
+     *
+     * @return the query type.
+     */
+    private static SearchFilter.QueryType getSearchQueryType(SearchFilter searchFilter) {
+        String searchType = searchFilter.getQueryType();
+        return SearchFilter.QueryType.fromType(searchType)
+                .orElseThrow(() -> new IllegalArgumentException("Couldn't convert " + searchType + " to a QueryType."));
+    }
 
-        switch (optionalQuery) {
+    /**
+     * Builds the pattern a SearchFilter matches its dimension against with LIKE. Currently doesn't support Fragment
+     * mode.
+     *
+     * @param queryType  The query type of the searchFilter.
+     * @param valueToFind  The value the searchFilter searches for.
+     *
+     * @return the pattern to match.
+     */
+    private static String getSearchPattern(SearchFilter.QueryType queryType, String valueToFind) {
+        switch (queryType) {
             case Contains:
-                return builder.call(
-                        SqlStdOperatorTable.LIKE,
-                        builder.field(apiToFieldMapper.apply(columnName)),
-                        builder.literal("%" + valueToFind + "%")
-                );
+                return "%" + valueToFind + "%";
             case InsensitiveContains:
-                // todo maybe look at SqlCollation
-                return builder.call(
-                        SqlStdOperatorTable.LIKE,
-                        builder.call(
-                                SqlStdOperatorTable.LOWER,
-                                builder.field(apiToFieldMapper.apply(columnName))
-                        ),
-                        builder.literal("%" + valueToFind.toLowerCase(Locale.ENGLISH) + "%")
-                );
+                return "%" + valueToFind.toLowerCase(Locale.ENGLISH) + "%";
             case Fragment:
                 // todo: fragment takes json array of strings and checks if any are contained? just OR search over them?
                 // http://druid.io/docs/0.9.1.1/querying/filters.html
             default:
-                throw new UnsupportedOperationException(optionalQuery + " not implemented.");
+                throw new UnsupportedOperationException(queryType + " not implemented.");
         }
     }
 
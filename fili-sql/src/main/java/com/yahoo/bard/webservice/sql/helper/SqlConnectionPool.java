@@ -0,0 +1,281 @@
+// Copyright 2017 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.sql.helper;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+
+import javax.sql.DataSource;
+
+/**
+ * A pool of connections to one database, which bounds how many connections are in use at once and keeps the prepared
+ * statements of each connection for reuse.
+ * <p>
+ * Connections are opened from the data source as they are needed, and kept open once they are released, so that
+ * later queries reuse them and the statements prepared on them. A connection which failed while in use should be
+ * discarded rather than released, since there is no telling what state it was left in.
+ */
+public class SqlConnectionPool implements AutoCloseable {
+    private static final Logger LOG = LoggerFactory.getLogger(SqlConnectionPool.class);
+
+    private final DataSource dataSource;
+    private final int maxConnections;
+    private final int statementCacheSize;
+    private final Semaphore permits;
+
+    // Connections which are open and not in use. Guarded by this.
+    private final Deque<PooledConnection> idle = new ArrayDeque<>();
+    private boolean closed = false;
+
+    /**
+     * Constructor.
+     *
+     * @param dataSource  The data source to open connections from
+     * @param maxConnections  Most connections in use at once
+     * @param statementCacheSize  Most prepared statements kept for reuse on each connection, none if not positive
+     */
+    public SqlConnectionPool(DataSource dataSource, int maxConnections, int statementCacheSize) {
+        if (maxConnections < 1) {
+            throw new IllegalArgumentException("A connection pool needs at least one connection");
+        }
+        this.dataSource = dataSource;
+        this.maxConnections = maxConnections;
+        this.statementCacheSize = Math.max(statementCacheSize, 0);
+        this.permits = new Semaphore(maxConnections, true);
+    }
+
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+
+    /**
+     * Get the number of connections currently in use.
+     *
+     * @return the number of connections in use
+     */
+    public int getActiveCount() {
+        return maxConnections - permits.availablePermits();
+    }
+
+    /**
+     * Get the number of connections which are open and not in use.
+     *
+     * @return the number of idle connections
+     */
+    public synchronized int getIdleCount() {
+        return idle.size();
+    }
+
+    /**
+     * Take a connection from the pool, waiting until there is one if they are all in use.
+     *
+     * @return the connection, which must be released or discarded once it is done with
+     *
+     * @throws SQLException if a new connection can't be opened
+     * @throws InterruptedException if interrupted while waiting for a connection
+     * @throws IllegalStateException if the pool has been closed
+     */
+    public PooledConnection acquire() throws SQLException, InterruptedException {
+        permits.acquire();
+        try {
+            PooledConnection pooled;
+            while ((pooled = pollIdle()) != null) {
+                if (!pooled.connection.isClosed()) {
+                    pooled.inUse = true;
+                    return pooled;
+                }
+                pooled.closeQuietly();
+            }
+            return new PooledConnection(dataSource.getConnection());
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Take the most recently released idle connection, if there is one.
+     *
+     * @return the idle connection, or null if there are none
+     *
+     * @throws IllegalStateException if the pool has been closed
+     */
+    private synchronized PooledConnection pollIdle() {
+        if (closed) {
+            throw new IllegalStateException("Connection pool is closed");
+        }
+        return idle.pollFirst();
+    }
+
+    /**
+     * Return a connection to the pool for reuse, or close it if the pool has been closed.
+     *
+     * @param pooled  The connection to return
+     */
+    private void release(PooledConnection pooled) {
+        boolean reused;
+        synchronized (this) {
+            reused = !closed;
+            if (reused) {
+                idle.addFirst(pooled);
+            }
+        }
+        if (!reused) {
+            pooled.closeQuietly();
+        }
+        permits.release();
+    }
+
+    /**
+     * Close the connections which are not in use, and close every other connection once it is released.
+     */
+    @Override
+    public void close() {
+        Deque<PooledConnection> toClose;
+        synchronized (this) {
+            closed = true;
+            toClose = new ArrayDeque<>(idle);
+            idle.clear();
+        }
+        toClose.forEach(PooledConnection::closeQuietly);
+    }
+
+    /**
+     * A connection taken from the pool, along with the statements prepared on it.
+     * <p>
+     * A pooled connection must only be used by the thread which acquired it, until it is released or discarded.
+     */
+    public final class PooledConnection implements AutoCloseable {
+        private final Connection connection;
+        private final Map<String, PreparedStatement> statements;
+        // Volatile since a connection may be discarded by another thread, such as when its query times out
+        private volatile boolean inUse = true;
+
+        /**
+         * Constructor.
+         *
+         * @param connection  The connection to the database
+         */
+        private PooledConnection(Connection connection) {
+            this.connection = connection;
+            this.statements = new LinkedHashMap<String, PreparedStatement>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+                    // Keeps at least the statement in use, which is closed on release when nothing is cached
+                    if (size() <= Math.max(statementCacheSize, 1)) {
+                        return false;
+                    }
+                    closeQuietly(eldest.getValue());
+                    return true;
+                }
+            };
+        }
+
+        public Connection getConnection() {
+            return connection;
+        }
+
+        /**
+         * Get a prepared statement for some sql, reusing the statement last prepared for the same sql on this
+         * connection if there is one.
+         *
+         * @param sql  The sql to prepare
+         *
+         * @return the prepared statement, which is closed by the pool rather than by the caller
+         *
+         * @throws SQLException if the statement can't be prepared
+         */
+        public PreparedStatement prepareStatement(String sql) throws SQLException {
+            PreparedStatement statement = statements.get(sql);
+            if (statement == null || statement.isClosed()) {
+                statement = connection.prepareStatement(sql);
+                statements.put(sql, statement);
+            } else {
+                statement.clearParameters();
+            }
+            return statement;
+        }
+
+        /**
+         * Return this connection to the pool for reuse.
+         */
+        @Override
+        public void close() {
+            if (endUse()) {
+                if (statementCacheSize == 0) {
+                    closeStatements();
+                }
+                release(this);
+            }
+        }
+
+        /**
+         * Close this connection rather than returning it to the pool, freeing its place in the pool.
+         */
+        public void discard() {
+            if (endUse()) {
+                closeQuietly();
+                permits.release();
+            }
+        }
+
+        /**
+         * Mark this connection as no longer in use, so that only the first of closing and discarding it frees its
+         * place in the pool.
+         *
+         * @return true if the connection was in use
+         */
+        private synchronized boolean endUse() {
+            if (!inUse) {
+                return false;
+            }
+            inUse = false;
+            return true;
+        }
+
+        /**
+         * Close the statements prepared on this connection, and the connection itself, logging any failures.
+         */
+        private void closeQuietly() {
+            closeStatements();
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                LOG.warn("Failed to close connection", e);
+            }
+        }
+
+        /**
+         * Close the statements prepared on this connection, logging any failures.
+         */
+        private void closeStatements() {
+            for (Iterator<PreparedStatement> iterator = statements.values().iterator(); iterator.hasNext(); ) {
+                closeQuietly(iterator.next());
+                iterator.remove();
+            }
+        }
+
+        /**
+         * Close a statement, logging any failure.
+         *
+         * @param statement  The statement to close
+         */
+        private void closeQuietly(PreparedStatement statement) {
+            try {
+                statement.close();
+            } catch (SQLException e) {
+                LOG.warn("Failed to close statement", e);
+            }
+        }
+    }
+}
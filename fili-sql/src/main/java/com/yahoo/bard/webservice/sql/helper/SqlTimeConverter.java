@@ -23,13 +23,16 @@ import org.apache.calcite.sql.fun.SqlStdOperatorTable;
 import org.apache.calcite.tools.RelBuilder;
 import org.joda.time.DateTime;
 import org.joda.time.DateTimeZone;
+import org.joda.time.Interval;
 import org.joda.time.MutableDateTime;
 
 import java.sql.Timestamp;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.IntUnaryOperator;
 import java.util.stream.Collectors;
 
 /**
@@ -109,32 +112,50 @@ public class SqlTimeConverter {
             String timestampColumn
     ) {
         // create filters to only select results within the given intervals
-        List<RexNode> timeFilters = druidQuery.getIntervals().stream()
-                .map(interval -> {
-
-                    DateTimeZone timeZone = getTimeZone(druidQuery);
-
-                    Timestamp start = TimestampUtils.timestampFromDateTime(interval.getStart().toDateTime(timeZone));
-                    Timestamp end = TimestampUtils.timestampFromDateTime(interval.getEnd().toDateTime(timeZone));
-
-                    return builder.and(
+        List<Timestamp> bounds = getTimeFilterBounds(druidQuery);
+        List<RexNode> timeFilters = new ArrayList<>(bounds.size() / 2);
+        for (int i = 0; i < bounds.size(); i += 2) {
+            timeFilters.add(
+                    builder.and(
                             builder.call(
                                     SqlStdOperatorTable.GREATER_THAN,
                                     builder.field(timestampColumn),
-                                    builder.literal(start.toString())
+                                    builder.literal(TimestampUtils.toUtcString(bounds.get(i)))
                             ),
                             builder.call(
                                     SqlStdOperatorTable.LESS_THAN,
                                     builder.field(timestampColumn),
-                                    builder.literal(end.toString())
+                                    builder.literal(TimestampUtils.toUtcString(bounds.get(i + 1)))
                             )
-                    );
-                })
-                .collect(Collectors.toList());
+                    )
+            );
+        }
 
         return builder.or(timeFilters);
     }
 
+    /**
+     * Gets the bounds the time filters of a query compare the timestamp column against: the start and then the end of
+     * each of its intervals, in the time zone of the query.
+     * <p>
+     * Each bound is the wall clock time in the time zone of the query read as UTC, as
+     * {@link TimestampUtils#utcTimestampFromDateTime(DateTime)} creates it, so it doesn't depend on the default time
+     * zone of the JVM.
+     *
+     * @param druidQuery  The druid query to get the time filter bounds of.
+     *
+     * @return the bounds, in the order {@link #buildTimeFilters(RelBuilder, DruidAggregationQuery, String)} uses them.
+     */
+    public List<Timestamp> getTimeFilterBounds(DruidAggregationQuery<?> druidQuery) {
+        DateTimeZone timeZone = getTimeZone(druidQuery);
+        List<Timestamp> bounds = new ArrayList<>(druidQuery.getIntervals().size() * 2);
+        for (Interval interval : druidQuery.getIntervals()) {
+            bounds.add(TimestampUtils.utcTimestampFromDateTime(interval.getStart().toDateTime(timeZone)));
+            bounds.add(TimestampUtils.utcTimestampFromDateTime(interval.getEnd().toDateTime(timeZone)));
+        }
+        return bounds;
+    }
+
     /**
      * Builds a list of {@link RexNode} which will effectively groupBy the given {@link Granularity}.
      *
@@ -169,6 +190,21 @@ public class SqlTimeConverter {
      * @return the datetime for the start of the interval.
      */
     public DateTime getIntervalStart(int offset, String[] recordValues, DruidAggregationQuery<?> druidQuery) {
+        return getIntervalStart(i -> Integer.parseInt(recordValues[offset + i]), druidQuery);
+    }
+
+    /**
+     * Given the values of the date parts of a row of a {@link java.sql.ResultSet} and the {@link Granularity} used to
+     * make groupBy statements on time, it will build the {@link DateTime} for the row which represents the beginning
+     * of the interval it was grouped on.
+     *
+     * @param datePartValues  Gives the value of each date part grouped on, by its position among the date parts.
+     * @param druidQuery  The original druid query which was made using calling
+     * {@link #buildGroupBy(RelBuilder, Granularity, String)}.
+     *
+     * @return the datetime for the start of the interval.
+     */
+    public DateTime getIntervalStart(IntUnaryOperator datePartValues, DruidAggregationQuery<?> druidQuery) {
         List<SqlDatePartFunction> times = timeGrainToDatePartFunctions(druidQuery.getGranularity());
 
         DateTimeZone timeZone = getTimeZone(druidQuery);
@@ -180,7 +216,7 @@ public class SqlTimeConverter {
         MutableDateTime mutableDateTime = new MutableDateTime(0, 1, 1, 0, 0, 0, 0, timeZone);
 
         for (int i = 0; i < times.size(); i++) {
-            int value = Integer.parseInt(recordValues[offset + i]);
+            int value = datePartValues.applyAsInt(i);
             SqlDatePartFunction fn = times.get(i);
             setDateTime(value, fn, mutableDateTime);
         }
@@ -3,6 +3,10 @@
 package com.yahoo.bard.webservice.sql.helper;
 
 import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.joda.time.LocalDateTime;
+import org.joda.time.format.DateTimeFormat;
+import org.joda.time.format.DateTimeFormatter;
 
 import java.sql.Timestamp;
 
@@ -10,6 +14,9 @@ import java.sql.Timestamp;
  * Utility function for creating timestamps.
  */
 public class TimestampUtils {
+    private static final DateTimeFormatter UTC_FORMATTER = DateTimeFormat.forPattern("yyyy-MM-dd HH:mm:ss.S")
+            .withZoneUTC();
+
     /**
      * Private constructor - all methods static.
      */
@@ -38,4 +45,31 @@ public class TimestampUtils {
     public static Timestamp timestampFromDateTime(DateTime dateTime) {
         return Timestamp.valueOf(dateTime.toString("yyyy-MM-dd HH:mm:ss.S"));
     }
+
+    /**
+     * Creates a timestamp of the wall clock time of a DateTime, read as UTC.
+     * <p>
+     * Unlike {@link #timestampFromDateTime(DateTime)} this doesn't depend on the default time zone of the JVM, so the
+     * wall clock survives even if it doesn't exist in that zone. Read it back, or bind it, with a UTC calendar.
+     *
+     * @param dateTime  The dateTime to create the timestamp at.
+     *
+     * @return the timestamp created from the wall clock of this dateTime, to a tenth of a second.
+     */
+    public static Timestamp utcTimestampFromDateTime(DateTime dateTime) {
+        LocalDateTime wallClock = dateTime.toLocalDateTime();
+        wallClock = wallClock.withMillisOfSecond(wallClock.getMillisOfSecond() / 100 * 100);
+        return new Timestamp(wallClock.toDateTime(DateTimeZone.UTC).getMillis());
+    }
+
+    /**
+     * Writes a timestamp as its wall clock time in UTC, in the format of {@link Timestamp#toString()}.
+     *
+     * @param timestamp  The timestamp, such as one created by {@link #utcTimestampFromDateTime(DateTime)}.
+     *
+     * @return the UTC wall clock of the timestamp, to a tenth of a second.
+     */
+    public static String toUtcString(Timestamp timestamp) {
+        return UTC_FORMATTER.print(timestamp.getTime());
+    }
 }
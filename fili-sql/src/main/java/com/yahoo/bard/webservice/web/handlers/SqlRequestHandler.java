@@ -2,8 +2,10 @@
 // Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
 package com.yahoo.bard.webservice.web.handlers;
 
+import com.yahoo.bard.webservice.config.BardFeatureFlag;
 import com.yahoo.bard.webservice.config.SystemConfig;
 import com.yahoo.bard.webservice.config.SystemConfigProvider;
+import com.yahoo.bard.webservice.data.ResultSetSchema;
 import com.yahoo.bard.webservice.druid.client.FailureCallback;
 import com.yahoo.bard.webservice.druid.client.SuccessCallback;
 import com.yahoo.bard.webservice.druid.model.query.DruidAggregationQuery;
@@ -15,6 +17,7 @@ import com.yahoo.bard.webservice.table.SqlPhysicalTable;
 import com.yahoo.bard.webservice.web.DataApiRequest;
 import com.yahoo.bard.webservice.web.responseprocessors.LoggingContext;
 import com.yahoo.bard.webservice.web.responseprocessors.ResponseProcessor;
+import com.yahoo.bard.webservice.web.responseprocessors.ResultSetBuildingResponseProcessor;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 
@@ -22,6 +25,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.sql.SQLException;
+import java.util.LinkedHashSet;
+import java.util.stream.Collectors;
 
 import javax.validation.constraints.NotNull;
 
@@ -69,6 +74,9 @@ public class SqlRequestHandler implements DataRequestHandler {
 
     /**
      * Handles a request by detecting if it's a sql backed table and sending to a sql backend.
+     * <p>
+     * When sql result sets are enabled and the response processor can process result sets, the sql results are read
+     * straight into a result set for it. Otherwise they are turned into a druid like response for it to process.
      *
      * @param context  The context for the Request.
      * @param request  The Api Request Object.
@@ -91,6 +99,30 @@ public class SqlRequestHandler implements DataRequestHandler {
         if (sqlConverter != null && isSqlBacked) {
             LOG.info("Intercepting for sql backend");
             LoggingContext copy = new LoggingContext(RequestLog.copy());
+            FailureCallback failure = response.getFailureCallback(druidQuery);
+
+            if (BardFeatureFlag.SQL_RESULT_SETS.isOn()
+                    && response instanceof ResultSetBuildingResponseProcessor
+                    && ((ResultSetBuildingResponseProcessor) response).isBuildingResultSets()) {
+                ResultSetBuildingResponseProcessor resultSetProcessor = (ResultSetBuildingResponseProcessor) response;
+                ResultSetSchema schema = new ResultSetSchema(
+                        request.getGranularity(),
+                        druidQuery.buildSchemaColumns().collect(Collectors.toCollection(LinkedHashSet::new))
+                );
+                sqlConverter.executeResultSetQuery(
+                        druidQuery,
+                        schema,
+                        request.getTimeZone(),
+                        resultSet -> resultSetProcessor.processResultSet(
+                                resultSet,
+                                new SqlAggregationQuery(druidQuery),
+                                copy
+                        ),
+                        failure
+                );
+                return true;
+            }
+
             SuccessCallback success = rootNode -> {
                 response.processResponse(
                         rootNode,
@@ -98,8 +130,6 @@ public class SqlRequestHandler implements DataRequestHandler {
                         copy
                 );
             };
-            FailureCallback failure = response.getFailureCallback(druidQuery);
-
             sqlConverter.executeQuery(druidQuery, success, failure);
 
             return true;
@@ -46,6 +46,7 @@ import static com.yahoo.bard.webservice.sql.builders.SimpleDruidQueryBuilder.get
 import static com.yahoo.bard.webservice.sql.builders.SimpleDruidQueryBuilder.groupByQuery
 import static com.yahoo.bard.webservice.sql.builders.SimpleDruidQueryBuilder.timeSeriesQuery
 
+import com.yahoo.bard.webservice.config.BardFeatureFlag
 import com.yahoo.bard.webservice.data.DruidResponseParser
 import com.yahoo.bard.webservice.data.ResultSet
 import com.yahoo.bard.webservice.data.ResultSetSchema
@@ -302,6 +303,48 @@ class DefaultSqlBackedClientSpec extends Specification {
         DAY       | []                 | null                           | null                            | 1
     }
 
+    @Unroll
+    def "Result sets read straight from sql on /#timeGrain/#dims/ match the parsed druid response"() {
+        setup:
+        DruidQuery druidQuery = getGroupByQuery(timeGrain, filter, null, dims, null)
+        ResultSet parsed = parse(sqlBackedClient.executeQuery(druidQuery, null, null).get(), druidQuery)
+        ResultSet read = sqlBackedClient.executeResultSetQuery(
+                druidQuery,
+                parsed.getSchema(),
+                druidQuery.dataSource.physicalTable.schema.timeGrain.timeZone,
+                null,
+                null
+        ).get()
+
+        expect:
+        read.size() == size
+        read == parsed
+
+        where:
+        timeGrain | dims               | filter                         | size
+        INSTANCE  | []                 | null                           | 39244
+        HOUR      | [IS_ROBOT]         | null                           | 24 * 2
+        DAY       | [IS_NEW, IS_ROBOT] | null                           | 4
+        HOUR      | [IS_NEW, IS_ROBOT] | search(COMMENT, FIRST_COMMENT) | 1
+    }
+
+    def "Result sets read straight from sql keep long aggregations"() {
+        setup:
+        DruidQuery druidQuery = getTimeSeriesQueryCustomAggregation(DAY, null, { s -> longSum(s) })
+        ResultSet parsed = parse(sqlBackedClient.executeQuery(druidQuery, null, null).get(), druidQuery)
+        ResultSet read = sqlBackedClient.executeResultSetQuery(
+                druidQuery,
+                parsed.getSchema(),
+                druidQuery.dataSource.physicalTable.schema.timeGrain.timeZone,
+                null,
+                null
+        ).get()
+
+        expect:
+        read == parsed
+        read.get(0).getMetricValue(new MetricColumn(ADDED)) == 9385573G
+    }
+
     @Unroll
     def "test sorting on #dims with #metrics by #metricDirections expecting #expectedSize results"() {
         setup:
@@ -321,4 +364,36 @@ class DefaultSqlBackedClientSpec extends Specification {
         MONTH    | [USER]                                  | []               | []               | OptionalInt.of(49)   | 49
         INSTANCE | [COUNTRY_ISO_CODE]                      | []               | []               | OptionalInt.of(25)   | 25
     }
+
+    @Unroll
+    def "Sql templates built for #filter and reused for #otherFilter give the same responses as sql with literals"() {
+        setup:
+        boolean templatesEnabled = BardFeatureFlag.SQL_QUERY_TEMPLATES.isOn()
+        DruidQuery druidQuery = getTimeSeriesQueryMultipleIntervals(HOUR, filter)
+        DruidQuery otherDruidQuery = getTimeSeriesQueryMultipleIntervals(HOUR, otherFilter)
+        BardFeatureFlag.SQL_QUERY_TEMPLATES.setOn(false)
+        JsonNode response = sqlBackedClient.executeQuery(druidQuery, null, null).get()
+        JsonNode otherResponse = sqlBackedClient.executeQuery(otherDruidQuery, null, null).get()
+
+        when:
+        BardFeatureFlag.SQL_QUERY_TEMPLATES.setOn(true)
+        JsonNode templated = sqlBackedClient.executeQuery(druidQuery, null, null).get()
+        JsonNode reused = sqlBackedClient.executeQuery(otherDruidQuery, null, null).get()
+
+        then:
+        templated == response
+        reused == otherResponse
+
+        cleanup:
+        BardFeatureFlag.SQL_QUERY_TEMPLATES.setOn(templatesEnabled)
+
+        where:
+        filter                                              | otherFilter
+        null                                                | null
+        select(COMMENT, FIRST_COMMENT)                      | select(COMMENT, UNIQUE_COMMENT)
+        select(COMMENT, "it's")                             | select(COMMENT, FIRST_COMMENT)
+        search(COMMENT, "quotation")                        | search(COMMENT, "project")
+        not(select(COMMENT, FIRST_COMMENT))                 | not(select(COMMENT, UNIQUE_COMMENT))
+        or(select(IS_ROBOT, TRUE), select(IS_ROBOT, FALSE)) | or(select(IS_ROBOT, FALSE), select(IS_ROBOT, TRUE))
+    }
 }
@@ -12,12 +12,15 @@ import static com.yahoo.bard.webservice.druid.model.orderby.SortDirection.ASC
 import static com.yahoo.bard.webservice.druid.model.orderby.SortDirection.DESC
 import static com.yahoo.bard.webservice.druid.model.query.AllGranularity.INSTANCE
 import static com.yahoo.bard.webservice.sql.builders.Aggregator.sum
+import static com.yahoo.bard.webservice.sql.builders.Filters.or
+import static com.yahoo.bard.webservice.sql.builders.Filters.select
 import static com.yahoo.bard.webservice.sql.builders.Intervals.interval
 import static com.yahoo.bard.webservice.sql.builders.SimpleDruidQueryBuilder.END
 import static com.yahoo.bard.webservice.sql.builders.SimpleDruidQueryBuilder.START
 import static com.yahoo.bard.webservice.sql.builders.SimpleDruidQueryBuilder.getDimensions
 import static com.yahoo.bard.webservice.sql.builders.SimpleDruidQueryBuilder.getWikitickerDatasource
 
+import com.yahoo.bard.webservice.config.BardFeatureFlag
 import com.yahoo.bard.webservice.database.Database
 import com.yahoo.bard.webservice.druid.model.orderby.LimitSpec
 import com.yahoo.bard.webservice.druid.model.query.DruidQuery
@@ -26,15 +29,26 @@ import com.yahoo.bard.webservice.druid.model.query.GroupByQuery
 import com.yahoo.bard.webservice.sql.builders.SimpleDruidQueryBuilder
 import com.yahoo.bard.webservice.sql.helper.CalciteHelper
 
+import org.joda.time.DateTime
+import org.joda.time.DateTimeZone
+import org.joda.time.LocalDateTime
+
 import spock.lang.Specification
 import spock.lang.Unroll
 
+import java.sql.PreparedStatement
+import java.sql.Timestamp
+
 class DruidQueryToSqlConverterSpec extends Specification {
     static CalciteHelper calciteHelper = new CalciteHelper(Database.getDataSource())
     static DruidQueryToSqlConverter druidQueryToSqlConverter = new DruidQueryToSqlConverter(calciteHelper)
     static ApiToFieldMapper apiToFieldMapper = SimpleDruidQueryBuilder.getApiToFieldMapper(API_PREPEND, "")
     static private final String API_PREPEND = "api_"
 
+    private static Timestamp utc(String wallClock) {
+        return new Timestamp(LocalDateTime.parse(wallClock).toDateTime(DateTimeZone.UTC).millis)
+    }
+
     private static GroupByQuery getGroupByQuery(
             Granularity timeGrain,
             List<String> dimensions,
@@ -71,4 +85,82 @@ class DruidQueryToSqlConverterSpec extends Specification {
         MONTH    | []                     | []               | []               | """ ORDER BY YEAR("${TIME}"), MONTH("${TIME}") """
         INSTANCE | []                     | []               | []               | """ ORDER BY "${TIME}" """
     }
+
+    def "Queries differing only in their intervals and filter values share a sql template"() {
+        setup:
+        boolean templatesEnabled = BardFeatureFlag.SQL_QUERY_TEMPLATES.isOn()
+        BardFeatureFlag.SQL_QUERY_TEMPLATES.setOn(true)
+        DruidQueryToSqlConverter converter = new DruidQueryToSqlConverter(calciteHelper)
+        GroupByQuery query = getGroupByQuery(DAY, [METRO_CODE], null)
+                .withFilter(select(API_PREPEND + METRO_CODE, "1"))
+        GroupByQuery otherQuery = query
+                .withFilter(select(API_PREPEND + METRO_CODE, "2"))
+                .withIntervals([interval("2015-09-13T00:00:00.000Z", "2015-09-14T00:00:00.000Z")])
+
+        when:
+        ParameterizedSqlQuery sqlQuery = converter.buildParameterizedSqlQuery(query, apiToFieldMapper)
+        ParameterizedSqlQuery otherSqlQuery = converter.buildParameterizedSqlQuery(otherQuery, apiToFieldMapper)
+
+        then:
+        sqlQuery.sql.is(otherSqlQuery.sql)
+        sqlQuery.sql.count("?") == 3
+        !sqlQuery.sql.contains("'")
+        sqlQuery.parameters == [utc("2015-09-12T00:00:00"), utc("2015-09-13T00:00:00"), "1"]
+        otherSqlQuery.parameters == [utc("2015-09-13T00:00:00"), utc("2015-09-14T00:00:00"), "2"]
+
+        cleanup:
+        BardFeatureFlag.SQL_QUERY_TEMPLATES.setOn(templatesEnabled)
+    }
+
+    def "A bound template compares against the same wall clock as the literal sql when the JVM isn't in UTC"() {
+        setup:
+        boolean templatesEnabled = BardFeatureFlag.SQL_QUERY_TEMPLATES.isOn()
+        BardFeatureFlag.SQL_QUERY_TEMPLATES.setOn(true)
+        TimeZone defaultTimeZone = TimeZone.getDefault()
+        // 02:30 on 2015-03-08 doesn't exist in Los Angeles, where the clocks skipped from 02:00 to 03:00
+        TimeZone.setDefault(TimeZone.getTimeZone("America/Los_Angeles"))
+        DruidQueryToSqlConverter converter = new DruidQueryToSqlConverter(calciteHelper)
+        GroupByQuery query = getGroupByQuery(DAY, [METRO_CODE], null)
+                .withFilter(select(API_PREPEND + METRO_CODE, "1"))
+                .withIntervals([interval("2015-03-08T02:30:00.000Z", "2015-03-09T00:00:00.000Z")])
+        PreparedStatement statement = Mock(PreparedStatement)
+        Map<Integer, String> bound = [:]
+
+        when:
+        String literalSql = converter.buildSqlQuery(query, apiToFieldMapper)
+        ParameterizedSqlQuery sqlQuery = converter.buildParameterizedSqlQuery(query, apiToFieldMapper)
+        sqlQuery.bind(statement)
+
+        then:
+        2 * statement.setTimestamp(_, _, _) >> { int index, Timestamp timestamp, Calendar calendar ->
+            DateTimeZone zone = DateTimeZone.forTimeZone(calendar.timeZone)
+            bound[index] = new DateTime(timestamp.time, zone).toString("yyyy-MM-dd HH:mm:ss.S")
+        }
+        1 * statement.setString(_, _) >> { int index, String value -> bound[index] = value }
+        bound[1] == "2015-03-08 02:30:00.0"
+        (1..bound.size()).inject(sqlQuery.sql) { sql, index -> sql.replaceFirst("\\?", "'${bound[index]}'") } ==
+                literalSql
+
+        cleanup:
+        TimeZone.setDefault(defaultTimeZone)
+        BardFeatureFlag.SQL_QUERY_TEMPLATES.setOn(templatesEnabled)
+    }
+
+    def "Queries whose literals can't be told apart aren't made into templates"() {
+        setup:
+        boolean templatesEnabled = BardFeatureFlag.SQL_QUERY_TEMPLATES.isOn()
+        BardFeatureFlag.SQL_QUERY_TEMPLATES.setOn(true)
+        DruidQuery query = getGroupByQuery(DAY, [METRO_CODE], null)
+                .withFilter(or(select(API_PREPEND + METRO_CODE, "1"), select(API_PREPEND + IS_ROBOT, "1")))
+
+        when:
+        ParameterizedSqlQuery sqlQuery = druidQueryToSqlConverter.buildParameterizedSqlQuery(query, apiToFieldMapper)
+
+        then:
+        sqlQuery.parameters.isEmpty()
+        sqlQuery.sql == druidQueryToSqlConverter.buildSqlQuery(query, apiToFieldMapper)
+
+        cleanup:
+        BardFeatureFlag.SQL_QUERY_TEMPLATES.setOn(templatesEnabled)
+    }
 }
@@ -0,0 +1,64 @@
+// Copyright 2017 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.sql
+
+import org.joda.time.DateTime
+import org.joda.time.DateTimeZone
+
+import spock.lang.Specification
+import spock.lang.Unroll
+
+import java.sql.PreparedStatement
+import java.sql.Timestamp
+
+class ParameterizedSqlQuerySpec extends Specification {
+
+    static final Timestamp UTC_TIMESTAMP = new Timestamp(new DateTime(2015, 9, 12, 0, 0, DateTimeZone.UTC).millis)
+
+    @Unroll
+    def "#sql with values #values is made into the template #template"() {
+        expect:
+        ParameterizedSqlQuery.parameterize(sql, values) == Optional.of(template)
+
+        where:
+        sql                                               | values                                     | template
+        "SELECT 1"                                        | []                                         | "SELECT 1"
+        "SELECT * WHERE \"a\" = 'x' AND \"b\" LIKE '%y%'" | ["x", "%y%"]                               | "SELECT * WHERE \"a\" = ? AND \"b\" LIKE ?"
+        "SELECT * WHERE `a` = 'it''s'"                    | ["it's"]                                   | "SELECT * WHERE `a` = ?"
+        "SELECT * WHERE \"it's\" = 'x'"                   | ["x"]                                      | "SELECT * WHERE \"it's\" = ?"
+        "SELECT * WHERE [it's] = 'x'"                     | ["x"]                                      | "SELECT * WHERE [it's] = ?"
+        "SELECT * WHERE \"a\"\"'\" = 'x'"                 | ["x"]                                      | "SELECT * WHERE \"a\"\"'\" = ?"
+        "SELECT * WHERE \"t\" > '2015-09-12 00:00:00.0'"  | [UTC_TIMESTAMP]                            | "SELECT * WHERE \"t\" > ?"
+    }
+
+    @Unroll
+    def "#sql with values #values can't be made into a template"() {
+        expect:
+        !ParameterizedSqlQuery.parameterize(sql, values).isPresent()
+
+        where:
+        sql                                         | values
+        "SELECT * WHERE \"a\" = 'x'"                | []
+        "SELECT * WHERE \"a\" = 'x'"                | ["x", "y"]
+        "SELECT * WHERE \"a\" = 'x'"                | ["y"]
+        "SELECT * WHERE \"a\" = 'y' OR \"b\" = 'x'" | ["x", "y"]
+        "SELECT * WHERE \"a\" = 'x' OR \"b\" = 'x'" | ["x", "x"]
+        "SELECT * WHERE \"a\" = u&'x'"              | ["x"]
+        "SELECT * WHERE \"a\" = N'x'"               | ["x"]
+        "SELECT * WHERE \"a\" = 'x"                 | ["x"]
+    }
+
+    def "Timestamps are bound as timestamps in UTC and other values as strings"() {
+        setup:
+        Timestamp timestamp = UTC_TIMESTAMP
+        PreparedStatement statement = Mock(PreparedStatement)
+
+        when:
+        new ParameterizedSqlQuery("SELECT * WHERE \"t\" > ? AND \"a\" = ?", [timestamp, "x"]).bind(statement)
+
+        then:
+        1 * statement.setTimestamp(1, timestamp, { it.timeZone.ID == "UTC" })
+        1 * statement.setString(2, "x")
+        0 * statement._
+    }
+}
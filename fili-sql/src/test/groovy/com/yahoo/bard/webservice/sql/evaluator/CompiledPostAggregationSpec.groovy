@@ -0,0 +1,79 @@
+// Copyright 2017 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.sql.evaluator
+
+import static com.yahoo.bard.webservice.druid.model.postaggregation.ArithmeticPostAggregation.ArithmeticPostAggregationFunction.DIVIDE
+import static com.yahoo.bard.webservice.druid.model.postaggregation.ArithmeticPostAggregation.ArithmeticPostAggregationFunction.MINUS
+import static com.yahoo.bard.webservice.druid.model.postaggregation.ArithmeticPostAggregation.ArithmeticPostAggregationFunction.MULTIPLY
+import static com.yahoo.bard.webservice.druid.model.postaggregation.ArithmeticPostAggregation.ArithmeticPostAggregationFunction.PLUS
+import static com.yahoo.bard.webservice.sql.builders.Aggregator.sum
+import static com.yahoo.bard.webservice.sql.builders.PostAggregator.arithmetic
+import static com.yahoo.bard.webservice.sql.builders.PostAggregator.constant
+import static com.yahoo.bard.webservice.sql.builders.PostAggregator.field
+
+import com.yahoo.bard.webservice.druid.model.postaggregation.SketchEstimatePostAggregation
+import com.yahoo.bard.webservice.druid.model.postaggregation.ThetaSketchEstimatePostAggregation
+
+import spock.lang.Specification
+import spock.lang.Unroll
+
+class CompiledPostAggregationSpec extends Specification {
+    static String ONE = "one"
+    static String FIVE = "five"
+    static Map<String, Integer> fieldIndexes = [(ONE): 0, (FIVE): 2]
+    static double[] values = [1, 99, 5] as double[]
+
+    @Unroll
+    def "Compiled post aggregations expecting #value match the evaluator"() {
+        given:
+        CompiledPostAggregation compiled = CompiledPostAggregation.compile(postAgg, { fieldIndexes.get(it) })
+        Number interpreted = new PostAggregationEvaluator().calculate(
+                postAgg,
+                { values[fieldIndexes.get(it)].toString() }
+        )
+
+        expect:
+        compiled.calculate(values) == value
+        compiled.calculate(values) == interpreted
+        compiled.calculate(values).class == interpreted.class
+
+        where:
+        postAgg                                                                   | value
+        arithmetic(PLUS, field(sum(ONE)))                                         | 1
+        arithmetic(PLUS, constant(1))                                             | 1
+        arithmetic(PLUS, arithmetic(PLUS, constant(1)), constant(1))              | 2
+        arithmetic(PLUS, field(sum(ONE)), field(sum(FIVE)))                       | 6
+        arithmetic(MINUS, field(sum(ONE)), field(sum(FIVE)))                      | -4
+        arithmetic(MINUS, constant(1), constant(1), constant(1))                  | -1
+        arithmetic(MULTIPLY, field(sum(ONE)), field(sum(FIVE)))                   | 5
+        arithmetic(DIVIDE, field(sum(ONE)), field(sum(FIVE)))                     | 1 / 5
+        arithmetic(DIVIDE, field(sum(ONE)), constant(0))                          | 0
+        arithmetic(DIVIDE, constant(1), constant(1), constant(2))                 | 1 / 2 // = ((1/1)/2)
+        arithmetic(DIVIDE, field(sum(ONE)), constant(1), constant(0))             | 0 // = ((1/1)/0)
+        arithmetic(MINUS, arithmetic(MULTIPLY, field(sum(FIVE)), constant(3)), arithmetic(DIVIDE, constant(9), field(sum(FIVE)), constant(0)), field(sum(ONE))) | 14
+    }
+
+    def "The input indexes are the values the post aggregation reads"() {
+        expect:
+        CompiledPostAggregation.compile(
+                arithmetic(PLUS, field(sum(FIVE)), arithmetic(MULTIPLY, field(sum(ONE)), field(sum(FIVE)))),
+                { fieldIndexes.get(it) }
+        ).getInputIndexes() == [2, 0] as int[]
+    }
+
+    @Unroll
+    def "Compiling #postAgg.class.simpleName throws"() {
+        when:
+        CompiledPostAggregation.compile(postAgg, { fieldIndexes.get(it) })
+
+        then:
+        thrown UnsupportedOperationException
+
+        where:
+        postAgg << [
+                new ThetaSketchEstimatePostAggregation("", null),
+                new SketchEstimatePostAggregation("", null),
+                arithmetic(MINUS, field(sum(ONE))).withFields([])
+        ]
+    }
+}
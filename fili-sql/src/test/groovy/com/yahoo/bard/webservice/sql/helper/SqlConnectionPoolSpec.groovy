@@ -0,0 +1,187 @@
+// Copyright 2017 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.sql.helper
+
+import spock.lang.Specification
+
+import java.sql.Connection
+import java.sql.PreparedStatement
+
+import javax.sql.DataSource
+
+class SqlConnectionPoolSpec extends Specification {
+    List<Connection> opened = []
+    List<PreparedStatement> prepared = []
+    Set<Object> closed = Collections.newSetFromMap(new IdentityHashMap<>())
+    List<PreparedStatement> cleared = []
+
+    DataSource dataSource = [getConnection: { newConnection() }] as DataSource
+
+    Connection newConnection() {
+        Connection connection
+        connection = [
+                prepareStatement: { String sql -> newStatement() },
+                isClosed: { closed.contains(connection) },
+                close: { closed.add(connection) }
+        ] as Connection
+        opened.add(connection)
+        return connection
+    }
+
+    PreparedStatement newStatement() {
+        PreparedStatement statement
+        statement = [
+                clearParameters: { cleared.add(statement) },
+                isClosed: { closed.contains(statement) },
+                close: { closed.add(statement) }
+        ] as PreparedStatement
+        prepared.add(statement)
+        return statement
+    }
+
+    def "Released connections are reused rather than opening new ones"() {
+        given:
+        SqlConnectionPool pool = new SqlConnectionPool(dataSource, 2, 10)
+
+        when:
+        SqlConnectionPool.PooledConnection first = pool.acquire()
+        first.close()
+        SqlConnectionPool.PooledConnection second = pool.acquire()
+
+        then:
+        second.is(first)
+        opened.size() == 1
+        pool.getActiveCount() == 1
+        pool.getIdleCount() == 0
+    }
+
+    def "Reused connections are returned to the pool when closed"() {
+        given:
+        SqlConnectionPool pool = new SqlConnectionPool(dataSource, 2, 10)
+
+        when:
+        5.times { pool.acquire().close() }
+
+        then:
+        opened.size() == 1
+        pool.getActiveCount() == 0
+        pool.getIdleCount() == 1
+    }
+
+    def "Statements prepared for the same sql on a connection are reused"() {
+        given:
+        SqlConnectionPool pool = new SqlConnectionPool(dataSource, 1, 10)
+        SqlConnectionPool.PooledConnection connection = pool.acquire()
+
+        when:
+        PreparedStatement first = connection.prepareStatement("select 1")
+        connection.close()
+        connection = pool.acquire()
+        PreparedStatement second = connection.prepareStatement("select 1")
+        connection.prepareStatement("select 2")
+
+        then:
+        second.is(first)
+        prepared.size() == 2
+        cleared.size() == 1
+        cleared[0].is(first)
+    }
+
+    def "The least recently used statements are closed once the cache is full"() {
+        given:
+        SqlConnectionPool pool = new SqlConnectionPool(dataSource, 1, 2)
+        SqlConnectionPool.PooledConnection connection = pool.acquire()
+
+        when:
+        connection.prepareStatement("select 1")
+        connection.prepareStatement("select 2")
+        connection.prepareStatement("select 1")
+        connection.prepareStatement("select 3")
+
+        then:
+        prepared.size() == 3
+        closed.contains(prepared[1])
+        !closed.contains(prepared[0])
+        !closed.contains(prepared[2])
+    }
+
+    def "Statements are closed on release when none are cached"() {
+        given:
+        SqlConnectionPool pool = new SqlConnectionPool(dataSource, 1, 0)
+        SqlConnectionPool.PooledConnection connection = pool.acquire()
+        connection.prepareStatement("select 1")
+
+        when:
+        connection.close()
+
+        then:
+        closed.contains(prepared[0])
+        !closed.contains(opened[0])
+        pool.getIdleCount() == 1
+    }
+
+    def "Discarded connections are closed and free their place in the pool"() {
+        given:
+        SqlConnectionPool pool = new SqlConnectionPool(dataSource, 1, 10)
+        SqlConnectionPool.PooledConnection connection = pool.acquire()
+
+        when:
+        connection.discard()
+        SqlConnectionPool.PooledConnection replacement = pool.acquire()
+
+        then:
+        closed.contains(opened[0])
+        !replacement.is(connection)
+        opened.size() == 2
+    }
+
+    def "No more connections than the limit are in use at once"() {
+        given:
+        SqlConnectionPool pool = new SqlConnectionPool(dataSource, 1, 10)
+        SqlConnectionPool.PooledConnection connection = pool.acquire()
+        SqlConnectionPool.PooledConnection waiter = null
+        Thread thread = Thread.start { waiter = pool.acquire() }
+
+        when:
+        thread.join(100)
+
+        then:
+        thread.isAlive()
+        waiter == null
+
+        when:
+        connection.close()
+        thread.join(5000)
+
+        then:
+        waiter.is(connection)
+        opened.size() == 1
+    }
+
+    def "Closing the pool closes idle connections, and connections in use once they are released"() {
+        given:
+        SqlConnectionPool pool = new SqlConnectionPool(dataSource, 2, 10)
+        SqlConnectionPool.PooledConnection idle = pool.acquire()
+        SqlConnectionPool.PooledConnection inUse = pool.acquire()
+        idle.close()
+
+        when:
+        pool.close()
+
+        then:
+        closed.contains(opened[0])
+        !closed.contains(opened[1])
+
+        when:
+        inUse.close()
+
+        then:
+        closed.contains(opened[1])
+
+        when:
+        pool.acquire()
+
+        then:
+        thrown IllegalStateException
+    }
+}